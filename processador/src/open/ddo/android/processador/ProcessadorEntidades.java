@@ -0,0 +1,516 @@
+package open.ddo.android.processador;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * Processador de anotações que gera, para cada entidade anotada com
+ * <tt>@Tabela</tt>/<tt>@Coluna</tt>, a classe <tt>[Entidade]_Mapeador</tt>
+ * (implementação de <tt>open.ddo.android.persistencia.MapeadorGerado</tt>)
+ * com acesso direto aos atributos, o SQL de inserção e a leitura do cursor.<br/>
+ *
+ * O acesso direto exige que os atributos <tt>@Coluna</tt> não sejam
+ * privados e que a entidade seja uma classe de primeiro nível com
+ * construtor sem argumentos não privado. Se não for o caso, o mapeador não
+ * é gerado (é emitida uma nota) e a entidade continua mapeada via reflexão.<br/>
+ *
+ * Uso (compilação da aplicação): incluir este processador no
+ * <i>classpath</i> de processadores (<tt>-processorpath</tt>).
+ *
+ * @author ozairjr
+ *
+ */
+@SupportedAnnotationTypes({
+	ProcessadorEntidades.TABELA,
+	ProcessadorEntidades.COLUNA
+})
+public class ProcessadorEntidades extends AbstractProcessor {
+
+	// --------------------------------------------------------------
+	// Atributos de classe
+	// --------------------------------------------------------------
+
+	/** Pacote das anotações. */
+	private static final String ANOTACAO = "open.ddo.android.persistencia.anotacao.";
+	/** Anotação <tt>@Tabela</tt>. */
+	static final String TABELA = ANOTACAO + "Tabela";
+	/** Anotação <tt>@Coluna</tt>. */
+	static final String COLUNA = ANOTACAO + "Coluna";
+	/** Anotação <tt>@Chave</tt>. */
+	private static final String CHAVE = ANOTACAO + "Chave";
+	/** Anotação <tt>@Data</tt>. */
+	private static final String DATA = ANOTACAO + "Data";
+	/** Anotação <tt>@Enumeracao</tt>. */
+	private static final String ENUMERACAO = ANOTACAO + "Enumeracao";
+	/** Sufixo da classe gerada (<tt>MapeadorGerado.SUFIXO</tt>). */
+	private static final String SUFIXO = "_Mapeador";
+
+	// --------------------------------------------------------------
+	// Métodos
+	// --------------------------------------------------------------
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> anotacoes, RoundEnvironment ambiente) {
+		TypeElement tabela = processingEnv.getElementUtils().getTypeElement(TABELA);
+		TypeElement coluna = processingEnv.getElementUtils().getTypeElement(COLUNA);
+		if (tabela == null || coluna == null) {
+			return false;
+		}
+		Set<TypeElement> entidades = new LinkedHashSet<TypeElement>();
+		for (Element e: ambiente.getElementsAnnotatedWith(tabela)) {
+			if (e.getKind() == ElementKind.CLASS) {
+				entidades.add((TypeElement) e);
+			}
+		}
+		for (Element e: ambiente.getElementsAnnotatedWith(coluna)) {
+			Element classe = e.getEnclosingElement();
+			if (classe != null && classe.getKind() == ElementKind.CLASS) {
+				entidades.add((TypeElement) classe);
+			}
+		}
+		for (TypeElement entidade: entidades) {
+			gerar(entidade);
+		}
+		// As anotações continuam disponíveis para outros processadores.
+		return false;
+	}
+
+	// --------------------------------------------------------------
+	// Métodos auxiliares
+	// --------------------------------------------------------------
+
+	/**
+	 * Gera o mapeador da entidade (se for possível o acesso direto).
+	 * @param entidade
+	 */
+	private void gerar(TypeElement entidade) {
+		if (entidade.getNestingKind() != NestingKind.TOP_LEVEL
+				|| entidade.getModifiers().contains(Modifier.ABSTRACT)
+				|| !possuiConstrutorAcessivel(entidade)) {
+			nota(entidade, "classe deve ser de primeiro n\u00edvel, concreta e com"
+					+ " construtor sem argumentos n\u00e3o privado");
+			return;
+		}
+		String pacote = processingEnv.getElementUtils()
+				.getPackageOf(entidade).getQualifiedName().toString();
+		List<Atributo> atributos = new ArrayList<Atributo>();
+		if (!carregarAtributos(entidade, pacote, atributos)) {
+			return;
+		}
+		if (atributos.isEmpty()) {
+			return;
+		}
+
+		String nomeClasse = entidade.getSimpleName().toString();
+		String nomeMapeador = nomeClasse + SUFIXO;
+		String nomeTabela = nomeTabela(entidade);
+		try {
+			JavaFileObject arquivo = processingEnv.getFiler().createSourceFile(
+					(pacote.length() > 0 ? pacote + "." : "") + nomeMapeador,
+					entidade);
+			Writer w = arquivo.openWriter();
+			try {
+				escrever(w, pacote, nomeClasse, nomeMapeador, nomeTabela, atributos);
+			} finally {
+				w.close();
+			}
+		} catch (IOException e) {
+			processingEnv.getMessager().printMessage(
+					Diagnostic.Kind.ERROR,
+					"Falha ao gerar " + nomeMapeador + ": " + e.getMessage(),
+					entidade);
+		}
+	}
+
+	/**
+	 * Carrega os atributos <tt>@Coluna</tt> da entidade e de suas
+	 * superclasses (as da superclasse primeiro, como em
+	 * <tt>ObjectUtil.getFields</tt>).
+	 * @param entidade
+	 * @param pacote Pacote da entidade (e do mapeador).
+	 * @param atributos Lista a ser preenchida.
+	 * @return <tt>false</tt> se algum atributo não permite acesso direto.
+	 */
+	private boolean carregarAtributos(TypeElement entidade, String pacote, List<Atributo> atributos) {
+		TypeMirror superclasse = entidade.getSuperclass();
+		if (superclasse.getKind() == TypeKind.DECLARED) {
+			TypeElement pai = (TypeElement) ((DeclaredType) superclasse).asElement();
+			if (!pai.getQualifiedName().contentEquals("java.lang.Object")
+					&& !carregarAtributos(pai, pacote, atributos)) {
+				return false;
+			}
+		}
+		String pacoteClasse = processingEnv.getElementUtils()
+				.getPackageOf(entidade).getQualifiedName().toString();
+		for (VariableElement f: ElementFilter.fieldsIn(entidade.getEnclosedElements())) {
+			AnnotationMirror coluna = anotacao(f, COLUNA);
+			if (coluna == null || f.getModifiers().contains(Modifier.STATIC)) {
+				continue;
+			}
+			boolean acessivel = !f.getModifiers().contains(Modifier.PRIVATE)
+					&& !f.getModifiers().contains(Modifier.FINAL)
+					&& (f.getModifiers().contains(Modifier.PUBLIC) || pacoteClasse.equals(pacote));
+			Atributo atributo = acessivel ? new Atributo(f, coluna) : null;
+			if (atributo == null || atributo.tipo == null) {
+				nota(f, "atributo sem acesso direto (privado, final, de outro pacote"
+						+ " ou de tipo n\u00e3o suportado); mapeamento via reflex\u00e3o");
+				return false;
+			}
+			atributos.add(atributo);
+		}
+		return true;
+	}
+
+	/**
+	 * Escreve o código da classe gerada.
+	 */
+	private static void escrever(
+			Writer w,
+			String pacote,
+			String nomeClasse,
+			String nomeMapeador,
+			String nomeTabela,
+			List<Atributo> atributos) throws IOException {
+		if (pacote.length() > 0) {
+			w.write("package " + pacote + ";\n\n");
+		}
+		w.write("import android.database.Cursor;\n");
+		w.write("import open.ddo.android.persistencia.ConversorColuna;\n");
+		w.write("import open.ddo.android.persistencia.MapeadorGerado;\n\n");
+		w.write("/**\n * Mapeador de <tt>" + nomeClasse + "</tt> gerado por"
+				+ " <tt>ProcessadorEntidades</tt> (n\\u00e3o editar).\n */\n");
+		w.write("public final class " + nomeMapeador
+				+ " implements MapeadorGerado<" + nomeClasse + "> {\n\n");
+
+		// Constantes
+		StringBuilder nomes = new StringBuilder();
+		StringBuilder colunas = new StringBuilder();
+		StringBuilder tipos = new StringBuilder();
+		StringBuilder formatos = new StringBuilder();
+		StringBuilder insercao = new StringBuilder();
+		StringBuilder parametros = new StringBuilder();
+		for (int i = 0; i < atributos.size(); i++) {
+			Atributo a = atributos.get(i);
+			nomes.append(i > 0 ? ", " : "").append(literal(a.nome));
+			colunas.append(i > 0 ? ", " : "").append(literal(a.coluna));
+			tipos.append(i > 0 ? ", " : "").append(a.classe).append(".class");
+			formatos.append(i > 0 ? ", " : "").append(a.formato);
+			if (!a.autoincremento) {
+				insercao.append(insercao.length() > 0 ? "," : "").append(a.coluna);
+				parametros.append(parametros.length() > 0 ? ",?" : "?");
+			}
+		}
+		String sqlInsercao = "insert into " + nomeTabela
+				+ (insercao.length() == 0 ?
+						" default values"
+						: " (" + insercao + ") values (" + parametros + ")");
+		w.write("\tprivate static final String[] ATRIBUTOS = {" + nomes + "};\n");
+		w.write("\tprivate static final String[] COLUNAS = {" + colunas + "};\n");
+		w.write("\tprivate static final Class<?>[] TIPOS = {" + tipos + "};\n");
+		w.write("\tprivate static final Object[] FORMATOS = {" + formatos + "};\n");
+		for (int i = 0; i < atributos.size(); i++) {
+			Atributo a = atributos.get(i);
+			if (a.tipo == Tipo.OUTRO) {
+				w.write("\tprivate static final ConversorColuna C" + i
+						+ " = ConversorColuna.obter(" + a.classe + ".class, "
+						+ a.formato + ");\n");
+			}
+		}
+		w.write("\n");
+
+		// Metadados
+		w.write("\tpublic String nomeTabela() {\n\t\treturn "
+				+ literal(nomeTabela) + ";\n\t}\n\n");
+		w.write("\tpublic String[] atributos() {\n\t\treturn ATRIBUTOS.clone();\n\t}\n\n");
+		w.write("\tpublic String[] colunas() {\n\t\treturn COLUNAS.clone();\n\t}\n\n");
+		w.write("\tpublic Class<?>[] tipos() {\n\t\treturn TIPOS.clone();\n\t}\n\n");
+		w.write("\tpublic Object[] formatos() {\n\t\treturn FORMATOS.clone();\n\t}\n\n");
+		w.write("\tpublic String sqlInsercao() {\n\t\treturn "
+				+ literal(sqlInsercao) + ";\n\t}\n\n");
+		w.write("\tpublic " + nomeClasse + " novaInstancia() {\n\t\treturn new "
+				+ nomeClasse + "();\n\t}\n\n");
+
+		// obterValor
+		w.write("\tpublic Object obterValor(" + nomeClasse + " obj, int indice) {\n");
+		w.write("\t\tswitch (indice) {\n");
+		for (int i = 0; i < atributos.size(); i++) {
+			w.write("\t\t\tcase " + i + ": return obj." + atributos.get(i).nome + ";\n");
+		}
+		w.write("\t\t\tdefault: throw new IllegalArgumentException(\"Atributo \" + indice);\n");
+		w.write("\t\t}\n\t}\n\n");
+
+		// atribuirValor
+		w.write("\tpublic void atribuirValor(" + nomeClasse + " obj, int indice, Object valor) {\n");
+		w.write("\t\tswitch (indice) {\n");
+		for (int i = 0; i < atributos.size(); i++) {
+			Atributo a = atributos.get(i);
+			w.write("\t\t\tcase " + i + ": obj." + a.nome + " = " + a.tipo.conversao(a.classe)
+					+ "; break;\n");
+		}
+		w.write("\t\t\tdefault: throw new IllegalArgumentException(\"Atributo \" + indice);\n");
+		w.write("\t\t}\n\t}\n\n");
+
+		// preencher
+		w.write("\tpublic void preencher(" + nomeClasse + " obj, Cursor cursor, int[] indices) {\n");
+		w.write("\t\tint c;\n");
+		for (int i = 0; i < atributos.size(); i++) {
+			Atributo a = atributos.get(i);
+			w.write("\t\tif ((c = indices[" + i + "]) >= 0) {\n");
+			w.write("\t\t\tobj." + a.nome + " = " + a.tipo.leitura(a.classe, i) + ";\n");
+			w.write("\t\t}\n");
+		}
+		w.write("\t}\n");
+		w.write("}\n");
+	}
+
+	/**
+	 * Verifica se a classe possui construtor sem argumentos não privado.
+	 * @param entidade
+	 * @return
+	 */
+	private static boolean possuiConstrutorAcessivel(TypeElement entidade) {
+		List<ExecutableElement> construtores =
+				ElementFilter.constructorsIn(entidade.getEnclosedElements());
+		for (ExecutableElement c: construtores) {
+			if (c.getParameters().isEmpty() && !c.getModifiers().contains(Modifier.PRIVATE)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Nome da tabela (<tt>@Tabela.nome</tt> ou o nome da classe).
+	 * @param entidade
+	 * @return
+	 */
+	private String nomeTabela(TypeElement entidade) {
+		AnnotationMirror tabela = anotacao(entidade, TABELA);
+		String nome = tabela != null ? (String) valor(tabela, "nome") : null;
+		return nome == null || nome.trim().length() == 0 ?
+				entidade.getSimpleName().toString()
+				: nome;
+	}
+
+	/**
+	 * Obtém a anotação (pelo nome) do elemento.
+	 * @param e
+	 * @param nome
+	 * @return A anotação ou <tt>null</tt>.
+	 */
+	private static AnnotationMirror anotacao(Element e, String nome) {
+		for (AnnotationMirror m: e.getAnnotationMirrors()) {
+			TypeElement tipo = (TypeElement) m.getAnnotationType().asElement();
+			if (tipo.getQualifiedName().contentEquals(nome)) {
+				return m;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Obtém o valor do atributo da anotação (considerando o valor padrão).
+	 * @param m
+	 * @param atributo
+	 * @return
+	 */
+	private Object valor(AnnotationMirror m, String atributo) {
+		Map<? extends ExecutableElement, ? extends AnnotationValue> valores =
+				processingEnv.getElementUtils().getElementValuesWithDefaults(m);
+		for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> e: valores.entrySet()) {
+			if (e.getKey().getSimpleName().contentEquals(atributo)) {
+				return e.getValue().getValue();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Emite uma nota de que o mapeador não foi gerado.
+	 * @param e
+	 * @param motivo
+	 */
+	private void nota(Element e, String motivo) {
+		processingEnv.getMessager().printMessage(
+				Diagnostic.Kind.NOTE,
+				"Mapeador n\u00e3o gerado: " + motivo,
+				e);
+	}
+
+	/**
+	 * Literal Java da string.
+	 * @param s
+	 * @return
+	 */
+	private static String literal(String s) {
+		return "\"" + s.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+	}
+
+	// --------------------------------------------------------------
+	// Classes internas
+	// --------------------------------------------------------------
+
+	/**
+	 * Tipo do atributo (para a geração do código).
+	 */
+	private static enum Tipo {
+		LONG_PRIMITIVO("0L", "cursor.getLong(c)", "((Number) valor).longValue()"),
+		INT_PRIMITIVO("0", "cursor.getInt(c)", "((Number) valor).intValue()"),
+		SHORT_PRIMITIVO("(short) 0", "cursor.getShort(c)", "((Number) valor).shortValue()"),
+		BYTE_PRIMITIVO("(byte) 0", "(byte) cursor.getInt(c)", "((Number) valor).byteValue()"),
+		DOUBLE_PRIMITIVO("0d", "cursor.getDouble(c)", "((Number) valor).doubleValue()"),
+		FLOAT_PRIMITIVO("0f", "cursor.getFloat(c)", "((Number) valor).floatValue()"),
+		BOOLEAN_PRIMITIVO("false", "cursor.getLong(c) != 0", "((Boolean) valor).booleanValue()"),
+		LONG("null", "Long.valueOf(cursor.getLong(c))", null),
+		INT("null", "Integer.valueOf(cursor.getInt(c))", null),
+		SHORT("null", "Short.valueOf(cursor.getShort(c))", null),
+		BYTE("null", "Byte.valueOf((byte) cursor.getInt(c))", null),
+		DOUBLE("null", "Double.valueOf(cursor.getDouble(c))", null),
+		FLOAT("null", "Float.valueOf(cursor.getFloat(c))", null),
+		BOOLEAN("null", "Boolean.valueOf(cursor.getLong(c) != 0)", null),
+		TEXTO("null", "cursor.getString(c)", null),
+		BLOB("null", "cursor.getBlob(c)", null),
+		OUTRO("null", null, null);
+
+		/** Valor se a coluna for nula. */
+		final String padrao;
+		/** Leitura do cursor (coluna não nula). */
+		final String leitura;
+		/** Conversão de <tt>valor</tt> (não nulo) para o primitivo. */
+		final String primitivo;
+
+		private Tipo(String padrao, String leitura, String primitivo) {
+			this.padrao = padrao;
+			this.leitura = leitura;
+			this.primitivo = primitivo;
+		}
+
+		String leitura(String classe, int indice) {
+			String ler = this == OUTRO ?
+					"(" + classe + ") C" + indice + ".ler(cursor, c)"
+					: leitura;
+			return "cursor.isNull(c) ? " + padrao + " : " + ler;
+		}
+
+		String conversao(String classe) {
+			return primitivo != null ?
+					"valor == null ? " + padrao + " : " + primitivo
+					: "(" + classe + ") valor";
+		}
+	}
+
+	/**
+	 * Atributo <tt>@Coluna</tt> da entidade.
+	 */
+	private final class Atributo {
+
+		/** Nome do atributo. */
+		final String nome;
+		/** Nome da coluna. */
+		final String coluna;
+		/** Se é chave autoincremento. */
+		final boolean autoincremento;
+		/** Tipo (<tt>null</tt> se não suportado). */
+		final Tipo tipo;
+		/** Nome da classe do atributo (sem parâmetros genéricos). */
+		final String classe;
+		/** Formato (código Java) para <tt>ConversorColuna.obter</tt>. */
+		final String formato;
+
+		Atributo(VariableElement f, AnnotationMirror anotacaoColuna) {
+			nome = f.getSimpleName().toString();
+			String temp = (String) valor(anotacaoColuna, "nome");
+			coluna = temp != null && temp.length() > 0 ? temp : nome;
+			AnnotationMirror chave = anotacao(f, CHAVE);
+			autoincremento = chave != null && Boolean.TRUE.equals(valor(chave, "autoincremento"));
+			TypeMirror t = processingEnv.getTypeUtils().erasure(f.asType());
+			classe = t.toString();
+			tipo = identificarTipo(t);
+			String fmt = "null";
+			if (t.getKind() == TypeKind.DECLARED
+					&& ((DeclaredType) t).asElement().getKind() == ElementKind.ENUM) {
+				AnnotationMirror enumeracao = anotacao(f, ENUMERACAO);
+				boolean ordinal = enumeracao == null
+						|| Boolean.TRUE.equals(valor(enumeracao, "ordinal"));
+				fmt = ordinal ? "Boolean.TRUE" : "Boolean.FALSE";
+			} else if ("java.util.Date".equals(classe)) {
+				AnnotationMirror data = anotacao(f, DATA);
+				Object valorFormato = data != null ? valor(data, "formato") : null;
+				fmt = "open.ddo.android.util.FormatoData."
+						+ (valorFormato instanceof VariableElement ?
+								((VariableElement) valorFormato).getSimpleName()
+								: "LONG");
+			}
+			formato = fmt;
+		}
+
+		private Tipo identificarTipo(TypeMirror t) {
+			switch (t.getKind()) {
+				case LONG: return Tipo.LONG_PRIMITIVO;
+				case INT: return Tipo.INT_PRIMITIVO;
+				case SHORT: return Tipo.SHORT_PRIMITIVO;
+				case BYTE: return Tipo.BYTE_PRIMITIVO;
+				case DOUBLE: return Tipo.DOUBLE_PRIMITIVO;
+				case FLOAT: return Tipo.FLOAT_PRIMITIVO;
+				case BOOLEAN: return Tipo.BOOLEAN_PRIMITIVO;
+				case ARRAY:
+					return ((ArrayType) t).getComponentType().getKind() == TypeKind.BYTE ?
+							Tipo.BLOB
+							: null;
+				case DECLARED:
+					break;
+				default:
+					return null;
+			}
+			if ("java.lang.Long".equals(classe)) {
+				return Tipo.LONG;
+			} else if ("java.lang.Integer".equals(classe)) {
+				return Tipo.INT;
+			} else if ("java.lang.Short".equals(classe)) {
+				return Tipo.SHORT;
+			} else if ("java.lang.Byte".equals(classe)) {
+				return Tipo.BYTE;
+			} else if ("java.lang.Double".equals(classe)) {
+				return Tipo.DOUBLE;
+			} else if ("java.lang.Float".equals(classe)) {
+				return Tipo.FLOAT;
+			} else if ("java.lang.Boolean".equals(classe)) {
+				return Tipo.BOOLEAN;
+			} else if ("java.lang.String".equals(classe)) {
+				return Tipo.TEXTO;
+			}
+			return Tipo.OUTRO;
+		}
+	}
+}
@@ -1,12 +1,22 @@
 package open.ddo.android.persistencia;
 
-import java.lang.reflect.Field;
 import java.math.BigDecimal;
-import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.StringTokenizer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 
 import open.ddo.android.persistencia.excecao.DAOException;
 import open.ddo.android.persistencia.excecao.ResultadoUnicoEsperadoException;
@@ -15,6 +25,7 @@ import open.ddo.android.util.ObjectUtil;
 import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteProgram;
 import android.util.Log;
 
 /**
@@ -25,12 +36,27 @@ import android.util.Log;
  */
 public class AbstractDAO {
 
+	// --------------------------------------------------------------
+	// Atributos de classe
+	// --------------------------------------------------------------
+
+	/** Tabelas alteradas dentro da transação corrente de cada B.D. (cujos
+	 * caches são invalidados novamente ao finalizá-la), compartilhadas
+	 * pelos DAOs do mesmo B.D. */
+	private static final HashMap<SQLiteDatabase, HashSet<String>> TABELAS_ALTERADAS =
+			new HashMap<SQLiteDatabase, HashSet<String>>();
+
 	// --------------------------------------------------------------
 	// Atributos do objeto
 	// --------------------------------------------------------------
 
 	/** 'Gerenciador' para o banco de dados do Android. */
 	protected SQLiteDatabase bd;
+	/** Sessão (mapa de identidade) de entidades, se aberta. */
+	protected SessaoEntidades sessao = null;
+	/** Se a sessão foi aberta pela transação (e deve ser fechada ao
+	 * finalizar a transação mais externa). */
+	private boolean sessaoDaTransacao = false;
 
 	// --------------------------------------------------------------
 	// Métodos
@@ -66,6 +92,20 @@ public class AbstractDAO {
 		bd.beginTransaction();
 	}
 
+	/**
+	 * Inicia transação, podendo abrir a sessão de entidades (que será
+	 * fechada em <tt>finalizarTransacao()</tt>).
+	 * @param abrirSessao Se abre a sessão de entidades 
+	 * (veja <tt>abrirSessao()</tt>).
+	 */
+	public void iniciarTransacao(boolean abrirSessao) {
+		bd.beginTransaction();
+		if (abrirSessao && sessao == null) {
+			abrirSessao();
+			sessaoDaTransacao = true;
+		}
+	}
+
 	/**
 	 * 'Commit' na transação.
 	 */
@@ -74,10 +114,50 @@ public class AbstractDAO {
 	}
 
 	/**
-	 * Finaliza a transação.
+	 * Finaliza a transação. A sessão aberta pela transação só é fechada
+	 * ao finalizar a transação mais externa.
 	 */
 	public void finalizarTransacao() {
-		bd.endTransaction();
+		try {
+			bd.endTransaction();
+			concluirAlteracoes();
+		} finally {
+			if (sessaoDaTransacao && !bd.inTransaction()) {
+				fecharSessao();
+			}
+		}
+	}
+
+	/**
+	 * Abre a sessão (mapa de identidade) de entidades deste DAO 
+	 * (veja <tt>SessaoEntidades</tt>). Enquanto aberta, a mesma chave 
+	 * corresponde à mesma instância, e as pesquisas pela chave de 
+	 * registros já carregados não acessam o B.D.
+	 */
+	public void abrirSessao() {
+		if (sessao == null) {
+			sessao = new SessaoEntidades();
+		}
+		sessaoDaTransacao = false;
+	}
+
+	/**
+	 * Fecha a sessão de entidades, se aberta.
+	 */
+	public void fecharSessao() {
+		if (sessao != null) {
+			sessao.limpar();
+			sessao = null;
+		}
+		sessaoDaTransacao = false;
+	}
+
+	/**
+	 * Verifica se a sessão de entidades está aberta.
+	 * @return
+	 */
+	public boolean isSessaoAberta() {
+		return sessao != null;
 	}
 
 	/**
@@ -104,13 +184,42 @@ public class AbstractDAO {
 	 * @param valores Os valores.
 	 */
 	public long inserir(String nomeTabela, String colunaNula, ContentValues valores) {
+		if (sessao != null) {
+			sessao.limpar(nomeTabela);
+		}
+		registrarAlteracao(nomeTabela);
 		long ret = bd.insert(nomeTabela, colunaNula, valores);
+		concluirAlteracaoNativa(nomeTabela);
 		if (ret == -1) {
 			throw new DAOException("Falha ao inserir o registro.");
 		}
 		return ret;
 	}
 
+	/**
+	 * Insere os objetos (em lote) no banco de dados, em uma única transação.
+	 * A mesma instrução 'insert' (compilada) é reaproveitada para todos os
+	 * objetos, e as chaves autoincremento são atribuídas a cada objeto.<br/>
+	 * 
+	 * <b>Nota</b>: Os objetos devem ser da mesma classe, anotada com
+	 * <tt>@Tabela</tt> (opcional) e <tt>@Coluna</tt> (obrigatório) corretamente.
+	 * 
+	 * @param objetos Objetos entidade a serem inseridos.
+	 * @return Quantidade de registros inseridos.
+	 */
+	public int inserirLote(Collection<?> objetos) {
+		if (objetos == null || objetos.isEmpty()) {
+			return 0;
+		}
+		Object primeiro = objetos.iterator().next();
+		if (primeiro == null) {
+			throw new DAOException(
+					"Recurso (objeto) n\u00e3o informado para ser salvo.");
+		}
+		MetaDadosEntidade<?> metadados = getMetaDadosEntidade(primeiro);
+		return inserirLote(objetos, metadados);
+	}
+
 	/**
 	 * Atualiza o objeto no banco de dados.<br/>
 	 * 
@@ -142,12 +251,18 @@ public class AbstractDAO {
 			ContentValues valores, 
 			String clausulaWhere, 
 			String[] argsWhere) {
-		return bd.update(nomeTabela, valores, clausulaWhere, argsWhere);
+		if (sessao != null) {
+			sessao.limpar(nomeTabela);
+		}
+		registrarAlteracao(nomeTabela);
+		int quantidade = bd.update(nomeTabela, valores, clausulaWhere, argsWhere);
+		concluirAlteracaoNativa(nomeTabela);
+		return quantidade;
 	}
 	
 	/**
-	 * Insere ou atualiza o objeto (Para determinar se irá inserir ou atualizar 
-	 * a entidade, faz-se uma consulta com base na chave).
+	 * Insere ou atualiza o objeto (equivale a 
+	 * <tt>inserirOuAtualizar(obj, EstrategiaConflito.ATUALIZAR)</tt>).
 	 * 
 	 * <b>Nota</b>: O objeto deve estar anotado com <tt>@Tabela</tt> (opcional) 
 	 * e <tt>@Coluna</tt> (obrigatório) corretamente.
@@ -157,16 +272,35 @@ public class AbstractDAO {
 	 * @return
 	 */
 	public long inserirOuAtualizar(Object obj) {
+		return inserirOuAtualizar(obj, EstrategiaConflito.ATUALIZAR);
+	}
+	
+	/**
+	 * Insere o objeto, tratando o conflito de chave (registro já existente)
+	 * conforme a estratégia informada, em uma única instrução.<br/>
+	 * 
+	 * Se a entidade possuir chave autoincremento e esta não estiver 
+	 * preenchida (<tt>null</tt> ou zero), não há conflito possível: o objeto
+	 * é inserido e recebe a chave gerada.
+	 * 
+	 * <b>Nota</b>: O objeto deve estar anotado com <tt>@Tabela</tt> (opcional) 
+	 * e <tt>@Coluna</tt> (obrigatório) corretamente.
+	 * 
+	 * @param obj Objeto a ser inserido ou atualizado.
+	 * @param estrategia Estratégia em caso de conflito de chave.
+	 * 
+	 * @return A chave gerada (quando inserido com chave autoincremento gerada),
+	 * senão a quantidade de linhas inseridas/atualizadas (e não o 'rowid',
+	 * qualquer que seja a estratégia).
+	 */
+	public long inserirOuAtualizar(Object obj, EstrategiaConflito estrategia) {
 		if (obj == null) {
 			throw new DAOException(
 					"Recurso (objeto) n\u00e3o informado para ser salvo.");
 		}
 		MetaDadosEntidade<?> metadados = getMetaDadosEntidade(obj);
-		boolean atualizar = contarPelaChave(metadados, obj) > 0;
-		return (atualizar) ?
-			atualizar(obj, metadados)
-			: inserir(obj, metadados);
-		}
+		return inserirOuAtualizar(obj, metadados, estrategia);
+	}
 	
 	/**
 	 * Remove o objeto no banco de dados.<br/>
@@ -186,6 +320,32 @@ public class AbstractDAO {
 		return remover(obj, metadados);
 	}
 	
+	/**
+	 * Salva o objeto junto com as suas coleções em cascata 
+	 * (<tt>@UmParaMuitos(cascata = true)</tt>), em uma única transação.<br/>
+	 * 
+	 * O objeto é inserido ou atualizado (veja <tt>inserirOuAtualizar</tt>) e
+	 * a sua chave (inclusive a gerada) é atribuída às entidades 'filhas', 
+	 * que são comparadas pela chave com as que estão no B.D.: as novas são
+	 * inseridas (em lote), as existentes são atualizadas e, com 
+	 * <tt>removerOrfaos</tt>, as que não estão mais na coleção são 
+	 * removidas junto com as suas próprias coleções em cascata (em blocos
+	 * de chaves, um <tt>delete</tt> por bloco). Coleções nulas (ou <tt>Referencia</tt> não carregada) 
+	 * não são alteradas.
+	 * 
+	 * @param obj Objeto a ser salvo.
+	 * 
+	 * @return Quantidade de registros inseridos, atualizados ou removidos.
+	 */
+	public int salvar(Object obj) {
+		if (obj == null) {
+			throw new DAOException(
+					"Recurso (objeto) n\u00e3o informado para ser salvo.");
+		}
+		MetaDadosEntidade<?> metadados = getMetaDadosEntidade(obj);
+		return salvar(obj, metadados);
+	}
+	
 	/**
 	 * Remover 'nativo'.
 	 * @param nomeTabela Nome da tabela.
@@ -194,7 +354,13 @@ public class AbstractDAO {
 	 * @return
 	 */
 	public int remover(String nomeTabela, String clausulaWhere, String[] argsWhere) {
-		return bd.delete(nomeTabela, clausulaWhere, argsWhere);
+		if (sessao != null) {
+			sessao.limpar(nomeTabela);
+		}
+		registrarAlteracao(nomeTabela);
+		int quantidade = bd.delete(nomeTabela, clausulaWhere, argsWhere);
+		concluirAlteracaoNativa(nomeTabela);
+		return quantidade;
 	}
 
 	/**
@@ -232,6 +398,39 @@ public class AbstractDAO {
 		}
 	}
 
+	/**
+	 * Executa consulta SQL (veja <tt>pesquisarSQL</tt>), mas sem carregar
+	 * todo o resultado em uma lista: as linhas são convertidas uma por vez,
+	 * conforme o resultado é percorrido (e.g. relatórios com muitas linhas).<br/>
+	 * 
+	 * <b>Nota</b>: O resultado mantém o cursor aberto, devendo ser fechado
+	 * (<tt>close()</tt>) caso não seja percorrido até o fim.
+	 * 
+	 * @param classeResultado Classe resultado (veja <tt>pesquisarSQL</tt>).
+	 * @param sql Consulta SQL 'nativa'.
+	 * @param args Argumentos da consulta.
+	 * @return Resultado a ser percorrido.
+	 */
+	public <T> ResultadoIteravel<T> pesquisarSQLIterando(Class<T> classeResultado, String sql,
+			Object... args) {
+		return pesquisarSQLIterando(classeResultado, false, sql, args);
+	}
+	
+	/**
+	 * Executa consulta SQL percorrendo o resultado (veja 
+	 * <tt>pesquisarSQLIterando</tt>), preenchendo a mesma instância a cada
+	 * linha, se a classe resultado for uma entidade: o objeto retornado por
+	 * <tt>next()</tt> não deve ser guardado.
+	 * @param classeResultado Classe resultado (veja <tt>pesquisarSQL</tt>).
+	 * @param sql Consulta SQL 'nativa'.
+	 * @param args Argumentos da consulta.
+	 * @return Resultado a ser percorrido.
+	 */
+	public <T> ResultadoIteravel<T> pesquisarSQLIterandoReutilizando(Class<T> classeResultado, 
+			String sql, Object... args) {
+		return pesquisarSQLIterando(classeResultado, true, sql, args);
+	}
+
 	/**
 	 * Pesquisa com base na classe informada. A pesquisa seria:<br/>
 	 * 
@@ -266,6 +465,130 @@ public class AbstractDAO {
 		return pesquisar(metadados, clausulaWhere, args);
 	}
 	
+	/**
+	 * Pesquisa com base na classe informada (veja 
+	 * <tt>pesquisar(Class, String, Object...)</tt>), mas sem carregar todo o
+	 * resultado em uma lista: as linhas são convertidas uma por vez, conforme
+	 * o resultado é percorrido.<br/>
+	 * 
+	 * <b>Nota</b>: O resultado mantém o cursor aberto, devendo ser fechado
+	 * (<tt>close()</tt>) caso não seja percorrido até o fim.
+	 * 
+	 * @param classe Classe da entidade (Deve estar anotada com @Tabela e @Coluna).
+	 * @param clausulaWhere Cláusula 'where'.
+	 * @param args Argumentos do where.
+	 * @return Resultado a ser percorrido.
+	 */
+	public <T> ResultadoIteravel<T> pesquisarIterando(
+			Class<T> classe,
+			String clausulaWhere,
+			Object... args) {
+		
+		@SuppressWarnings("unchecked")
+		MetaDadosEntidade<T> metadados = (MetaDadosEntidade<T>) getMetaDadosEntidade(classe);
+		return pesquisarIterando(metadados, false, clausulaWhere, args);
+	}
+	
+	/**
+	 * Pesquisa percorrendo o resultado (veja <tt>pesquisarIterando</tt>),
+	 * preenchendo a mesma instância a cada linha: o objeto retornado por
+	 * <tt>next()</tt> não deve ser guardado, pois será alterado na próxima
+	 * chamada.
+	 * @param classe Classe da entidade (Deve estar anotada com @Tabela e @Coluna).
+	 * @param clausulaWhere Cláusula 'where'.
+	 * @param args Argumentos do where.
+	 * @return Resultado a ser percorrido.
+	 */
+	public <T> ResultadoIteravel<T> pesquisarIterandoReutilizando(
+			Class<T> classe,
+			String clausulaWhere,
+			Object... args) {
+		
+		@SuppressWarnings("unchecked")
+		MetaDadosEntidade<T> metadados = (MetaDadosEntidade<T>) getMetaDadosEntidade(classe);
+		return pesquisarIterando(metadados, true, clausulaWhere, args);
+	}
+	
+	/**
+	 * Pesquisa apenas os atributos informados da entidade (as demais
+	 * colunas não são lidas do B.D. e os atributos correspondentes ficam
+	 * com o valor padrão).
+	 * @param classe Classe entidade.
+	 * @param atributos Nomes dos atributos (ou colunas) a serem pesquisados.
+	 * @param clausulaWhere Cláusula where.
+	 * @param args Argumentos do where.
+	 * @return Lista de entidades parcialmente preenchidas.
+	 */
+	public <T> ArrayList<T> pesquisarProjecao(
+			Class<T> classe, String[] atributos, String clausulaWhere, Object... args) {
+		@SuppressWarnings("unchecked")
+		MetaDadosEntidade<T> metadados = (MetaDadosEntidade<T>) getMetaDadosEntidade(classe);
+		return pesquisarProjecao(metadados, metadados.getProjecao(atributos), clausulaWhere, args);
+	}
+	
+	/**
+	 * Pesquisa a entidade, mapeando cada linha para o 'DTO' informado. 
+	 * Apenas as colunas dos atributos do 'DTO' anotados com <tt>@Coluna</tt>
+	 * são pesquisadas.
+	 * @param classeEntidade Classe entidade.
+	 * @param classeDTO Classe 'DTO'.
+	 * @param clausulaWhere Cláusula where (sobre as colunas da entidade).
+	 * @param args Argumentos do where.
+	 * @return
+	 */
+	public <D> ArrayList<D> pesquisarProjecao(
+			Class<?> classeEntidade, Class<D> classeDTO, String clausulaWhere, Object... args) {
+		MetaDadosEntidade<?> metadados = getMetaDadosEntidade(classeEntidade);
+		return pesquisarProjecao(metadados, metadados.getProjecao(classeDTO), clausulaWhere, args);
+	}
+	
+	/**
+	 * Percorre o resultado da pesquisa entregando cada linha ao visitante
+	 * como uma visão do cursor, com leitura tipada pelo nome do atributo
+	 * (sem criar objetos por linha).
+	 * @param classe Classe entidade.
+	 * @param clausulaWhere Cláusula where.
+	 * @param args Argumentos do where.
+	 * @param visitante Visitante das linhas.
+	 * @return Quantidade de linhas visitadas.
+	 */
+	public int percorrer(Class<?> classe, String clausulaWhere, Object[] args, 
+			VisitanteLinha<? super LinhaCursor> visitante) {
+		return percorrer(getMetaDadosEntidade(classe), clausulaWhere, args, visitante);
+	}
+	
+	/**
+	 * Carrega os relacionamentos (<tt>@MuitosParaUm</tt> e 
+	 * <tt>@UmParaMuitos</tt>) das entidades, com uma pesquisa por 
+	 * relacionamento (veja 
+	 * <tt>carregarRelacionamentos(MetaDadosEntidade, Collection, String...)</tt>).
+	 * @param classe Classe entidade.
+	 * @param objetos Entidades.
+	 * @param caminhos Nomes dos relacionamentos (e.g. <tt>"cliente"</tt>, 
+	 * <tt>"itens.produto"</tt>).
+	 */
+	public void carregarRelacionamentos(Class<?> classe, Collection<?> objetos, String... caminhos) {
+		carregarRelacionamentos(getMetaDadosEntidade(classe), objetos, caminhos);
+	}
+	
+	/**
+	 * Pesquisa apenas as colunas dos atributos informados da entidade, 
+	 * lendo-as diretamente do cursor para vetores primitivos (sem objetos
+	 * por linha). Útil para gráficos e análises sobre muitas linhas.
+	 * @param classe Classe entidade.
+	 * @param atributos Nomes dos atributos (ou das colunas).
+	 * @param codificarTextos Se as colunas texto são codificadas por 
+	 * dicionário (veja <tt>LoteColunas.getCodigos</tt>).
+	 * @param clausulaWhere Cláusula where.
+	 * @param args Argumentos do where.
+	 * @return
+	 */
+	public LoteColunas pesquisarColunas(Class<?> classe, String[] atributos, 
+			boolean codificarTextos, String clausulaWhere, Object... args) {
+		return pesquisarColunas(getMetaDadosEntidade(classe), atributos, null, 
+				codificarTextos, clausulaWhere, args);
+	}
+	
 	/**
 	 * Consulta SQL (quase) 'nativa' do Android.
 	 * @param metadados Entidade 'resultante'.
@@ -284,6 +607,31 @@ public class AbstractDAO {
 			String having,
 			String orderBy) {
 		
+		ArrayList<T> lista = consultarSemSessao(metadados, where, whereArgs, groupBy, having, orderBy);
+		unificarNaSessao(metadados, lista);
+		vincularReferencias(metadados, lista);
+		return lista;
+	}
+	
+	/**
+	 * Consulta SQL (quase) 'nativa' do Android, sem considerar a sessão de 
+	 * entidades (as instâncias são sempre novas).
+	 * @param metadados Entidade 'resultante'.
+	 * @param where Cláusula where.
+	 * @param whereArgs Argumentos do where.
+	 * @param groupBy Cláusula groupBy.
+	 * @param having Cláusula having.
+	 * @param orderBy Cláusula orderBy.
+	 * @return Lista do tipo 'metadados.classe'.
+	 */
+	protected <T> ArrayList<T> consultarSemSessao(
+			MetaDadosEntidade<T> metadados,
+			String where, 
+			String[] whereArgs, 
+			String groupBy, 
+			String having,
+			String orderBy) {
+		
 		Cursor cursor = 
 				bd.query(
 				metadados.nomeTabela,
@@ -295,8 +643,7 @@ public class AbstractDAO {
 				orderBy, // order by
 				null); // no limit
 		try {
-			ArrayList<T> lista = carregarResultadoLista(metadados.classe, cursor);
-			return lista;
+			return carregarResultadoLista(metadados.classe, cursor);
 		} finally {
 			SQLiteUtil.fechar(cursor);
 		}
@@ -391,108 +738,114 @@ public class AbstractDAO {
 	 * @param chave 'Chave' (veja <tt>pesquisarPelaChave(Class<?>, Object)</tt>).
 	 * @return
 	 */
-	@SuppressWarnings("unchecked")
-	protected int contarPelaChave(MetaDadosEntidade<?> metadados, Object chave) {
+	protected long contarPelaChave(MetaDadosEntidade<?> metadados, Object chave) {
 		if (metadados == null) {
 			throw new DAOException("Sem classe entidade para ser identificada.");
 		}
-		if (chave == null) {
-			throw new DAOException("Chave n\u00e3o informada.");
-		}
-		
-		StringBuilder clausulaWhere = new StringBuilder();
-		int conta = metadados.getChaves().length;
-		// Extraindo where de acordo com as chaves
-		for (AtributoEntidade atributo: metadados.chaves) {
-					
-			if (atributo.chavePrimaria()) {
-				clausulaWhere.append(atributo.nomeColuna);
-				clausulaWhere.append(" = ?");
-				if ((--conta) > 0) {
-					clausulaWhere.append(" and ");
-				}
-			}
-		} // fim for
-		conta = metadados.chaves.length;
-		ArrayList<String> valores = new ArrayList<String>();
-		if ((chave instanceof Long
-			|| chave instanceof Integer
-			|| chave instanceof Short
-			|| chave instanceof Byte
-//			|| chave instanceof Date // TODO Implementar/Ajustar
-			|| chave instanceof String)
-			) {
-			if (conta != 1) {
-				throw new DAOException("Chave prim\u00e1ria n\u00e3o possui apenas um valor.");
-			}
-			valores.add(chave.toString());
+		Object[] valores = metadados.getPlanoChave().extrairValores(chave);
+		return metadados.getSentencas(bd).contar(valores);
+	}
+	
+	/**
+	 * Verifica se há registro no B.D. com a chave informada.
+	 * @param classeEntidade Classe entidade.
+	 * @param chave 'Chave' (veja <tt>pesquisarPelaChave(Class<?>, Object)</tt>).
+	 * @return
+	 */
+	public boolean existePelaChave(Class<?> classeEntidade, Object chave) {
+		return existePelaChave(getMetaDadosEntidade(classeEntidade), chave);
+	}
+	
+	/**
+	 * Verifica se há registro no B.D. com a chave informada
+	 * (<tt>select exists (select 1 from <tabelaEntidade> where <chave = ?>)</tt>).
+	 * @param metadados Metadados da entidade.
+	 * @param chave 'Chave' (veja <tt>pesquisarPelaChave(Class<?>, Object)</tt>).
+	 * @return
+	 */
+	protected boolean existePelaChave(MetaDadosEntidade<?> metadados, Object chave) {
+		if (metadados == null) {
+			throw new DAOException("Sem classe entidade para ser identificada.");
 		}
-		else if ((chave instanceof Map<?, ?>)) {
-			Map<String, Object> mapa = null;
-			try {
-				mapa = (Map<String,Object>) chave;
-			} catch (Exception e) {
-				throw new DAOException("Tipo de mapa para chave inv\u00e1lido.", e);
-			}
-			String valor;
-			for (AtributoEntidade coluna: metadados.chaves) {
-				// No mapa, pode ser tanto o nome do atributo com o nome da coluna.
-				if (mapa.containsKey(coluna.atributo.getName())) {
-					valor = mapa.get(coluna.atributo.getName()).toString();
-				}
-				else if (mapa.containsKey(coluna.nomeColuna)) {
-					valor = mapa.get(coluna.nomeColuna).toString();
-				}
-				else {
-					throw new DAOException("Mapa n\u00e3o contém a chave (nome: '"
-							+ coluna.atributo.getName()
-							+ "').");
-				}
-				
-				if (valor == null) {
-					throw new DAOException("Mapa n\u00e3o contém o valor da coluna '"
-							+ coluna.atributo.getName()
-							+ "'.");
-				}
-				valores.add(valor);
-			} // fim for
+		Object[] valores = metadados.getPlanoChave().extrairValores(chave);
+		return metadados.getSentencas(bd).existe(valores);
+	}
+	
+	/**
+	 * Conta os registros da entidade (<tt>select count(*) from ...</tt>),
+	 * com a consulta compilada e reaproveitada.
+	 * @param metadados Metadados da entidade.
+	 * @param where Cláusula where (pode ser nula).
+	 * @param args Argumentos do where.
+	 * @return
+	 */
+	protected long contar(MetaDadosEntidade<?> metadados, String where, Object... args) {
+		ClausulaCompilada clausula = metadados.getClausula(where);
+		where = clausula.sql;
+		String[] argumentos = clausula.argumentos(args);
+		return metadados.getSentencas(bd).consultarLong(
+				montarConsultaAgregacao(metadados, null, Agregacao.CONTAR, null, where),
+				argumentos);
+	}
+	
+	/**
+	 * Agrega os valores do atributo (<tt>select funcao(coluna) from ...</tt>),
+	 * com a consulta compilada e reaproveitada, sem mapear entidades.
+	 * @param metadados Metadados da entidade.
+	 * @param agregacao Agregação.
+	 * @param atributo Nome do atributo (ou da coluna). Pode ser nulo apenas
+	 * para contagem.
+	 * @param where Cláusula where (pode ser nula).
+	 * @param args Argumentos do where.
+	 * @return O valor (veja <tt>Agregacao.valorNulo()</tt> se não houver
+	 * valores).
+	 */
+	protected double agregar(MetaDadosEntidade<?> metadados, Agregacao agregacao, 
+			String atributo, String where, Object... args) {
+		ClausulaCompilada clausula = metadados.getClausula(where);
+		where = clausula.sql;
+		String[] argumentos = clausula.argumentos(args);
+		String sql = montarConsultaAgregacao(metadados, null, agregacao, atributo, where);
+		SentencasEntidade sentencas = metadados.getSentencas(bd);
+		if (agregacao == Agregacao.CONTAR) {
+			return sentencas.consultarLong(sql, argumentos);
 		}
-		else {
-			// Com base no objeto, deve-se conter atributos com o mesmo nome
-			// da classe.
-			String valor;
-			Field f;
-			final boolean ehEntidade = metadados.classe == chave.getClass() 
-					|| metadados.classe.equals(chave.getClass());
-			
-			for (AtributoEntidade coluna: metadados.chaves) {
-				
-				f = ehEntidade ? 
-						coluna.atributo
-						: ObjectUtil.getField(chave.getClass(), coluna.atributo.getName()); 
-				
-				if (f == null){
-					throw new DAOException("O tipo da chave '"
-							+ chave.getClass().getName()
-							+ " n\u00e3o possui o atributo '"
-							+ coluna.atributo.getName()
-							+ "'.");
-				}
-				
-				valor = ObjectUtil.toString(
-						ObjectUtil.getValue(chave, f),
-						coluna.formato);
-				valores.add(valor);
-			}
+		String valor = sentencas.consultarTexto(sql, argumentos);
+		return valor != null ? Double.parseDouble(valor) : agregacao.valorNulo();
+	}
+	
+	/**
+	 * Agrega os valores do atributo por grupo 
+	 * (<tt>select grupo, funcao(coluna) from ... group by grupo</tt>).
+	 * @param metadados Metadados da entidade.
+	 * @param atributoGrupo Nome do atributo (ou da coluna) de agrupamento.
+	 * @param agregacao Agregação.
+	 * @param atributo Nome do atributo (ou da coluna) agregado. Pode ser 
+	 * nulo apenas para contagem.
+	 * @param where Cláusula where (pode ser nula).
+	 * @param args Argumentos do where.
+	 * @return
+	 */
+	protected ResultadoAgrupado agrupar(MetaDadosEntidade<?> metadados, String atributoGrupo,
+			Agregacao agregacao, String atributo, String where, Object... args) {
+		AtributoEntidade grupo = obterAtributo(metadados, atributoGrupo);
+		ClausulaCompilada clausula = metadados.getClausula(where);
+		where = clausula.sql;
+		String[] argumentos = clausula.argumentos(args);
+		Class<?> tipo = grupo.atributo.getType();
+		final boolean chaveNumerica = long.class.equals(tipo) || Long.class.equals(tipo)
+				|| int.class.equals(tipo) || Integer.class.equals(tipo)
+				|| short.class.equals(tipo) || Short.class.equals(tipo)
+				|| byte.class.equals(tipo) || Byte.class.equals(tipo)
+				|| boolean.class.equals(tipo) || Boolean.class.equals(tipo);
+		Cursor cursor = bd.rawQuery(
+				montarConsultaAgregacao(metadados, grupo.nomeColuna, agregacao, atributo, where),
+				argumentos);
+		try {
+			return new ResultadoAgrupado(agregacao, cursor, chaveNumerica);
+		} finally {
+			SQLiteUtil.fechar(cursor);
 		}
-		Integer resultado = pesquisarSQLResultadoUnico(
-				Integer.class,
-				String.format("select count(*) from %s where %s",
-						metadados.nomeTabela,
-						clausulaWhere),
-				valores.toArray());
-				
-		return resultado == null ? 0 : resultado.intValue();
 	}
 	
 	/**
@@ -519,110 +872,226 @@ public class AbstractDAO {
 	 * atributos da chave.
 	 * @return
 	 */
-	@SuppressWarnings("unchecked")
 	public <T> T pesquisarPelaChave(MetaDadosEntidade<T> metadados, Object chave) {
 		if (metadados == null) {
 			throw new DAOException("Sem classe entidade para ser identificada.");
 		}
-		if (chave == null) {
-			throw new DAOException("Chave n\u00e3o informada.");
+		PlanoChave plano = metadados.getPlanoChave();
+		Object[] valores = plano.extrairValores(chave);
+		if (sessao != null) {
+			T obj = sessao.obter(metadados, valores);
+			if (obj != null) {
+				return obj;
+			}
+		}
+		final CacheEntidades<T> cache = metadados.getCache();
+		if (cache != null) {
+			T obj = cache.obter(valores);
+			if (obj != null) {
+				if (sessao != null) {
+					obj = sessao.registrar(metadados, obj);
+				}
+				vincularReferencias(metadados, Collections.singletonList(obj));
+				return obj;
+			}
 		}
 		
-		StringBuilder clausulaWhere = new StringBuilder();
-		int conta = metadados.getChaves().length;
-		// Extraindo where de acordo com as chaves
-		for (AtributoEntidade atributo: metadados.chaves) {
-			
-			if (atributo.chavePrimaria()) {
-				clausulaWhere.append(atributo.nomeColuna);
-				clausulaWhere.append(" = ?");
-				if ((--conta) > 0) {
-					clausulaWhere.append(" and ");
+		// Versão da tabela antes da pesquisa (veja CacheEntidades.colocar).
+		final long versao = cache != null ? CacheConsultas.getVersao(metadados.nomeTabela) : 0;
+		Cursor cursor = bd.rawQuery(plano.sqlPesquisa, PlanoChave.argumentos(valores));
+		try {
+			ArrayList<T> lista = carregarResultadoLista(metadados.classe, cursor);
+			if (cache != null && lista.size() == 1 && !bd.inTransaction()) {
+				cache.colocar(lista.get(0), versao);
+			}
+			unificarNaSessao(metadados, lista);
+			vincularReferencias(metadados, lista);
+			return obterResultadoUnico(lista);
+		} finally {
+			SQLiteUtil.fechar(cursor);
+		}
+	}
+	
+	/**
+	 * Pesquisa várias entidades pelas chaves, com o mínimo de consultas
+	 * (veja <tt>pesquisarPelasChaves(MetaDadosEntidade, Collection)</tt>).
+	 * @param classeEntidade Classe entidade.
+	 * @param chaves Chaves (veja <tt>pesquisarPelaChave(Class<?>, Object)</tt>).
+	 * @return
+	 */
+	public <T> LinkedHashMap<Object, T> pesquisarPelasChaves(Class<T> classeEntidade, Collection<?> chaves) {
+		@SuppressWarnings("unchecked")
+		MetaDadosEntidade<T> metadados = (MetaDadosEntidade<T>) getMetaDadosEntidade(classeEntidade);
+		return pesquisarPelasChaves(metadados, chaves);
+	}
+	
+	/**
+	 * Pesquisa várias entidades pelas chaves.<br/>
+	 * 
+	 * As chaves são divididas em blocos que respeitam o limite de
+	 * parâmetros do SQLite, e cada bloco é pesquisado em uma única consulta
+	 * (<tt>chave in (?,?...)</tt>, ou <tt>(chave1 = ? and chave2 = ?) or ...</tt>
+	 * para chaves compostas).
+	 * 
+	 * @param metadados Metadados da entidade.
+	 * @param chaves Chaves (veja <tt>pesquisarPelaChave(Class<?>, Object)</tt>).
+	 * Chaves repetidas são pesquisadas apenas uma vez.
+	 * @return Mapa com as entidades encontradas, cuja chave é o valor do 
+	 * atributo chave da entidade (ou uma <tt>List</tt> com os valores dos 
+	 * atributos, se a chave for composta). Chaves não encontradas não
+	 * constam no mapa.
+	 */
+	protected <T> LinkedHashMap<Object, T> pesquisarPelasChaves(MetaDadosEntidade<T> metadados, Collection<?> chaves) {
+		if (metadados == null) {
+			throw new DAOException("Sem classe entidade para ser identificada.");
+		}
+		LinkedHashMap<Object, T> resultado = new LinkedHashMap<Object, T>();
+		if (chaves == null || chaves.isEmpty()) {
+			return resultado;
+		}
+		PlanoChave plano = metadados.getPlanoChave();
+		final CacheEntidades<T> cache = metadados.getCache();
+		// Valores (no formato do B.D.) de cada chave, sem repetição.
+		LinkedHashSet<List<Object>> distintas = new LinkedHashSet<List<Object>>();
+		for (Object chave: chaves) {
+			Object[] valores = plano.extrairValores(chave);
+			T obj = sessao != null ? sessao.obter(metadados, valores) : null;
+			if (obj == null && cache != null) {
+				obj = cache.obter(valores);
+				if (obj != null && sessao != null) {
+					obj = sessao.registrar(metadados, obj);
 				}
 			}
-		} // fim for
-		conta = metadados.chaves.length;
-		ArrayList<String> valores = new ArrayList<String>();
-		if ((chave instanceof Long
-			|| chave instanceof Integer
-			|| chave instanceof Short
-			|| chave instanceof Byte
-//			|| chave instanceof Date // TODO Implementar/Ajustar
-			|| chave instanceof String)
-			) {
-			if (conta != 1) {
-				throw new DAOException("Chave prim\u00e1ria n\u00e3o possui apenas um valor.");
+			if (obj != null) {
+				resultado.put(plano.obterIdentificador(obj), obj);
+			} else {
+				distintas.add(Arrays.asList(valores));
 			}
-			valores.add(chave.toString());
 		}
-		else if ((chave instanceof Map<?, ?>)) {
-			Map<String, Object> mapa = null;
-			try {
-				mapa = (Map<String,Object>) chave;
-			} catch (Exception e) {
-				throw new DAOException("Tipo de mapa para chave inv\u00e1lido.", e);
+		final int maximo = plano.getMaximoChavesPorPesquisa();
+		ArrayList<Object> argumentos = new ArrayList<Object>();
+		Iterator<List<Object>> iterador = distintas.iterator();
+		while (iterador.hasNext()) {
+			argumentos.clear();
+			int quantidade = 0;
+			while (quantidade < maximo && iterador.hasNext()) {
+				argumentos.addAll(iterador.next());
+				quantidade++;
 			}
-			String valor;
-			for (AtributoEntidade coluna: metadados.chaves) {
-				// No mapa, pode ser tanto o nome do atributo com o nome da coluna.
-				if (mapa.containsKey(coluna.atributo.getName())) {
-					valor = mapa.get(coluna.atributo.getName()).toString();
+			final long versao = cache != null ? CacheConsultas.getVersao(metadados.nomeTabela) : 0;
+			ArrayList<T> lista = consultarSemSessao(
+					metadados,
+					plano.montarWhereChaves(quantidade),
+					PlanoChave.argumentos(argumentos.toArray()),
+					null,
+					null,
+					null);
+			final boolean popularCache = cache != null && !bd.inTransaction();
+			for (T obj: lista) {
+				if (popularCache) {
+					cache.colocar(obj, versao);
 				}
-				else if (mapa.containsKey(coluna.nomeColuna)) {
-					valor = mapa.get(coluna.nomeColuna).toString();
+				if (sessao != null) {
+					obj = sessao.registrar(metadados, obj);
 				}
-				else {
-					throw new DAOException("Mapa n\u00e3o contém a chave (nome: '"
-							+ coluna.atributo.getName()
-							+ "').");
-				}
-				
-				if (valor == null) {
-					throw new DAOException("Mapa n\u00e3o contém o valor da coluna '"
-							+ coluna.atributo.getName()
-							+ "'.");
-				}
-				valores.add(valor);
-			} // fim for
+				resultado.put(plano.obterIdentificador(obj), obj);
+			}
 		}
-		else {
-			// Com base no objeto, deve-se conter atributos com o mesmo nome
-			// da classe.
-			String valor;
-			Field f;
-			final boolean ehEntidade = metadados.classe == chave.getClass() 
-					|| metadados.classe.equals(chave.getClass());
-			
-			for (AtributoEntidade coluna: metadados.chaves) {
-				
-				f = ehEntidade ? 
-						coluna.atributo
-						: ObjectUtil.getField(chave.getClass(), coluna.atributo.getName()); 
-				
-				if (f == null){
-					throw new DAOException("O tipo da chave '"
-							+ chave.getClass().getName()
-							+ " n\u00e3o possui o atributo '"
-							+ coluna.atributo.getName()
-							+ "'.");
+		vincularReferencias(metadados, resultado.values());
+		return resultado;
+	}
+	
+	/**
+	 * Carrega os relacionamentos das entidades, 'costurando' os objetos em
+	 * memória.<br/>
+	 * 
+	 * Cada relacionamento é carregado para todas as entidades de uma vez:
+	 * <tt>@MuitosParaUm</tt> pelas chaves estrangeiras (veja 
+	 * <tt>pesquisarPelasChaves</tt>) e <tt>@UmParaMuitos</tt> com 
+	 * <tt>chaveEstrangeira in (?,?...)</tt>. Assim, 300 pedidos com os 
+	 * seus clientes custam 2 pesquisas, e não 301.<br/>
+	 * 
+	 * Os caminhos podem ser encadeados com '.' (e.g. 
+	 * <tt>"itens.produto"</tt>); cada relacionamento é carregado apenas uma
+	 * vez, mesmo se repetido em vários caminhos.
+	 * 
+	 * @param metadados Metadados da entidade.
+	 * @param objetos Entidades.
+	 * @param caminhos Nomes dos relacionamentos.
+	 */
+	protected void carregarRelacionamentos(MetaDadosEntidade<?> metadados, 
+			Collection<?> objetos, String... caminhos) {
+		if (objetos == null || objetos.isEmpty() || caminhos == null) {
+			return;
+		}
+		// Agrupando pelo primeiro relacionamento do caminho.
+		LinkedHashMap<String, ArrayList<String>> grupos = 
+				new LinkedHashMap<String, ArrayList<String>>();
+		for (String caminho: caminhos) {
+			int ponto = caminho.indexOf('.');
+			String nome = ponto < 0 ? caminho : caminho.substring(0, ponto);
+			ArrayList<String> restantes = grupos.get(nome);
+			if (restantes == null) {
+				restantes = new ArrayList<String>();
+				grupos.put(nome, restantes);
+			}
+			if (ponto >= 0) {
+				restantes.add(caminho.substring(ponto + 1));
+			}
+		}
+		for (Map.Entry<String, ArrayList<String>> grupo: grupos.entrySet()) {
+			RelacionamentoEntidade relacionamento = metadados.getRelacionamento(grupo.getKey());
+			if (relacionamento == null) {
+				throw new DAOException("Relacionamento '"
+						+ grupo.getKey()
+						+ "' n\u00e3o encontrado em "
+						+ metadados.classe.getName());
+			}
+			ArrayList<Object> carregados = carregarRelacionamento(relacionamento, objetos);
+			ArrayList<String> restantes = grupo.getValue();
+			if (!restantes.isEmpty()) {
+				carregarRelacionamentos(
+						relacionamento.getDestino(), 
+						carregados, 
+						restantes.toArray(new String[restantes.size()]));
+			}
+		}
+	}
+	
+	/**
+	 * Carrega o relacionamento das entidades (veja 
+	 * <tt>carregarRelacionamentos</tt>).
+	 * @param relacionamento Relacionamento.
+	 * @param objetos Entidades (origem).
+	 * @return As entidades carregadas (destino).
+	 */
+	ArrayList<Object> carregarRelacionamento(RelacionamentoEntidade relacionamento, 
+			Collection<?> objetos) {
+		return relacionamento.colecao ?
+				carregarColecoes(relacionamento, objetos)
+				: carregarReferencias(relacionamento, objetos);
+	}
+	
+	/**
+	 * Vincula às entidades pesquisadas as referências tardias (atributos
+	 * <tt>Referencia</tt> de relacionamentos) ainda não atribuídas. As 
+	 * entidades compartilham um carregador por relacionamento: o primeiro
+	 * acesso carrega o relacionamento de todas com uma única pesquisa.
+	 * @param metadados Metadados da entidade.
+	 * @param objetos Entidades do resultado.
+	 */
+	protected void vincularReferencias(MetaDadosEntidade<?> metadados, Collection<?> objetos) {
+		if (metadados.relacionamentos.length == 0 || objetos.isEmpty()) {
+			return;
+		}
+		for (RelacionamentoEntidade relacionamento: metadados.relacionamentos) {
+			if (relacionamento.tardio) {
+				CarregadorLote carregador = new CarregadorLote(this, relacionamento, objetos);
+				for (Object obj: objetos) {
+					relacionamento.vincular(obj, carregador);
 				}
-				
-				valor = ObjectUtil.toString(
-						ObjectUtil.getValue(chave, f),
-						coluna.formato);
-				valores.add(valor);
 			}
 		}
-		
-		T procurado = consultarResultadoUnico(
-				metadados,
-				clausulaWhere.toString(),
-				valores.toArray(new String[valores.size()]),
-				null,
-				null,
-				null);
-				
-		return procurado;
 	}
 	
 	// --------------------------------------------------------------
@@ -648,27 +1117,9 @@ public class AbstractDAO {
 	 * @param where
 	 * @return
 	 */
-	private static String ajustarWhereParaSQL(MetaDadosEntidade<?> metadados,
+	static String ajustarWhereParaSQL(MetaDadosEntidade<?> metadados,
 			String where) {
-		if (where != null && where.length() > 0) {
-			StringBuilder builder = new StringBuilder();
-			String token, nomeColuna;
-			final String caracteres = "><>=<=!=()";
-			for (StringTokenizer tokenizer = new StringTokenizer(where, " \n\r\t"); tokenizer
-					.hasMoreElements();) {
-				token = tokenizer.nextToken();
-				if (!caracteres.contains(token)) {
-					nomeColuna = metadados.obterNomeColuna(token);
-					if (nomeColuna != null) {
-						token = nomeColuna;
-					}
-				}
-				builder.append(token);
-				builder.append(" ");
-			}
-			where = builder.toString();
-		}
-		return where;
+		return AnalisadorClausula.ajustar(metadados, where);
 	}
 
 	/**
@@ -678,38 +1129,169 @@ public class AbstractDAO {
 	 * @param metadados
 	 */
 	protected long inserir(Object obj, MetaDadosEntidade<?> metadados) {
-		// Varrendo as colunas e montando os 'parâmetros' para a inserção.
-		ContentValues valores = atribuirValores(obj, metadados, 1);
-		long ret = bd.insert(
-				metadados.nomeTabela,
-				null,
-				valores);
+		removerDaSessao(metadados, obj);
+		registrarAlteracao(metadados.nomeTabela);
+		long ret = metadados.getSentencas(bd).inserir(obj);
+		concluirAlteracao(metadados.nomeTabela);
 		if (ret == -1) {
 			throw new DAOException("Falha ao inserir o registro.");
 		}
 		atribuirChaveAutoincremento(obj, metadados, ret);
+		metadados.registrarValores(obj);
+		atualizarCache(metadados, obj, true);
 		
 		return ret;
 	}
 	
 	/**
-	 * Atualiza o objeto.
+	 * Insere ou atualiza a entidade conforme a estratégia de conflito.
+	 * @param obj
+	 * @param metadados
+	 * @param estrategia
+	 * @return
+	 */
+	protected long inserirOuAtualizar(
+			Object obj, 
+			MetaDadosEntidade<?> metadados, 
+			EstrategiaConflito estrategia) {
+		if (estrategia == null) {
+			estrategia = EstrategiaConflito.ATUALIZAR;
+		}
+		AtributoEntidade fAutoIncremento = metadados.getChaveAutoIncremento();
+		if (fAutoIncremento != null 
+				&& !possuiValor(MetaDadosEntidade.extrairValor(fAutoIncremento, obj))) {
+			// Chave será gerada pelo B.D.
+			return inserir(obj, metadados);
+		}
+		removerDaSessao(metadados, obj);
+		registrarAlteracao(metadados.nomeTabela);
+		int quantidade = metadados.getSentencas(bd).inserir(obj, estrategia);
+		concluirAlteracao(metadados.nomeTabela);
+		if (quantidade > 0) {
+			metadados.registrarValores(obj);
+		} else if (metadados.getRastreador() != null) {
+			// Ignorado: o registro no B.D. pode ser diferente do objeto.
+			metadados.getRastreador().remover(obj);
+		}
+		atualizarCache(metadados, obj, quantidade > 0);
+		return quantidade;
+	}
+	
+	/**
+	 * Insere os objetos em lote (uma transação e o 'insert' compilado
+	 * da entidade).
+	 * 
+	 * @param objetos
+	 * @param metadados
+	 * @return Quantidade de registros inseridos.
+	 */
+	protected int inserirLote(Collection<?> objetos, MetaDadosEntidade<?> metadados) {
+		if (objetos == null || objetos.isEmpty()) {
+			return 0;
+		}
+		final SentencasEntidade sentencas = metadados.getSentencas(bd);
+		int quantidade = 0;
+		bd.beginTransaction();
+		registrarAlteracao(metadados.nomeTabela);
+		try {
+			for (Object obj: objetos) {
+				if (obj == null) {
+					throw new DAOException(
+							"Recurso (objeto) n\u00e3o informado para ser salvo.");
+				}
+				if (obj.getClass() != metadados.classe) {
+					throw new DAOException("Objeto do tipo '"
+							+ obj.getClass().getName()
+							+ "' no lote de '"
+							+ metadados.classe.getName()
+							+ "'.");
+				}
+				removerDaSessao(metadados, obj);
+				long ret = sentencas.inserir(obj);
+				if (ret == -1) {
+					throw new DAOException("Falha ao inserir o registro.");
+				}
+				atribuirChaveAutoincremento(obj, metadados, ret);
+				metadados.registrarValores(obj);
+				atualizarCache(metadados, obj, true);
+				quantidade++;
+			} // fim for
+			bd.setTransactionSuccessful();
+		} finally {
+			bd.endTransaction();
+			concluirAlteracoes();
+		}
+		return quantidade;
+	}
+	
+	/**
+	 * Atualiza o objeto.<br/>
+	 * 
+	 * Se a entidade rastreia alterações (<tt>@Tabela(rastrearAlteracoes = true)</tt>)
+	 * e o objeto foi carregado/salvo, apenas as colunas alteradas são 
+	 * atualizadas. Se nenhuma coluna foi alterada, nenhuma instrução é 
+	 * executada e o registro é considerado atualizado (retorna 1). Se a
+	 * chave foi alterada, o registro é localizado pela chave carregada/salva,
+	 * e a nova chave é gravada.<br/>
+	 * 
+	 * Os valores carregados/salvos ficam no rastreador da entidade (veja
+	 * <tt>MetaDadosEntidade.getRastreador()</tt>), que é global: é 
+	 * compartilhado por todos os DAOs e <i>threads</i>, e não apenas por 
+	 * este DAO.
+	 * 
 	 * @param obj
 	 * @param metadados
 	 * @return
 	 */
 	protected int atualizar(Object obj, MetaDadosEntidade<?> metadados) {
+		final RastreadorAlteracoes rastreador = metadados.getRastreador();
+		final Object[] anteriores = rastreador != null ? rastreador.obter(obj) : null;
+		if (anteriores == null) {
+			removerDaSessao(metadados, obj);
+			registrarAlteracao(metadados.nomeTabela);
+			int quantidade = metadados.getSentencas(bd).atualizar(obj);
+			concluirAlteracao(metadados.nomeTabela);
+			if (quantidade > 0) {
+				metadados.registrarValores(obj);
+			}
+			atualizarCache(metadados, obj, quantidade > 0);
+			return quantidade;
+		}
 		
-		// Varrendo as colunas e montando os 'parâmetros' para a inserção.
-		ContentValues valores = atribuirValores(obj, metadados, 1);
-		StringBuilder clausulaWhere = new StringBuilder();
-		String[] argumentosWhere = montarWhereChaves(metadados, obj, clausulaWhere);
-		
-		return atualizar(
-				metadados.nomeTabela,
-				valores, 
-				clausulaWhere.toString(),
-				argumentosWhere);
+		// Identificando as colunas alteradas.
+		final Object[] valores = metadados.extrairValores(obj);
+		BitSet alteradas = new BitSet(valores.length);
+		boolean chaveAlterada = false;
+		for (int i=0; i < valores.length; i++) {
+			if (mesmoValor(valores[i], anteriores[i])) {
+				continue;
+			}
+			alteradas.set(i);
+			chaveAlterada |= metadados.colunas[i].chavePrimaria();
+		} // fim for
+		if (alteradas.isEmpty()) {
+			return 1;
+		}
+		removerDaSessao(metadados, obj);
+		registrarAlteracao(metadados.nomeTabela);
+		// O registro é localizado pela chave carregada/salva (a chave do
+		// objeto pode ter sido alterada).
+		Object[] chaveAnterior = new Object[metadados.getChaves().length];
+		for (int i=0, c=0; i < anteriores.length; i++) {
+			if (metadados.colunas[i].chavePrimaria()) {
+				chaveAnterior[c++] = anteriores[i];
+			}
+		}
+		int quantidade = metadados.getSentencas(bd).atualizar(valores, alteradas, chaveAnterior);
+		concluirAlteracao(metadados.nomeTabela);
+		if (chaveAlterada && metadados.getCache() != null) {
+			metadados.getCache().removerPelaChave(chaveAnterior);
+		}
+		if (quantidade > 0) {
+			metadados.registrarValores(obj);
+		}
+		atualizarCache(metadados, obj, quantidade > 0);
+		return quantidade;
 	}
 	
 	/**
@@ -719,35 +1301,421 @@ public class AbstractDAO {
 	 * @return
 	 */
 	protected int remover(Object obj, MetaDadosEntidade<?> metadados) {
-		
-		StringBuilder clausulaWhere = new StringBuilder();
-		String[] argumentosWhere = montarWhereChaves(metadados, obj, clausulaWhere);
-		
-		return remover(metadados.nomeTabela, clausulaWhere.toString(), argumentosWhere);
+		removerDaSessao(metadados, obj);
+		registrarAlteracao(metadados.nomeTabela);
+		if (metadados.getRastreador() != null) {
+			metadados.getRastreador().remover(obj);
+		}
+		int quantidade = metadados.getSentencas(bd).remover(obj);
+		concluirAlteracao(metadados.nomeTabela);
+		atualizarCache(metadados, obj, false);
+		return quantidade;
 	}
 	
-	protected static String[] montarWhereChaves(MetaDadosEntidade<?> metadados, Object obj, StringBuilder clausulaWhere) {
-		 String[] argumentosWhere = new String[metadados.getChaves().length];
-		 int conta = argumentosWhere.length;
-			
-		// Extraindo where de acordo com as chaves
-		for (AtributoEntidade atributo: metadados.colunas) {
-			
-			if (atributo.chavePrimaria()) {
-				argumentosWhere[--conta] = MetaDadosEntidade.obterValorStr(
-						atributo.atributo, 
-						obj);
-				clausulaWhere.insert(0, " = ?");
-				clausulaWhere.insert(0, atributo.nomeColuna);
-		
-				if (conta > 0) {
-					clausulaWhere.insert(0, " and ");
+	/**
+	 * Salva o objeto e as suas coleções em cascata, em uma única transação
+	 * (veja <tt>salvar(Object)</tt>).
+	 * @param obj
+	 * @param metadados
+	 * @return Quantidade de registros inseridos, atualizados ou removidos.
+	 */
+	protected int salvar(Object obj, MetaDadosEntidade<?> metadados) {
+		bd.beginTransaction();
+		try {
+			int quantidade = inserirOuAtualizar(obj, metadados, EstrategiaConflito.ATUALIZAR) > 0 ? 1 : 0;
+			quantidade += salvarColecoes(obj, metadados);
+			bd.setTransactionSuccessful();
+			return quantidade;
+		} finally {
+			bd.endTransaction();
+			concluirAlteracoes();
+		}
+	}
+	
+	/**
+	 * Retira o objeto da sessão de entidades (se aberta).
+	 * @param metadados
+	 * @param obj
+	 */
+	protected void removerDaSessao(MetaDadosEntidade<?> metadados, Object obj) {
+		if (sessao != null) {
+			sessao.remover(metadados, obj);
+		}
+	}
+	
+	/**
+	 * Registra a alteração da tabela (antes da instrução): incrementa a
+	 * sua versão no cache de pesquisas (veja <tt>CacheConsultas</tt>) e,
+	 * se dentro de transação, guarda-a (para o B.D., e não apenas para
+	 * este DAO) para ser invalidada novamente ao final da transação.
+	 * @param nomeTabela
+	 */
+	protected void registrarAlteracao(String nomeTabela) {
+		CacheConsultas.invalidar(nomeTabela);
+		if (nomeTabela != null && bd.inTransaction()) {
+			synchronized (TABELAS_ALTERADAS) {
+				HashSet<String> tabelas = TABELAS_ALTERADAS.get(bd);
+				if (tabelas == null) {
+					tabelas = new HashSet<String>();
+					TABELAS_ALTERADAS.put(bd, tabelas);
 				}
+				tabelas.add(nomeTabela);
 			}
-		} // fim for
+		}
+	}
+	
+	/**
+	 * Conclui a alteração da tabela (após a instrução): fora de transação,
+	 * incrementa novamente a sua versão, pois uma pesquisa iniciada entre
+	 * <tt>registrarAlteracao</tt> e o fim da instrução pode ter lido o 
+	 * estado anterior (dentro de transação, veja 
+	 * <tt>concluirAlteracoes</tt>).
+	 * @param nomeTabela
+	 */
+	protected void concluirAlteracao(String nomeTabela) {
+		if (!bd.inTransaction()) {
+			CacheConsultas.invalidar(nomeTabela);
+		}
+	}
+	
+	/**
+	 * Conclui a alteração 'nativa' da tabela (veja 
+	 * <tt>concluirAlteracao</tt>), limpando também os caches das
+	 * entidades da tabela.
+	 * @param nomeTabela
+	 */
+	protected void concluirAlteracaoNativa(String nomeTabela) {
+		concluirAlteracao(nomeTabela);
+		CacheEntidades.limparTabela(nomeTabela);
+	}
+	
+	/**
+	 * Após o fim da transação mais externa, invalida novamente os caches
+	 * das tabelas alteradas nela (por qualquer DAO do B.D.): durante a 
+	 * transação, outra <i>thread</i> pode ter guardado em cache o estado
+	 * anterior dos registros.
+	 */
+	protected void concluirAlteracoes() {
+		if (bd.inTransaction()) {
+			return;
+		}
+		HashSet<String> tabelas;
+		synchronized (TABELAS_ALTERADAS) {
+			tabelas = TABELAS_ALTERADAS.remove(bd);
+		}
+		if (tabelas != null) {
+			for (String nomeTabela: tabelas) {
+				CacheConsultas.invalidar(nomeTabela);
+				CacheEntidades.limparTabela(nomeTabela);
+			}
+		}
+	}
+	
+	/**
+	 * Atualiza o cache da entidade (se anotada com <tt>@Cache</tt>) após
+	 * a gravação do objeto. Dentro de transação o registro é apenas 
+	 * retirado do cache, pois a transação pode ser desfeita.
+	 * @param metadados
+	 * @param obj
+	 * @param salvo Se o objeto foi salvo (senão é retirado do cache).
+	 */
+	protected void atualizarCache(MetaDadosEntidade<?> metadados, Object obj, boolean salvo) {
+		CacheEntidades<?> cache = metadados.getCache();
+		if (cache != null) {
+			if (salvo && !bd.inTransaction()) {
+				cache.colocar(obj);
+			} else {
+				cache.remover(obj);
+			}
+		}
+	}
+	
+	/**
+	 * Substitui os objetos da lista pelas instâncias da sessão de 
+	 * entidades (se aberta) com a mesma chave, registrando os demais.
+	 * @param metadados
+	 * @param lista
+	 */
+	protected <T> void unificarNaSessao(MetaDadosEntidade<T> metadados, ArrayList<T> lista) {
+		if (sessao != null) {
+			for (int i=0; i < lista.size(); i++) {
+				lista.set(i, sessao.registrar(metadados, lista.get(i)));
+			}
+		}
+	}
+	
+	/**
+	 * Monta o where pelas chaves do objeto (no início de 
+	 * <tt>clausulaWhere</tt>).
+	 * @param metadados
+	 * @param obj
+	 * @param clausulaWhere
+	 * @return Os argumentos do where.
+	 * @deprecated Não é mais utilizado pelo DAO: veja 
+	 * <tt>PlanoChave</tt> e <tt>MetaDadosEntidade.getSentencas</tt>.
+	 */
+	@Deprecated
+	protected static String[] montarWhereChaves(MetaDadosEntidade<?> metadados, Object obj, StringBuilder clausulaWhere) {
+		final AtributoEntidade[] chaves = metadados.getChaves();
+		String[] argumentosWhere = new String[chaves.length];
+		StringBuilder where = new StringBuilder();
+		for (int i=0; i < chaves.length; i++) {
+			argumentosWhere[i] = MetaDadosEntidade.obterValorStr(chaves[i].atributo, obj);
+			if (i > 0) {
+				where.append(" and ");
+			}
+			where.append(chaves[i].nomeColuna).append(" = ?");
+		}
+		clausulaWhere.insert(0, where);
 		return argumentosWhere;
 	}
 
+	/**
+	 * Verifica se o valor da chave autoincremento está preenchido
+	 * (diferente de <tt>null</tt> e de zero).
+	 * @param valor Valor no formato do B.D.
+	 * @return
+	 */
+	private static boolean possuiValor(Object valor) {
+		return valor != null
+				&& !(valor instanceof Number && ((Number) valor).longValue() == 0);
+	}
+
+	/**
+	 * Compara os valores (no formato do B.D.) de uma coluna; 
+	 * <tt>byte[]</tt> são comparados pelo conteúdo.
+	 * @param valor
+	 * @param anterior
+	 * @return
+	 */
+	private static boolean mesmoValor(Object valor, Object anterior) {
+		if (valor == anterior) {
+			return true;
+		}
+		if (valor instanceof byte[] && anterior instanceof byte[]) {
+			return Arrays.equals((byte[]) valor, (byte[]) anterior);
+		}
+		return valor != null && valor.equals(anterior);
+	}
+
+	/**
+	 * Salva as coleções em cascata do objeto (já salvo).
+	 * @param obj
+	 * @param metadados
+	 * @return Quantidade de registros inseridos, atualizados ou removidos.
+	 */
+	private int salvarColecoes(Object obj, MetaDadosEntidade<?> metadados) {
+		int quantidade = 0;
+		for (RelacionamentoEntidade relacionamento: metadados.relacionamentos) {
+			if (relacionamento.colecao 
+					&& relacionamento.cascata 
+					&& relacionamento.isCarregado(obj)) {
+				Collection<?> filhos = (Collection<?>) relacionamento.obterValor(obj);
+				if (filhos != null) {
+					quantidade += salvarColecao(relacionamento, obj, filhos);
+				}
+			}
+		}
+		return quantidade;
+	}
+	
+	/**
+	 * Salva a coleção do objeto: propaga a chave do objeto para as 
+	 * entidades 'filhas' e as compara, pela chave, com as que estão no B.D.
+	 * @param relacionamento Relacionamento (coleção em cascata).
+	 * @param obj Objeto (já salvo).
+	 * @param filhos Entidades da coleção.
+	 * @return Quantidade de registros inseridos, atualizados ou removidos.
+	 */
+	private int salvarColecao(RelacionamentoEntidade relacionamento, Object obj, 
+			Collection<?> filhos) {
+		final MetaDadosEntidade<?> destino = relacionamento.getDestino();
+		final AtributoEntidade chaveEstrangeira = relacionamento.getChaveEstrangeira();
+		final Object valorChave = MetaDadosEntidade.extrairValor(
+				relacionamento.getChaveReferenciada(), 
+				obj);
+		if (valorChave == null) {
+			throw new DAOException("Chave de '"
+					+ relacionamento.origem.classe.getName()
+					+ "' n\u00e3o informada para salvar '"
+					+ relacionamento.getNome()
+					+ "'.");
+		}
+		LinkedHashMap<List<Object>, Object[]> existentes = consultarChavesFilhos(relacionamento, valorChave);
+		final AtributoEntidade autoIncremento = destino.getChaveAutoIncremento();
+		final PlanoChave plano = destino.getPlanoChave();
+		ArrayList<Object> novos = new ArrayList<Object>();
+		int quantidade = 0;
+		for (Object filho: filhos) {
+			if (filho == null) {
+				throw new DAOException("Entidade nula na cole\u00e7\u00e3o '"
+						+ relacionamento.getNome()
+						+ "'.");
+			}
+			// Propagando a chave (e.g. gerada) da entidade 'pai'.
+			MetaDadosEntidade.atribuirValor(chaveEstrangeira, filho, valorChave);
+			if (autoIncremento != null 
+					&& !possuiValor(MetaDadosEntidade.extrairValor(autoIncremento, filho))) {
+				novos.add(filho);
+			} else if (existentes.remove(PlanoChave.montarIdentidade(plano.extrairValores(filho))) != null) {
+				quantidade += atualizar(filho, destino);
+			} else {
+				quantidade += inserirOuAtualizar(filho, destino, EstrategiaConflito.ATUALIZAR) > 0 ? 1 : 0;
+			}
+		}
+		quantidade += inserirLote(novos, destino);
+		if (relacionamento.removerOrfaos) {
+			quantidade += removerOrfaos(destino, 
+					new ArrayList<Object[]>(existentes.values()),
+					new HashMap<MetaDadosEntidade<?>, HashSet<List<Object>>>());
+		}
+		// Coleções das entidades 'filhas' (cascata em vários níveis).
+		if (destino.relacionamentos.length > 0) {
+			for (Object filho: filhos) {
+				quantidade += salvarColecoes(filho, destino);
+			}
+		}
+		return quantidade;
+	}
+	
+	/**
+	 * Remove as entidades 'órfãs' (pelos valores das chaves) junto com as
+	 * suas coleções em cascata (em vários níveis, antes das próprias 
+	 * entidades): uma única instrução <tt>delete ... where chave in 
+	 * (?,?...)</tt> por bloco de chaves (respeitando o limite de 
+	 * parâmetros do SQLite), em vez de uma remoção por entidade.
+	 * @param metadados Metadados das entidades 'órfãs'.
+	 * @param chaves Valores das chaves (no formato do B.D.).
+	 * @param removidas Chaves já removidas, por entidade (evita ciclos
+	 * nos relacionamentos da própria entidade).
+	 * @return Quantidade de registros removidos.
+	 */
+	private int removerOrfaos(MetaDadosEntidade<?> metadados, List<Object[]> chaves, 
+			HashMap<MetaDadosEntidade<?>, HashSet<List<Object>>> removidas) {
+		HashSet<List<Object>> identidades = removidas.get(metadados);
+		if (identidades == null) {
+			identidades = new HashSet<List<Object>>();
+			removidas.put(metadados, identidades);
+		}
+		ArrayList<Object[]> pendentes = new ArrayList<Object[]>(chaves.size());
+		for (Object[] valores: chaves) {
+			if (identidades.add(PlanoChave.montarIdentidade(valores))) {
+				pendentes.add(valores);
+			}
+		}
+		if (pendentes.isEmpty()) {
+			return 0;
+		}
+		int quantidade = 0;
+		// Coleções em cascata das entidades 'órfãs' (a chave referenciada
+		// é a chave simples destas entidades).
+		for (RelacionamentoEntidade relacionamento: metadados.relacionamentos) {
+			if (relacionamento.colecao && relacionamento.cascata) {
+				String coluna = relacionamento.getChaveEstrangeira().nomeColuna;
+				LinkedHashMap<List<Object>, Object[]> filhos = new LinkedHashMap<List<Object>, Object[]>();
+				for (int inicio=0; inicio < pendentes.size(); inicio += PlanoChave.MAXIMO_PARAMETROS) {
+					int fim = Math.min(pendentes.size(), inicio + PlanoChave.MAXIMO_PARAMETROS);
+					Object[] valores = new Object[fim - inicio];
+					StringBuilder where = new StringBuilder(coluna);
+					where.append(" in (");
+					for (int i=inicio; i < fim; i++) {
+						valores[i - inicio] = pendentes.get(i)[0];
+						where.append(i > inicio ? ",?" : "?");
+					}
+					where.append(")");
+					consultarChaves(relacionamento.getDestino(), where.toString(), 
+							PlanoChave.argumentos(valores), filhos);
+				}
+				quantidade += removerOrfaos(relacionamento.getDestino(), 
+						new ArrayList<Object[]>(filhos.values()),
+						removidas);
+			}
+		}
+		final PlanoChave plano = metadados.getPlanoChave();
+		final int colunas = plano.colunasChave.length;
+		final int porInstrucao = plano.getMaximoChavesPorPesquisa();
+		for (Object[] valores: pendentes) {
+			if (sessao != null) {
+				sessao.removerPelaChave(metadados, valores);
+			}
+		}
+		registrarAlteracao(metadados.nomeTabela);
+		for (int inicio=0; inicio < pendentes.size(); inicio += porInstrucao) {
+			int fim = Math.min(pendentes.size(), inicio + porInstrucao);
+			Object[] valores = new Object[(fim - inicio) * colunas];
+			for (int i=inicio; i < fim; i++) {
+				System.arraycopy(pendentes.get(i), 0, valores, (i - inicio) * colunas, colunas);
+			}
+			quantidade += bd.delete(metadados.nomeTabela, 
+					plano.montarWhereChaves(fim - inicio), 
+					PlanoChave.argumentos(valores));
+		}
+		concluirAlteracao(metadados.nomeTabela);
+		CacheEntidades<?> cache = metadados.getCache();
+		if (cache != null) {
+			for (Object[] valores: pendentes) {
+				cache.removerPelaChave(valores);
+			}
+		}
+		return quantidade;
+	}
+	
+	/**
+	 * Consulta as chaves das entidades 'filhas' que estão no B.D.
+	 * @param relacionamento Relacionamento (coleção).
+	 * @param valorChave Valor (no formato do B.D.) da chave da entidade 'pai'.
+	 * @return Valores das chaves (no formato do B.D.), pela identidade.
+	 */
+	private LinkedHashMap<List<Object>, Object[]> consultarChavesFilhos(
+			RelacionamentoEntidade relacionamento, Object valorChave) {
+		LinkedHashMap<List<Object>, Object[]> existentes = new LinkedHashMap<List<Object>, Object[]>();
+		consultarChaves(
+				relacionamento.getDestino(),
+				relacionamento.getChaveEstrangeira().nomeColuna + " = ?",
+				PlanoChave.argumentos(new Object[] {valorChave}),
+				existentes);
+		return existentes;
+	}
+	
+	/**
+	 * Consulta as chaves dos registros da entidade que atendem ao where.
+	 * @param metadados Metadados da entidade.
+	 * @param clausulaWhere Cláusula where.
+	 * @param argsWhere Argumentos do where.
+	 * @param chaves Recebe os valores das chaves (no formato do B.D.), 
+	 * pela identidade.
+	 */
+	private void consultarChaves(MetaDadosEntidade<?> metadados, String clausulaWhere,
+			String[] argsWhere, Map<List<Object>, Object[]> chaves) {
+		final AtributoEntidade[] atributos = metadados.getChaves();
+		String[] nomes = new String[atributos.length];
+		for (int i=0; i < atributos.length; i++) {
+			nomes[i] = atributos[i].nomeColuna;
+		}
+		Cursor cursor = consultar(
+				metadados.nomeTabela,
+				nomes,
+				clausulaWhere,
+				argsWhere,
+				null,
+				null,
+				null,
+				null);
+		try {
+			while (cursor.moveToNext()) {
+				Object[] valores = new Object[atributos.length];
+				for (int i=0; i < atributos.length; i++) {
+					valores[i] = MetaDadosEntidade.converterParaBD(
+							atributos[i], 
+							atributos[i].conversor.lerOuNulo(cursor, i));
+				}
+				chaves.put(PlanoChave.montarIdentidade(valores), valores);
+			}
+		} finally {
+			SQLiteUtil.fechar(cursor);
+		}
+	}
+	
 	/**
 	 * @param obj
 	 * @param metadados
@@ -758,10 +1726,9 @@ public class AbstractDAO {
 		AtributoEntidade fAutoIncremento = metadados.getChaveAutoIncremento();
 		if (fAutoIncremento != null) {
 			try {
-				MetaDadosEntidade.atribuirValor(
-						fAutoIncremento.atributo, 
+				fAutoIncremento.definirValor(
 						obj, 
-						ret);
+						fAutoIncremento.conversor.converter(ret));
 			} catch (Exception e) {
 				throw new DAOException("Falha ao atribuir chave ao registro.",
 						e);
@@ -843,11 +1810,41 @@ public class AbstractDAO {
 		} else if (valor instanceof BigDecimal) {
 			// Ajustar conforme a necessidade.
 			valores.put(coluna, new Double(((BigDecimal) valor).doubleValue()));
+		} else if (valor instanceof byte[]) {
+			valores.put(coluna, (byte[]) valor);
 		} else { // Resta apenas string
 			valores.put(coluna, valor.toString());
 		}
 	}
 	
+	/**
+	 * Vincula o valor (já no formato do B.D.) ao parâmetro da instrução
+	 * compilada (mesmas regras de <tt>atribuirValor</tt>).
+	 * @param sentenca Instrução compilada.
+	 * @param indice Índice do parâmetro (iniciando em 1).
+	 * @param valor Valor a ser vinculado.
+	 */
+	protected static void vincularValor(SQLiteProgram sentenca, int indice, Object valor) {
+		if (valor == null) {
+			sentenca.bindNull(indice);
+		} else if (valor instanceof Boolean) {
+			sentenca.bindLong(indice, ((Boolean) valor).booleanValue() ? 1 : 0);
+		} else if (valor instanceof Byte
+				|| valor instanceof Short
+				|| valor instanceof Integer
+				|| valor instanceof Long) {
+			sentenca.bindLong(indice, ((Number) valor).longValue());
+		} else if (valor instanceof Float
+				|| valor instanceof Double
+				|| valor instanceof BigDecimal) {
+			sentenca.bindDouble(indice, ((Number) valor).doubleValue());
+		} else if (valor instanceof byte[]) {
+			sentenca.bindBlob(indice, (byte[]) valor);
+		} else { // Resta apenas string
+			sentenca.bindString(indice, valor.toString());
+		}
+	}
+	
 	/**
 	 * Carrega os valores do cursor na lista.
 	 * @param classeResultado Classe resultado.
@@ -865,27 +1862,15 @@ public class AbstractDAO {
 			
 			// Extraindo os valores.
 			int tipoResultado = -1;
-			MetaDadosEntidade<T> metadados = null;
-			if (Byte.class.equals(classeResultado)
-					|| Short.class.equals(classeResultado)
-					|| Integer.class.equals(classeResultado)
-					|| Long.class.equals(classeResultado)
-					|| Float.class.equals(classeResultado)
-					|| Double.class.equals(classeResultado)
-					|| BigDecimal.class.equals(classeResultado)
-					|| String.class.equals(classeResultado)
-					|| Date.class.equals(classeResultado)
-					|| classeResultado.isEnum()) {
+			MapeadorLinha<T> mapeador = null;
+			ConversorColuna conversor = null;
+			if (isTipoValor(classeResultado)) {
 				tipoResultado = 1;
+				conversor = ConversorColuna.obter(classeResultado, null);
 			} else if (String[].class.equals(classeResultado)) {
 				tipoResultado = 2;
 			} else {
-				metadados = MetadadosBuilder.haClasse(classeResultado) ?
-						MetadadosBuilder.getMetadadosEntidade(classeResultado) 
-						: new MetaDadosEntidade<T>(classeResultado);
-				if (metadados == null) {
-					throw new DAOException("Tipo n\u00e3o suportado pelo sistema.");
-				}
+				mapeador = obterMetadadosResultado(classeResultado).getMapeador(cursor);
 			}
 			do {
 				// Objeto da lista.
@@ -893,25 +1878,14 @@ public class AbstractDAO {
 				
 				switch (tipoResultado) {
 					case 1:
-						obj = carregarValorColuna(
-								cursor,
-								0,
-								classeResultado,
-								null);
+						obj = (T) conversor.lerOuNulo(cursor, 0);
 					break;
 					
-					case 2: {
-						String[] valores = new String[cursor.getColumnCount()];
-						for (int i=0; i < valores.length; i++) {
-							if (!cursor.isNull(i)) {
-								valores[i] = cursor.getString(i);
-							}
-						} // fim for
-						obj = (T) valores;
-					}
+					case 2:
+						obj = (T) lerTextos(cursor);
 					break;
 					default:
-						obj = (T) extrairLinha(metadados, cursor);
+						obj = mapeador.extrair(cursor);
 					break;
 				}
 				lista.add(obj);
@@ -922,39 +1896,815 @@ public class AbstractDAO {
 
 	}
 	
-	protected static Object extrairLinha(MetaDadosEntidade<?> metadados, Cursor cursor) {
-		Object obj = null;
-		try {
-			obj = metadados.classe.newInstance();
-		} catch (Exception e) {
-			throw new DAOException(
-					"Falha ao reservar recurso de sistema para novo registro.", 
-					e);
+	/**
+	 * Verifica se a classe resultado é um valor simples (lido da primeira
+	 * coluna do cursor), e não uma entidade ou <tt>String[]</tt>.
+	 * @param classeResultado
+	 * @return
+	 */
+	static boolean isTipoValor(Class<?> classeResultado) {
+		return Boolean.class.equals(classeResultado)
+				|| Byte.class.equals(classeResultado)
+				|| Short.class.equals(classeResultado)
+				|| Integer.class.equals(classeResultado)
+				|| Long.class.equals(classeResultado)
+				|| Float.class.equals(classeResultado)
+				|| Double.class.equals(classeResultado)
+				|| BigDecimal.class.equals(classeResultado)
+				|| String.class.equals(classeResultado)
+				|| Date.class.equals(classeResultado)
+				|| classeResultado.isEnum();
+	}
+	
+	/**
+	 * Metadados da classe resultado de uma consulta SQL (entidade ou classe
+	 * com atributos anotados com <tt>@Coluna</tt>).
+	 * @param classeResultado
+	 * @return
+	 */
+	static <T> MetaDadosEntidade<T> obterMetadadosResultado(Class<T> classeResultado) {
+		MetaDadosEntidade<T> metadados = MetadadosBuilder.haClasse(classeResultado) ?
+				MetadadosBuilder.getMetadadosEntidade(classeResultado) 
+				: new MetaDadosEntidade<T>(classeResultado);
+		if (metadados == null) {
+			throw new DAOException("Tipo n\u00e3o suportado pelo sistema.");
 		}
-		
-		int indice = 0; // índice da coluna
-		Object valor = null;
-		Object formato = null;
-		for (AtributoEntidade ae: metadados.colunas) {
-			indice = cursor.getColumnIndex(ae.nomeColuna);
-			formato = ae.formato;
-			// extraindo o valor do banco
-			valor = carregarValorColuna(cursor, indice, ae.atributo.getType(), formato);
-			// definindo o valor para o objeto.
-			ObjectUtil.set(obj, ae.atributo, valor);		
+		return metadados;
+	}
+	
+	/**
+	 * Lê todas as colunas da linha corrente do cursor como texto.
+	 * @param cursor
+	 * @return
+	 */
+	static String[] lerTextos(Cursor cursor) {
+		String[] valores = new String[cursor.getColumnCount()];
+		for (int i=0; i < valores.length; i++) {
+			if (!cursor.isNull(i)) {
+				valores[i] = cursor.getString(i);
+			}
 		} // fim for
-		
-		return obj;
+		return valores;
+	}
+	
+	protected static Object extrairLinha(MetaDadosEntidade<?> metadados, Cursor cursor) {
+		return metadados.getMapeador(cursor).extrair(cursor);
+	}
+	
+	/**
+	 * Cria nova instância da entidade.
+	 * @param metadados
+	 * @return
+	 */
+	protected static <T> T novaInstancia(MetaDadosEntidade<T> metadados) {
+		if (metadados.mapeadorGerado != null) {
+			return metadados.mapeadorGerado.novaInstancia();
+		}
+		try {
+			return metadados.classe.newInstance();
+		} catch (Exception e) {
+			throw new DAOException(
+					"Falha ao reservar recurso de sistema para novo registro.", 
+					e);
+		}
+	}
+	
+	/**
+	 * Preenche o objeto com os valores da linha corrente do cursor.
+	 * @param metadados Metadados da entidade.
+	 * @param cursor Cursor (posicionado na linha).
+	 * @param obj Objeto entidade a ser preenchido.
+	 */
+	protected static void preencherLinha(MetaDadosEntidade<?> metadados, Cursor cursor, Object obj) {
+		metadados.getMapeador(cursor).preencher(cursor, obj);
 	}
 	
 	
 	protected <T> ArrayList<T> pesquisar(MetaDadosEntidade<T> metadados,
 			String where, Object... args) {
-		where = ajustarWhereParaSQL(metadados, where);
-		String[] argumentos = obterArgumentos(metadados, where, args);
-		return consultar(metadados, where, argumentos, null, null, null);
+		ClausulaCompilada clausula = metadados.getClausula(where);
+		where = clausula.sql;
+		String[] argumentos = clausula.argumentos(args);
+		if (!metadados.cacheConsultas || bd.inTransaction()) {
+			return consultar(metadados, where, argumentos, null, null, null);
+		}
+		String chave = CacheConsultas.montarChave(metadados.nomeTabela, where, argumentos);
+		ArrayList<T> lista = CacheConsultas.obter(metadados, chave);
+		if (lista == null) {
+			// As versões devem ser obtidas antes da pesquisa.
+			long versao = CacheConsultas.getVersao(metadados.nomeTabela);
+			long[] versoesOutras = CacheConsultas.getVersoes(clausula.outrasTabelas);
+			lista = consultarSemSessao(metadados, where, argumentos, null, null, null);
+			CacheConsultas.colocar(metadados, chave, versao, 
+					clausula.outrasTabelas, versoesOutras, lista);
+		}
+		unificarNaSessao(metadados, lista);
+		vincularReferencias(metadados, lista);
+		return lista;
+	}
+	
+	/**
+	 * Pesquisa com a consulta preparada (veja <tt>Consulta</tt>), com os
+	 * argumentos já no formato do B.D.
+	 * @param consulta Consulta preparada.
+	 * @param argumentos Argumentos (veja <tt>ConsultaPreparada.argumentos</tt>).
+	 * @return
+	 */
+	protected <T> ArrayList<T> pesquisar(ConsultaPreparada<T> consulta, String[] argumentos) {
+		MetaDadosEntidade<T> metadados = consulta.metadados;
+		String chave = null;
+		ArrayList<T> lista = null;
+		long versao = 0;
+		if (metadados.cacheConsultas && !bd.inTransaction()) {
+			chave = CacheConsultas.montarChave(metadados.nomeTabela, consulta.toString(), argumentos);
+			lista = CacheConsultas.obter(metadados, chave);
+			// A versão deve ser obtida antes da pesquisa.
+			versao = CacheConsultas.getVersao(metadados.nomeTabela);
+		}
+		if (lista == null) {
+			Cursor cursor = consultar(
+					metadados.nomeTabela,
+					metadados.getNomeColunas(),
+					consulta.where,
+					argumentos,
+					null,
+					null,
+					consulta.ordem,
+					consulta.limite);
+			try {
+				lista = carregarResultadoLista(metadados.classe, cursor);
+			} finally {
+				SQLiteUtil.fechar(cursor);
+			}
+			if (chave != null) {
+				CacheConsultas.colocar(metadados, chave, versao, lista);
+			}
+		}
+		unificarNaSessao(metadados, lista);
+		vincularReferencias(metadados, lista);
+		return lista;
+	}
+	
+	/**
+	 * Pesquisa com projeção (apenas as colunas da projeção são pesquisadas).
+	 * As entidades parciais (e os 'DTOs') não são registrados na sessão de 
+	 * entidades, nem no rastreamento de alterações ou nos caches.
+	 * @param metadados Metadados da entidade pesquisada.
+	 * @param projecao Projeção (veja <tt>MetaDadosEntidade.getProjecao</tt>).
+	 * @param where Cláusula where.
+	 * @param args Argumentos do where.
+	 * @return
+	 */
+	protected <D> ArrayList<D> pesquisarProjecao(MetaDadosEntidade<?> metadados,
+			Projecao<D> projecao, String where, Object... args) {
+		ClausulaCompilada clausula = metadados.getClausula(where);
+		where = clausula.sql;
+		String[] argumentos = clausula.argumentos(args);
+		Cursor cursor = consultar(
+				metadados.nomeTabela, 
+				projecao.colunas, 
+				where, 
+				argumentos, 
+				null, 
+				null, 
+				null, 
+				null);
+		try {
+			ArrayList<D> lista = new ArrayList<D>();
+			if (cursor != null && cursor.moveToFirst()) {
+				MapeadorLinha<D> mapeador = projecao.destino.getMapeador(cursor);
+				do {
+					lista.add(mapeador.extrair(cursor));
+				} while (cursor.moveToNext());
+			}
+			return lista;
+		} finally {
+			SQLiteUtil.fechar(cursor);
+		}
+	}
+	
+	/**
+	 * Percorre o resultado da pesquisa entregando cada linha ao visitante
+	 * como uma visão do cursor (veja <tt>LinhaCursor</tt>), sem criar 
+	 * objetos por linha.
+	 * @param metadados Metadados da entidade.
+	 * @param where Cláusula where.
+	 * @param args Argumentos do where.
+	 * @param visitante Visitante das linhas.
+	 * @return Quantidade de linhas visitadas.
+	 */
+	protected int percorrer(MetaDadosEntidade<?> metadados, String where, 
+			Object[] args, VisitanteLinha<? super LinhaCursor> visitante) {
+		Cursor cursor = consultarParaPercorrer(metadados, where, args, visitante);
+		try {
+			int quantidade = 0;
+			if (cursor != null && cursor.moveToFirst()) {
+				LinhaCursor linha = new LinhaCursor(metadados, cursor);
+				do {
+					quantidade++;
+				} while (visitante.visitar(linha) && cursor.moveToNext());
+			}
+			return quantidade;
+		} finally {
+			SQLiteUtil.fechar(cursor);
+		}
+	}
+	
+	/**
+	 * Percorre o resultado da pesquisa entregando ao visitante uma única
+	 * instância da entidade, preenchida novamente a cada linha.
+	 * @param metadados Metadados da entidade.
+	 * @param where Cláusula where.
+	 * @param args Argumentos do where.
+	 * @param visitante Visitante das linhas.
+	 * @return Quantidade de linhas visitadas.
+	 */
+	protected <T> int percorrerReutilizando(MetaDadosEntidade<T> metadados, String where, 
+			Object[] args, VisitanteLinha<? super T> visitante) {
+		Cursor cursor = consultarParaPercorrer(metadados, where, args, visitante);
+		try {
+			int quantidade = 0;
+			if (cursor != null && cursor.moveToFirst()) {
+				MapeadorLinha<T> mapeador = metadados.getMapeador(cursor);
+				T instancia = novaInstancia(metadados);
+				boolean continuar;
+				do {
+					mapeador.preencher(cursor, instancia);
+					quantidade++;
+					continuar = visitante.visitar(instancia);
+				} while (continuar && cursor.moveToNext());
+			}
+			return quantidade;
+		} finally {
+			SQLiteUtil.fechar(cursor);
+		}
+	}
+	
+	/**
+	 * Pesquisa apenas as colunas dos atributos informados, lendo-as 
+	 * diretamente para vetores primitivos (veja <tt>LoteColunas</tt>).
+	 * @param metadados Metadados da entidade.
+	 * @param atributos Nomes dos atributos (ou das colunas).
+	 * @param tipos Tipos das colunas no lote (pode ser nulo, assim como 
+	 * cada item, para inferir pelo tipo do atributo).
+	 * @param codificarTextos Se as colunas texto de tipo inferido são 
+	 * codificadas por dicionário.
+	 * @param where Cláusula where.
+	 * @param args Argumentos do where.
+	 * @return
+	 */
+	protected LoteColunas pesquisarColunas(MetaDadosEntidade<?> metadados, String[] atributos,
+			LoteColunas.Tipo[] tipos, boolean codificarTextos, String where, Object... args) {
+		if (atributos == null || atributos.length == 0) {
+			throw new DAOException("Atributos n\u00e3o informados.");
+		}
+		if (tipos != null && tipos.length != atributos.length) {
+			throw new DAOException("Quantidade de tipos diferente da de atributos.");
+		}
+		String[] colunas = new String[atributos.length];
+		LoteColunas.Tipo[] tiposLote = new LoteColunas.Tipo[atributos.length];
+		for (int i=0; i < atributos.length; i++) {
+			AtributoEntidade ae = obterAtributo(metadados, atributos[i]);
+			colunas[i] = ae.nomeColuna;
+			tiposLote[i] = tipos != null && tipos[i] != null ?
+					tipos[i]
+					: inferirTipoLote(ae, codificarTextos);
+		}
+		ClausulaCompilada clausula = metadados.getClausula(where);
+		where = clausula.sql;
+		String[] argumentos = clausula.argumentos(args);
+		Cursor cursor = consultar(
+				metadados.nomeTabela, 
+				colunas, 
+				where, 
+				argumentos, 
+				null, 
+				null, 
+				null, 
+				null);
+		try {
+			return LoteColunas.carregar(cursor, atributos.clone(), tiposLote);
+		} finally {
+			SQLiteUtil.fechar(cursor);
+		}
+	}
+	
+	/**
+	 * Pesquisa percorrendo o cursor (veja <tt>ResultadoIteravel</tt>).
+	 * @param metadados Metadados da entidade.
+	 * @param reutilizarInstancia Se a mesma instância será preenchida 
+	 * a cada linha.
+	 * @param where Cláusula where.
+	 * @param args Argumentos do where.
+	 * @return
+	 */
+	protected <T> ResultadoIteravel<T> pesquisarIterando(MetaDadosEntidade<T> metadados,
+			boolean reutilizarInstancia, String where, Object... args) {
+		ClausulaCompilada clausula = metadados.getClausula(where);
+		where = clausula.sql;
+		String[] argumentos = clausula.argumentos(args);
+		Cursor cursor = consultar(
+				metadados.nomeTabela, 
+				metadados.getNomeColunas(), 
+				where, 
+				argumentos, 
+				null, 
+				null, 
+				null, 
+				null);
+		return new ResultadoIteravel<T>(metadados, cursor, reutilizarInstancia);
+	}
+
+	/**
+	 * Consulta SQL percorrendo o cursor (veja <tt>ResultadoIteravel</tt>).
+	 * @param classeResultado Classe resultado.
+	 * @param reutilizarInstancia Se a mesma instância (entidade) será 
+	 * preenchida a cada linha.
+	 * @param sql Consulta SQL 'nativa'.
+	 * @param args Argumentos da consulta.
+	 * @return
+	 */
+	protected <T> ResultadoIteravel<T> pesquisarSQLIterando(Class<T> classeResultado,
+			boolean reutilizarInstancia, String sql, Object... args) {
+		String[] argumentos = obterArgumentos(null, null, args);
+		Cursor cursor = bd.rawQuery(sql, argumentos);
+		try {
+			return new ResultadoIteravel<T>(classeResultado, cursor, reutilizarInstancia);
+		} catch (RuntimeException e) {
+			SQLiteUtil.fechar(cursor);
+			throw e;
+		}
+	}
+
+	/**
+	 * Pesquisa uma página (paginação por chave: 'keyset'/'seek').<br/>
+	 *
+	 * A ordenação é pelo atributo do token seguido da chave (para desempate),
+	 * e a posição do token é aplicada como condição sobre estas colunas
+	 * (<tt>c1 &gt;= ? and (c1 &gt; ? or (c1 = ? and c2 &gt; ?) ...)</tt>; o
+	 * primeiro termo dá ao SQLite o intervalo de <tt>c1</tt>), de forma que
+	 * a consulta utiliza o índice independentemente da distância da página.
+	 * A página anterior é pesquisada com a ordenação invertida, e o
+	 * resultado é revertido.<br/>
+	 * 
+	 * As colunas de ordenação não podem ter valores nulos (<tt>c1 &gt; null</tt>
+	 * nunca é verdadeiro): se a página tiver um registro com valor nulo
+	 * nestas colunas, é lançada <tt>DAOException</tt>.
+	 * @param metadados Metadados da entidade.
+	 * @param token Token da página (veja <tt>TokenPagina.inicio</tt>).
+	 * @param usarSessao Se as instâncias são unificadas na sessão de
+	 * entidades.
+	 * @param where Cláusula where (pode ser nula).
+	 * @param args Argumentos do where.
+	 * @return
+	 */
+	protected <T> Pagina<T> paginar(MetaDadosEntidade<T> metadados,
+			TokenPagina token, boolean usarSessao, String where, Object... args) {
+		if (token == null) {
+			throw new DAOException("Token da p\u00e1gina n\u00e3o informado.");
+		}
+		AtributoEntidade[] ordenacao = obterColunasOrdenacao(metadados, token.ordem);
+		// A página anterior é pesquisada 'de trás para frente'.
+		final boolean crescente = token.descendente != token.avancar;
+		ClausulaCompilada clausula = metadados.getClausula(where);
+		where = clausula.sql;
+		String[] argumentos = clausula.argumentos(args);
+		if (token.posicao != null) {
+			if (token.posicao.length != ordenacao.length) {
+				throw new DAOException("Token de p\u00e1gina incompat\u00edvel com "
+						+ metadados.classe.getName());
+			}
+			for (int i=0; i < ordenacao.length; i++) {
+				if (token.posicao[i] == null) {
+					throw new DAOException("Token de p\u00e1gina com valor nulo para '"
+							+ ordenacao[i].atributo.getName()
+							+ "'.");
+				}
+			}
+			StringBuilder builder = new StringBuilder();
+			ArrayList<Object> valores = new ArrayList<Object>();
+			if (ordenacao.length > 1) {
+				// Intervalo da primeira coluna (busca pelo índice).
+				builder.append(ordenacao[0].nomeColuna).append(crescente ? " >= ?" : " <= ?");
+				builder.append(" and (");
+				valores.add(token.posicao[0]);
+			}
+			for (int i=0; i < ordenacao.length; i++) {
+				if (i > 0) {
+					builder.append(" or ");
+				}
+				builder.append('(');
+				for (int j=0; j < i; j++) {
+					builder.append(ordenacao[j].nomeColuna).append(" = ? and ");
+					valores.add(token.posicao[j]);
+				}
+				builder.append(ordenacao[i].nomeColuna).append(crescente ? " > ?" : " < ?");
+				valores.add(token.posicao[i]);
+				builder.append(')');
+			}
+			if (ordenacao.length > 1) {
+				builder.append(')');
+			}
+			where = where != null && where.trim().length() > 0 ?
+					"(" + where + ") and (" + builder + ")"
+					: builder.toString();
+			String[] argumentosPosicao = PlanoChave.argumentos(valores.toArray());
+			if (argumentos != null) {
+				String[] todos = new String[argumentos.length + argumentosPosicao.length];
+				System.arraycopy(argumentos, 0, todos, 0, argumentos.length);
+				System.arraycopy(argumentosPosicao, 0, todos, argumentos.length, argumentosPosicao.length);
+				argumentos = todos;
+			} else {
+				argumentos = argumentosPosicao;
+			}
+		}
+		StringBuilder orderBy = new StringBuilder();
+		for (AtributoEntidade ae: ordenacao) {
+			if (orderBy.length() > 0) {
+				orderBy.append(", ");
+			}
+			orderBy.append(ae.nomeColuna).append(crescente ? " asc" : " desc");
+		}
+		// Um registro a mais indica se há página seguinte (na direção pesquisada).
+		Cursor cursor = consultar(
+				metadados.nomeTabela,
+				metadados.getNomeColunas(),
+				where,
+				argumentos,
+				null,
+				null,
+				orderBy.toString(),
+				String.valueOf(token.tamanho + 1));
+		ArrayList<T> lista;
+		try {
+			lista = carregarResultadoLista(metadados.classe, cursor);
+		} finally {
+			SQLiteUtil.fechar(cursor);
+		}
+		final boolean haMais = lista.size() > token.tamanho;
+		if (haMais) {
+			lista.remove(lista.size() - 1);
+		}
+		verificarPosicoes(metadados, ordenacao, lista);
+		if (!token.avancar) {
+			Collections.reverse(lista);
+		}
+		if (usarSessao) {
+			unificarNaSessao(metadados, lista);
+		}
+		vincularReferencias(metadados, lista);
+		TokenPagina proxima = null, anterior = null;
+		if (lista.isEmpty()) {
+			// Página vazia: apenas o retorno para a posição informada.
+			if (token.posicao != null) {
+				TokenPagina volta = new TokenPagina(token.tamanho, token.ordem,
+						token.descendente, !token.avancar, token.posicao);
+				if (token.avancar) {
+					anterior = volta;
+				} else {
+					proxima = volta;
+				}
+			}
+		} else {
+			Object[] primeira = extrairPosicao(ordenacao, lista.get(0));
+			Object[] ultima = extrairPosicao(ordenacao, lista.get(lista.size() - 1));
+			if (!token.avancar || haMais) {
+				proxima = new TokenPagina(token.tamanho, token.ordem,
+						token.descendente, true, ultima);
+			}
+			if (token.avancar ? token.posicao != null : haMais) {
+				anterior = new TokenPagina(token.tamanho, token.ordem,
+						token.descendente, false, primeira);
+			}
+		}
+		return new Pagina<T>(lista, proxima, anterior);
+	}
+
+	/**
+	 * Pesquisa a página em segundo plano (veja
+	 * <tt>paginar(MetaDadosEntidade, TokenPagina, boolean, String, Object...)</tt>).
+	 * As instâncias não são unificadas na sessão de entidades (que não deve
+	 * ser compartilhada entre <i>threads</i>).
+	 * @param metadados Metadados da entidade.
+	 * @param executor Executor da pesquisa.
+	 * @param token Token da página.
+	 * @param where Cláusula where (pode ser nula).
+	 * @param args Argumentos do where.
+	 * @return Tarefa (já submetida ao executor) cujo resultado é a página.
+	 */
+	protected <T> FutureTask<Pagina<T>> paginarEmSegundoPlano(
+			final MetaDadosEntidade<T> metadados, Executor executor,
+			final TokenPagina token, final String where, final Object... args) {
+		if (executor == null) {
+			throw new DAOException("Executor n\u00e3o informado.");
+		}
+		FutureTask<Pagina<T>> tarefa = new FutureTask<Pagina<T>>(new Callable<Pagina<T>>() {
+			@Override
+			public Pagina<T> call() throws Exception {
+				return paginar(metadados, token, false, where, args);
+			}
+		});
+		executor.execute(tarefa);
+		return tarefa;
+	}
+
+	/**
+	 * Colunas da ordenação da paginação: o atributo de ordenação (se
+	 * informado e não for a chave) seguido das colunas da chave.
+	 * @param metadados Metadados da entidade.
+	 * @param ordem Nome do atributo (ou da coluna) de ordenação.
+	 * @return
+	 */
+	private static AtributoEntidade[] obterColunasOrdenacao(MetaDadosEntidade<?> metadados, String ordem) {
+		AtributoEntidade[] chaves = metadados.getPlanoChave().colunasChave;
+		if (ordem == null) {
+			return chaves;
+		}
+		AtributoEntidade atributo = obterAtributo(metadados, ordem);
+		if (chaves.length == 1 && chaves[0] == atributo) {
+			return chaves;
+		}
+		ArrayList<AtributoEntidade> colunas = new ArrayList<AtributoEntidade>();
+		colunas.add(atributo);
+		for (AtributoEntidade chave: chaves) {
+			if (chave != atributo) {
+				colunas.add(chave);
+			}
+		}
+		return colunas.toArray(new AtributoEntidade[colunas.size()]);
+	}
+
+	/**
+	 * Consulta (todas as colunas da entidade) para ser percorrida por um
+	 * visitante.
+	 * @param metadados Metadados da entidade.
+	 * @param where Cláusula where.
+	 * @param args Argumentos do where.
+	 * @param visitante Visitante (obrigatório).
+	 * @return
+	 */
+	private Cursor consultarParaPercorrer(MetaDadosEntidade<?> metadados, String where, 
+			Object[] args, VisitanteLinha<?> visitante) {
+		if (visitante == null) {
+			throw new DAOException("Visitante n\u00e3o informado.");
+		}
+		ClausulaCompilada clausula = metadados.getClausula(where);
+		where = clausula.sql;
+		String[] argumentos = clausula.argumentos(args);
+		return consultar(
+				metadados.nomeTabela, 
+				metadados.getNomeColunas(), 
+				where, 
+				argumentos, 
+				null, 
+				null, 
+				null, 
+				null);
+	}
+
+	/**
+	 * Obtém o atributo da entidade pelo nome (ou pelo nome da coluna).
+	 * @param metadados Metadados da entidade.
+	 * @param nome Nome do atributo ou da coluna.
+	 * @return
+	 */
+	static AtributoEntidade obterAtributo(MetaDadosEntidade<?> metadados, String nome) {
+		String coluna = metadados.obterNomeColuna(nome);
+		AtributoEntidade atributo = metadados.getAtributoPelaColuna(coluna != null ? coluna : nome);
+		if (atributo == null) {
+			throw new DAOException("Atributo '"
+					+ nome
+					+ "' n\u00e3o encontrado em "
+					+ metadados.classe.getName());
+		}
+		return atributo;
+	}
+
+	/**
+	 * Tipo da coluna no lote colunar, conforme o tipo do atributo: 
+	 * <tt>LONG</tt> para <tt>long</tt> e datas gravadas em milissegundos,
+	 * <tt>INT</tt> para os demais inteiros, booleanos e enumerações pelo 
+	 * ordinal, <tt>DOUBLE</tt> para decimais, e texto para os demais.
+	 * @param ae Atributo.
+	 * @param codificarTextos Se os textos são codificados por dicionário.
+	 * @return
+	 */
+	private static LoteColunas.Tipo inferirTipoLote(AtributoEntidade ae, boolean codificarTextos) {
+		Class<?> tipo = ae.atributo.getType();
+		if (long.class.equals(tipo) || Long.class.equals(tipo)
+				|| (Date.class.equals(tipo) 
+						&& (ae.formato == null || ae.formato == FormatoData.LONG))) {
+			return LoteColunas.Tipo.LONG;
+		} else if (int.class.equals(tipo) || Integer.class.equals(tipo)
+				|| short.class.equals(tipo) || Short.class.equals(tipo)
+				|| byte.class.equals(tipo) || Byte.class.equals(tipo)
+				|| boolean.class.equals(tipo) || Boolean.class.equals(tipo)
+				|| (tipo.isEnum() && !Boolean.FALSE.equals(ae.formato))) {
+			return LoteColunas.Tipo.INT;
+		} else if (double.class.equals(tipo) || Double.class.equals(tipo)
+				|| float.class.equals(tipo) || Float.class.equals(tipo)
+				|| BigDecimal.class.equals(tipo)) {
+			return LoteColunas.Tipo.DOUBLE;
+		} else if (byte[].class.equals(tipo)) {
+			throw new DAOException("Coluna '"
+					+ ae.nomeColuna
+					+ "' (blob) n\u00e3o suportada no lote colunar.");
+		}
+		return codificarTextos ? LoteColunas.Tipo.DICIONARIO : LoteColunas.Tipo.TEXTO;
+	}
+
+	/**
+	 * Monta a consulta da agregação: 
+	 * <tt>select [grupo, ]funcao(coluna) from tabela [where ...]</tt>.
+	 * @param metadados Metadados da entidade.
+	 * @param grupo Coluna de agrupamento (pode ser nula).
+	 * @param agregacao Agregação.
+	 * @param atributo Atributo agregado (pode ser nulo para contagem). Deve
+	 * ser numérico (veja <tt>ConversorColuna.isNumerico()</tt>), exceto 
+	 * para contagem.
+	 * @param where Cláusula where, já ajustada (pode ser nula).
+	 * @return
+	 */
+	private static String montarConsultaAgregacao(MetaDadosEntidade<?> metadados, 
+			String grupo, Agregacao agregacao, String atributo, String where) {
+		if (agregacao == null) {
+			throw new DAOException("Agrega\u00e7\u00e3o n\u00e3o informada.");
+		}
+		String coluna;
+		if (atributo == null) {
+			if (agregacao != Agregacao.CONTAR) {
+				throw new DAOException("Atributo da agrega\u00e7\u00e3o n\u00e3o informado.");
+			}
+			coluna = "*";
+		} else {
+			AtributoEntidade ae = obterAtributo(metadados, atributo);
+			if (agregacao != Agregacao.CONTAR && !ae.conversor.isNumerico()) {
+				throw new DAOException("Agrega\u00e7\u00e3o "
+						+ agregacao
+						+ " n\u00e3o suportada para o atributo n\u00e3o num\u00e9rico '"
+						+ ae.atributo.getName()
+						+ "'.");
+			}
+			coluna = ae.nomeColuna;
+		}
+		StringBuilder builder = new StringBuilder("select ");
+		if (grupo != null) {
+			builder.append(grupo).append(", ");
+		}
+		builder.append(agregacao.funcao).append('(').append(coluna).append(')');
+		builder.append(" from ").append(metadados.nomeTabela);
+		if (where != null && where.trim().length() > 0) {
+			builder.append(" where ").append(where);
+		}
+		if (grupo != null) {
+			builder.append(" group by ").append(grupo);
+			builder.append(" order by ").append(grupo);
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Verifica se os registros da página não têm valores nulos nas colunas
+	 * de ordenação (a paginação por chave pararia ou pularia registros).
+	 * @param metadados Metadados da entidade.
+	 * @param ordenacao Colunas de ordenação.
+	 * @param lista Registros da página.
+	 */
+	private static void verificarPosicoes(MetaDadosEntidade<?> metadados,
+			AtributoEntidade[] ordenacao, List<?> lista) {
+		for (Object obj: lista) {
+			for (AtributoEntidade ae: ordenacao) {
+				if (MetaDadosEntidade.extrairValor(ae, obj) == null) {
+					throw new DAOException("Valor nulo na coluna de ordena\u00e7\u00e3o '"
+							+ ae.nomeColuna
+							+ "' da pagina\u00e7\u00e3o de "
+							+ metadados.classe.getName()
+							+ " (filtre com 'is not null' ou ordene por outra coluna).");
+				}
+			}
+		}
+	}
+
+	/**
+	 * Valores (no formato do B.D.) das colunas de ordenação do objeto.
+	 * @param ordenacao Colunas de ordenação.
+	 * @param obj Objeto entidade.
+	 * @return
+	 */
+	private static Object[] extrairPosicao(AtributoEntidade[] ordenacao, Object obj) {
+		Object[] valores = new Object[ordenacao.length];
+		for (int i=0; i < ordenacao.length; i++) {
+			valores[i] = MetaDadosEntidade.extrairValor(ordenacao[i], obj);
+			if (valores[i] instanceof Boolean) {
+				valores[i] = ((Boolean) valores[i]).booleanValue() ? 1L : 0L;
+			}
+		}
+		return valores;
+	}
+
+	/**
+	 * Carrega o relacionamento muitos para um das entidades, pelas chaves
+	 * estrangeiras (sem repetição).
+	 * @param relacionamento Relacionamento.
+	 * @param objetos Entidades (origem).
+	 * @return As entidades carregadas (destino).
+	 */
+	private ArrayList<Object> carregarReferencias(RelacionamentoEntidade relacionamento, 
+			Collection<?> objetos) {
+		AtributoEntidade chaveEstrangeira = relacionamento.getChaveEstrangeira();
+		AtributoEntidade chaveReferenciada = relacionamento.getChaveReferenciada();
+		LinkedHashSet<Object> chaves = new LinkedHashSet<Object>();
+		for (Object obj: objetos) {
+			Object chave = chaveEstrangeira.obterValor(obj);
+			if (chave != null) {
+				chaves.add(chave);
+			}
+		}
+		// Pela identidade (normalizada) da chave, e.g. Integer x Long.
+		HashMap<List<Object>, Object> encontrados = new HashMap<List<Object>, Object>();
+		for (Object destino: pesquisarPelasChaves(relacionamento.getDestino(), chaves).values()) {
+			encontrados.put(identidade(chaveReferenciada, destino), destino);
+		}
+		for (Object obj: objetos) {
+			List<Object> identidade = identidade(chaveEstrangeira, obj);
+			relacionamento.definirValor(obj, identidade != null ? encontrados.get(identidade) : null);
+		}
+		return new ArrayList<Object>(encontrados.values());
 	}
 	
+	/**
+	 * Carrega o relacionamento um para muitos (coleções) das entidades, 
+	 * com <tt>chaveEstrangeira in (?,?...)</tt> (em blocos que respeitam o
+	 * limite de parâmetros do SQLite).
+	 * @param relacionamento Relacionamento.
+	 * @param objetos Entidades (origem).
+	 * @return As entidades carregadas (destino).
+	 */
+	private ArrayList<Object> carregarColecoes(RelacionamentoEntidade relacionamento, 
+			Collection<?> objetos) {
+		AtributoEntidade chaveEstrangeira = relacionamento.getChaveEstrangeira();
+		AtributoEntidade chaveReferenciada = relacionamento.getChaveReferenciada();
+		// 'Filhos' pela identidade da chave da entidade origem.
+		HashMap<List<Object>, ArrayList<Object>> filhos = 
+				new HashMap<List<Object>, ArrayList<Object>>();
+		ArrayList<Object> valores = new ArrayList<Object>();
+		for (Object obj: objetos) {
+			Object valor = MetaDadosEntidade.extrairValor(chaveReferenciada, obj);
+			if (valor != null) {
+				List<Object> identidade = PlanoChave.montarIdentidade(new Object[] {valor});
+				if (!filhos.containsKey(identidade)) {
+					filhos.put(identidade, new ArrayList<Object>());
+					valores.add(valor);
+				}
+			}
+		}
+		ArrayList<Object> carregados = new ArrayList<Object>();
+		for (int inicio=0; inicio < valores.size(); inicio += PlanoChave.MAXIMO_PARAMETROS) {
+			int fim = Math.min(valores.size(), inicio + PlanoChave.MAXIMO_PARAMETROS);
+			StringBuilder where = new StringBuilder(chaveEstrangeira.nomeColuna);
+			where.append(" in (");
+			for (int i=inicio; i < fim; i++) {
+				where.append(i > inicio ? ",?" : "?");
+			}
+			where.append(")");
+			ArrayList<?> lista = consultar(
+					relacionamento.getDestino(),
+					where.toString(),
+					PlanoChave.argumentos(valores.subList(inicio, fim).toArray()),
+					null,
+					null,
+					relacionamento.getOrdem());
+			for (Object filho: lista) {
+				ArrayList<Object> grupo = filhos.get(identidade(chaveEstrangeira, filho));
+				if (grupo != null) {
+					grupo.add(filho);
+				}
+				carregados.add(filho);
+			}
+		}
+		for (Object obj: objetos) {
+			Collection<Object> colecao = relacionamento.novaColecao();
+			List<Object> identidade = identidade(chaveReferenciada, obj);
+			if (identidade != null) {
+				colecao.addAll(filhos.get(identidade));
+			}
+			relacionamento.definirValor(obj, colecao);
+		}
+		return carregados;
+	}
+	
+	/**
+	 * Identidade (normalizada) do valor do atributo, para comparar chaves
+	 * de tipos diferentes (veja <tt>PlanoChave.montarIdentidade</tt>).
+	 * @param ae Atributo.
+	 * @param obj Objeto.
+	 * @return A identidade, ou <tt>null</tt> se o valor for nulo.
+	 */
+	private static List<Object> identidade(AtributoEntidade ae, Object obj) {
+		Object valor = MetaDadosEntidade.extrairValor(ae, obj);
+		return valor != null ? PlanoChave.montarIdentidade(new Object[] {valor}) : null;
+	}
+
 	protected static MetaDadosEntidade<?> getMetaDadosEntidade(Object obj) {
 		return getMetaDadosEntidade(obj.getClass());
 	}
@@ -981,69 +2731,7 @@ public class AbstractDAO {
 	 */
 	@SuppressWarnings("unchecked")
 	protected static <T> T carregarValorColuna(Cursor cursor, int coluna, Class<T> classe, Object formato) {
-		T obj = null;
-		if (!cursor.isNull(coluna)) {
-			// É um inteiro ?
-			if (Byte.class.equals(classe)
-					|| Integer.class.equals(classe)
-					|| Short.class.equals(classe)
-					|| Long.class.equals(classe)) {
-				
-				try {
-					obj = classe.getConstructor(String.class)
-							.newInstance(
-									cursor.getString(coluna));
-				} catch (Exception e) {
-					throw new DAOException(
-							"Falha na leitura de um valor num\u00e9rico do sistema.",
-							e);
-				}
-			}
-			// É para ler um valor de ponto flutuante ?
-			else if (Float.class.equals(classe)
-					|| Double.class.equals(classe)
-					|| BigDecimal.class.equals(classe)) {
-				double v = cursor.getDouble(coluna);
-				try {
-					obj = classe.getConstructor(Double.TYPE)
-							.newInstance(v);
-				} catch (Exception e) {
-					throw new RuntimeException(
-							"Falha na leitura de um valor num\u00e9rico real do sistema.",
-							e);
-				}
-			} else if (classe.isEnum()) {
-				boolean ordinal = !(formato != null && Boolean.FALSE.equals(formato));
-				
-				obj = (T) ObjectUtil.toEnum(
-						classe, 
-						cursor.getString(coluna),
-						ordinal);
-				
-			} else if (Date.class.equals(classe)) {
-				FormatoData formatoData = FormatoData.LONG;
-				if (formato instanceof FormatoData) {
-					formatoData = (FormatoData) formato;
-				}
-				String dataStr = cursor.getString(coluna);
-				try {
-					obj = (T) ObjectUtil.toDate(
-							dataStr,
-							formatoData);
-				} catch (ParseException e) {
-					throw new DAOException(
-							"Falha ao converter a data '"
-							+ dataStr
-							+ "' para o formato "
-							+ formatoData, 
-							e);
-				}
-			} else {
-				// Considerado como String;
-				obj = (T) cursor.getString(coluna);
-			}
-		}
-		return obj;
+		return (T) ConversorColuna.obter(classe, formato).lerOuNulo(cursor, coluna);
 	}
 	
 	public static String[] obterArgumentos(MetaDadosEntidade<?> metadados, String clausula, Object... args) {
@@ -1071,7 +2759,6 @@ public class AbstractDAO {
 			else if (colunas != null) {
 				// Extraindo conforme o tip
 				AtributoEntidade ae;
-				Object formato; 
 				for (int i=0; i < colunas.size(); i++) {
 					ae = metadados.getAtributoPelaColuna(colunas.get(i));
 					if (ae == null) {
@@ -1080,10 +2767,8 @@ public class AbstractDAO {
 								+ "' n\u00e3o encontrada para a entidade");
 					}
 
-					formato = ae.formato;
-					
 					// Obter o valor nativo
-					argumentos[i] = ObjectUtil.toString(args[i], formato);
+					argumentos[i] = ClausulaCompilada.converterArgumento(ae, args[i]);
 				}
 			}
 		}
@@ -1091,25 +2776,7 @@ public class AbstractDAO {
 	}
 	
 	protected static ArrayList<String> extrairColunasParametrizadas(String clausula) {
-		ArrayList<String> colunas = null;
-		if (clausula != null && clausula.contains("?")) {
-			colunas = new ArrayList<String>();
-			ArrayList<String> tokens = new ArrayList<String>();
-			for (StringTokenizer tokenizer = new StringTokenizer(clausula, " \n\r\t");
-					tokenizer.hasMoreTokens();) {
-				tokens.add(tokenizer.nextToken());
-			}
-			for (int i=0; i < tokens.size(); i++) {
-				if ("?".equals(tokens.get(i))) {
-					try {
-						colunas.add(tokens.get(i-2));
-					} catch (Exception e){
-						throw new DAOException("Falha ao identificar coluna de '?'", e);
-					}
-				}
-			}
-		}
-		return colunas;
+		return new AnalisadorClausula(null, clausula).getColunasParametros();
 	}
 
 }
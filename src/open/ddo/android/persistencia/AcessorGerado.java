@@ -0,0 +1,46 @@
+package open.ddo.android.persistencia;
+
+import open.ddo.android.util.AcessorAtributo;
+
+/**
+ * Acessor de atributo que utiliza o mapeador gerado da entidade
+ * (sem reflexão).
+ * 
+ * @author ozairjr
+ *
+ */
+final class AcessorGerado extends AcessorAtributo {
+	
+	// --------------------------------------------------------------
+	// Atributos do objeto
+	// --------------------------------------------------------------
+	
+	/** Mapeador gerado da entidade. */
+	private final MapeadorGerado<Object> mapeador;
+	/** Índice do atributo no mapeador. */
+	private final int indice;
+	
+	// --------------------------------------------------------------
+	// Métodos
+	// --------------------------------------------------------------
+	
+	/**
+	 * Construtor.
+	 * @param mapeador
+	 * @param indice
+	 */
+	AcessorGerado(MapeadorGerado<Object> mapeador, int indice) {
+		this.mapeador = mapeador;
+		this.indice = indice;
+	}
+	
+	@Override
+	public Object getObject(Object obj) {
+		return mapeador.obterValor(obj, indice);
+	}
+	
+	@Override
+	public void set(Object obj, Object valor) {
+		mapeador.atribuirValor(obj, indice, valor);
+	}
+}
@@ -0,0 +1,53 @@
+package open.ddo.android.persistencia;
+
+/**
+ * Função de agregação do SQLite (veja <tt>EntidadeDAO.agregar</tt> e
+ * <tt>EntidadeDAO.agrupar</tt>).
+ *
+ * @author ozairjr
+ *
+ */
+public enum Agregacao {
+
+	// --------------------------------------------------------------
+	// 'Constantes'
+	// --------------------------------------------------------------
+
+	/** Quantidade de valores não nulos (ou de registros, sem atributo). */
+	CONTAR("count"),
+	/** Soma dos valores (0 se não houver valores). */
+	SOMAR("sum"),
+	/** Menor valor. */
+	MINIMO("min"),
+	/** Maior valor. */
+	MAXIMO("max"),
+	/** Média dos valores. */
+	MEDIA("avg")
+	;
+
+	// --------------------------------------------------------------
+	// Atributos
+	// --------------------------------------------------------------
+
+	/** Função do SQLite. */
+	public final String funcao;
+
+	// --------------------------------------------------------------
+	// Métodos
+	// --------------------------------------------------------------
+
+	/** Construtor. */
+	private Agregacao(String funcao) {
+		this.funcao = funcao;
+	}
+
+	/**
+	 * Valor da agregação quando o resultado do SQLite é nulo (não há
+	 * valores): 0 para contagem e soma, e <tt>NaN</tt> para as demais.
+	 * @return
+	 */
+	public double valorNulo() {
+		return this == CONTAR || this == SOMAR ? 0d : Double.NaN;
+	}
+
+}
@@ -0,0 +1,449 @@
+package open.ddo.android.persistencia;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+
+/**
+ * Analisador de fragmentos SQL ('where', 'order by' e 'group by') de uma
+ * entidade.<br/>
+ *
+ * Percorre o texto uma única vez, reconhecendo literais, identificadores
+ * (entre aspas ou não), números, comentários, parênteses, funções e
+ * parâmetros (<tt>?</tt>), e:
+ * <ul>
+ *   <li>troca os nomes dos atributos pelos nomes das colunas (exceto em
+ *   literais, nomes de funções e identificadores qualificados);</li>
+ *   <li>identifica a coluna de cada parâmetro, inclusive em
+ *   <tt>a=?</tt>, <tt>? = a</tt>, <tt>a in (?, ?)</tt>,
+ *   <tt>a between ? and ?</tt> e <tt>lower(a) like ?</tt>;</li>
+ *   <li>identifica as tabelas das subconsultas (após <tt>from</tt> e 
+ *   <tt>join</tt>), e.g. em <tt>exists (select 1 from outra ...)</tt>.</li>
+ * </ul>
+ *
+ * O texto só é copiado se houver alguma troca. O resultado é guardado em
+ * <tt>ClausulaCompilada</tt>, de forma que cada cláusula é analisada uma
+ * única vez.
+ *
+ * @author ozairjr
+ *
+ */
+public final class AnalisadorClausula {
+
+	// --------------------------------------------------------------
+	// Atributos de classe
+	// --------------------------------------------------------------
+
+	/** Palavras reservadas (não são atributos). */
+	private static final HashSet<String> PALAVRAS_CHAVE = new HashSet<String>(Arrays.asList(
+			"and", "or", "not", "in", "is", "null", "like", "glob", "match", "regexp",
+			"between", "exists", "escape", "collate", "case", "when", "then", "else",
+			"end", "asc", "desc", "as", "cast", "distinct", "select", "from", "where",
+			"group", "order", "by", "having", "limit", "offset", "true", "false",
+			"nulls", "first", "last", "isnull", "notnull", "all", "union", "except",
+			"intersect", "current_date", "current_time", "current_timestamp",
+			"join", "inner", "left", "right", "full", "outer", "cross", "natural",
+			"on", "using"));
+
+	/** Contexto no nível mais externo ou entre parênteses de agrupamento. */
+	private static final int GRUPO = 0;
+	/** Contexto dos argumentos de uma função. */
+	private static final int FUNCAO = 1;
+	/** Contexto da lista de um <tt>in (...)</tt>. */
+	private static final int LISTA_IN = 2;
+
+	// --------------------------------------------------------------
+	// Atributos do objeto
+	// --------------------------------------------------------------
+
+	/** Metadados da entidade (pode ser nulo: não troca os nomes). */
+	private final MetaDadosEntidade<?> metadados;
+	/** Texto analisado. */
+	private final String texto;
+	/** Texto com as trocas (<tt>null</tt> enquanto não houver troca). */
+	private StringBuilder sql = null;
+	/** Posição do texto já copiada para <tt>sql</tt>. */
+	private int copiado = 0;
+	/** Coluna de cada parâmetro (<tt>null</tt> se não identificada). */
+	private final ArrayList<String> colunasParametros = new ArrayList<String>();
+	/** Contexto corrente. */
+	private Contexto contexto = new Contexto(null, GRUPO, null);
+	/** Se o próximo '(' é de uma lista <tt>in</tt>. */
+	private boolean esperaListaIn = false;
+	/** Se o próximo '(' é de uma função. */
+	private boolean esperaFuncao = false;
+	/** Se o próximo identificador é uma tabela (após <tt>from</tt>,
+	 * <tt>join</tt> ou a vírgula da lista do <tt>from</tt>). */
+	private boolean esperaTabela = false;
+	/** Tabelas das subconsultas (em minúsculas). */
+	private final LinkedHashSet<String> tabelas = new LinkedHashSet<String>();
+
+	// --------------------------------------------------------------
+	// Métodos
+	// --------------------------------------------------------------
+
+	/**
+	 * Construtor: analisa o fragmento.
+	 * @param metadados Metadados da entidade (pode ser nulo).
+	 * @param texto Fragmento SQL (pode ser nulo).
+	 */
+	public AnalisadorClausula(MetaDadosEntidade<?> metadados, String texto) {
+		this.metadados = metadados;
+		this.texto = texto;
+		if (texto != null) {
+			analisar();
+		}
+	}
+
+	/**
+	 * Fragmento com os nomes das colunas.
+	 * @return
+	 */
+	public String getSql() {
+		if (sql == null) {
+			return texto;
+		}
+		if (copiado < texto.length()) {
+			sql.append(texto, copiado, texto.length());
+			copiado = texto.length();
+		}
+		return sql.toString();
+	}
+
+	/**
+	 * Quantidade de parâmetros (<tt>?</tt>).
+	 * @return
+	 */
+	public int getQuantidadeParametros() {
+		return colunasParametros.size();
+	}
+
+	/**
+	 * Coluna de cada parâmetro, na ordem do texto.
+	 * @return Os nomes das colunas (item <tt>null</tt> se não
+	 * identificada), ou <tt>null</tt> se não há parâmetros.
+	 */
+	public ArrayList<String> getColunasParametros() {
+		return colunasParametros.isEmpty() ? null : colunasParametros;
+	}
+
+	/**
+	 * Tabelas referenciadas nas subconsultas (após <tt>from</tt> e
+	 * <tt>join</tt>), em minúsculas e sem o esquema.
+	 * @return
+	 */
+	public LinkedHashSet<String> getTabelas() {
+		return tabelas;
+	}
+
+	/**
+	 * Troca os nomes dos atributos pelos nomes das colunas no fragmento
+	 * (e.g., 'order by' ou 'group by').
+	 * @param metadados Metadados da entidade.
+	 * @param fragmento
+	 * @return
+	 */
+	public static String ajustar(MetaDadosEntidade<?> metadados, String fragmento) {
+		return new AnalisadorClausula(metadados, fragmento).getSql();
+	}
+
+	// --------------------------------------------------------------
+	// Métodos auxiliares
+	// --------------------------------------------------------------
+
+	/**
+	 * Percorre o texto.
+	 */
+	private void analisar() {
+		final int n = texto.length();
+		int i = 0;
+		while (i < n) {
+			char c = texto.charAt(i);
+			if (Character.isWhitespace(c)) {
+				i++;
+			} else if (c == '\'') {
+				i = fimDelimitado(i, '\'');
+			} else if (c == '"' || c == '`') {
+				int fim = fimDelimitado(i, c);
+				registrarIdentificador(texto.substring(i + 1, Math.max(i + 1, fim - 1)), i, i);
+				i = fim;
+			} else if (c == '[') {
+				int fim = texto.indexOf(']', i);
+				fim = fim < 0 ? n : fim + 1;
+				registrarIdentificador(texto.substring(i + 1, Math.max(i + 1, fim - 1)), i, i);
+				i = fim;
+			} else if (c == '-' && i + 1 < n && texto.charAt(i + 1) == '-') {
+				int fim = texto.indexOf('\n', i);
+				i = fim < 0 ? n : fim + 1;
+			} else if (c == '/' && i + 1 < n && texto.charAt(i + 1) == '*') {
+				int fim = texto.indexOf("*/", i + 2);
+				i = fim < 0 ? n : fim + 2;
+			} else if (c == '?') {
+				registrarParametro();
+				i++;
+				while (i < n && Character.isDigit(texto.charAt(i))) {
+					i++;
+				}
+			} else if (c == '(') {
+				abrirParenteses();
+				i++;
+			} else if (c == ')') {
+				fecharParenteses();
+				i++;
+			} else if (c == ',') {
+				if (contexto.tipo == GRUPO) {
+					contexto.coluna = null;
+				}
+				esperaTabela = contexto.listaTabelas;
+				i++;
+			} else if (Character.isLetter(c) || c == '_') {
+				int fim = i + 1;
+				while (fim < n) {
+					char d = texto.charAt(fim);
+					if (!Character.isLetterOrDigit(d) && d != '_' && d != '$' && d != '.') {
+						break;
+					}
+					fim++;
+				}
+				palavra(i, fim);
+				i = fim;
+			} else if (Character.isDigit(c) || (c == '.' && i + 1 < n && Character.isDigit(texto.charAt(i + 1)))) {
+				i++;
+				while (i < n) {
+					char d = texto.charAt(i);
+					if (Character.isLetterOrDigit(d) || d == '.') {
+						i++;
+					} else if ((d == '+' || d == '-')
+							&& (texto.charAt(i - 1) == 'e' || texto.charAt(i - 1) == 'E')) {
+						i++;
+					} else {
+						break;
+					}
+				}
+			} else {
+				// Operadores.
+				esperaFuncao = false;
+				i++;
+			}
+		}
+	}
+
+	/**
+	 * Trata a palavra (palavra reservada, função ou identificador).
+	 * @param inicio
+	 * @param fim
+	 */
+	private void palavra(int inicio, int fim) {
+		String palavra = texto.substring(inicio, fim);
+		String minuscula = palavra.toLowerCase(Locale.US);
+		if (PALAVRAS_CHAVE.contains(minuscula)) {
+			esperaFuncao = false;
+			if (!"as".equals(minuscula)) {
+				contexto.listaTabelas = false;
+			}
+			if ("from".equals(minuscula) || "join".equals(minuscula)) {
+				esperaTabela = true;
+			} else if ("in".equals(minuscula)) {
+				esperaListaIn = true;
+			} else if ("between".equals(minuscula)) {
+				contexto.entre++;
+			} else if ("and".equals(minuscula)) {
+				if (contexto.entre > 0) {
+					contexto.entre--;
+				} else {
+					conector();
+				}
+			} else if ("or".equals(minuscula)) {
+				conector();
+			} else if ("select".equals(minuscula) && contexto.tipo == LISTA_IN) {
+				// Subconsulta: a lista não é de valores da coluna.
+				contexto.tipo = GRUPO;
+				contexto.coluna = null;
+			}
+			return;
+		}
+		int j = fim;
+		while (j < texto.length() && Character.isWhitespace(texto.charAt(j))) {
+			j++;
+		}
+		if (j < texto.length() && texto.charAt(j) == '(') {
+			// Nome de função.
+			esperaFuncao = true;
+			return;
+		}
+		registrarIdentificador(palavra, inicio, fim);
+	}
+
+	/**
+	 * Registra a referência a uma coluna (ou atributo), trocando o nome do
+	 * atributo pelo da coluna.
+	 * @param nome Nome (sem aspas).
+	 * @param inicio Início no texto (para a troca).
+	 * @param fim Fim no texto (igual a <tt>inicio</tt> se não deve ser
+	 * trocado).
+	 */
+	private void registrarIdentificador(String nome, int inicio, int fim) {
+		esperaFuncao = false;
+		if (esperaTabela) {
+			// Tabela (possivelmente 'esquema.tabela'): não é coluna.
+			esperaTabela = false;
+			contexto.listaTabelas = true;
+			tabelas.add(nome.substring(nome.lastIndexOf('.') + 1).toLowerCase(Locale.US));
+			return;
+		}
+		String coluna = null;
+		int ponto = nome.lastIndexOf('.');
+		if (ponto >= 0) {
+			// Qualificado (tabela.coluna): não é trocado.
+			nome = nome.substring(ponto + 1);
+			fim = inicio;
+		}
+		if (metadados != null) {
+			coluna = metadados.obterNomeColuna(nome);
+			if (coluna != null && fim > inicio && !coluna.equals(nome)) {
+				trocar(inicio, fim, coluna);
+			}
+		}
+		definirColuna(coluna != null ? coluna : nome);
+	}
+
+	/**
+	 * Registra o parâmetro, com a coluna do contexto (ou pendente, se a
+	 * coluna vier depois: <tt>? = coluna</tt>).
+	 */
+	private void registrarParametro() {
+		esperaFuncao = false;
+		colunasParametros.add(contexto.coluna);
+		if (contexto.coluna == null) {
+			if (contexto.pendentes == null) {
+				contexto.pendentes = new ArrayList<Integer>(2);
+			}
+			contexto.pendentes.add(Integer.valueOf(colunasParametros.size() - 1));
+		}
+	}
+
+	/**
+	 * Define a coluna corrente do contexto, resolvendo os parâmetros
+	 * pendentes.
+	 * @param coluna
+	 */
+	private void definirColuna(String coluna) {
+		if (contexto.tipo == LISTA_IN) {
+			return;
+		}
+		contexto.coluna = coluna;
+		if (contexto.pendentes != null) {
+			for (Integer indice: contexto.pendentes) {
+				colunasParametros.set(indice.intValue(), coluna);
+			}
+			contexto.pendentes = null;
+		}
+	}
+
+	/**
+	 * Conector lógico (<tt>and</tt>/<tt>or</tt>): inicia nova comparação.
+	 */
+	private void conector() {
+		contexto.coluna = null;
+		contexto.pendentes = null;
+	}
+
+	/**
+	 * Abre o contexto do parênteses (lista <tt>in</tt>, função ou grupo).
+	 */
+	private void abrirParenteses() {
+		if (esperaListaIn) {
+			contexto = new Contexto(contexto, LISTA_IN, contexto.coluna);
+		} else if (esperaFuncao) {
+			contexto = new Contexto(contexto, FUNCAO, null);
+		} else {
+			contexto = new Contexto(contexto, GRUPO, null);
+		}
+		esperaListaIn = false;
+		esperaFuncao = false;
+		esperaTabela = false;
+	}
+
+	/**
+	 * Fecha o contexto do parênteses.
+	 */
+	private void fecharParenteses() {
+		Contexto interno = contexto;
+		if (interno.pai == null) {
+			return;
+		}
+		contexto = interno.pai;
+		// O valor da função (ou do grupo) corresponde à sua coluna, e.g.
+		// 'lower(nome) like ?'.
+		if (interno.tipo != LISTA_IN && interno.coluna != null) {
+			definirColuna(interno.coluna);
+		}
+	}
+
+	/**
+	 * Fim (exclusivo) do trecho delimitado (literal ou identificador entre
+	 * aspas), considerando o delimitador duplicado como escape.
+	 * @param inicio Posição do delimitador inicial.
+	 * @param delimitador
+	 * @return
+	 */
+	private int fimDelimitado(int inicio, char delimitador) {
+		final int n = texto.length();
+		int i = inicio + 1;
+		while (i < n) {
+			if (texto.charAt(i) == delimitador) {
+				if (i + 1 < n && texto.charAt(i + 1) == delimitador) {
+					i += 2;
+					continue;
+				}
+				return i + 1;
+			}
+			i++;
+		}
+		return n;
+	}
+
+	/**
+	 * Troca o trecho do texto.
+	 * @param inicio
+	 * @param fim
+	 * @param valor
+	 */
+	private void trocar(int inicio, int fim, String valor) {
+		if (sql == null) {
+			sql = new StringBuilder(texto.length() + 16);
+		}
+		sql.append(texto, copiado, inicio).append(valor);
+		copiado = fim;
+	}
+
+	// --------------------------------------------------------------
+	// Classes internas
+	// --------------------------------------------------------------
+
+	/**
+	 * Contexto de um nível de parênteses.
+	 */
+	private static final class Contexto {
+		/** Contexto externo. */
+		final Contexto pai;
+		/** Tipo (<tt>GRUPO</tt>, <tt>FUNCAO</tt> ou <tt>LISTA_IN</tt>). */
+		int tipo;
+		/** Coluna da comparação corrente. */
+		String coluna;
+		/** Parâmetros aguardando a coluna. */
+		ArrayList<Integer> pendentes;
+		/** Quantidade de <tt>between</tt> aguardando o <tt>and</tt>. */
+		int entre;
+		/** Se está na lista de tabelas de um <tt>from</tt>. */
+		boolean listaTabelas;
+
+		Contexto(Contexto pai, int tipo, String coluna) {
+			this.pai = pai;
+			this.tipo = tipo;
+			this.coluna = coluna;
+		}
+	}
+}
@@ -7,6 +7,7 @@ import open.ddo.android.persistencia.anotacao.Chave;
 import open.ddo.android.persistencia.anotacao.Coluna;
 import open.ddo.android.persistencia.anotacao.Data;
 import open.ddo.android.persistencia.anotacao.Enumeracao;
+import open.ddo.android.util.AcessorAtributo;
 import open.ddo.android.util.FormatoData;
 
 /**
@@ -40,6 +41,13 @@ public class AtributoEntidade {
 	 * para considerar como string (<tt>Enum.name()</tt>).<br/>
 	 * Se for data, é uma instância de <tt>FormatoData</tt>. */
 	public final Object formato;
+	/** Conversor entre o valor da coluna e o tipo do atributo. */
+	public final ConversorColuna conversor;
+	/** Acessor do atributo (via mapeador gerado, se houver, senão via
+	 * reflexão). */
+	AcessorAtributo acessor;
+	/** Índice do atributo no mapeador gerado. */
+	int indiceGerado = -1;
 	
 	// --------------------------------------------------------------
 	// Métodos
@@ -57,6 +65,8 @@ public class AtributoEntidade {
 				(chave.autoincremento() ? 2 : 1)
 				: 0);
 		formato = obterFormato(f);
+		conversor = ConversorColuna.obter(f.getType(), formato);
+		acessor = AcessorAtributo.criar(f);
 	}
 	
 	/**
@@ -75,6 +85,32 @@ public class AtributoEntidade {
 		return chavePrimaria == 2;
 	}
 	
+	/**
+	 * Acessor do atributo.
+	 * @return
+	 */
+	public AcessorAtributo getAcessor() {
+		return acessor;
+	}
+	
+	/**
+	 * Obtém o valor do atributo no objeto.
+	 * @param obj
+	 * @return
+	 */
+	public Object obterValor(Object obj) {
+		return acessor.getObject(obj);
+	}
+	
+	/**
+	 * Atribui o valor (já no tipo do atributo) ao atributo do objeto.
+	 * @param obj
+	 * @param valor
+	 */
+	public void definirValor(Object obj, Object valor) {
+		acessor.set(obj, valor);
+	}
+	
 	/**
 	 * Obtém o nome da coluna do atributo.
 	 * @param f
@@ -107,7 +143,7 @@ public class AtributoEntidade {
 	 * @param f
 	 * @return
 	 */
-	private static Object obterFormato(Field f) {
+	static Object obterFormato(Field f) {
 		Object formato = null;
 		if (f.getType().isEnum()) {
 			formato = (f.isAnnotationPresent(Enumeracao.class)
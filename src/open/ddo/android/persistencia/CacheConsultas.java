@@ -0,0 +1,371 @@
+package open.ddo.android.persistencia;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache (de todo o processo) dos resultados de pesquisas das entidades
+ * anotadas com <tt>@Tabela(cacheConsultas = true)</tt>.<br/>
+ *
+ * Cada resultado é guardado pelo SQL normalizado e pelos argumentos
+ * (já convertidos), junto com a versão de cada tabela lida pela pesquisa
+ * (a da entidade e as das subconsultas da cláusula) no momento da
+ * pesquisa. Toda gravação de <tt>AbstractDAO</tt> em uma tabela
+ * incrementa a sua versão, invalidando os resultados que dependem dela. Os resultados são
+ * guardados como cópias dos valores das colunas (cada acerto gera novas
+ * instâncias), e o total de linhas em cache é limitado: ao ser atingido,
+ * os resultados menos utilizados recentemente são descartados.
+ *
+ * @author ozairjr
+ *
+ */
+public final class CacheConsultas {
+
+	// --------------------------------------------------------------
+	// Atributos de classe
+	// --------------------------------------------------------------
+
+	/** Limite padrão do total de linhas em cache. */
+	public static final int LIMITE_LINHAS_PADRAO = 2000;
+
+	/** Versões das tabelas (nome em minúsculas). */
+	private static final HashMap<String, AtomicLong> VERSOES = 
+			new HashMap<String, AtomicLong>();
+	/** Resultados, pela chave (SQL e argumentos), em ordem de acesso. */
+	private static final LinkedHashMap<String, Entrada> ENTRADAS = 
+			new LinkedHashMap<String, Entrada>(16, 0.75f, true);
+	/** Limite do total de linhas em cache. */
+	private static int limiteLinhas = LIMITE_LINHAS_PADRAO;
+	/** Total de linhas em cache. */
+	private static int totalLinhas = 0;
+	/** Quantidade de acertos. */
+	private static final AtomicLong ACERTOS = new AtomicLong();
+	/** Quantidade de falhas (não encontrado ou invalidado). */
+	private static final AtomicLong FALHAS = new AtomicLong();
+	/** Quantidade de descartes (pelo limite de linhas). */
+	private static final AtomicLong DESCARTES = new AtomicLong();
+
+	// --------------------------------------------------------------
+	// Métodos
+	// --------------------------------------------------------------
+
+	/**
+	 * Construtor (classe utilitária).
+	 */
+	private CacheConsultas() {
+	}
+
+	/**
+	 * Obtém a versão atual da tabela.
+	 * @param nomeTabela
+	 * @return
+	 */
+	public static long getVersao(String nomeTabela) {
+		return versao(nomeTabela).get();
+	}
+
+	/**
+	 * Obtém as versões atuais das tabelas.
+	 * @param tabelas
+	 * @return As versões, ou <tt>null</tt> se <tt>tabelas</tt> for nulo.
+	 */
+	public static long[] getVersoes(String[] tabelas) {
+		if (tabelas == null) {
+			return null;
+		}
+		long[] versoes = new long[tabelas.length];
+		for (int i=0; i < tabelas.length; i++) {
+			versoes[i] = getVersao(tabelas[i]);
+		}
+		return versoes;
+	}
+
+	/**
+	 * Incrementa a versão da tabela, invalidando os resultados que
+	 * dependem dela.
+	 * @param nomeTabela
+	 */
+	public static void invalidar(String nomeTabela) {
+		if (nomeTabela != null) {
+			versao(nomeTabela).incrementAndGet();
+		}
+	}
+
+	/**
+	 * Monta a chave do resultado: tabela, SQL (com espaços normalizados)
+	 * e argumentos.
+	 * @param nomeTabela Nome da tabela.
+	 * @param sql SQL ou cláusula da pesquisa.
+	 * @param argumentos Argumentos (convertidos).
+	 * @return
+	 */
+	public static String montarChave(String nomeTabela, String sql, String[] argumentos) {
+		StringBuilder builder = new StringBuilder(nomeTabela.toLowerCase());
+		builder.append('\u0000');
+		if (sql != null) {
+			boolean espaco = false;
+			boolean literal = false;
+			for (int i=0; i < sql.length(); i++) {
+				char c = sql.charAt(i);
+				if (c == '\'') {
+					literal = !literal;
+				}
+				if (!literal && Character.isWhitespace(c)) {
+					espaco = true;
+					continue;
+				}
+				if (espaco && builder.length() > 0
+						&& builder.charAt(builder.length() - 1) != '\u0000') {
+					builder.append(' ');
+				}
+				espaco = false;
+				builder.append(c);
+			}
+		}
+		if (argumentos != null) {
+			for (String argumento: argumentos) {
+				builder.append('\u0000');
+				builder.append(argumento);
+			}
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Obtém o resultado em cache (se a tabela não foi alterada desde
+	 * que foi guardado), criando novas instâncias.
+	 * @param metadados Metadados da entidade.
+	 * @param chave Chave (veja <tt>montarChave</tt>).
+	 * @return O resultado, ou <tt>null</tt> se não estiver em cache.
+	 */
+	public static <T> ArrayList<T> obter(MetaDadosEntidade<T> metadados, String chave) {
+		Object[][] linhas;
+		synchronized (ENTRADAS) {
+			Entrada entrada = ENTRADAS.get(chave);
+			if (entrada == null) {
+				FALHAS.incrementAndGet();
+				return null;
+			}
+			if (entrada.versao != getVersao(metadados.nomeTabela)
+					|| !entrada.isOutrasTabelasAtuais()) {
+				remover(chave);
+				FALHAS.incrementAndGet();
+				return null;
+			}
+			entrada.acertos++;
+			linhas = entrada.linhas;
+		}
+		ACERTOS.incrementAndGet();
+		ArrayList<T> lista = new ArrayList<T>(linhas.length);
+		for (Object[] valores: linhas) {
+			lista.add(metadados.criarComValores(valores));
+		}
+		return lista;
+	}
+
+	/**
+	 * Guarda o resultado da pesquisa.
+	 * @param metadados Metadados da entidade.
+	 * @param chave Chave (veja <tt>montarChave</tt>).
+	 * @param versao Versão da tabela obtida <b>antes</b> da pesquisa.
+	 * @param lista Resultado.
+	 */
+	public static void colocar(MetaDadosEntidade<?> metadados, String chave, long versao, 
+			List<?> lista) {
+		colocar(metadados, chave, versao, null, null, lista);
+	}
+
+	/**
+	 * Guarda o resultado da pesquisa que também lê outras tabelas (veja
+	 * <tt>ClausulaCompilada.outrasTabelas</tt>).
+	 * @param metadados Metadados da entidade.
+	 * @param chave Chave (veja <tt>montarChave</tt>).
+	 * @param versao Versão da tabela obtida <b>antes</b> da pesquisa.
+	 * @param outrasTabelas Outras tabelas lidas (pode ser nulo).
+	 * @param versoesOutras Versões das outras tabelas (veja 
+	 * <tt>getVersoes</tt>) obtidas <b>antes</b> da pesquisa.
+	 * @param lista Resultado.
+	 */
+	public static void colocar(MetaDadosEntidade<?> metadados, String chave, long versao, 
+			String[] outrasTabelas, long[] versoesOutras, List<?> lista) {
+		if (lista.size() > limiteLinhas) {
+			return;
+		}
+		Object[][] linhas = new Object[lista.size()][];
+		for (int i=0; i < linhas.length; i++) {
+			linhas[i] = metadados.copiarValores(lista.get(i));
+		}
+		synchronized (ENTRADAS) {
+			remover(chave);
+			ENTRADAS.put(chave, new Entrada(versao, outrasTabelas, versoesOutras, linhas));
+			totalLinhas += linhas.length;
+			// Descartando os menos utilizados recentemente.
+			Iterator<Entrada> it = ENTRADAS.values().iterator();
+			while (totalLinhas > limiteLinhas && it.hasNext()) {
+				Entrada descartada = it.next();
+				totalLinhas -= descartada.linhas.length;
+				it.remove();
+				DESCARTES.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Limpa o cache.
+	 */
+	public static void limpar() {
+		synchronized (ENTRADAS) {
+			ENTRADAS.clear();
+			totalLinhas = 0;
+		}
+	}
+
+	/**
+	 * Define o limite do total de linhas em cache.
+	 * @param limite
+	 */
+	public static void setLimiteLinhas(int limite) {
+		synchronized (ENTRADAS) {
+			limiteLinhas = limite;
+			if (totalLinhas > limiteLinhas) {
+				limpar();
+			}
+		}
+	}
+
+	/**
+	 * Limite do total de linhas em cache.
+	 * @return
+	 */
+	public static int getLimiteLinhas() {
+		return limiteLinhas;
+	}
+
+	/**
+	 * Total de linhas em cache.
+	 * @return
+	 */
+	public static int getTotalLinhas() {
+		synchronized (ENTRADAS) {
+			return totalLinhas;
+		}
+	}
+
+	/**
+	 * Quantidade de acertos.
+	 * @return
+	 */
+	public static long getAcertos() {
+		return ACERTOS.get();
+	}
+
+	/**
+	 * Quantidade de falhas (não encontrados ou invalidados).
+	 * @return
+	 */
+	public static long getFalhas() {
+		return FALHAS.get();
+	}
+
+	/**
+	 * Quantidade de resultados descartados pelo limite de linhas.
+	 * @return
+	 */
+	public static long getDescartes() {
+		return DESCARTES.get();
+	}
+
+	/**
+	 * Quantidade de acertos de cada resultado em cache.
+	 * @return Mapa (chave do resultado, acertos).
+	 */
+	public static LinkedHashMap<String, Integer> getAcertosPorConsulta() {
+		LinkedHashMap<String, Integer> acertos = new LinkedHashMap<String, Integer>();
+		synchronized (ENTRADAS) {
+			for (Map.Entry<String, Entrada> e: ENTRADAS.entrySet()) {
+				acertos.put(e.getKey().replace('\u0000', '|'), e.getValue().acertos);
+			}
+		}
+		return acertos;
+	}
+
+	// --------------------------------------------------------------
+	// Métodos auxiliares
+	// --------------------------------------------------------------
+
+	/**
+	 * Versão da tabela (criada na primeira vez).
+	 * @param nomeTabela
+	 * @return
+	 */
+	private static AtomicLong versao(String nomeTabela) {
+		String nome = nomeTabela.toLowerCase();
+		synchronized (VERSOES) {
+			AtomicLong versao = VERSOES.get(nome);
+			if (versao == null) {
+				versao = new AtomicLong();
+				VERSOES.put(nome, versao);
+			}
+			return versao;
+		}
+	}
+
+	/**
+	 * Remove a entrada (com o bloqueio de <tt>ENTRADAS</tt>).
+	 * @param chave
+	 */
+	private static void remover(String chave) {
+		Entrada entrada = ENTRADAS.remove(chave);
+		if (entrada != null) {
+			totalLinhas -= entrada.linhas.length;
+		}
+	}
+
+	// --------------------------------------------------------------
+	// Classes internas
+	// --------------------------------------------------------------
+
+	/**
+	 * Resultado em cache.
+	 */
+	private static final class Entrada {
+		/** Versão da tabela quando o resultado foi obtido. */
+		final long versao;
+		/** Outras tabelas lidas pela pesquisa (ou <tt>null</tt>). */
+		final String[] outrasTabelas;
+		/** Versões das outras tabelas quando o resultado foi obtido. */
+		final long[] versoesOutras;
+		/** Valores das colunas de cada linha. */
+		final Object[][] linhas;
+		/** Quantidade de acertos. */
+		int acertos = 0;
+
+		Entrada(long versao, String[] outrasTabelas, long[] versoesOutras, 
+				Object[][] linhas) {
+			this.versao = versao;
+			this.outrasTabelas = outrasTabelas;
+			this.versoesOutras = versoesOutras;
+			this.linhas = linhas;
+		}
+
+		/**
+		 * Verifica se as outras tabelas não foram alteradas desde a pesquisa.
+		 * @return
+		 */
+		boolean isOutrasTabelasAtuais() {
+			if (outrasTabelas != null) {
+				for (int i=0; i < outrasTabelas.length; i++) {
+					if (versoesOutras[i] != getVersao(outrasTabelas[i])) {
+						return false;
+					}
+				}
+			}
+			return true;
+		}
+	}
+}
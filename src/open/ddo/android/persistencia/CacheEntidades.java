@@ -0,0 +1,307 @@
+package open.ddo.android.persistencia;
+
+import java.util.HashMap;
+import java.util.List;
+
+import open.ddo.android.persistencia.anotacao.Cache;
+import open.ddo.android.util.MapaLRU;
+
+/**
+ * Cache (de todo o processo) dos registros de uma entidade anotada com
+ * <tt>@Cache</tt>, pela chave.<br/>
+ *
+ * O cache guarda uma cópia dos valores das colunas (no formato do B.D.),
+ * e não a instância: cada acerto gera uma nova instância, de forma que
+ * alterações em objetos carregados não afetam o cache. As operações de
+ * <tt>AbstractDAO</tt> (inserir, atualizar, inserirOuAtualizar e remover)
+ * atualizam ou retiram o registro, e as operações 'nativas' sobre a tabela
+ * limpam todo o cache da tabela.<br/>
+ *
+ * Cada registro guarda a versão da tabela (veja
+ * <tt>CacheConsultas.getVersao</tt>) em que foi lido ou gravado: o
+ * resultado de uma pesquisa só é guardado se a tabela não foi alterada
+ * desde antes da pesquisa, de forma que uma leitura concorrente a uma
+ * gravação não recoloca no cache o estado anterior do registro.
+ *
+ * @author ozairjr
+ *
+ * @param <T> Entidade.
+ */
+public class CacheEntidades<T> {
+
+	// --------------------------------------------------------------
+	// Atributos de classe
+	// --------------------------------------------------------------
+
+	/** Caches das entidades, pela classe. */
+	private static final HashMap<Class<?>, CacheEntidades<?>> CACHES =
+			new HashMap<Class<?>, CacheEntidades<?>>();
+	/** Caches das entidades, pelo nome da tabela (em minúsculas). Os
+	 * vetores não são alterados (são substituídos, com o bloqueio de
+	 * <tt>CACHES</tt>). */
+	private static volatile HashMap<String, CacheEntidades<?>[]> cachesPorTabela =
+			new HashMap<String, CacheEntidades<?>[]>();
+
+	// --------------------------------------------------------------
+	// Atributos do objeto
+	// --------------------------------------------------------------
+
+	/** Metadados da entidade. */
+	private final MetaDadosEntidade<T> metadados;
+	/** Registros, pela identidade (veja
+	 * <tt>PlanoChave.montarIdentidade</tt>). As alterações são feitas
+	 * com o bloqueio do cache. */
+	private final MapaLRU<List<Object>, Registro> registros;
+
+	// --------------------------------------------------------------
+	// Métodos
+	// --------------------------------------------------------------
+
+	/**
+	 * Construtor.
+	 * @param metadados Metadados da entidade.
+	 * @param tamanho Quantidade máxima de registros.
+	 */
+	private CacheEntidades(MetaDadosEntidade<T> metadados, int tamanho) {
+		this.metadados = metadados;
+		this.registros = new MapaLRU<List<Object>, Registro>(tamanho);
+	}
+
+	/**
+	 * Obtém o cache da entidade.
+	 * @param metadados Metadados da entidade.
+	 * @return O cache, ou <tt>null</tt> se a entidade não é anotada com
+	 * <tt>@Cache</tt> (ou não possui chave).
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> CacheEntidades<T> getCache(MetaDadosEntidade<T> metadados) {
+		Class<T> classe = metadados.classe;
+		if (!classe.isAnnotationPresent(Cache.class)
+				|| metadados.getChaves().length == 0) {
+			return null;
+		}
+		synchronized (CACHES) {
+			CacheEntidades<T> cache = (CacheEntidades<T>) CACHES.get(classe);
+			if (cache == null) {
+				cache = new CacheEntidades<T>(
+						metadados,
+						classe.getAnnotation(Cache.class).tamanho());
+				CACHES.put(classe, cache);
+				if (metadados.nomeTabela != null) {
+					indexarPorTabela(cache);
+				}
+			}
+			return cache;
+		}
+	}
+
+	/**
+	 * Limpa os caches das entidades da tabela informada.
+	 * @param nomeTabela
+	 */
+	public static void limparTabela(String nomeTabela) {
+		if (nomeTabela == null) {
+			return;
+		}
+		CacheEntidades<?>[] caches = cachesPorTabela.get(nomeTabela.toLowerCase());
+		if (caches != null) {
+			for (CacheEntidades<?> cache: caches) {
+				cache.limpar();
+			}
+		}
+	}
+
+	/**
+	 * Limpa os caches de todas as entidades.
+	 */
+	public static void limparTodos() {
+		synchronized (CACHES) {
+			for (CacheEntidades<?> cache: CACHES.values()) {
+				cache.limpar();
+			}
+		}
+	}
+
+	/**
+	 * Obtém uma nova instância com os valores do registro da chave.
+	 * @param valoresChave Valores da chave (veja
+	 * <tt>PlanoChave.extrairValores</tt>).
+	 * @return A instância, ou <tt>null</tt> se o registro não está no cache.
+	 */
+	public T obter(Object[] valoresChave) {
+		Registro registro = registros.obter(PlanoChave.montarIdentidade(valoresChave));
+		if (registro == null) {
+			return null;
+		}
+		return metadados.criarComValores(registro.valores);
+	}
+
+	/**
+	 * Coloca (ou atualiza) no cache o registro com os valores do objeto
+	 * gravado (após a gravação), na versão atual da tabela. Se o registro
+	 * em cache tem a mesma versão (ou posterior), foi colocado por uma
+	 * gravação concorrente, e não é possível saber qual é o estado mais
+	 * recente: o registro é retirado.
+	 * @param obj Objeto entidade.
+	 */
+	public void colocar(Object obj) {
+		List<Object> identidade = identidade(obj);
+		Object[] valores = metadados.copiarValores(obj);
+		synchronized (this) {
+			long versao = CacheConsultas.getVersao(metadados.nomeTabela);
+			Registro atual = registros.consultar(identidade);
+			if (atual != null && atual.versao >= versao) {
+				registros.remover(identidade);
+			} else {
+				registros.colocar(identidade, new Registro(versao, valores));
+			}
+		}
+	}
+
+	/**
+	 * Coloca no cache o registro com os valores do objeto lido do B.D.,
+	 * se a tabela não foi alterada desde antes da pesquisa.
+	 * @param obj Objeto entidade.
+	 * @param versao Versão da tabela obtida <b>antes</b> da pesquisa.
+	 */
+	public void colocar(Object obj, long versao) {
+		if (CacheConsultas.getVersao(metadados.nomeTabela) != versao) {
+			return;
+		}
+		List<Object> identidade = identidade(obj);
+		Object[] valores = metadados.copiarValores(obj);
+		synchronized (this) {
+			// Verificando novamente, com o bloqueio: uma gravação posterior
+			// à verificação retira o registro depois de incrementar a versão.
+			if (CacheConsultas.getVersao(metadados.nomeTabela) == versao) {
+				registros.colocar(identidade, new Registro(versao, valores));
+			}
+		}
+	}
+
+	/**
+	 * Retira do cache o registro da chave do objeto.
+	 * @param obj Objeto entidade.
+	 */
+	public void remover(Object obj) {
+		List<Object> identidade = identidade(obj);
+		synchronized (this) {
+			registros.remover(identidade);
+		}
+	}
+
+	/**
+	 * Retira do cache o registro da chave informada (e.g. a chave 
+	 * anterior de um registro cuja chave foi alterada).
+	 * @param valoresChave Valores da chave (veja
+	 * <tt>PlanoChave.extrairValores</tt>).
+	 */
+	public void removerPelaChave(Object[] valoresChave) {
+		List<Object> identidade = PlanoChave.montarIdentidade(valoresChave);
+		synchronized (this) {
+			registros.remover(identidade);
+		}
+	}
+
+	/**
+	 * Limpa o cache.
+	 */
+	public void limpar() {
+		synchronized (this) {
+			registros.limpar();
+		}
+	}
+
+	/**
+	 * Quantidade de registros no cache.
+	 * @return
+	 */
+	public int getTamanho() {
+		return registros.tamanho();
+	}
+
+	/**
+	 * Quantidade de pesquisas encontradas no cache.
+	 * @return
+	 */
+	public long getAcertos() {
+		return registros.getAcertos();
+	}
+
+	/**
+	 * Quantidade de pesquisas não encontradas no cache.
+	 * @return
+	 */
+	public long getFalhas() {
+		return registros.getFalhas();
+	}
+
+	/**
+	 * Quantidade de registros descartados pelo limite de tamanho.
+	 * @return
+	 */
+	public long getDescartes() {
+		return registros.getDescartes();
+	}
+
+	@Override
+	public String toString() {
+		return "CacheEntidades[" + metadados.classe.getName()
+				+ ", " + registros + "]";
+	}
+
+	// --------------------------------------------------------------
+	// Métodos auxiliares
+	// --------------------------------------------------------------
+
+	/**
+	 * Identidade do registro do objeto.
+	 * @param obj
+	 * @return
+	 */
+	private List<Object> identidade(Object obj) {
+		return PlanoChave.montarIdentidade(metadados.getPlanoChave().extrairValores(obj));
+	}
+
+	/**
+	 * Inclui o cache no índice pelo nome da tabela (com o bloqueio de
+	 * <tt>CACHES</tt>).
+	 * @param cache
+	 */
+	private static void indexarPorTabela(CacheEntidades<?> cache) {
+		String nome = cache.metadados.nomeTabela.toLowerCase();
+		HashMap<String, CacheEntidades<?>[]> indice =
+				new HashMap<String, CacheEntidades<?>[]>(cachesPorTabela);
+		CacheEntidades<?>[] anteriores = indice.get(nome);
+		CacheEntidades<?>[] caches;
+		if (anteriores == null) {
+			caches = new CacheEntidades<?>[] { cache };
+		} else {
+			caches = new CacheEntidades<?>[anteriores.length + 1];
+			System.arraycopy(anteriores, 0, caches, 0, anteriores.length);
+			caches[anteriores.length] = cache;
+		}
+		indice.put(nome, caches);
+		cachesPorTabela = indice;
+	}
+
+	// --------------------------------------------------------------
+	// Classes internas
+	// --------------------------------------------------------------
+
+	/**
+	 * Registro em cache.
+	 */
+	private static final class Registro {
+
+		/** Versão da tabela em que o registro foi lido ou gravado. */
+		final long versao;
+		/** Valores das colunas (no formato do B.D.). */
+		final Object[] valores;
+
+		Registro(long versao, Object[] valores) {
+			this.versao = versao;
+			this.valores = valores;
+		}
+	}
+}
@@ -0,0 +1,67 @@
+package open.ddo.android.persistencia;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * Carregador de um relacionamento tardio (veja <tt>Referencia</tt>),
+ * compartilhado pelas entidades de um mesmo resultado de pesquisa: na
+ * primeira carga, o relacionamento de todas as entidades pendentes é
+ * carregado de uma vez.<br/>
+ *
+ * Mantém as entidades do resultado até a carga.
+ *
+ * @author ozairjr
+ *
+ */
+class CarregadorLote {
+
+	// --------------------------------------------------------------
+	// Atributos do objeto
+	// --------------------------------------------------------------
+
+	/** DAO da pesquisa. */
+	private final AbstractDAO dao;
+	/** Relacionamento carregado. */
+	private final RelacionamentoEntidade relacionamento;
+	/** Entidades pendentes (<tt>null</tt> após a carga). */
+	private ArrayList<Object> pendentes;
+
+	// --------------------------------------------------------------
+	// Métodos
+	// --------------------------------------------------------------
+
+	/**
+	 * Construtor.
+	 * @param dao DAO da pesquisa.
+	 * @param relacionamento Relacionamento.
+	 * @param objetos Entidades do resultado.
+	 */
+	CarregadorLote(AbstractDAO dao, RelacionamentoEntidade relacionamento,
+			Collection<?> objetos) {
+		this.dao = dao;
+		this.relacionamento = relacionamento;
+		this.pendentes = new ArrayList<Object>(objetos);
+	}
+
+	/**
+	 * Carrega o relacionamento das entidades ainda pendentes (as que não
+	 * tiveram a referência atribuída ou substituída).
+	 */
+	synchronized void carregar() {
+		if (pendentes == null) {
+			return;
+		}
+		ArrayList<Object> objetos = new ArrayList<Object>(pendentes.size());
+		for (Object obj: pendentes) {
+			Referencia<?> referencia = relacionamento.obterReferencia(obj);
+			if (referencia != null && referencia.isPendente(this)) {
+				objetos.add(obj);
+			}
+		}
+		if (!objetos.isEmpty()) {
+			dao.carregarRelacionamento(relacionamento, objetos);
+		}
+		pendentes = null;
+	}
+}
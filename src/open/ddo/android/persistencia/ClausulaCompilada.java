@@ -0,0 +1,155 @@
+package open.ddo.android.persistencia;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+
+import open.ddo.android.persistencia.excecao.DAOException;
+import open.ddo.android.util.ObjectUtil;
+
+/**
+ * Cláusula 'where' de uma entidade já 'compilada': o SQL com os nomes dos
+ * atributos trocados pelos nomes das colunas e o atributo (formato) de
+ * cada parâmetro (<tt>?</tt>).<br/>
+ *
+ * É montada uma única vez para cada entidade e cláusula (veja
+ * <tt>MetaDadosEntidade.getClausula</tt> e <tt>AnalisadorClausula</tt>),
+ * de forma que as pesquisas repetidas não analisam novamente o texto da
+ * cláusula nem procuram os atributos pelo nome.
+ *
+ * @author ozairjr
+ *
+ */
+public class ClausulaCompilada {
+
+	// --------------------------------------------------------------
+	// Atributos do objeto
+	// --------------------------------------------------------------
+
+	/** Cláusula original. */
+	public final String original;
+	/** Cláusula com os nomes das colunas (SQL). */
+	public final String sql;
+	/** Coluna de cada parâmetro (<tt>null</tt> se a cláusula não possui
+	 * parâmetros). */
+	private final String[] colunas;
+	/** Atributo de cada parâmetro (<tt>null</tt> se a coluna não foi
+	 * identificada ou não é da entidade). */
+	private final AtributoEntidade[] parametros;
+	/** Outras tabelas (além da tabela da entidade) lidas pela cláusula,
+	 * em subconsultas, ou <tt>null</tt> se não houver. */
+	public final String[] outrasTabelas;
+
+	// --------------------------------------------------------------
+	// Métodos
+	// --------------------------------------------------------------
+
+	/**
+	 * Construtor.
+	 * @param original Cláusula original.
+	 * @param sql Cláusula com os nomes das colunas.
+	 * @param colunas Coluna de cada parâmetro.
+	 * @param parametros Atributo de cada parâmetro.
+	 * @param outrasTabelas Outras tabelas lidas pela cláusula.
+	 */
+	private ClausulaCompilada(String original, String sql, String[] colunas,
+			AtributoEntidade[] parametros, String[] outrasTabelas) {
+		this.original = original;
+		this.sql = sql;
+		this.colunas = colunas;
+		this.parametros = parametros;
+		this.outrasTabelas = outrasTabelas;
+	}
+
+	/**
+	 * Compila a cláusula para a entidade.
+	 * @param metadados Metadados da entidade.
+	 * @param where Cláusula 'where' (pode ser nula).
+	 * @return
+	 */
+	static ClausulaCompilada compilar(MetaDadosEntidade<?> metadados, String where) {
+		AnalisadorClausula analisador = new AnalisadorClausula(metadados, where);
+		String sql = analisador.getSql();
+		ArrayList<String> lista = analisador.getColunasParametros();
+		String[] colunas = null;
+		AtributoEntidade[] parametros = null;
+		if (lista != null) {
+			colunas = lista.toArray(new String[lista.size()]);
+			parametros = new AtributoEntidade[colunas.length];
+			for (int i=0; i < colunas.length; i++) {
+				parametros[i] = metadados.getAtributoPelaColuna(colunas[i]);
+			}
+		}
+		String[] outrasTabelas = null;
+		LinkedHashSet<String> tabelas = analisador.getTabelas();
+		if (metadados.nomeTabela != null) {
+			tabelas.remove(metadados.nomeTabela.toLowerCase(Locale.US));
+		}
+		if (!tabelas.isEmpty()) {
+			outrasTabelas = tabelas.toArray(new String[tabelas.size()]);
+		}
+		return new ClausulaCompilada(where, sql, colunas, parametros, outrasTabelas);
+	}
+
+	/**
+	 * Quantidade de parâmetros (<tt>?</tt>) da cláusula.
+	 * @return
+	 */
+	public int getQuantidadeParametros() {
+		return colunas != null ? colunas.length : 0;
+	}
+
+	/**
+	 * Converte os argumentos para o formato do B.D., conforme o atributo
+	 * de cada parâmetro (como <tt>AbstractDAO.obterArgumentos</tt>).
+	 * @param args Argumentos.
+	 * @return Os argumentos, ou <tt>null</tt> se não informados.
+	 */
+	public String[] argumentos(Object... args) {
+		if (args == null || args.length == 0) {
+			return null;
+		}
+		String[] argumentos = new String[args.length];
+		if (colunas == null) {
+			// Considerando tudo como string.
+			for (int i = 0; i < args.length; i++) {
+				argumentos[i] = String.valueOf(args[i]);
+			}
+			return argumentos;
+		}
+		if (colunas.length != args.length) {
+			throw new DAOException(
+				"H\u00e1 diferen\u00e7a na quantidade entre os '?' da consulta (qtd="
+					+ colunas.length
+					+ ") e os argumentos informados (qtde="
+					+ args.length
+					+ ").");
+		}
+		for (int i=0; i < colunas.length; i++) {
+			argumentos[i] = converterArgumento(parametros[i], args[i]);
+		}
+		return argumentos;
+	}
+
+	/**
+	 * Converte o argumento para a representação gravada no B.D. da coluna
+	 * (datas conforme o <tt>FormatoData</tt>, enumerações pelo ordinal ou
+	 * nome e booleanos como 1/0), de forma que a comparação utilize o
+	 * índice da coluna.
+	 * @param ae Atributo da coluna (pode ser nulo se a coluna não foi
+	 * identificada ou não é da entidade).
+	 * @param valor Argumento.
+	 * @return
+	 */
+	public static String converterArgumento(AtributoEntidade ae, Object valor) {
+		if (valor instanceof Boolean) {
+			return ((Boolean) valor).booleanValue() ? "1" : "0";
+		}
+		return ObjectUtil.toString(valor, ae != null ? ae.formato : null);
+	}
+
+	@Override
+	public String toString() {
+		return "ClausulaCompilada[" + sql + "]";
+	}
+}
@@ -0,0 +1,363 @@
+package open.ddo.android.persistencia;
+
+import java.util.ArrayList;
+
+import open.ddo.android.persistencia.excecao.DAOException;
+
+/**
+ * Montagem 'fluente' de uma consulta da entidade, sem cláusula 'where'
+ * em texto. Exemplo:<br/>
+ *
+ * <blockquote>
+ * <tt>
+ * dao.onde("data").entre(inicio, fim)<br/>
+ * &nbsp;&nbsp;.e("status").igual(Status.ABERTO)<br/>
+ * &nbsp;&nbsp;.ordenar("nome").limite(50)<br/>
+ * &nbsp;&nbsp;.pesquisar();
+ * </tt>
+ * </blockquote>
+ *
+ * Os atributos são resolvidos (e validados) conforme a consulta é
+ * montada. A consulta pode ser preparada (veja <tt>preparar()</tt>) e
+ * guardada, para ser executada novamente com outros argumentos, sem
+ * montar ou analisar o SQL outra vez.<br/>
+ *
+ * Não é <i>thread-safe</i> (a <tt>ConsultaPreparada</tt> é).
+ *
+ * @author ozairjr
+ *
+ * @param <T>
+ */
+public class Consulta<T> {
+
+	// --------------------------------------------------------------
+	// Atributos do objeto
+	// --------------------------------------------------------------
+
+	/** DAO da entidade. */
+	private final EntidadeDAO<T> dao;
+	/** Metadados da entidade. */
+	private final MetaDadosEntidade<T> metadados;
+	/** Cláusula 'where' (com os nomes das colunas). */
+	private final StringBuilder where = new StringBuilder();
+	/** Cláusula 'order by'. */
+	private final StringBuilder ordem = new StringBuilder();
+	/** Atributo de cada parâmetro. */
+	private final ArrayList<AtributoEntidade> parametros = new ArrayList<AtributoEntidade>();
+	/** Valor de cada parâmetro. */
+	private final ArrayList<Object> valores = new ArrayList<Object>();
+	/** Atributo da condição corrente (aguardando o operador). */
+	private AtributoEntidade atual;
+	/** Limite de linhas (<tt>0</tt> se não há limite). */
+	private int limite;
+
+	// --------------------------------------------------------------
+	// Métodos
+	// --------------------------------------------------------------
+
+	/**
+	 * Construtor.
+	 * @param dao DAO da entidade.
+	 */
+	Consulta(EntidadeDAO<T> dao) {
+		this.dao = dao;
+		this.metadados = dao.metadados;
+	}
+
+	/**
+	 * Inicia a condição (ligada com <tt>and</tt>, se já houver condições).
+	 * @param atributo Nome do atributo (ou da coluna).
+	 * @return
+	 */
+	public Consulta<T> onde(String atributo) {
+		return condicao(" and ", atributo);
+	}
+
+	/**
+	 * Nova condição, ligada com <tt>and</tt>.
+	 * @param atributo Nome do atributo (ou da coluna).
+	 * @return
+	 */
+	public Consulta<T> e(String atributo) {
+		return condicao(" and ", atributo);
+	}
+
+	/**
+	 * Nova condição, ligada com <tt>or</tt> (sem parênteses: o
+	 * <tt>and</tt> tem precedência, como no SQL).
+	 * @param atributo Nome do atributo (ou da coluna).
+	 * @return
+	 */
+	public Consulta<T> ou(String atributo) {
+		return condicao(" or ", atributo);
+	}
+
+	/**
+	 * Atributo igual ao valor (<tt>is null</tt>, se o valor for nulo).<br/>
+	 * Com valor nulo, a condição é fixa (sem parâmetro): na consulta 
+	 * preparada não é possível informar outro valor para ela.
+	 * @param valor
+	 * @return
+	 */
+	public Consulta<T> igual(Object valor) {
+		if (valor == null) {
+			return nulo();
+		}
+		return comparar(" = ?", valor);
+	}
+
+	/**
+	 * Atributo diferente do valor (<tt>is not null</tt>, se o valor for
+	 * nulo).<br/>
+	 * Com valor nulo, a condição é fixa (sem parâmetro): na consulta 
+	 * preparada não é possível informar outro valor para ela.
+	 * @param valor
+	 * @return
+	 */
+	public Consulta<T> diferente(Object valor) {
+		if (valor == null) {
+			return naoNulo();
+		}
+		return comparar(" <> ?", valor);
+	}
+
+	/**
+	 * Atributo maior que o valor.
+	 * @param valor
+	 * @return
+	 */
+	public Consulta<T> maior(Object valor) {
+		return comparar(" > ?", valor);
+	}
+
+	/**
+	 * Atributo maior ou igual ao valor.
+	 * @param valor
+	 * @return
+	 */
+	public Consulta<T> maiorOuIgual(Object valor) {
+		return comparar(" >= ?", valor);
+	}
+
+	/**
+	 * Atributo menor que o valor.
+	 * @param valor
+	 * @return
+	 */
+	public Consulta<T> menor(Object valor) {
+		return comparar(" < ?", valor);
+	}
+
+	/**
+	 * Atributo menor ou igual ao valor.
+	 * @param valor
+	 * @return
+	 */
+	public Consulta<T> menorOuIgual(Object valor) {
+		return comparar(" <= ?", valor);
+	}
+
+	/**
+	 * Atributo entre os valores (inclusive).
+	 * @param inicio
+	 * @param fim
+	 * @return
+	 */
+	public Consulta<T> entre(Object inicio, Object fim) {
+		AtributoEntidade ae = consumirAtributo();
+		where.append(ae.nomeColuna).append(" between ? and ?");
+		adicionarParametro(ae, inicio);
+		adicionarParametro(ae, fim);
+		return this;
+	}
+
+	/**
+	 * Atributo igual a um dos valores (<tt>in</tt>).<br/>
+	 * A quantidade de parâmetros da consulta preparada é a quantidade de
+	 * valores informados aqui.
+	 * @param valores
+	 * @return
+	 */
+	public Consulta<T> em(Object... valores) {
+		if (valores == null || valores.length == 0) {
+			throw new DAOException("Valores do 'in' n\u00e3o informados.");
+		}
+		AtributoEntidade ae = consumirAtributo();
+		where.append(ae.nomeColuna).append(" in (");
+		for (int i=0; i < valores.length; i++) {
+			where.append(i > 0 ? ", ?" : "?");
+			adicionarParametro(ae, valores[i]);
+		}
+		where.append(')');
+		return this;
+	}
+
+	/**
+	 * Atributo semelhante ao padrão (<tt>like</tt>).
+	 * @param padrao Padrão (e.g. <tt>"Jo%"</tt>).
+	 * @return
+	 */
+	public Consulta<T> como(String padrao) {
+		return comparar(" like ?", padrao);
+	}
+
+	/**
+	 * Atributo nulo.
+	 * @return
+	 */
+	public Consulta<T> nulo() {
+		where.append(consumirAtributo().nomeColuna).append(" is null");
+		return this;
+	}
+
+	/**
+	 * Atributo não nulo.
+	 * @return
+	 */
+	public Consulta<T> naoNulo() {
+		where.append(consumirAtributo().nomeColuna).append(" is not null");
+		return this;
+	}
+
+	/**
+	 * Ordena (crescente) pelo atributo.
+	 * @param atributo Nome do atributo (ou da coluna).
+	 * @return
+	 */
+	public Consulta<T> ordenar(String atributo) {
+		return ordenar(atributo, false);
+	}
+
+	/**
+	 * Ordena pelo atributo.
+	 * @param atributo Nome do atributo (ou da coluna).
+	 * @param descendente Se a ordem é descendente.
+	 * @return
+	 */
+	public Consulta<T> ordenar(String atributo, boolean descendente) {
+		if (ordem.length() > 0) {
+			ordem.append(", ");
+		}
+		ordem.append(AbstractDAO.obterAtributo(metadados, atributo).nomeColuna);
+		if (descendente) {
+			ordem.append(" desc");
+		}
+		return this;
+	}
+
+	/**
+	 * Limita a quantidade de linhas da pesquisa.
+	 * @param limite Limite (<tt>0</tt> para não limitar).
+	 * @return
+	 */
+	public Consulta<T> limite(int limite) {
+		if (limite < 0) {
+			throw new DAOException("Limite inv\u00e1lido: " + limite);
+		}
+		this.limite = limite;
+		return this;
+	}
+
+	/**
+	 * Prepara a consulta: o SQL e os atributos dos parâmetros são fixados,
+	 * e os valores informados na montagem são convertidos para o formato
+	 * do B.D. (argumentos padrão).
+	 * @return
+	 */
+	public ConsultaPreparada<T> preparar() {
+		if (atual != null) {
+			throw new DAOException("Condi\u00e7\u00e3o sem operador para o atributo '"
+					+ atual.atributo.getName()
+					+ "'.");
+		}
+		return new ConsultaPreparada<T>(
+				metadados,
+				where.length() > 0 ? where.toString() : null,
+				parametros.toArray(new AtributoEntidade[parametros.size()]),
+				valores.toArray(),
+				ordem.length() > 0 ? ordem.toString() : null,
+				limite > 0 ? String.valueOf(limite) : null);
+	}
+
+	/**
+	 * Prepara e executa a consulta, com os valores informados na montagem.
+	 * @return Lista com o resultado da pesquisa.
+	 */
+	public ArrayList<T> pesquisar() {
+		return dao.executar(preparar());
+	}
+
+	/**
+	 * Prepara e executa a consulta, esperando um único resultado.
+	 * @return O objeto encontrado ou <tt>null</tt>.
+	 */
+	public T pesquisarResultadoUnico() {
+		return AbstractDAO.obterResultadoUnico(pesquisar());
+	}
+
+	@Override
+	public String toString() {
+		return "Consulta[" + metadados.classe.getName() + ": " + where + "]";
+	}
+
+	// --------------------------------------------------------------
+	// Métodos auxiliares
+	// --------------------------------------------------------------
+
+	/**
+	 * Inicia uma condição.
+	 * @param conector Conector (<tt>and</tt>/<tt>or</tt>) com as condições
+	 * anteriores.
+	 * @param atributo Nome do atributo (ou da coluna).
+	 * @return
+	 */
+	private Consulta<T> condicao(String conector, String atributo) {
+		if (atual != null) {
+			throw new DAOException("Condi\u00e7\u00e3o sem operador para o atributo '"
+					+ atual.atributo.getName()
+					+ "'.");
+		}
+		atual = AbstractDAO.obterAtributo(metadados, atributo);
+		if (where.length() > 0) {
+			where.append(conector);
+		}
+		return this;
+	}
+
+	/**
+	 * Comparação do atributo corrente com um parâmetro.
+	 * @param operador Operador e parâmetro (e.g. <tt>" = ?"</tt>).
+	 * @param valor Valor do parâmetro.
+	 * @return
+	 */
+	private Consulta<T> comparar(String operador, Object valor) {
+		AtributoEntidade ae = consumirAtributo();
+		where.append(ae.nomeColuna).append(operador);
+		adicionarParametro(ae, valor);
+		return this;
+	}
+
+	/**
+	 * Obtém (e 'consome') o atributo da condição corrente.
+	 * @return
+	 */
+	private AtributoEntidade consumirAtributo() {
+		AtributoEntidade ae = atual;
+		if (ae == null) {
+			throw new DAOException("Atributo da condi\u00e7\u00e3o n\u00e3o informado "
+					+ "(veja 'onde', 'e' e 'ou').");
+		}
+		atual = null;
+		return ae;
+	}
+
+	/**
+	 * Adiciona o parâmetro.
+	 * @param ae Atributo do parâmetro.
+	 * @param valor Valor do parâmetro.
+	 */
+	private void adicionarParametro(AtributoEntidade ae, Object valor) {
+		parametros.add(ae);
+		valores.add(valor);
+	}
+}
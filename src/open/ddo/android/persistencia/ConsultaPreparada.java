@@ -0,0 +1,139 @@
+package open.ddo.android.persistencia;
+
+import open.ddo.android.persistencia.excecao.DAOException;
+
+/**
+ * Consulta da entidade já 'preparada' (veja <tt>Consulta.preparar</tt>):
+ * SQL com os nomes das colunas, atributo de cada parâmetro e argumentos
+ * padrão já no formato do B.D.<br/>
+ *
+ * É imutável, podendo ser guardada (e.g. em atributo estático) e
+ * executada novamente com outros valores (veja
+ * <tt>EntidadeDAO.executar(ConsultaPreparada, Object...)</tt>); os
+ * valores são convertidos conforme o atributo de cada parâmetro, sem
+ * analisar a cláusula.
+ *
+ * @author ozairjr
+ *
+ * @param <T>
+ */
+public class ConsultaPreparada<T> {
+
+	// --------------------------------------------------------------
+	// Atributos do objeto
+	// --------------------------------------------------------------
+
+	/** Metadados da entidade. */
+	public final MetaDadosEntidade<T> metadados;
+	/** Cláusula 'where' (SQL), ou <tt>null</tt>. */
+	public final String where;
+	/** Cláusula 'order by', ou <tt>null</tt>. */
+	public final String ordem;
+	/** Limite de linhas, ou <tt>null</tt>. */
+	public final String limite;
+	/** Atributo de cada parâmetro. */
+	private final AtributoEntidade[] parametros;
+	/** Argumentos padrão (valores da montagem já convertidos). */
+	private final String[] argumentos;
+
+	// --------------------------------------------------------------
+	// Métodos
+	// --------------------------------------------------------------
+
+	/**
+	 * Construtor.
+	 * @param metadados Metadados da entidade.
+	 * @param where Cláusula 'where' (SQL).
+	 * @param parametros Atributo de cada parâmetro.
+	 * @param valores Valor padrão de cada parâmetro.
+	 * @param ordem Cláusula 'order by'.
+	 * @param limite Limite de linhas.
+	 */
+	ConsultaPreparada(MetaDadosEntidade<T> metadados, String where,
+			AtributoEntidade[] parametros, Object[] valores, String ordem,
+			String limite) {
+		this.metadados = metadados;
+		this.where = where;
+		this.parametros = parametros;
+		this.ordem = ordem;
+		this.limite = limite;
+		this.argumentos = converter(valores);
+	}
+
+	/**
+	 * Quantidade de parâmetros (<tt>?</tt>) da consulta.
+	 * @return
+	 */
+	public int getQuantidadeParametros() {
+		return parametros.length;
+	}
+
+	/**
+	 * Argumentos padrão (os valores informados na montagem da consulta),
+	 * no formato do B.D.
+	 * @return Os argumentos, ou <tt>null</tt> se não há parâmetros.
+	 */
+	public String[] argumentos() {
+		return argumentos != null ? argumentos.clone() : null;
+	}
+
+	/**
+	 * Converte os valores para o formato do B.D., conforme o atributo de
+	 * cada parâmetro (na ordem em que foram montados).<br/>
+	 * 
+	 * Os valores não podem ser nulos: <tt>coluna = null</tt> nunca é
+	 * verdadeiro no SQL (e o Android não vincula argumentos nulos). Para
+	 * comparar com nulo, a condição deve ser montada com <tt>nulo()</tt> 
+	 * ou <tt>naoNulo()</tt> (ou <tt>igual(null)</tt>/<tt>diferente(null)</tt>),
+	 * que não possuem parâmetro.
+	 * @param valores Novos valores dos parâmetros.
+	 * @return Os argumentos, ou <tt>null</tt> se não há parâmetros.
+	 */
+	public String[] argumentos(Object... valores) {
+		int quantidade = valores != null ? valores.length : 0;
+		if (quantidade != parametros.length) {
+			throw new DAOException(
+				"H\u00e1 diferen\u00e7a na quantidade entre os '?' da consulta (qtd="
+					+ parametros.length
+					+ ") e os argumentos informados (qtde="
+					+ quantidade
+					+ ").");
+		}
+		return converter(valores);
+	}
+
+	@Override
+	public String toString() {
+		return "ConsultaPreparada[" + metadados.nomeTabela + ": " + where
+				+ (ordem != null ? " order by " + ordem : "")
+				+ (limite != null ? " limit " + limite : "")
+				+ "]";
+	}
+
+	// --------------------------------------------------------------
+	// Métodos auxiliares
+	// --------------------------------------------------------------
+
+	/**
+	 * Converte os valores, conforme o atributo de cada parâmetro.
+	 * @param valores
+	 * @return
+	 */
+	private String[] converter(Object[] valores) {
+		if (parametros.length == 0) {
+			return null;
+		}
+		String[] convertidos = new String[parametros.length];
+		for (int i=0; i < parametros.length; i++) {
+			if (valores[i] == null) {
+				throw new DAOException("Valor nulo para o par\u00e2metro "
+						+ (i + 1)
+						+ " (atributo '"
+						+ parametros[i].atributo.getName()
+						+ "'): utilize 'nulo()' ou 'naoNulo()' na montagem da consulta.");
+			}
+			convertidos[i] = ClausulaCompilada.converterArgumento(parametros[i], valores[i]);
+		}
+		return convertidos;
+	}
+}
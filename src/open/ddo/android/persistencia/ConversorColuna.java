@@ -0,0 +1,586 @@
+package open.ddo.android.persistencia;
+
+import java.math.BigDecimal;
+import java.text.ParseException;
+import java.util.Date;
+import java.util.regex.Pattern;
+
+import open.ddo.android.persistencia.excecao.DAOException;
+import open.ddo.android.util.AcessorAtributo;
+import open.ddo.android.util.FormatoData;
+import open.ddo.android.util.ObjectUtil;
+import android.database.Cursor;
+
+/**
+ * Conversor entre o valor da coluna (no B.D./cursor) e o tipo do atributo.<br/>
+ *
+ * Cada tipo possui o seu conversor, que lê diretamente o tipo adequado do
+ * cursor (<tt>getLong</tt>, <tt>getInt</tt>, <tt>getDouble</tt>,
+ * <tt>getBlob</tt>...). Para atributos primitivos (<tt>int</tt>,
+ * <tt>long</tt>, <tt>double</tt>, <tt>boolean</tt>...) o valor é atribuído
+ * sem 'boxing' e, se a coluna for nula, recebe o valor padrão do tipo
+ * (zero ou <tt>false</tt>).
+ *
+ * @author ozairjr
+ *
+ */
+public abstract class ConversorColuna {
+
+	// --------------------------------------------------------------
+	// Atributos de classe
+	// --------------------------------------------------------------
+
+	/** Conversor de <tt>String</tt> (e tipos não identificados). */
+	public static final ConversorColuna TEXTO = new ConversorColuna() {
+		@Override
+		public Object ler(Cursor cursor, int indice) {
+			return cursor.getString(indice);
+		}
+		@Override
+		protected Object converterValor(Object valor) {
+			return valor.toString();
+		}
+	};
+
+	/** Conversor de <tt>byte[]</tt>. */
+	public static final ConversorColuna BLOB = new ConversorColuna() {
+		@Override
+		public Object ler(Cursor cursor, int indice) {
+			return cursor.getBlob(indice);
+		}
+		@Override
+		protected Object converterValor(Object valor) {
+			return valor instanceof byte[] ?
+					valor
+					: valor.toString().getBytes();
+		}
+	};
+
+	/** Conversor de <tt>BigDecimal</tt>. */
+	public static final ConversorColuna DECIMAL = new ConversorColuna() {
+		@Override
+		public Object ler(Cursor cursor, int indice) {
+			return new BigDecimal(cursor.getString(indice));
+		}
+		@Override
+		protected Object converterValor(Object valor) {
+			return valor instanceof BigDecimal ?
+					valor
+					: new BigDecimal(valor.toString().trim());
+		}
+		@Override
+		public boolean isNumerico() {
+			return true;
+		}
+	};
+
+	/** Conversor de <tt>Long</tt>. */
+	public static final ConversorColuna LONG = new Inteiro(false) {
+		@Override
+		public Object ler(Cursor cursor, int indice) {
+			return Long.valueOf(cursor.getLong(indice));
+		}
+		@Override
+		protected Object converterNumero(long valor) {
+			return Long.valueOf(valor);
+		}
+	};
+
+	/** Conversor de <tt>long</tt>. */
+	public static final ConversorColuna LONG_PRIMITIVO = new Inteiro(true) {
+		@Override
+		public Object ler(Cursor cursor, int indice) {
+			return Long.valueOf(cursor.getLong(indice));
+		}
+		@Override
+		protected Object converterNumero(long valor) {
+			return Long.valueOf(valor);
+		}
+		@Override
+		public void atribuir(Cursor cursor, int indice, AcessorAtributo acessor, Object obj) {
+			acessor.setLong(obj, cursor.isNull(indice) ? 0L : cursor.getLong(indice));
+		}
+	};
+
+	/** Conversor de <tt>Integer</tt>. */
+	public static final ConversorColuna INT = new Inteiro(false) {
+		@Override
+		public Object ler(Cursor cursor, int indice) {
+			return Integer.valueOf(cursor.getInt(indice));
+		}
+		@Override
+		protected Object converterNumero(long valor) {
+			return Integer.valueOf((int) valor);
+		}
+	};
+
+	/** Conversor de <tt>int</tt>. */
+	public static final ConversorColuna INT_PRIMITIVO = new Inteiro(true) {
+		@Override
+		public Object ler(Cursor cursor, int indice) {
+			return Integer.valueOf(cursor.getInt(indice));
+		}
+		@Override
+		protected Object converterNumero(long valor) {
+			return Integer.valueOf((int) valor);
+		}
+		@Override
+		public void atribuir(Cursor cursor, int indice, AcessorAtributo acessor, Object obj) {
+			acessor.setInt(obj, cursor.isNull(indice) ? 0 : cursor.getInt(indice));
+		}
+	};
+
+	/** Conversor de <tt>Short</tt>. */
+	public static final ConversorColuna SHORT = new Inteiro(false) {
+		@Override
+		public Object ler(Cursor cursor, int indice) {
+			return Short.valueOf(cursor.getShort(indice));
+		}
+		@Override
+		protected Object converterNumero(long valor) {
+			return Short.valueOf((short) valor);
+		}
+	};
+
+	/** Conversor de <tt>short</tt>. */
+	public static final ConversorColuna SHORT_PRIMITIVO = new Inteiro(true) {
+		@Override
+		public Object ler(Cursor cursor, int indice) {
+			return Short.valueOf(cursor.getShort(indice));
+		}
+		@Override
+		protected Object converterNumero(long valor) {
+			return Short.valueOf((short) valor);
+		}
+		@Override
+		public void atribuir(Cursor cursor, int indice, AcessorAtributo acessor, Object obj) {
+			acessor.setShort(obj, cursor.isNull(indice) ? 0 : cursor.getShort(indice));
+		}
+	};
+
+	/** Conversor de <tt>Byte</tt>. */
+	public static final ConversorColuna BYTE = new Inteiro(false) {
+		@Override
+		public Object ler(Cursor cursor, int indice) {
+			return Byte.valueOf((byte) cursor.getInt(indice));
+		}
+		@Override
+		protected Object converterNumero(long valor) {
+			return Byte.valueOf((byte) valor);
+		}
+	};
+
+	/** Conversor de <tt>byte</tt>. */
+	public static final ConversorColuna BYTE_PRIMITIVO = new Inteiro(true) {
+		@Override
+		public Object ler(Cursor cursor, int indice) {
+			return Byte.valueOf((byte) cursor.getInt(indice));
+		}
+		@Override
+		protected Object converterNumero(long valor) {
+			return Byte.valueOf((byte) valor);
+		}
+		@Override
+		public void atribuir(Cursor cursor, int indice, AcessorAtributo acessor, Object obj) {
+			acessor.setByte(obj, cursor.isNull(indice) ? 0 : (byte) cursor.getInt(indice));
+		}
+	};
+
+	/** Conversor de <tt>Boolean</tt> (armazenado como 1 ou 0). */
+	public static final ConversorColuna BOOLEAN = new Inteiro(false) {
+		@Override
+		public Object ler(Cursor cursor, int indice) {
+			return Boolean.valueOf(cursor.getLong(indice) != 0);
+		}
+		@Override
+		protected Object converterValor(Object valor) {
+			if (valor instanceof Boolean) {
+				return valor;
+			}
+			if (valor instanceof String && !NUMERO.matcher((String) valor).matches()) {
+				return Boolean.valueOf((String) valor);
+			}
+			return super.converterValor(valor);
+		}
+		@Override
+		protected Object converterNumero(long valor) {
+			return Boolean.valueOf(valor != 0);
+		}
+	};
+
+	/** Conversor de <tt>boolean</tt> (armazenado como 1 ou 0). */
+	public static final ConversorColuna BOOLEAN_PRIMITIVO = new Inteiro(true) {
+		@Override
+		public Object ler(Cursor cursor, int indice) {
+			return Boolean.valueOf(cursor.getLong(indice) != 0);
+		}
+		@Override
+		protected Object converterValor(Object valor) {
+			return BOOLEAN.converterValor(valor);
+		}
+		@Override
+		protected Object converterNumero(long valor) {
+			return Boolean.valueOf(valor != 0);
+		}
+		@Override
+		public void atribuir(Cursor cursor, int indice, AcessorAtributo acessor, Object obj) {
+			acessor.setBoolean(obj, !cursor.isNull(indice) && cursor.getLong(indice) != 0);
+		}
+	};
+
+	/** Conversor de <tt>Double</tt>. */
+	public static final ConversorColuna DOUBLE = new Real(false) {
+		@Override
+		public Object ler(Cursor cursor, int indice) {
+			return Double.valueOf(cursor.getDouble(indice));
+		}
+		@Override
+		protected Object converterNumero(double valor) {
+			return Double.valueOf(valor);
+		}
+	};
+
+	/** Conversor de <tt>double</tt>. */
+	public static final ConversorColuna DOUBLE_PRIMITIVO = new Real(true) {
+		@Override
+		public Object ler(Cursor cursor, int indice) {
+			return Double.valueOf(cursor.getDouble(indice));
+		}
+		@Override
+		protected Object converterNumero(double valor) {
+			return Double.valueOf(valor);
+		}
+		@Override
+		public void atribuir(Cursor cursor, int indice, AcessorAtributo acessor, Object obj) {
+			acessor.setDouble(obj, cursor.isNull(indice) ? 0d : cursor.getDouble(indice));
+		}
+	};
+
+	/** Conversor de <tt>Float</tt>. */
+	public static final ConversorColuna FLOAT = new Real(false) {
+		@Override
+		public Object ler(Cursor cursor, int indice) {
+			return Float.valueOf(cursor.getFloat(indice));
+		}
+		@Override
+		protected Object converterNumero(double valor) {
+			return Float.valueOf((float) valor);
+		}
+	};
+
+	/** Conversor de <tt>float</tt>. */
+	public static final ConversorColuna FLOAT_PRIMITIVO = new Real(true) {
+		@Override
+		public Object ler(Cursor cursor, int indice) {
+			return Float.valueOf(cursor.getFloat(indice));
+		}
+		@Override
+		protected Object converterNumero(double valor) {
+			return Float.valueOf((float) valor);
+		}
+		@Override
+		public void atribuir(Cursor cursor, int indice, AcessorAtributo acessor, Object obj) {
+			acessor.setFloat(obj, cursor.isNull(indice) ? 0f : cursor.getFloat(indice));
+		}
+	};
+
+	/** Padrão de um número inteiro (com sinal). */
+	private static final Pattern NUMERO = Pattern.compile("\\s*[-+]?\\d+\\s*");
+
+	// --------------------------------------------------------------
+	// Métodos
+	// --------------------------------------------------------------
+
+	/**
+	 * Obtém o conversor para o tipo (e formato) informado.
+	 * @param tipo Tipo do atributo.
+	 * @param formato Formato (veja <tt>AtributoEntidade.formato</tt>).
+	 * @return
+	 */
+	public static ConversorColuna obter(Class<?> tipo, Object formato) {
+		if (tipo.isPrimitive()) {
+			if (Long.TYPE.equals(tipo)) {
+				return LONG_PRIMITIVO;
+			} else if (Integer.TYPE.equals(tipo)) {
+				return INT_PRIMITIVO;
+			} else if (Short.TYPE.equals(tipo)) {
+				return SHORT_PRIMITIVO;
+			} else if (Byte.TYPE.equals(tipo)) {
+				return BYTE_PRIMITIVO;
+			} else if (Double.TYPE.equals(tipo)) {
+				return DOUBLE_PRIMITIVO;
+			} else if (Float.TYPE.equals(tipo)) {
+				return FLOAT_PRIMITIVO;
+			} else if (Boolean.TYPE.equals(tipo)) {
+				return BOOLEAN_PRIMITIVO;
+			}
+			throw new DAOException("Tipo primitivo n\u00e3o suportado: " + tipo);
+		}
+		if (Long.class.equals(tipo)) {
+			return LONG;
+		} else if (Integer.class.equals(tipo)) {
+			return INT;
+		} else if (Short.class.equals(tipo)) {
+			return SHORT;
+		} else if (Byte.class.equals(tipo)) {
+			return BYTE;
+		} else if (Double.class.equals(tipo)) {
+			return DOUBLE;
+		} else if (Float.class.equals(tipo)) {
+			return FLOAT;
+		} else if (Boolean.class.equals(tipo)) {
+			return BOOLEAN;
+		} else if (BigDecimal.class.equals(tipo)) {
+			return DECIMAL;
+		} else if (byte[].class.equals(tipo)) {
+			return BLOB;
+		} else if (tipo.isEnum()) {
+			return new Enumeracao(tipo, !Boolean.FALSE.equals(formato));
+		} else if (Date.class.equals(tipo)) {
+			return Data.obter(formato instanceof FormatoData ?
+					(FormatoData) formato
+					: FormatoData.LONG);
+		}
+		return TEXTO;
+	}
+
+	/**
+	 * Lê o valor (não nulo) da coluna do cursor, no tipo do atributo.
+	 * @param cursor Cursor (posicionado na linha).
+	 * @param indice Índice da coluna.
+	 * @return
+	 */
+	public abstract Object ler(Cursor cursor, int indice);
+
+	/**
+	 * Lê o valor da coluna do cursor (<tt>null</tt> se a coluna for nula).
+	 * @param cursor
+	 * @param indice
+	 * @return
+	 */
+	public Object lerOuNulo(Cursor cursor, int indice) {
+		return cursor.isNull(indice) ? null : ler(cursor, indice);
+	}
+
+	/**
+	 * Atribui o valor da coluna do cursor ao atributo do objeto.
+	 * @param cursor Cursor (posicionado na linha).
+	 * @param indice Índice da coluna.
+	 * @param acessor Acessor do atributo.
+	 * @param obj Objeto.
+	 */
+	public void atribuir(Cursor cursor, int indice, AcessorAtributo acessor, Object obj) {
+		acessor.set(obj, lerOuNulo(cursor, indice));
+	}
+
+	/**
+	 * Converte o valor (no formato do B.D., e.g. <tt>String</tt> ou
+	 * <tt>Long</tt>) para o tipo do atributo. Para tipos primitivos,
+	 * <tt>null</tt> é convertido para o valor padrão do tipo.
+	 * @param valor
+	 * @return
+	 */
+	public Object converter(Object valor) {
+		if (valor == null) {
+			return null;
+		}
+		if (this != TEXTO
+				&& valor instanceof String 
+				&& ((String) valor).trim().length() == 0) {
+			return null;
+		}
+		return converterValor(valor);
+	}
+
+	/**
+	 * Converte o valor (não nulo) para o tipo do atributo.
+	 * @param valor
+	 * @return
+	 */
+	protected abstract Object converterValor(Object valor);
+
+	/**
+	 * Verifica se o valor é gravado no B.D. como número (e pode ser
+	 * somado, comparado numericamente, etc.).
+	 * @return
+	 */
+	public boolean isNumerico() {
+		return false;
+	}
+
+	// --------------------------------------------------------------
+	// Classes internas
+	// --------------------------------------------------------------
+
+	/**
+	 * Conversor de tipos inteiros.
+	 */
+	private static abstract class Inteiro extends ConversorColuna {
+
+		/** Se o atributo é primitivo. */
+		private final boolean primitivo;
+
+		Inteiro(boolean primitivo) {
+			this.primitivo = primitivo;
+		}
+
+		@Override
+		public boolean isNumerico() {
+			return true;
+		}
+
+		@Override
+		public Object converter(Object valor) {
+			Object resultado = super.converter(valor);
+			return resultado == null && primitivo ? converterNumero(0) : resultado;
+		}
+
+		@Override
+		protected Object converterValor(Object valor) {
+			return converterNumero(valor instanceof Number ?
+					((Number) valor).longValue()
+					: Long.parseLong(valor.toString().trim()));
+		}
+
+		/**
+		 * Converte o número para o tipo do atributo.
+		 * @param valor
+		 * @return
+		 */
+		protected abstract Object converterNumero(long valor);
+	}
+
+	/**
+	 * Conversor de tipos de ponto flutuante.
+	 */
+	private static abstract class Real extends ConversorColuna {
+
+		/** Se o atributo é primitivo. */
+		private final boolean primitivo;
+
+		Real(boolean primitivo) {
+			this.primitivo = primitivo;
+		}
+
+		@Override
+		public boolean isNumerico() {
+			return true;
+		}
+
+		@Override
+		public Object converter(Object valor) {
+			Object resultado = super.converter(valor);
+			return resultado == null && primitivo ? converterNumero(0) : resultado;
+		}
+
+		@Override
+		protected Object converterValor(Object valor) {
+			return converterNumero(valor instanceof Number ?
+					((Number) valor).doubleValue()
+					: Double.parseDouble(valor.toString().trim()));
+		}
+
+		/**
+		 * Converte o número para o tipo do atributo.
+		 * @param valor
+		 * @return
+		 */
+		protected abstract Object converterNumero(double valor);
+	}
+
+	/**
+	 * Conversor de enumeração (pelo ordinal ou pelo nome).
+	 */
+	private static final class Enumeracao extends ConversorColuna {
+
+		/** Classe da enumeração. */
+		private final Class<?> tipo;
+		/** Constantes da enumeração. */
+		private final Enum<?>[] constantes;
+		/** Se é gravada pelo ordinal (senão, pelo nome). */
+		private final boolean ordinal;
+
+		Enumeracao(Class<?> tipo, boolean ordinal) {
+			this.tipo = tipo;
+			this.constantes = (Enum<?>[]) tipo.getEnumConstants();
+			this.ordinal = ordinal;
+		}
+
+		@Override
+		public Object ler(Cursor cursor, int indice) {
+			if (ordinal) {
+				int valor = cursor.getInt(indice);
+				return valor >= 0 && valor < constantes.length ?
+						constantes[valor]
+						: null;
+			}
+			return converterValor(cursor.getString(indice));
+		}
+
+		@Override
+		protected Object converterValor(Object valor) {
+			if (tipo.isInstance(valor)) {
+				return valor;
+			}
+			return ObjectUtil.toEnum(tipo, valor, ordinal);
+		}
+	}
+
+	/**
+	 * Conversor de data, conforme o formato.
+	 */
+	private static final class Data extends ConversorColuna {
+
+		/** Conversores por formato. */
+		private static final Data[] CONVERSORES = new Data[FormatoData.values().length];
+		static {
+			for (FormatoData formato: FormatoData.values()) {
+				CONVERSORES[formato.ordinal()] = new Data(formato);
+			}
+		}
+
+		/** Formato da data no B.D. */
+		private final FormatoData formato;
+
+		private Data(FormatoData formato) {
+			this.formato = formato;
+		}
+
+		static Data obter(FormatoData formato) {
+			return CONVERSORES[formato.ordinal()];
+		}
+
+		@Override
+		public boolean isNumerico() {
+			return formato == FormatoData.LONG;
+		}
+
+		@Override
+		public Object ler(Cursor cursor, int indice) {
+			if (formato == FormatoData.LONG) {
+				return new Date(cursor.getLong(indice));
+			}
+			return converterValor(cursor.getString(indice));
+		}
+
+		@Override
+		protected Object converterValor(Object valor) {
+			if (valor instanceof Date) {
+				return valor;
+			}
+			if (formato == FormatoData.LONG && valor instanceof Number) {
+				return new Date(((Number) valor).longValue());
+			}
+			try {
+				return ObjectUtil.toDate(valor, formato);
+			} catch (ParseException e) {
+				throw new DAOException(
+						"Falha ao converter a data '"
+						+ valor
+						+ "' para o formato "
+						+ formato,
+						e);
+			}
+		}
+	}
+}
@@ -1,6 +1,10 @@
 package open.ddo.android.persistencia;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 
 import android.database.sqlite.SQLiteDatabase;
 
@@ -46,16 +50,31 @@ public class EntidadeDAO<T> extends AbstractDAO {
 		return inserir(obj, metadados);
 	}
 
+	@Override
+	public int inserirLote(Collection<?> objetos) {
+		return inserirLote(objetos, metadados);
+	}
+
 	@Override
 	public int atualizar(Object obj) {
 		return atualizar(obj, metadados);
 	}
 	
+	@Override
+	public long inserirOuAtualizar(Object obj, EstrategiaConflito estrategia) {
+		return inserirOuAtualizar(obj, metadados, estrategia);
+	}
+	
 	@Override
 	public int remover(Object obj) {
 		return remover(obj, metadados);
 	}
 	
+	@Override
+	public int salvar(Object obj) {
+		return salvar(obj, metadados);
+	}
+	
 	/**
 	 * Pesquisa pela chave.
 	 * @param chave Objecto da chave. Pode ser:
@@ -69,6 +88,187 @@ public class EntidadeDAO<T> extends AbstractDAO {
 		return pesquisarPelaChave(metadados, chave);
 	}
 	
+	/**
+	 * Pesquisa várias entidades pelas chaves, com o mínimo de consultas.
+	 * @param chaves Objetos das chaves (veja <tt>pesquisarPelaChave(Object)</tt>).
+	 * @return Mapa das entidades encontradas, pelo valor do atributo chave
+	 * (ou lista dos valores, se a chave for composta).
+	 */
+	public LinkedHashMap<Object, T> pesquisarPelasChaves(Collection<?> chaves) {
+		return pesquisarPelasChaves(metadados, chaves);
+	}
+	
+	/**
+	 * Pesquisa entidade com cláusula 'where', carregando também os 
+	 * relacionamentos informados (uma pesquisa por relacionamento; veja
+	 * <tt>carregarRelacionamentos</tt>).
+	 * @param relacionamentos Nomes dos relacionamentos (e.g. 
+	 * <tt>"cliente"</tt>, <tt>"itens.produto"</tt>).
+	 * @param clausulaWhere Cláusula where (pode ser nula).
+	 * @param args Argumentos da cláusula
+	 * @return Lista com o resultado da pesquisa.
+	 */
+	public ArrayList<T> pesquisarCarregando(String[] relacionamentos, 
+			String clausulaWhere, Object... args) {
+		ArrayList<T> lista = pesquisar(metadados, clausulaWhere, args);
+		carregarRelacionamentos(metadados, lista, relacionamentos);
+		return lista;
+	}
+	
+	/**
+	 * Carrega os relacionamentos (<tt>@MuitosParaUm</tt> e 
+	 * <tt>@UmParaMuitos</tt>) das entidades já pesquisadas, com uma 
+	 * pesquisa por relacionamento para todas as entidades.
+	 * @param objetos Entidades.
+	 * @param relacionamentos Nomes dos relacionamentos (e.g. 
+	 * <tt>"cliente"</tt>, <tt>"itens.produto"</tt>).
+	 */
+	public void carregarRelacionamentos(Collection<? extends T> objetos, String... relacionamentos) {
+		carregarRelacionamentos(metadados, objetos, relacionamentos);
+	}
+	
+	/**
+	 * Verifica se há registro com a chave informada.
+	 * @param chave Objeto da chave (veja <tt>pesquisarPelaChave(Object)</tt>).
+	 * @return
+	 */
+	public boolean existePelaChave(Object chave) {
+		return existePelaChave(metadados, chave);
+	}
+	
+	/**
+	 * Conta todos os registros.
+	 * @return
+	 */
+	public long contar() {
+		return contar(metadados, null);
+	}
+
+	/**
+	 * Conta os registros com cláusula 'where'.
+	 * @param clausulaWhere Cláusula where (pode ser nula).
+	 * @param args Argumentos da cláusula.
+	 * @return
+	 */
+	public long contar(String clausulaWhere, Object... args) {
+		return contar(metadados, clausulaWhere, args);
+	}
+
+	/**
+	 * Soma os valores do atributo.
+	 * @param atributo Nome do atributo (ou da coluna).
+	 * @param clausulaWhere Cláusula where (pode ser nula).
+	 * @param args Argumentos da cláusula.
+	 * @return A soma (0 se não houver valores).
+	 */
+	public double somar(String atributo, String clausulaWhere, Object... args) {
+		return agregar(metadados, Agregacao.SOMAR, atributo, clausulaWhere, args);
+	}
+
+	/**
+	 * Menor valor do atributo.
+	 * @param atributo Nome do atributo (ou da coluna).
+	 * @param clausulaWhere Cláusula where (pode ser nula).
+	 * @param args Argumentos da cláusula.
+	 * @return O valor, ou <tt>NaN</tt> se não houver valores.
+	 */
+	public double minimo(String atributo, String clausulaWhere, Object... args) {
+		return agregar(metadados, Agregacao.MINIMO, atributo, clausulaWhere, args);
+	}
+
+	/**
+	 * Maior valor do atributo.
+	 * @param atributo Nome do atributo (ou da coluna).
+	 * @param clausulaWhere Cláusula where (pode ser nula).
+	 * @param args Argumentos da cláusula.
+	 * @return O valor, ou <tt>NaN</tt> se não houver valores.
+	 */
+	public double maximo(String atributo, String clausulaWhere, Object... args) {
+		return agregar(metadados, Agregacao.MAXIMO, atributo, clausulaWhere, args);
+	}
+
+	/**
+	 * Agrega os valores do atributo (veja <tt>Agregacao</tt>).
+	 * @param agregacao Agregação.
+	 * @param atributo Nome do atributo (ou da coluna). Pode ser nulo para
+	 * contagem.
+	 * @param clausulaWhere Cláusula where (pode ser nula).
+	 * @param args Argumentos da cláusula.
+	 * @return
+	 */
+	public double agregar(Agregacao agregacao, String atributo, String clausulaWhere, Object... args) {
+		return agregar(metadados, agregacao, atributo, clausulaWhere, args);
+	}
+
+	/**
+	 * Agrega os valores do atributo por grupo.
+	 * @param atributoGrupo Nome do atributo (ou da coluna) de agrupamento.
+	 * @param agregacao Agregação.
+	 * @param atributo Nome do atributo (ou da coluna) agregado. Pode ser
+	 * nulo para contagem.
+	 * @param clausulaWhere Cláusula where (pode ser nula).
+	 * @param args Argumentos da cláusula.
+	 * @return
+	 */
+	public ResultadoAgrupado agrupar(String atributoGrupo, Agregacao agregacao,
+			String atributo, String clausulaWhere, Object... args) {
+		return agrupar(metadados, atributoGrupo, agregacao, atributo, clausulaWhere, args);
+	}
+
+	/**
+	 * Pesquisa apenas os atributos informados (as demais colunas não são 
+	 * lidas do B.D.).
+	 * @param atributos Nomes dos atributos (ou colunas).
+	 * @param clausulaWhere Cláusula where (pode ser nula).
+	 * @param args Argumentos da cláusula.
+	 * @return Lista de entidades parcialmente preenchidas.
+	 */
+	public ArrayList<T> pesquisarProjecao(String[] atributos, String clausulaWhere, Object... args) {
+		return pesquisarProjecao(metadados, metadados.getProjecao(atributos), clausulaWhere, args);
+	}
+	
+	/**
+	 * Pesquisa mapeando cada linha para o 'DTO' informado (apenas as 
+	 * colunas dos atributos do 'DTO' são lidas do B.D.).
+	 * @param classeDTO Classe com atributos anotados com <tt>@Coluna</tt>.
+	 * @param clausulaWhere Cláusula where (pode ser nula).
+	 * @param args Argumentos da cláusula.
+	 * @return
+	 */
+	public <D> ArrayList<D> pesquisarProjecao(Class<D> classeDTO, String clausulaWhere, Object... args) {
+		return pesquisarProjecao(metadados, metadados.getProjecao(classeDTO), clausulaWhere, args);
+	}
+	
+	/**
+	 * Pesquisa apenas as colunas dos atributos informados, lidas para
+	 * vetores primitivos (veja <tt>LoteColunas</tt>).
+	 * @param atributos Nomes dos atributos (ou colunas).
+	 * @param codificarTextos Se as colunas texto são codificadas por
+	 * dicionário.
+	 * @param clausulaWhere Cláusula where (pode ser nula).
+	 * @param args Argumentos da cláusula.
+	 * @return
+	 */
+	public LoteColunas pesquisarColunas(String[] atributos, boolean codificarTextos,
+			String clausulaWhere, Object... args) {
+		return pesquisarColunas(metadados, atributos, null, codificarTextos, clausulaWhere, args);
+	}
+
+	/**
+	 * Pesquisa apenas as colunas dos atributos informados, lidas para
+	 * vetores primitivos dos tipos informados.
+	 * @param atributos Nomes dos atributos (ou colunas).
+	 * @param tipos Tipos das colunas no lote (<tt>null</tt> para inferir
+	 * pelo atributo).
+	 * @param clausulaWhere Cláusula where (pode ser nula).
+	 * @param args Argumentos da cláusula.
+	 * @return
+	 */
+	public LoteColunas pesquisarColunas(String[] atributos, LoteColunas.Tipo[] tipos,
+			String clausulaWhere, Object... args) {
+		return pesquisarColunas(metadados, atributos, tipos, false, clausulaWhere, args);
+	}
+
 	/**
 	 * Pesquisa por todos.
 	 * @return
@@ -96,5 +296,142 @@ public class EntidadeDAO<T> extends AbstractDAO {
 	public ArrayList<T> pesquisar(String clausulaWhere, Object... args) {
 		return pesquisar(metadados, clausulaWhere, args);
 	}
+	
+	/**
+	 * Pesquisa entidade com cláusula 'where' (como 
+	 * <tt>pesquisar(String, Object...)</tt>), convertendo as linhas 
+	 * uma por vez conforme o resultado é percorrido.
+	 * 
+	 * @param clausulaWhere Cláusula where (pode ser nula).
+	 * @param args Argumentos da cláusula
+	 * @return Resultado a ser percorrido (e fechado, se não for até o fim).
+	 */
+	public ResultadoIteravel<T> pesquisarIterando(String clausulaWhere, Object... args) {
+		return pesquisarIterando(metadados, false, clausulaWhere, args);
+	}
+	
+	/**
+	 * Pesquisa entidade com cláusula 'where', percorrendo o resultado
+	 * com uma única instância, preenchida novamente a cada linha 
+	 * (o objeto não deve ser guardado entre as iterações).
+	 * 
+	 * @param clausulaWhere Cláusula where (pode ser nula).
+	 * @param args Argumentos da cláusula
+	 * @return Resultado a ser percorrido (e fechado, se não for até o fim).
+	 */
+	public ResultadoIteravel<T> pesquisarIterandoReutilizando(String clausulaWhere, Object... args) {
+		return pesquisarIterando(metadados, true, clausulaWhere, args);
+	}
+
+	/**
+	 * Percorre o resultado da pesquisa entregando cada linha ao visitante
+	 * como uma visão do cursor (veja <tt>LinhaCursor</tt>).
+	 * @param clausulaWhere Cláusula where (pode ser nula).
+	 * @param args Argumentos da cláusula (pode ser nulo).
+	 * @param visitante Visitante das linhas.
+	 * @return Quantidade de linhas visitadas.
+	 */
+	public int percorrer(String clausulaWhere, Object[] args, VisitanteLinha<? super LinhaCursor> visitante) {
+		return percorrer(metadados, clausulaWhere, args, visitante);
+	}
+
+	/**
+	 * Percorre o resultado da pesquisa entregando ao visitante uma única
+	 * instância da entidade, preenchida novamente a cada linha (o objeto
+	 * não deve ser guardado entre as visitas).
+	 * @param clausulaWhere Cláusula where (pode ser nula).
+	 * @param args Argumentos da cláusula (pode ser nulo).
+	 * @param visitante Visitante das linhas.
+	 * @return Quantidade de linhas visitadas.
+	 */
+	public int percorrerReutilizando(String clausulaWhere, Object[] args, VisitanteLinha<? super T> visitante) {
+		return percorrerReutilizando(metadados, clausulaWhere, args, visitante);
+	}
+
+	/**
+	 * Inicia a montagem de uma consulta (veja <tt>Consulta</tt>) pela
+	 * condição do atributo.
+	 * @param atributo Nome do atributo (ou da coluna).
+	 * @return
+	 */
+	public Consulta<T> onde(String atributo) {
+		return new Consulta<T>(this).onde(atributo);
+	}
+
+	/**
+	 * Inicia a montagem de uma consulta sem condições (e.g. apenas com
+	 * ordenação e limite).
+	 * @return
+	 */
+	public Consulta<T> consulta() {
+		return new Consulta<T>(this);
+	}
+
+	/**
+	 * Executa a consulta preparada com os argumentos informados na sua
+	 * montagem.
+	 * @param consulta Consulta preparada (veja <tt>Consulta.preparar</tt>).
+	 * @return Lista com o resultado da pesquisa.
+	 */
+	public ArrayList<T> executar(ConsultaPreparada<T> consulta) {
+		return pesquisar(consulta, consulta.argumentos());
+	}
+
+	/**
+	 * Executa a consulta preparada com novos valores para os parâmetros
+	 * (na ordem em que foram montados).
+	 * @param consulta Consulta preparada (veja <tt>Consulta.preparar</tt>).
+	 * @param valores Valores dos parâmetros (não nulos, veja 
+	 * <tt>ConsultaPreparada.argumentos(Object...)</tt>).
+	 * @return Lista com o resultado da pesquisa.
+	 */
+	public ArrayList<T> executar(ConsultaPreparada<T> consulta, Object... valores) {
+		return pesquisar(consulta, consulta.argumentos(valores));
+	}
+
+	/**
+	 * Pesquisa a primeira página, paginando por chave (veja
+	 * <tt>Pagina</tt>).
+	 * @param tamanho Quantidade de registros por página.
+	 * @param ordem Atributo de ordenação (<tt>null</tt> para ordenar pela
+	 * chave). Deve ser uma coluna indexada e sem valores nulos; a chave é
+	 * utilizada para desempate.
+	 * @param descendente Se a ordenação é descendente.
+	 * @param clausulaWhere Cláusula where (pode ser nula).
+	 * @param args Argumentos da cláusula.
+	 * @return
+	 */
+	public Pagina<T> paginar(int tamanho, String ordem, boolean descendente,
+			String clausulaWhere, Object... args) {
+		return paginar(metadados, TokenPagina.inicio(tamanho, ordem, descendente),
+				true, clausulaWhere, args);
+	}
+
+	/**
+	 * Pesquisa a página do token (veja <tt>Pagina.getProxima()</tt> e
+	 * <tt>Pagina.getAnterior()</tt>).
+	 * @param token Token da página.
+	 * @param clausulaWhere Cláusula where (a mesma da primeira página).
+	 * @param args Argumentos da cláusula.
+	 * @return
+	 */
+	public Pagina<T> paginar(TokenPagina token, String clausulaWhere, Object... args) {
+		return paginar(metadados, token, true, clausulaWhere, args);
+	}
+
+	/**
+	 * Pesquisa a página do token em segundo plano (e.g., a próxima página
+	 * enquanto a corrente é exibida). As instâncias não são unificadas na
+	 * sessão de entidades.
+	 * @param executor Executor da pesquisa.
+	 * @param token Token da página.
+	 * @param clausulaWhere Cláusula where (a mesma da primeira página).
+	 * @param args Argumentos da cláusula.
+	 * @return Tarefa cujo resultado (<tt>get()</tt>) é a página.
+	 */
+	public FutureTask<Pagina<T>> paginarEmSegundoPlano(Executor executor,
+			TokenPagina token, String clausulaWhere, Object... args) {
+		return paginarEmSegundoPlano(metadados, executor, token, clausulaWhere, args);
+	}
 
 }
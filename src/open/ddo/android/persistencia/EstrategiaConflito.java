@@ -0,0 +1,46 @@
+package open.ddo.android.persistencia;
+
+/**
+ * Estratégia a ser adotada quando, ao inserir um registro, já existir outro
+ * com a mesma chave (conflito de chave) no B.D.
+ * 
+ * @author ozairjr
+ *
+ */
+public enum EstrategiaConflito {
+	
+	// --------------------------------------------------------------
+	// 'Constantes'
+	// --------------------------------------------------------------
+	
+	/** Aborta a instrução, lançando exceção (<tt>insert or abort</tt>). */
+	ABORTAR("abort"),
+	/** Ignora o registro, mantendo o existente (<tt>insert or ignore</tt>). */
+	IGNORAR("ignore"),
+	/** Remove o registro existente e insere o novo (<tt>insert or replace</tt>). */
+	SUBSTITUIR("replace"),
+	/** Atualiza o registro existente 
+	 * (<tt>insert ... on conflict ... do update</tt>, se suportado pelo SQLite,
+	 * senão <tt>update</tt> e, se nenhuma linha for atualizada, <tt>insert</tt>).
+	 * Não possui cláusula <tt>insert or ...</tt>. */
+	ATUALIZAR(null)
+	;
+	
+	// --------------------------------------------------------------
+	// Atributos
+	// --------------------------------------------------------------
+
+	/** Cláusula de conflito do SQLite (<tt>insert or [clausula]</tt>), ou
+	 * <tt>null</tt> se a estratégia não é uma cláusula (<tt>ATUALIZAR</tt>). */
+	public final String clausula;
+	
+	// --------------------------------------------------------------
+	// Métodos
+	// --------------------------------------------------------------
+	
+	/** Construtor. */
+	private EstrategiaConflito(String clausula) {
+		this.clausula = clausula;
+	}
+	
+}
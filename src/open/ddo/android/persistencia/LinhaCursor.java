@@ -0,0 +1,220 @@
+package open.ddo.android.persistencia;
+
+import java.util.HashMap;
+
+import open.ddo.android.persistencia.excecao.DAOException;
+import android.database.Cursor;
+
+/**
+ * Visão da linha corrente do cursor de uma pesquisa da entidade (veja
+ * <tt>VisitanteLinha</tt>), com leitura tipada pelo nome do atributo (ou
+ * da coluna), sem criar objetos por linha.<br/>
+ *
+ * Os índices das colunas no cursor são resolvidos uma única vez por
+ * pesquisa. Em laços críticos, pode-se obter o índice com
+ * <tt>indice(String)</tt> e utilizar os métodos pelo índice.
+ *
+ * @author ozairjr
+ *
+ */
+public class LinhaCursor {
+
+	// --------------------------------------------------------------
+	// Atributos do objeto
+	// --------------------------------------------------------------
+
+	/** Metadados da entidade. */
+	public final MetaDadosEntidade<?> metadados;
+	/** Cursor (posicionado na linha corrente). */
+	private final Cursor cursor;
+	/** Índice no cursor, pelo nome do atributo e pelo nome da coluna. */
+	private final HashMap<String, Integer> indices = new HashMap<String, Integer>();
+	/** Atributo de cada índice do cursor (<tt>null</tt> se a coluna não é
+	 * da entidade). */
+	private final AtributoEntidade[] atributos;
+
+	// --------------------------------------------------------------
+	// Métodos
+	// --------------------------------------------------------------
+
+	/**
+	 * Construtor.
+	 * @param metadados Metadados da entidade.
+	 * @param cursor Cursor da pesquisa.
+	 */
+	LinhaCursor(MetaDadosEntidade<?> metadados, Cursor cursor) {
+		this.metadados = metadados;
+		this.cursor = cursor;
+		this.atributos = new AtributoEntidade[cursor.getColumnCount()];
+		for (AtributoEntidade ae: metadados.colunas) {
+			int indice = cursor.getColumnIndex(ae.nomeColuna);
+			if (indice >= 0) {
+				Integer valor = Integer.valueOf(indice);
+				indices.put(ae.nomeColuna, valor);
+				indices.put(ae.atributo.getName(), valor);
+				atributos[indice] = ae;
+			}
+		}
+	}
+
+	/**
+	 * Índice no cursor do atributo (ou da coluna).
+	 * @param atributo Nome do atributo ou da coluna.
+	 * @return
+	 */
+	public int indice(String atributo) {
+		Integer indice = indices.get(atributo);
+		if (indice == null) {
+			throw new DAOException("Atributo '"
+					+ atributo
+					+ "' n\u00e3o encontrado na pesquisa de "
+					+ metadados.classe.getName());
+		}
+		return indice.intValue();
+	}
+
+	/**
+	 * Posição (índice) da linha corrente no resultado.
+	 * @return
+	 */
+	public int getPosicao() {
+		return cursor.getPosition();
+	}
+
+	/**
+	 * Verifica se o valor é nulo.
+	 * @param atributo Nome do atributo ou da coluna.
+	 * @return
+	 */
+	public boolean isNulo(String atributo) {
+		return cursor.isNull(indice(atributo));
+	}
+
+	/**
+	 * Verifica se o valor é nulo.
+	 * @param indice Índice da coluna (veja <tt>indice(String)</tt>).
+	 * @return
+	 */
+	public boolean isNulo(int indice) {
+		return cursor.isNull(indice);
+	}
+
+	/**
+	 * Valor <tt>long</tt> (0 se nulo).
+	 * @param atributo Nome do atributo ou da coluna.
+	 * @return
+	 */
+	public long getLong(String atributo) {
+		return cursor.getLong(indice(atributo));
+	}
+
+	/**
+	 * Valor <tt>long</tt> (0 se nulo).
+	 * @param indice Índice da coluna (veja <tt>indice(String)</tt>).
+	 * @return
+	 */
+	public long getLong(int indice) {
+		return cursor.getLong(indice);
+	}
+
+	/**
+	 * Valor <tt>int</tt> (0 se nulo).
+	 * @param atributo Nome do atributo ou da coluna.
+	 * @return
+	 */
+	public int getInt(String atributo) {
+		return cursor.getInt(indice(atributo));
+	}
+
+	/**
+	 * Valor <tt>int</tt> (0 se nulo).
+	 * @param indice Índice da coluna (veja <tt>indice(String)</tt>).
+	 * @return
+	 */
+	public int getInt(int indice) {
+		return cursor.getInt(indice);
+	}
+
+	/**
+	 * Valor <tt>double</tt> (0 se nulo).
+	 * @param atributo Nome do atributo ou da coluna.
+	 * @return
+	 */
+	public double getDouble(String atributo) {
+		return cursor.getDouble(indice(atributo));
+	}
+
+	/**
+	 * Valor <tt>double</tt> (0 se nulo).
+	 * @param indice Índice da coluna (veja <tt>indice(String)</tt>).
+	 * @return
+	 */
+	public double getDouble(int indice) {
+		return cursor.getDouble(indice);
+	}
+
+	/**
+	 * Valor booleano (gravado como 0/1).
+	 * @param atributo Nome do atributo ou da coluna.
+	 * @return
+	 */
+	public boolean getBoolean(String atributo) {
+		return cursor.getInt(indice(atributo)) != 0;
+	}
+
+	/**
+	 * Valor booleano (gravado como 0/1).
+	 * @param indice Índice da coluna (veja <tt>indice(String)</tt>).
+	 * @return
+	 */
+	public boolean getBoolean(int indice) {
+		return cursor.getInt(indice) != 0;
+	}
+
+	/**
+	 * Valor texto (<tt>null</tt> se nulo).
+	 * @param atributo Nome do atributo ou da coluna.
+	 * @return
+	 */
+	public String getString(String atributo) {
+		return cursor.getString(indice(atributo));
+	}
+
+	/**
+	 * Valor texto (<tt>null</tt> se nulo).
+	 * @param indice Índice da coluna (veja <tt>indice(String)</tt>).
+	 * @return
+	 */
+	public String getString(int indice) {
+		return cursor.getString(indice);
+	}
+
+	/**
+	 * Valor convertido para o tipo do atributo (como na carga da entidade;
+	 * e.g. datas e enumerações).
+	 * @param atributo Nome do atributo ou da coluna.
+	 * @return O valor, ou <tt>null</tt> se nulo.
+	 */
+	public Object getValor(String atributo) {
+		return getValor(indice(atributo));
+	}
+
+	/**
+	 * Valor convertido para o tipo do atributo.
+	 * @param indice Índice da coluna (veja <tt>indice(String)</tt>).
+	 * @return O valor, ou <tt>null</tt> se nulo.
+	 */
+	public Object getValor(int indice) {
+		AtributoEntidade ae = atributos[indice];
+		if (ae == null) {
+			return cursor.isNull(indice) ? null : cursor.getString(indice);
+		}
+		return ae.conversor.lerOuNulo(cursor, indice);
+	}
+
+	@Override
+	public String toString() {
+		return "LinhaCursor[" + metadados.classe.getName()
+				+ ", " + cursor.getPosition() + "]";
+	}
+}
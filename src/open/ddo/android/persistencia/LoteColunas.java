@@ -0,0 +1,475 @@
+package open.ddo.android.persistencia;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+
+import open.ddo.android.persistencia.excecao.DAOException;
+import android.database.Cursor;
+
+/**
+ * Resultado colunar de uma pesquisa (veja
+ * <tt>AbstractDAO.pesquisarColunas</tt>): cada coluna é lida do cursor
+ * diretamente para um vetor primitivo (<tt>long[]</tt>, <tt>int[]</tt> ou
+ * <tt>double[]</tt>), sem objetos por linha. Colunas texto podem ser
+ * codificadas por dicionário (um <tt>int</tt> por linha e cada texto
+ * distinto guardado uma única vez).<br/>
+ *
+ * Os nulos de cada coluna são marcados em um <tt>BitSet</tt> (o valor no
+ * vetor fica 0, ou -1 no código do dicionário). Os vetores retornados são
+ * os do próprio lote (de tamanho <tt>tamanho()</tt>) e não devem ser
+ * alterados.
+ *
+ * @author ozairjr
+ *
+ */
+public class LoteColunas {
+
+	// --------------------------------------------------------------
+	// Classes internas
+	// --------------------------------------------------------------
+
+	/**
+	 * Tipo (vetor) de uma coluna do lote.
+	 */
+	public enum Tipo {
+		/** <tt>long[]</tt>. */
+		LONG,
+		/** <tt>int[]</tt>. */
+		INT,
+		/** <tt>double[]</tt>. */
+		DOUBLE,
+		/** <tt>String[]</tt>. */
+		TEXTO,
+		/** <tt>int[]</tt> com os códigos do dicionário de textos. */
+		DICIONARIO
+	}
+
+	// --------------------------------------------------------------
+	// Atributos de classe
+	// --------------------------------------------------------------
+
+	/** Capacidade inicial dos vetores, se a quantidade de linhas não for
+	 * conhecida. */
+	private static final int CAPACIDADE_INICIAL = 64;
+
+	// --------------------------------------------------------------
+	// Atributos do objeto
+	// --------------------------------------------------------------
+
+	/** Nomes das colunas (ou atributos). */
+	private final String[] nomes;
+	/** Tipos das colunas. */
+	private final Tipo[] tipos;
+	/** Vetor de cada coluna (<tt>long[]</tt>, <tt>int[]</tt>,
+	 * <tt>double[]</tt> ou <tt>String[]</tt>). */
+	private final Object[] dados;
+	/** Dicionário de cada coluna <tt>DICIONARIO</tt>. */
+	private final String[][] dicionarios;
+	/** Linhas nulas de cada coluna. */
+	private final BitSet[] nulos;
+	/** Quantidade de linhas. */
+	private int tamanho = 0;
+
+	// --------------------------------------------------------------
+	// Métodos
+	// --------------------------------------------------------------
+
+	/**
+	 * Construtor.
+	 * @param nomes Nomes das colunas.
+	 * @param tipos Tipos das colunas.
+	 */
+	private LoteColunas(String[] nomes, Tipo[] tipos) {
+		this.nomes = nomes;
+		this.tipos = tipos;
+		this.dados = new Object[tipos.length];
+		this.dicionarios = new String[tipos.length][];
+		this.nulos = new BitSet[tipos.length];
+		for (int i=0; i < tipos.length; i++) {
+			nulos[i] = new BitSet();
+		}
+	}
+
+	/**
+	 * Carrega todas as linhas do cursor (cujas colunas estão na ordem de
+	 * <tt>nomes</tt>).
+	 * @param cursor Cursor (não é fechado).
+	 * @param nomes Nomes das colunas.
+	 * @param tipos Tipos das colunas.
+	 * @return
+	 */
+	static LoteColunas carregar(Cursor cursor, String[] nomes, Tipo[] tipos) {
+		LoteColunas lote = new LoteColunas(nomes, tipos);
+		final int colunas = tipos.length;
+		int capacidade = cursor != null ? Math.max(cursor.getCount(), 0) : 0;
+		if (capacidade == 0) {
+			capacidade = CAPACIDADE_INICIAL;
+		}
+		long[][] longs = new long[colunas][];
+		int[][] ints = new int[colunas][];
+		double[][] doubles = new double[colunas][];
+		String[][] textos = new String[colunas][];
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		HashMap<String, Integer>[] codigos = new HashMap[colunas];
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		ArrayList<String>[] dicionarios = new ArrayList[colunas];
+		for (int c=0; c < colunas; c++) {
+			switch (tipos[c]) {
+				case LONG:
+					longs[c] = new long[capacidade];
+				break;
+				case INT:
+					ints[c] = new int[capacidade];
+				break;
+				case DOUBLE:
+					doubles[c] = new double[capacidade];
+				break;
+				case TEXTO:
+					textos[c] = new String[capacidade];
+				break;
+				case DICIONARIO:
+					ints[c] = new int[capacidade];
+					codigos[c] = new HashMap<String, Integer>();
+					dicionarios[c] = new ArrayList<String>();
+				break;
+			}
+		}
+		int linha = 0;
+		if (cursor != null && cursor.moveToFirst()) {
+			do {
+				if (linha == capacidade) {
+					capacidade += capacidade >> 1;
+					for (int c=0; c < colunas; c++) {
+						if (longs[c] != null) {
+							longs[c] = redimensionar(longs[c], capacidade);
+						} else if (ints[c] != null) {
+							ints[c] = redimensionar(ints[c], capacidade);
+						} else if (doubles[c] != null) {
+							doubles[c] = redimensionar(doubles[c], capacidade);
+						} else {
+							textos[c] = redimensionar(textos[c], capacidade);
+						}
+					}
+				}
+				for (int c=0; c < colunas; c++) {
+					if (cursor.isNull(c)) {
+						lote.nulos[c].set(linha);
+						if (tipos[c] == Tipo.DICIONARIO) {
+							ints[c][linha] = -1;
+						}
+						continue;
+					}
+					switch (tipos[c]) {
+						case LONG:
+							longs[c][linha] = cursor.getLong(c);
+						break;
+						case INT:
+							ints[c][linha] = cursor.getInt(c);
+						break;
+						case DOUBLE:
+							doubles[c][linha] = cursor.getDouble(c);
+						break;
+						case TEXTO:
+							textos[c][linha] = cursor.getString(c);
+						break;
+						case DICIONARIO: {
+							String texto = cursor.getString(c);
+							Integer codigo = codigos[c].get(texto);
+							if (codigo == null) {
+								codigo = Integer.valueOf(dicionarios[c].size());
+								codigos[c].put(texto, codigo);
+								dicionarios[c].add(texto);
+							}
+							ints[c][linha] = codigo.intValue();
+						}
+						break;
+					}
+				}
+				linha++;
+			} while (cursor.moveToNext());
+		}
+		// Vetores compactos, do tamanho do lote.
+		for (int c=0; c < colunas; c++) {
+			switch (tipos[c]) {
+				case LONG:
+					lote.dados[c] = redimensionar(longs[c], linha);
+				break;
+				case INT:
+					lote.dados[c] = redimensionar(ints[c], linha);
+				break;
+				case DOUBLE:
+					lote.dados[c] = redimensionar(doubles[c], linha);
+				break;
+				case TEXTO:
+					lote.dados[c] = redimensionar(textos[c], linha);
+				break;
+				case DICIONARIO:
+					lote.dados[c] = redimensionar(ints[c], linha);
+					lote.dicionarios[c] = dicionarios[c].toArray(new String[dicionarios[c].size()]);
+				break;
+			}
+		}
+		lote.tamanho = linha;
+		return lote;
+	}
+
+	/**
+	 * Quantidade de linhas.
+	 * @return
+	 */
+	public int tamanho() {
+		return tamanho;
+	}
+
+	/**
+	 * Quantidade de colunas.
+	 * @return
+	 */
+	public int getQuantidadeColunas() {
+		return tipos.length;
+	}
+
+	/**
+	 * Nome da coluna (como informado na pesquisa).
+	 * @param coluna Índice da coluna.
+	 * @return
+	 */
+	public String getNome(int coluna) {
+		return nomes[coluna];
+	}
+
+	/**
+	 * Tipo da coluna.
+	 * @param coluna Índice da coluna.
+	 * @return
+	 */
+	public Tipo getTipo(int coluna) {
+		return tipos[coluna];
+	}
+
+	/**
+	 * Índice da coluna pelo nome (como informado na pesquisa).
+	 * @param nome
+	 * @return O índice, ou -1 se não houver.
+	 */
+	public int indiceColuna(String nome) {
+		for (int i=0; i < nomes.length; i++) {
+			if (nomes[i].equals(nome)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Verifica se o valor é nulo.
+	 * @param coluna Índice da coluna.
+	 * @param linha Índice da linha.
+	 * @return
+	 */
+	public boolean isNulo(int coluna, int linha) {
+		return nulos[coluna].get(linha);
+	}
+
+	/**
+	 * Linhas nulas da coluna (não deve ser alterado).
+	 * @param coluna Índice da coluna.
+	 * @return
+	 */
+	public BitSet getNulos(int coluna) {
+		return nulos[coluna];
+	}
+
+	/**
+	 * Vetor da coluna <tt>LONG</tt>.
+	 * @param coluna Índice da coluna.
+	 * @return
+	 */
+	public long[] getLongs(int coluna) {
+		return (long[]) obterDados(coluna, Tipo.LONG);
+	}
+
+	/**
+	 * Vetor da coluna <tt>INT</tt>.
+	 * @param coluna Índice da coluna.
+	 * @return
+	 */
+	public int[] getInts(int coluna) {
+		return (int[]) obterDados(coluna, Tipo.INT);
+	}
+
+	/**
+	 * Vetor da coluna <tt>DOUBLE</tt>.
+	 * @param coluna Índice da coluna.
+	 * @return
+	 */
+	public double[] getDoubles(int coluna) {
+		return (double[]) obterDados(coluna, Tipo.DOUBLE);
+	}
+
+	/**
+	 * Vetor da coluna <tt>TEXTO</tt>.
+	 * @param coluna Índice da coluna.
+	 * @return
+	 */
+	public String[] getTextos(int coluna) {
+		return (String[]) obterDados(coluna, Tipo.TEXTO);
+	}
+
+	/**
+	 * Códigos (índices em <tt>getDicionario</tt>, ou -1 se nulo) da coluna
+	 * <tt>DICIONARIO</tt>.
+	 * @param coluna Índice da coluna.
+	 * @return
+	 */
+	public int[] getCodigos(int coluna) {
+		return (int[]) obterDados(coluna, Tipo.DICIONARIO);
+	}
+
+	/**
+	 * Textos distintos da coluna <tt>DICIONARIO</tt>, na ordem em que
+	 * foram lidos.
+	 * @param coluna Índice da coluna.
+	 * @return
+	 */
+	public String[] getDicionario(int coluna) {
+		obterDados(coluna, Tipo.DICIONARIO);
+		return dicionarios[coluna];
+	}
+
+	/**
+	 * Valor da coluna numérica como <tt>long</tt> (0 se nulo).
+	 * @param coluna Índice da coluna.
+	 * @param linha Índice da linha.
+	 * @return
+	 */
+	public long getLong(int coluna, int linha) {
+		verificarLinha(linha);
+		switch (tipos[coluna]) {
+			case LONG:
+				return ((long[]) dados[coluna])[linha];
+			case INT:
+				return ((int[]) dados[coluna])[linha];
+			case DOUBLE:
+				return (long) ((double[]) dados[coluna])[linha];
+			default:
+				throw new DAOException("Coluna " + nomes[coluna] + " n\u00e3o \u00e9 num\u00e9rica.");
+		}
+	}
+
+	/**
+	 * Valor da coluna numérica como <tt>double</tt> (0 se nulo).
+	 * @param coluna Índice da coluna.
+	 * @param linha Índice da linha.
+	 * @return
+	 */
+	public double getDouble(int coluna, int linha) {
+		if (tipos[coluna] == Tipo.DOUBLE) {
+			verificarLinha(linha);
+			return ((double[]) dados[coluna])[linha];
+		}
+		return getLong(coluna, linha);
+	}
+
+	/**
+	 * Valor da coluna como texto (decodificando o dicionário).
+	 * @param coluna Índice da coluna.
+	 * @param linha Índice da linha.
+	 * @return O texto, ou <tt>null</tt> se nulo.
+	 */
+	public String getTexto(int coluna, int linha) {
+		verificarLinha(linha);
+		if (nulos[coluna].get(linha)) {
+			return null;
+		}
+		switch (tipos[coluna]) {
+			case TEXTO:
+				return ((String[]) dados[coluna])[linha];
+			case DICIONARIO:
+				return dicionarios[coluna][((int[]) dados[coluna])[linha]];
+			case DOUBLE:
+				return String.valueOf(((double[]) dados[coluna])[linha]);
+			default:
+				return String.valueOf(getLong(coluna, linha));
+		}
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder("LoteColunas[");
+		builder.append(tamanho);
+		for (int i=0; i < nomes.length; i++) {
+			builder.append(", ").append(nomes[i]).append(':').append(tipos[i]);
+		}
+		return builder.append(']').toString();
+	}
+
+	// --------------------------------------------------------------
+	// Métodos auxiliares
+	// --------------------------------------------------------------
+
+	/**
+	 * Obtém o vetor da coluna, verificando o tipo.
+	 * @param coluna Índice da coluna.
+	 * @param tipo Tipo esperado.
+	 * @return
+	 */
+	private Object obterDados(int coluna, Tipo tipo) {
+		if (tipos[coluna] != tipo) {
+			throw new DAOException("Coluna "
+					+ nomes[coluna]
+					+ " \u00e9 do tipo "
+					+ tipos[coluna]
+					+ ", e n\u00e3o "
+					+ tipo);
+		}
+		return dados[coluna];
+	}
+
+	/**
+	 * Verifica se o índice da linha é válido.
+	 * @param linha
+	 */
+	private void verificarLinha(int linha) {
+		if (linha < 0 || linha >= tamanho) {
+			throw new IndexOutOfBoundsException("Linha " + linha + " de " + tamanho);
+		}
+	}
+
+	private static long[] redimensionar(long[] vetor, int tamanho) {
+		if (vetor.length == tamanho) {
+			return vetor;
+		}
+		long[] novo = new long[tamanho];
+		System.arraycopy(vetor, 0, novo, 0, Math.min(vetor.length, tamanho));
+		return novo;
+	}
+
+	private static int[] redimensionar(int[] vetor, int tamanho) {
+		if (vetor.length == tamanho) {
+			return vetor;
+		}
+		int[] novo = new int[tamanho];
+		System.arraycopy(vetor, 0, novo, 0, Math.min(vetor.length, tamanho));
+		return novo;
+	}
+
+	private static double[] redimensionar(double[] vetor, int tamanho) {
+		if (vetor.length == tamanho) {
+			return vetor;
+		}
+		double[] novo = new double[tamanho];
+		System.arraycopy(vetor, 0, novo, 0, Math.min(vetor.length, tamanho));
+		return novo;
+	}
+
+	private static String[] redimensionar(String[] vetor, int tamanho) {
+		if (vetor.length == tamanho) {
+			return vetor;
+		}
+		String[] novo = new String[tamanho];
+		System.arraycopy(vetor, 0, novo, 0, Math.min(vetor.length, tamanho));
+		return novo;
+	}
+}
@@ -0,0 +1,94 @@
+package open.ddo.android.persistencia;
+
+import android.database.Cursor;
+
+/**
+ * Mapeador de entidade gerado em tempo de compilação (pelo processador de
+ * anotações <tt>open.ddo.android.processador.ProcessadorEntidades</tt>),
+ * com acesso direto aos atributos, sem reflexão.<br/>
+ * 
+ * A classe gerada fica no mesmo pacote da entidade, com o nome
+ * <tt>[NomeEntidade]_Mapeador</tt>. Se existir, é utilizada pelo
+ * <tt>MetadadosBuilder</tt>; senão, a entidade é mapeada via reflexão.<br/>
+ * 
+ * Os índices utilizados nos métodos são os da ordem de <tt>atributos()</tt>.
+ * 
+ * @author ozairjr
+ *
+ * @param <T> Tipo da entidade.
+ */
+public interface MapeadorGerado<T> {
+	
+	/** Sufixo do nome da classe gerada. */
+	String SUFIXO = "_Mapeador";
+	
+	/**
+	 * Nome da tabela.
+	 * @return
+	 */
+	String nomeTabela();
+	
+	/**
+	 * Nomes dos atributos anotados com <tt>@Coluna</tt>.
+	 * @return
+	 */
+	String[] atributos();
+	
+	/**
+	 * Nomes das colunas (na ordem de <tt>atributos()</tt>).
+	 * @return
+	 */
+	String[] colunas();
+	
+	/**
+	 * Tipos dos atributos (na ordem de <tt>atributos()</tt>), como eram
+	 * na geração do mapeador.
+	 * @return
+	 */
+	Class<?>[] tipos();
+	
+	/**
+	 * Formatos dos atributos (veja <tt>AtributoEntidade.formato</tt>), na
+	 * ordem de <tt>atributos()</tt>, como eram na geração do mapeador.
+	 * @return
+	 */
+	Object[] formatos();
+	
+	/**
+	 * SQL de inserção, com todas as colunas exceto a chave autoincremento.
+	 * @return
+	 */
+	String sqlInsercao();
+	
+	/**
+	 * Cria nova instância da entidade.
+	 * @return
+	 */
+	T novaInstancia();
+	
+	/**
+	 * Obtém o valor do atributo.
+	 * @param obj Objeto entidade.
+	 * @param indice Índice do atributo.
+	 * @return
+	 */
+	Object obterValor(T obj, int indice);
+	
+	/**
+	 * Atribui o valor (já no tipo do atributo) ao atributo.
+	 * Para atributos primitivos, <tt>null</tt> atribui o valor padrão do tipo.
+	 * @param obj Objeto entidade.
+	 * @param indice Índice do atributo.
+	 * @param valor Valor.
+	 */
+	void atribuirValor(T obj, int indice, Object valor);
+	
+	/**
+	 * Preenche o objeto com os valores da linha corrente do cursor.
+	 * @param obj Objeto entidade.
+	 * @param cursor Cursor (posicionado na linha).
+	 * @param indices Índice no cursor de cada atributo (na ordem de
+	 * <tt>atributos()</tt>), ou -1 se a coluna não está no cursor.
+	 */
+	void preencher(T obj, Cursor cursor, int[] indices);
+}
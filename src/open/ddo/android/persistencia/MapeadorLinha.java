@@ -0,0 +1,157 @@
+package open.ddo.android.persistencia;
+
+
+import open.ddo.android.persistencia.excecao.DAOException;
+import android.database.Cursor;
+
+/**
+ * Converte as linhas de um cursor em objetos da entidade.<br/>
+ * 
+ * É criado uma única vez para cada entidade e 'layout' de colunas do cursor
+ * (veja <tt>MetaDadosEntidade.getMapeador(Cursor)</tt>): os índices das 
+ * colunas no cursor são resolvidos na criação e os atributos já ficam 
+ * acessíveis, evitando a busca pelo nome da coluna e a troca da 
+ * acessibilidade do atributo a cada linha.
+ * 
+ * @author ozairjr
+ *
+ * @param <T> Tipo da entidade.
+ */
+public class MapeadorLinha<T> {
+	
+	// --------------------------------------------------------------
+	// Atributos do objeto
+	// --------------------------------------------------------------
+	
+	/** Metadados da entidade. */
+	private final MetaDadosEntidade<T> metadados;
+	/** Colunas da entidade presentes no cursor. */
+	private final AtributoEntidade[] colunas;
+	/** Índice no cursor de cada coluna (mesma ordem de <tt>colunas</tt>). */
+	private final int[] indices;
+	/** Se todas as colunas da entidade estão presentes no cursor. */
+	private final boolean completo;
+	/** Índice no cursor de cada atributo do mapeador gerado 
+	 * (<tt>null</tt> se não há mapeador gerado). */
+	private final int[] indicesGerados;
+	
+	// --------------------------------------------------------------
+	// Métodos
+	// --------------------------------------------------------------
+	
+	/**
+	 * Construtor.
+	 * @param metadados Metadados da entidade.
+	 * @param nomeColunas Nomes das colunas do cursor.
+	 */
+	MapeadorLinha(MetaDadosEntidade<T> metadados, String[] nomeColunas) {
+		this.metadados = metadados;
+		AtributoEntidade[] presentes = new AtributoEntidade[metadados.colunas.length];
+		int[] posicoes = new int[metadados.colunas.length];
+		int quantidade = 0;
+		for (AtributoEntidade ae: metadados.colunas) {
+			int indice = indiceDe(nomeColunas, ae.nomeColuna);
+			if (indice < 0) {
+				continue;
+			}
+			presentes[quantidade] = ae;
+			posicoes[quantidade++] = indice;
+		} // fim for
+		this.completo = quantidade == metadados.colunas.length;
+		this.colunas = new AtributoEntidade[quantidade];
+		this.indices = new int[quantidade];
+		System.arraycopy(presentes, 0, colunas, 0, quantidade);
+		System.arraycopy(posicoes, 0, indices, 0, quantidade);
+		if (metadados.mapeadorGerado != null) {
+			indicesGerados = new int[metadados.colunas.length];
+			for (int i=0; i < indicesGerados.length; i++) {
+				indicesGerados[i] = -1;
+			}
+			for (int i=0; i < quantidade; i++) {
+				indicesGerados[colunas[i].indiceGerado] = indices[i];
+			}
+		} else {
+			indicesGerados = null;
+		}
+	}
+	
+	/**
+	 * Cria um novo objeto com os valores da linha corrente do cursor.
+	 * @param cursor Cursor (posicionado na linha).
+	 * @return
+	 */
+	public T extrair(Cursor cursor) {
+		T obj = AbstractDAO.novaInstancia(metadados);
+		preencher(cursor, obj);
+		if (completo) {
+			metadados.registrarValores(obj);
+		}
+		return obj;
+	}
+	
+	/**
+	 * Preenche o objeto com os valores da linha corrente do cursor.
+	 * @param cursor Cursor (posicionado na linha).
+	 * @param obj Objeto a ser preenchido.
+	 */
+	@SuppressWarnings("unchecked")
+	public void preencher(Cursor cursor, Object obj) {
+		if (indicesGerados != null) {
+			metadados.mapeadorGerado.preencher((T) obj, cursor, indicesGerados);
+			return;
+		}
+		for (int i=0; i < colunas.length; i++) {
+			final AtributoEntidade ae = colunas[i];
+			// extraindo o valor do banco e definindo-o para o objeto.
+			try {
+				ae.conversor.atribuir(cursor, indices[i], ae.acessor, obj);
+			} catch (Exception e) {
+				throw new DAOException("Falha ao atribuir valor para "
+						+ ae.atributo.getName(),
+						e);
+			}
+		} // fim for
+	}
+	
+	/**
+	 * Verifica se todas as colunas da entidade estão no cursor.
+	 * @return
+	 */
+	public boolean isCompleto() {
+		return completo;
+	}
+	
+	// --------------------------------------------------------------
+	// Métodos auxiliares
+	// --------------------------------------------------------------
+	
+	/**
+	 * Obtém o índice da coluna (ou -1 se não encontrada).
+	 * @param nomeColunas
+	 * @param nomeColuna
+	 * @return
+	 */
+	private static int indiceDe(String[] nomeColunas, String nomeColuna) {
+		for (int i=0; i < nomeColunas.length; i++) {
+			if (nomeColuna.equalsIgnoreCase(nomeColunas[i])) {
+				return i;
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * Monta a assinatura (nomes das colunas, separados por vírgula) do
+	 * 'layout' das colunas do cursor.
+	 * @param nomeColunas
+	 * @return
+	 */
+	static String assinatura(String[] nomeColunas) {
+		StringBuilder builder = new StringBuilder();
+		for (String nome: nomeColunas) {
+			builder.append(nome);
+			builder.append(',');
+		}
+		return builder.toString();
+	}
+}
@@ -2,15 +2,22 @@ package open.ddo.android.persistencia;
 
 import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 
 import open.ddo.android.persistencia.anotacao.Coluna;
-import open.ddo.android.persistencia.anotacao.Data;
-import open.ddo.android.persistencia.anotacao.Enumeracao;
+import open.ddo.android.persistencia.anotacao.MuitosParaUm;
 import open.ddo.android.persistencia.anotacao.Tabela;
+import open.ddo.android.persistencia.anotacao.UmParaMuitos;
 import open.ddo.android.persistencia.excecao.DAOException;
 import open.ddo.android.util.FormatoData;
+import open.ddo.android.util.MapaLRU;
 import open.ddo.android.util.ObjectUtil;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
 
 /**
  * Metadados da entidade que está anotada com @Tabela e @Coluna (pelo menos).
@@ -21,6 +28,15 @@ import open.ddo.android.util.ObjectUtil;
  */
 public class MetaDadosEntidade<T> {
 	
+	// --------------------------------------------------------------
+	// Atributos de classe
+	// --------------------------------------------------------------
+	
+	/** Quantidade máxima de mapeadores de linha (por entidade). */
+	private static final int MAXIMO_MAPEADORES = 32;
+	/** Quantidade máxima de cláusulas 'where' compiladas (por entidade). */
+	private static final int MAXIMO_CLAUSULAS = 64;
+	
 	// --------------------------------------------------------------
 	// Atributos do objeto
 	// --------------------------------------------------------------
@@ -31,10 +47,59 @@ public class MetaDadosEntidade<T> {
 	public final String nomeTabela;
 	/** Colunas . */
 	public final AtributoEntidade[] colunas;
+	/** Relacionamentos (<tt>@MuitosParaUm</tt> e <tt>@UmParaMuitos</tt>). */
+	public final RelacionamentoEntidade[] relacionamentos;
 	/** As colunas que são chave. */
 	public AtributoEntidade[] chaves;
+	/** Mapeador gerado em tempo de compilação 
+	 * (<tt>null</tt> se a entidade é mapeada via reflexão). */
+	public final MapeadorGerado<T> mapeadorGerado;
+	/** Se os resultados das pesquisas são mantidos em cache 
+	 * (<tt>@Tabela(cacheConsultas = true)</tt>). */
+	public final boolean cacheConsultas;
+	/** Colunas pelo nome da coluna. */
+	private final HashMap<String, AtributoEntidade> colunasPeloNome = 
+			new HashMap<String, AtributoEntidade>();
+	/** Colunas pelo nome do atributo. */
+	private final HashMap<String, AtributoEntidade> colunasPeloAtributo = 
+			new HashMap<String, AtributoEntidade>();
 	/** O nome das colunas. */
 	private String[] nomeColunas=  null;
+	/** As colunas utilizadas no 'insert' (exceto chave autoincremento). */
+	private AtributoEntidade[] colunasInsercao = null;
+	/** SQL de inserção (parametrizado na ordem de <tt>colunasInsercao</tt>). */
+	private String sqlInsercao = null;
+	/** Instruções compiladas da entidade, por B.D., de cada <i>thread</i>. */
+	private final ThreadLocal<HashMap<SQLiteDatabase, SentencasEntidade>> sentencas = 
+			new ThreadLocal<HashMap<SQLiteDatabase, SentencasEntidade>>() {
+		@Override
+		protected HashMap<SQLiteDatabase, SentencasEntidade> initialValue() {
+			return new HashMap<SQLiteDatabase, SentencasEntidade>();
+		}
+	};
+	/** Plano de acesso pela chave (criado no primeiro uso). */
+	private PlanoChave planoChave = null;
+	/** Cache dos registros (se anotada com <tt>@Cache</tt>). */
+	private CacheEntidades<T> cache = null;
+	/** Se o cache já foi verificado. */
+	private boolean cacheVerificado = false;
+	/** Chave autoincremento (<tt>null</tt> se não houver). */
+	private volatile AtributoEntidade chaveAutoIncremento = null;
+	/** Se a chave autoincremento já foi verificada. */
+	private volatile boolean chaveAutoIncrementoVerificada = false;
+	/** Rastreador das alterações (<tt>null</tt> se não rastreia). */
+	private final RastreadorAlteracoes rastreador;
+	/** Projeções, pelos atributos (<tt>List</tt>) ou pela classe 'DTO'. */
+	private final HashMap<Object, Projecao<?>> projecoes = 
+			new HashMap<Object, Projecao<?>>();
+	/** Cláusulas 'where' compiladas, pelo texto da cláusula. */
+	private final MapaLRU<String, ClausulaCompilada> clausulas = 
+			new MapaLRU<String, ClausulaCompilada>(MAXIMO_CLAUSULAS);
+	/** Cláusula 'where' nula (sem condições). */
+	private ClausulaCompilada clausulaNula = null;
+	/** Mapeadores de linha, pela assinatura das colunas do cursor. */
+	private final HashMap<String, MapeadorLinha<T>> mapeadores = 
+			new HashMap<String, MapeadorLinha<T>>();
 	
 	// --------------------------------------------------------------
 	// Métodos
@@ -46,13 +111,51 @@ public class MetaDadosEntidade<T> {
 	 * em pelo menos um atributo.
 	 */
 	public MetaDadosEntidade(Class<T> classe) {
+		this(classe, null);
+	}
+	
+	/**
+	 * Construtor com o mapeador gerado (em tempo de compilação) da entidade.
+	 * @param classe Classe da entidade, deve estar anotada @Coluna
+	 * em pelo menos um atributo.
+	 * @param mapeadorGerado Mapeador gerado (opcional). Se não corresponder
+	 * às colunas da entidade, é desconsiderado.
+	 */
+	@SuppressWarnings("unchecked")
+	public MetaDadosEntidade(Class<T> classe, MapeadorGerado<T> mapeadorGerado) {
 		this.classe = classe;
 		this.nomeTabela = carregarNomeTabela(classe);
 		this.colunas = carregarColunas(classe);
 		if (colunas == null || colunas.length == 0) {
 			throw new RuntimeException("Sem colunas para a tabela " + nomeTabela);
 		}
+		for (AtributoEntidade ae: colunas) {
+			if (!colunasPeloNome.containsKey(ae.nomeColuna)) {
+				colunasPeloNome.put(ae.nomeColuna, ae);
+			}
+			if (!colunasPeloAtributo.containsKey(ae.atributo.getName())) {
+				colunasPeloAtributo.put(ae.atributo.getName(), ae);
+			}
+		}
+		this.relacionamentos = carregarRelacionamentos(classe);
 		chaves = null;
+		if (mapeadorGerado != null && !vincularMapeadorGerado(mapeadorGerado)) {
+			mapeadorGerado = null;
+		}
+		this.mapeadorGerado = mapeadorGerado;
+		if (mapeadorGerado != null) {
+			for (AtributoEntidade ae: colunas) {
+				ae.acessor = new AcessorGerado(
+						(MapeadorGerado<Object>) mapeadorGerado,
+						ae.indiceGerado);
+			}
+		}
+		rastreador = classe.isAnnotationPresent(Tabela.class)
+				&& classe.getAnnotation(Tabela.class).rastrearAlteracoes() ?
+				new RastreadorAlteracoes()
+				: null;
+		cacheConsultas = classe.isAnnotationPresent(Tabela.class)
+				&& classe.getAnnotation(Tabela.class).cacheConsultas();
 	}
 	
 	/**
@@ -68,21 +171,22 @@ public class MetaDadosEntidade<T> {
 	 * @return
 	 */
 	public AtributoEntidade getChaveAutoIncremento() {
-		ArrayList<AtributoEntidade> chavesAutoincremento = new ArrayList<AtributoEntidade>();
-		for (AtributoEntidade obj: getChaves()) {
-			if (obj.chavePrimariaAutoincremento()) {
-				chavesAutoincremento.add(obj);
+		if (!chaveAutoIncrementoVerificada) {
+			AtributoEntidade chave = null;
+			for (AtributoEntidade obj: getChaves()) {
+				if (obj.chavePrimariaAutoincremento()) {
+					if (chave != null) {
+						throw new DAOException(
+								"Identificada mais de uma chave autoincremento para "
+								+ nomeTabela);
+					}
+					chave = obj;
+				}
 			}
+			chaveAutoIncremento = chave;
+			chaveAutoIncrementoVerificada = true;
 		}
-		if (chavesAutoincremento.isEmpty()) {
-			return null;
-		}
-		if (chavesAutoincremento.size() > 1) {
-			throw new DAOException(
-					"Identificada mais de uma chave autoincremento para "
-					+ nomeTabela);
-		}
-		return chavesAutoincremento.get(0);
+		return chaveAutoIncremento;
 	}
 	
 	/**
@@ -92,10 +196,21 @@ public class MetaDadosEntidade<T> {
 	 */
 	public AtributoEntidade getAtributoPelaColuna(String nomeColuna) {
 		if (nomeColuna != null && nomeColuna.length() > 0) {
-			for (AtributoEntidade f: colunas) {
-				if (f.nomeColuna.equals(nomeColuna)) {
-					return f;
-				}
+			return colunasPeloNome.get(nomeColuna);
+		}
+		return null;
+	}
+	
+	/**
+	 * Obtém o relacionamento pelo nome do atributo.
+	 * @param nomeAtributo Nome do atributo anotado com 
+	 * <tt>@MuitosParaUm</tt> ou <tt>@UmParaMuitos</tt>.
+	 * @return O relacionamento, ou <tt>null</tt> se não for encontrado.
+	 */
+	public RelacionamentoEntidade getRelacionamento(String nomeAtributo) {
+		for (RelacionamentoEntidade relacionamento: relacionamentos) {
+			if (relacionamento.atributo.getName().equals(nomeAtributo)) {
+				return relacionamento;
 			}
 		}
 		return null;
@@ -126,12 +241,8 @@ public class MetaDadosEntidade<T> {
 	 * @return
 	 */
 	public String obterNomeColuna(String nomeAtributo) {
-		for (AtributoEntidade obj: colunas) {
-			if (obj.atributo.getName().equals(nomeAtributo)) {
-				return obj.nomeColuna;
-			}
-		}
-		return null;
+		AtributoEntidade obj = colunasPeloAtributo.get(nomeAtributo);
+		return obj != null ? obj.nomeColuna : null;
 	}
 	
 	/**
@@ -164,6 +275,262 @@ public class MetaDadosEntidade<T> {
 		return builder.toString();
 	}
 	
+	/**
+	 * Obtém as colunas que são informadas no 'insert', isto é, todas
+	 * exceto a chave autoincremento (que é gerada pelo B.D.).
+	 * @return
+	 */
+	public AtributoEntidade[] getColunasInsercao() {
+		if (colunasInsercao == null) {
+			final AtributoEntidade atributoCP = getChaveAutoIncremento();
+			ArrayList<AtributoEntidade> lista = new ArrayList<AtributoEntidade>(colunas.length);
+			for (AtributoEntidade obj: colunas) {
+				if (!obj.equals(atributoCP)) {
+					lista.add(obj);
+				}
+			}
+			colunasInsercao = lista.toArray(new AtributoEntidade[lista.size()]);
+		}
+		return colunasInsercao;
+	}
+	
+	/**
+	 * Obtém o SQL de inserção da entidade, com um '?' para cada coluna de
+	 * <tt>getColunasInsercao()</tt> (na mesma ordem).
+	 * @return
+	 */
+	public String getSqlInsercao() {
+		if (sqlInsercao == null) {
+			AtributoEntidade[] lista = getColunasInsercao();
+			StringBuilder builder = new StringBuilder("insert into ");
+			builder.append(nomeTabela);
+			if (lista.length == 0) {
+				// Apenas a chave autoincremento.
+				sqlInsercao = builder.append(" default values").toString();
+				return sqlInsercao;
+			}
+			builder.append(" (");
+			for (int i=0; i < lista.length; i++) {
+				if (i > 0) {
+					builder.append(",");
+				}
+				builder.append(lista[i].nomeColuna);
+			}
+			builder.append(") values (");
+			for (int i=0; i < lista.length; i++) {
+				builder.append(i > 0 ? ",?" : "?");
+			}
+			builder.append(")");
+			sqlInsercao = builder.toString();
+		}
+		return sqlInsercao;
+	}
+	
+	/**
+	 * Obtém as instruções compiladas da entidade para o B.D. informado,
+	 * da <i>thread</i> corrente (veja <tt>SentencasEntidade</tt>).
+	 * As instruções são mantidas por B.D. (DAOs com B.D. diferentes não
+	 * descartam as instruções uns dos outros); as dos B.D. já fechados são
+	 * descartadas quando outro B.D. é utilizado.
+	 * @param bd
+	 * @return
+	 */
+	public SentencasEntidade getSentencas(SQLiteDatabase bd) {
+		HashMap<SQLiteDatabase, SentencasEntidade> sentencas = this.sentencas.get();
+		SentencasEntidade sentencasBD = sentencas.get(bd);
+		if (sentencasBD == null || !bd.isOpen()) {
+			Iterator<SentencasEntidade> it = sentencas.values().iterator();
+			while (it.hasNext()) {
+				SentencasEntidade anteriores = it.next();
+				if (!anteriores.bd.isOpen()) {
+					anteriores.fechar();
+					it.remove();
+				}
+			}
+			sentencasBD = new SentencasEntidade(this, bd);
+			sentencas.put(bd, sentencasBD);
+		}
+		return sentencasBD;
+	}
+	
+	/**
+	 * Obtém o plano de acesso pela chave primária (montado apenas no
+	 * primeiro uso).
+	 * @return
+	 */
+	public synchronized PlanoChave getPlanoChave() {
+		if (planoChave == null) {
+			planoChave = new PlanoChave(this);
+		}
+		return planoChave;
+	}
+	
+	/**
+	 * Obtém o cache dos registros da entidade.
+	 * @return O cache, ou <tt>null</tt> se a entidade não for anotada
+	 * com <tt>@Cache</tt>.
+	 */
+	public synchronized CacheEntidades<T> getCache() {
+		if (!cacheVerificado) {
+			cache = CacheEntidades.getCache(this);
+			cacheVerificado = true;
+		}
+		return cache;
+	}
+	
+	/**
+	 * Obtém a cláusula 'where' compilada (veja <tt>ClausulaCompilada</tt>),
+	 * montada apenas na primeira vez.
+	 * @param where Cláusula 'where' (pode ser nula).
+	 * @return
+	 */
+	public ClausulaCompilada getClausula(String where) {
+		if (where == null) {
+			if (clausulaNula == null) {
+				clausulaNula = ClausulaCompilada.compilar(this, null);
+			}
+			return clausulaNula;
+		}
+		ClausulaCompilada clausula = clausulas.obter(where);
+		if (clausula == null) {
+			clausula = ClausulaCompilada.compilar(this, where);
+			clausulas.colocar(where, clausula);
+		}
+		return clausula;
+	}
+	
+	/**
+	 * Obtém a projeção dos atributos informados (montada apenas na 
+	 * primeira vez).
+	 * @param atributos Nomes dos atributos (ou das colunas).
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	public Projecao<T> getProjecao(String... atributos) {
+		List<String> chave = Arrays.asList(atributos);
+		synchronized (projecoes) {
+			Projecao<T> projecao = (Projecao<T>) projecoes.get(chave);
+			if (projecao == null) {
+				projecao = Projecao.criar(this, atributos.clone());
+				guardarProjecao(chave, projecao);
+			}
+			return projecao;
+		}
+	}
+	
+	/**
+	 * Obtém a projeção da entidade para a classe 'DTO' (montada apenas na 
+	 * primeira vez).
+	 * @param classeDTO Classe com atributos anotados com <tt>@Coluna</tt>.
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	public <D> Projecao<D> getProjecao(Class<D> classeDTO) {
+		synchronized (projecoes) {
+			Projecao<D> projecao = (Projecao<D>) projecoes.get(classeDTO);
+			if (projecao == null) {
+				projecao = Projecao.criar(
+						this, 
+						MetadadosBuilder.getMetadadosEntidade(classeDTO));
+				guardarProjecao(classeDTO, projecao);
+			}
+			return projecao;
+		}
+	}
+	
+	/**
+	 * Obtém o mapeador de linhas para o 'layout' das colunas do cursor
+	 * (criado apenas na primeira vez que o 'layout' é utilizado).
+	 * @param cursor
+	 * @return
+	 */
+	public MapeadorLinha<T> getMapeador(Cursor cursor) {
+		String[] nomes = cursor.getColumnNames();
+		String assinatura = MapeadorLinha.assinatura(nomes);
+		synchronized (mapeadores) {
+			MapeadorLinha<T> mapeador = mapeadores.get(assinatura);
+			if (mapeador == null) {
+				if (mapeadores.size() >= MAXIMO_MAPEADORES) {
+					mapeadores.clear();
+				}
+				mapeador = new MapeadorLinha<T>(this, nomes);
+				mapeadores.put(assinatura, mapeador);
+			}
+			return mapeador;
+		}
+	}
+	
+	/**
+	 * Obtém o rastreador de alterações da entidade
+	 * (<tt>@Tabela(rastrearAlteracoes = true)</tt>).
+	 * @return O rastreador, ou <tt>null</tt> se a entidade não é rastreada.
+	 */
+	public RastreadorAlteracoes getRastreador() {
+		return rastreador;
+	}
+	
+	/**
+	 * Registra os valores atuais do objeto no rastreador de alterações
+	 * (se a entidade for rastreada). Os <tt>byte[]</tt> são copiados, pois
+	 * podem ser alterados no próprio objeto.
+	 * @param obj
+	 */
+	public void registrarValores(Object obj) {
+		if (rastreador != null) {
+			rastreador.registrar(obj, copiarValores(obj));
+		}
+	}
+	
+	/**
+	 * Extrai os valores de todas as colunas do objeto, no formato que deve 
+	 * ser salvo no B.D.
+	 * @param obj
+	 * @return Os valores, na ordem de <tt>colunas</tt>.
+	 */
+	public Object[] extrairValores(Object obj) {
+		Object[] valores = new Object[colunas.length];
+		for (int i=0; i < colunas.length; i++) {
+			valores[i] = extrairValor(colunas[i], obj);
+		}
+		return valores;
+	}
+	
+	/**
+	 * Extrai uma cópia dos valores das colunas do objeto (como em 
+	 * <tt>extrairValores</tt>, mas copiando os valores mutáveis, como 
+	 * <tt>byte[]</tt>), para ser guardada em cache.
+	 * @param obj
+	 * @return
+	 */
+	public Object[] copiarValores(Object obj) {
+		Object[] valores = extrairValores(obj);
+		for (int i=0; i < valores.length; i++) {
+			if (valores[i] instanceof byte[]) {
+				valores[i] = ((byte[]) valores[i]).clone();
+			}
+		}
+		return valores;
+	}
+	
+	/**
+	 * Cria uma nova instância da entidade com os valores das colunas
+	 * (obtidos de <tt>copiarValores</tt>).
+	 * @param valores Valores no formato do B.D., na ordem de <tt>colunas</tt>.
+	 * @return
+	 */
+	public T criarComValores(Object[] valores) {
+		T obj = AbstractDAO.novaInstancia(this);
+		for (int i=0; i < colunas.length; i++) {
+			Object valor = valores[i];
+			if (valor instanceof byte[]) {
+				valor = ((byte[]) valor).clone();
+			}
+			atribuirValor(colunas[i], obj, valor);
+		}
+		registrarValores(obj);
+		return obj;
+	}
+	
 	/**
 	 * Verificar se o atributo é chave primária.
 	 * @param atributo
@@ -180,23 +547,32 @@ public class MetaDadosEntidade<T> {
 	 * @return
 	 */
 	public static Object extrairValor(AtributoEntidade atributoEntidade, Object obj) {
+		return converterParaBD(atributoEntidade, atributoEntidade.obterValor(obj));
+	}
+	
+	/**
+	 * Converte o valor (no tipo do atributo) para o formato que deve ser 
+	 * salvo no B.D.
+	 * @param atributoEntidade
+	 * @param valorOriginal
+	 * @return
+	 */
+	public static Object converterParaBD(AtributoEntidade atributoEntidade, Object valorOriginal) {
 		
-		Object valorOriginal = ObjectUtil.getValue(obj, atributoEntidade.atributo);
 		Object resultado = null;
 		
 		if (valorOriginal != null) {
 			resultado = valorOriginal;
 			if (atributoEntidade.formato != null) {
 				// Com base no formato atual (Atualizar conforme necessidade.
-				if (atributoEntidade.atributo.getType().isEnum()) {
+				if (valorOriginal instanceof Enum<?>) {
 					Boolean naoOrdinal = Boolean.FALSE.equals(atributoEntidade.formato);
 					Enum<?> e = (Enum<?>) valorOriginal;
 					resultado = naoOrdinal ?
 							e.name()
 							: new Integer(e.ordinal());
 				}
-				else if (atributoEntidade.atributo.getType() == Date.class
-						|| Date.class.equals(atributoEntidade.atributo.getType())) {
+				else if (valorOriginal instanceof Date) {
 					Date d = (Date) valorOriginal;
 					FormatoData fmt = FormatoData.LONG;
 					if (atributoEntidade.formato instanceof FormatoData) {
@@ -232,33 +608,12 @@ public class MetaDadosEntidade<T> {
     		throw new RuntimeException("Atributo n\u00e3o informado");
     	}
     	
-    	Class<?> clazzField = f.getType();
     	if (!f.isAccessible()) {
     		f.setAccessible(true);
     	}
     	try {
-			if (Number.class.isAssignableFrom(clazzField)) {
-				String valueStr = valor != null ? valor.toString() : null;
-				if (valueStr != null && valueStr.trim().length() == 0) {
-					valueStr = null;
-				}
-				valor = valueStr == null ? 
-						null
-						: clazzField.getConstructor(String.class)
-							.newInstance(valor.toString());;
-			}
-			else if (clazzField.isEnum()) {
-				boolean enumeracaoNome = f.isAnnotationPresent(Enumeracao.class)
-						&& !f.getAnnotation(Enumeracao.class).ordinal();
-				valor = ObjectUtil.toEnum(clazzField, valor, !enumeracaoNome); 
-			}
-			else if (Date.class.isAssignableFrom(clazzField)) {
-				FormatoData formato = FormatoData.LONG;
-				if (f.isAnnotationPresent(Data.class)) {
-					formato = f.getAnnotation(Data.class).formato();
-				}
-				valor = ObjectUtil.toDate(valor, formato);
-			}
+			valor = ConversorColuna.obter(f.getType(), AtributoEntidade.obterFormato(f))
+					.converter(valor);
 			f.set(obj, valor);
 		} catch (Exception e) {
 			throw new RuntimeException("Falha ao atribuir valor para "
@@ -268,6 +623,29 @@ public class MetaDadosEntidade<T> {
     	return valor;
     }
 	
+	/**
+	 * Atribui o valor (originário do banco) no atributo da entidade,
+	 * utilizando o conversor e o acessor do atributo.
+	 * @param atributoEntidade Atributo.
+	 * @param obj Objeto destino.
+	 * @param valor Valor (no formato do B.D.)
+	 * @return
+	 */
+	public static Object atribuirValor(AtributoEntidade atributoEntidade, Object obj, Object valor) {
+		if (obj == null) {
+			throw new RuntimeException("Objeto n\u00e3o informado");
+		}
+		try {
+			valor = atributoEntidade.conversor.converter(valor);
+			atributoEntidade.definirValor(obj, valor);
+		} catch (Exception e) {
+			throw new RuntimeException("Falha ao atribuir valor para "
+					+ atributoEntidade.atributo.getName(),
+					e);
+		}
+		return valor;
+	}
+	
 	/**
 	 * Verifica se pelo menos um atributo da entidade possui a anotação
 	 * <tt>@Coluna</tt>.
@@ -298,6 +676,18 @@ public class MetaDadosEntidade<T> {
 	// Métodos auxiliares
 	// --------------------------------------------------------------
 	
+	/**
+	 * Guarda a projeção (com o bloqueio de <tt>projecoes</tt>).
+	 * @param chave
+	 * @param projecao
+	 */
+	private void guardarProjecao(Object chave, Projecao<?> projecao) {
+		if (projecoes.size() >= MAXIMO_MAPEADORES) {
+			projecoes.clear();
+		}
+		projecoes.put(chave, projecao);
+	}
+	
 	/**
 	 * Obtém o valor do atributo no formato de String.
 	 * @param f
@@ -324,6 +714,56 @@ public class MetaDadosEntidade<T> {
 		return nomeTabela;
 	}
 	
+	/**
+	 * Vincula os atributos da entidade aos índices do mapeador gerado.
+	 * Além dos nomes, o tipo e o formato de cada atributo devem ser os 
+	 * mesmos da geração (senão o mapeador atribuiria valores de outro tipo).
+	 * @param mapeador
+	 * @return <tt>false</tt> se o mapeador não corresponde às colunas 
+	 * da entidade (e.g., gerado para uma versão anterior da classe).
+	 */
+	private boolean vincularMapeadorGerado(MapeadorGerado<T> mapeador) {
+		String[] atributos = mapeador.atributos();
+		String[] nomes = mapeador.colunas();
+		Class<?>[] tipos;
+		Object[] formatos;
+		try {
+			tipos = mapeador.tipos();
+			formatos = mapeador.formatos();
+		} catch (AbstractMethodError _) {
+			// Gerado por uma versão anterior do processador.
+			return false;
+		}
+		if (atributos.length != colunas.length || !nomeTabela.equals(mapeador.nomeTabela())) {
+			return false;
+		}
+		boolean mesmaOrdem = true;
+		for (int i=0; i < colunas.length; i++) {
+			int indice = -1;
+			for (int j=0; j < atributos.length; j++) {
+				if (atributos[j].equals(colunas[i].atributo.getName())) {
+					indice = j;
+					break;
+				}
+			}
+			if (indice < 0 
+					|| !nomes[indice].equals(colunas[i].nomeColuna)
+					|| tipos[indice] != colunas[i].atributo.getType()
+					|| (formatos[indice] != null ? 
+							!formatos[indice].equals(colunas[i].formato)
+							: colunas[i].formato != null)) {
+				return false;
+			}
+			colunas[i].indiceGerado = indice;
+			mesmaOrdem &= indice == i;
+		} // fim for
+		if (mesmaOrdem) {
+			// O SQL gerado tem as colunas na mesma ordem dos metadados.
+			sqlInsercao = mapeador.sqlInsercao();
+		}
+		return true;
+	}
+	
 	private static AtributoEntidade[] carregarColunas(Class<?> classe) {
 		ArrayList<Field> atributos = ObjectUtil.getFields(classe);
 		ArrayList<AtributoEntidade> colunas = 
@@ -342,6 +782,26 @@ public class MetaDadosEntidade<T> {
 				: colunas.toArray(new AtributoEntidade[colunas.size()]);
 	}
 
+	/**
+	 * Carrega os relacionamentos (atributos anotados com 
+	 * <tt>@MuitosParaUm</tt> ou <tt>@UmParaMuitos</tt>).
+	 * @param classe
+	 * @return
+	 */
+	private RelacionamentoEntidade[] carregarRelacionamentos(Class<?> classe) {
+		ArrayList<Field> atributos = ObjectUtil.getFields(classe);
+		ArrayList<RelacionamentoEntidade> lista = new ArrayList<RelacionamentoEntidade>();
+		if (atributos != null) {
+			for (Field f: atributos) {
+				if (f.isAnnotationPresent(MuitosParaUm.class)
+						|| f.isAnnotationPresent(UmParaMuitos.class)) {
+					lista.add(new RelacionamentoEntidade(this, f));
+				}
+			}
+		}
+		return lista.toArray(new RelacionamentoEntidade[lista.size()]);
+	}
+
 //	/**
 //	 * Obtém a chave que será 'id' (utilizado em pesquisas).
 //	 * @return
@@ -39,7 +39,7 @@ public class MetadadosBuilder {
 		
 		MetaDadosEntidade<T> metadados = null;
 		if (!repositorio.containsKey(classe)) {
-			metadados = new MetaDadosEntidade<T>(classe);
+			metadados = new MetaDadosEntidade<T>(classe, carregarMapeadorGerado(classe));
 			if (metadados.nomeTabela != null
 					&& metadados.colunas.length > 0
 					&& metadados.getChaves() != null) {
@@ -51,6 +51,35 @@ public class MetadadosBuilder {
 		return metadados;
 	}
 
+	/**
+	 * Carrega o mapeador gerado (em tempo de compilação) para a classe,
+	 * se existir (<tt>[classe]_Mapeador</tt>).
+	 * @param classe
+	 * @return O mapeador, ou <tt>null</tt> se não foi gerado.
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T> MapeadorGerado<T> carregarMapeadorGerado(Class<T> classe) {
+		try {
+			Class<?> classeMapeador = Class.forName(
+					classe.getName() + MapeadorGerado.SUFIXO,
+					true,
+					classe.getClassLoader());
+			if (MapeadorGerado.class.isAssignableFrom(classeMapeador)) {
+				return (MapeadorGerado<T>) classeMapeador.newInstance();
+			}
+		} catch (ClassNotFoundException _) {
+			// Não gerado: mapeamento via reflexão.
+		} catch (LinkageError _) {
+			// Gerado para uma versão anterior da entidade (e.g. tipo de 
+			// atributo que não existe mais): mapeamento via reflexão.
+		} catch (Exception e) {
+			throw new DAOException("Falha ao carregar o mapeador gerado de "
+					+ classe.getName(), 
+					e);
+		}
+		return null;
+	}
+
 	/**
 	 * Verifica se a classe entidade está no repositório.
 	 * @param classe
@@ -0,0 +1,102 @@
+package open.ddo.android.persistencia;
+
+import java.util.ArrayList;
+
+/**
+ * Página de uma pesquisa paginada por chave (veja
+ * <tt>EntidadeDAO.paginar</tt>).<br/>
+ *
+ * Ao invés do deslocamento (<tt>offset</tt>), cuja consulta fica mais lenta
+ * quanto mais distante a página, cada página guarda os tokens (veja
+ * <tt>TokenPagina</tt>) com a posição do seu último e do seu primeiro
+ * registro, a partir dos quais a próxima página e a anterior são
+ * pesquisadas diretamente pelo índice.
+ *
+ * @author ozairjr
+ *
+ * @param <T> Tipo da entidade.
+ */
+public class Pagina<T> {
+
+	// --------------------------------------------------------------
+	// Atributos do objeto
+	// --------------------------------------------------------------
+
+	/** Registros da página, na ordem da paginação. */
+	private final ArrayList<T> itens;
+	/** Token da próxima página (<tt>null</tt> se não houver). */
+	private final TokenPagina proxima;
+	/** Token da página anterior (<tt>null</tt> se não houver). */
+	private final TokenPagina anterior;
+
+	// --------------------------------------------------------------
+	// Métodos
+	// --------------------------------------------------------------
+
+	/**
+	 * Construtor.
+	 * @param itens Registros da página.
+	 * @param proxima Token da próxima página.
+	 * @param anterior Token da página anterior.
+	 */
+	Pagina(ArrayList<T> itens, TokenPagina proxima, TokenPagina anterior) {
+		this.itens = itens;
+		this.proxima = proxima;
+		this.anterior = anterior;
+	}
+
+	/**
+	 * Registros da página.
+	 * @return
+	 */
+	public ArrayList<T> getItens() {
+		return itens;
+	}
+
+	/**
+	 * Token da próxima página.
+	 * @return O token, ou <tt>null</tt> se esta for a última página.
+	 */
+	public TokenPagina getProxima() {
+		return proxima;
+	}
+
+	/**
+	 * Token da página anterior.
+	 * @return O token, ou <tt>null</tt> se esta for a primeira página.
+	 */
+	public TokenPagina getAnterior() {
+		return anterior;
+	}
+
+	/**
+	 * Verifica se há próxima página.
+	 * @return
+	 */
+	public boolean haProxima() {
+		return proxima != null;
+	}
+
+	/**
+	 * Verifica se há página anterior.
+	 * @return
+	 */
+	public boolean haAnterior() {
+		return anterior != null;
+	}
+
+	/**
+	 * Verifica se a página não possui registros.
+	 * @return
+	 */
+	public boolean isVazia() {
+		return itens.isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		return "Pagina[" + itens.size()
+				+ ", proxima=" + proxima
+				+ ", anterior=" + anterior + "]";
+	}
+}
@@ -0,0 +1,366 @@
+package open.ddo.android.persistencia;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import open.ddo.android.persistencia.excecao.DAOException;
+import open.ddo.android.util.AcessorAtributo;
+import open.ddo.android.util.ObjectUtil;
+
+/**
+ * Plano de acesso pela chave primária de uma entidade.<br/>
+ *
+ * Montado uma única vez por entidade: contém o 'where' pela chave, os
+ * SQLs de pesquisa, contagem e existência pela chave, e a estratégia de
+ * extração dos valores da chave para cada tipo (classe) de objeto chave
+ * já utilizado. O objeto chave pode ser:
+ * <ul>
+ *   <li>O próprio valor da chave (se a chave possuir apenas uma coluna);</li>
+ *   <li>Um <tt>Map</tt> com o nome do atributo (ou da coluna) e o valor;</li>
+ *   <li>Uma instância da entidade;</li>
+ *   <li>Um objeto de outra classe que possua atributos com os mesmos
+ *   nomes dos atributos chave.</li>
+ * </ul>
+ *
+ * @author ozairjr
+ *
+ */
+public class PlanoChave {
+
+	// --------------------------------------------------------------
+	// Atributos de classe
+	// --------------------------------------------------------------
+
+	/** Quantidade máxima de parâmetros ('?') por instrução no SQLite
+	 * (<tt>SQLITE_MAX_VARIABLE_NUMBER</tt>). */
+	public static final int MAXIMO_PARAMETROS = 999;
+
+	// --------------------------------------------------------------
+	// Atributos do objeto
+	// --------------------------------------------------------------
+
+	/** Metadados da entidade. */
+	private final MetaDadosEntidade<?> metadados;
+	/** Colunas da chave (na ordem dos parâmetros). */
+	final AtributoEntidade[] colunasChave;
+	/** 'Where' pela chave (<tt>chave1 = ? and chave2 = ?...</tt>). */
+	public final String whereChaves;
+	/** Pesquisa (todas as colunas) pela chave. */
+	public final String sqlPesquisa;
+	/** Contagem pela chave. */
+	public final String sqlContagem;
+	/** Existência pela chave (retorna 0 ou 1). */
+	public final String sqlExistencia;
+	/** Estratégias de extração da chave, pela classe do objeto chave. */
+	private final HashMap<Class<?>, ExtratorChave> extratores =
+			new HashMap<Class<?>, ExtratorChave>();
+
+	// --------------------------------------------------------------
+	// Métodos
+	// --------------------------------------------------------------
+
+	/**
+	 * Construtor.
+	 * @param metadados Metadados da entidade.
+	 */
+	PlanoChave(MetaDadosEntidade<?> metadados) {
+		this.metadados = metadados;
+		this.colunasChave = metadados.getChaves();
+		if (colunasChave.length == 0) {
+			throw new DAOException("Entidade sem chave: "
+					+ metadados.nomeTabela);
+		}
+		StringBuilder builder = new StringBuilder();
+		for (int i=0; i < colunasChave.length; i++) {
+			if (i > 0) {
+				builder.append(" and ");
+			}
+			builder.append(colunasChave[i].nomeColuna);
+			builder.append(" = ?");
+		}
+		this.whereChaves = builder.toString();
+		this.sqlPesquisa = "select " + metadados.getColunasStr()
+				+ " from " + metadados.nomeTabela
+				+ " where " + whereChaves;
+		this.sqlContagem = "select count(*) from " + metadados.nomeTabela
+				+ " where " + whereChaves;
+		this.sqlExistencia = "select exists (select 1 from " + metadados.nomeTabela
+				+ " where " + whereChaves + ")";
+	}
+
+	/**
+	 * Extrai os valores da chave (no formato do B.D., na ordem de
+	 * <tt>colunasChave</tt>) do objeto chave.
+	 * @param chave Objeto chave.
+	 * @return
+	 */
+	public Object[] extrairValores(Object chave) {
+		if (chave == null) {
+			throw new DAOException("Chave n\u00e3o informada.");
+		}
+		return getExtrator(chave.getClass()).extrair(chave);
+	}
+
+	/**
+	 * Converte os valores da chave em argumentos (<tt>String</tt>) para
+	 * consultas do Android.
+	 * @param valores Valores no formato do B.D.
+	 * @return
+	 */
+	public static String[] argumentos(Object[] valores) {
+		String[] argumentos = new String[valores.length];
+		for (int i=0; i < valores.length; i++) {
+			Object valor = valores[i];
+			if (valor instanceof Boolean) {
+				argumentos[i] = ((Boolean) valor).booleanValue() ? "1" : "0";
+			} else {
+				argumentos[i] = valor != null ? valor.toString() : null;
+			}
+		}
+		return argumentos;
+	}
+
+	/**
+	 * Quantidade máxima de chaves por pesquisa de várias chaves, de forma
+	 * a respeitar o limite de parâmetros do SQLite.
+	 * @return
+	 */
+	public int getMaximoChavesPorPesquisa() {
+		return MAXIMO_PARAMETROS / colunasChave.length;
+	}
+
+	/**
+	 * Monta o 'where' para pesquisar várias chaves de uma vez:
+	 * <tt>chave in (?,?...)</tt> se a chave possuir apenas uma coluna,
+	 * senão <tt>(chave1 = ? and chave2 = ?) or (...)</tt>.
+	 * @param quantidade Quantidade de chaves.
+	 * @return
+	 */
+	public String montarWhereChaves(int quantidade) {
+		StringBuilder builder = new StringBuilder();
+		if (colunasChave.length == 1) {
+			builder.append(colunasChave[0].nomeColuna);
+			builder.append(" in (");
+			for (int i=0; i < quantidade; i++) {
+				builder.append(i > 0 ? ",?" : "?");
+			}
+			builder.append(")");
+		} else {
+			for (int i=0; i < quantidade; i++) {
+				if (i > 0) {
+					builder.append(" or ");
+				}
+				builder.append("(");
+				builder.append(whereChaves);
+				builder.append(")");
+			}
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Obtém o identificador da entidade: o valor do atributo chave, ou 
+	 * uma lista com os valores dos atributos (na ordem de
+	 * <tt>MetaDadosEntidade.getChaves()</tt>) se a chave for composta.
+	 * @param obj Objeto entidade.
+	 * @return
+	 */
+	public Object obterIdentificador(Object obj) {
+		if (colunasChave.length == 1) {
+			return colunasChave[0].obterValor(obj);
+		}
+		Object[] valores = new Object[colunasChave.length];
+		for (int i=0; i < colunasChave.length; i++) {
+			valores[i] = colunasChave[i].obterValor(obj);
+		}
+		return Arrays.asList(valores);
+	}
+
+	/**
+	 * Monta a identidade do registro (para uso como chave de mapa) com os
+	 * valores da chave, normalizando os números (e.g. <tt>Integer</tt> e
+	 * <tt>Long</tt> de mesmo valor correspondem à mesma identidade).
+	 * @param valores Valores da chave (veja <tt>extrairValores</tt>).
+	 * @return
+	 */
+	public static List<Object> montarIdentidade(Object[] valores) {
+		Object[] normalizados = new Object[valores.length];
+		for (int i=0; i < valores.length; i++) {
+			Object valor = valores[i];
+			if (valor instanceof Integer
+					|| valor instanceof Long
+					|| valor instanceof Short
+					|| valor instanceof Byte) {
+				valor = Long.valueOf(((Number) valor).longValue());
+			} else if (valor instanceof Float) {
+				valor = Double.valueOf(((Float) valor).doubleValue());
+			}
+			normalizados[i] = valor;
+		}
+		return Arrays.asList(normalizados);
+	}
+
+	// --------------------------------------------------------------
+	// Métodos auxiliares
+	// --------------------------------------------------------------
+
+	/**
+	 * Obtém (criando apenas na primeira vez) a estratégia de extração
+	 * da chave para a classe informada.
+	 * @param classe
+	 * @return
+	 */
+	private ExtratorChave getExtrator(Class<?> classe) {
+		synchronized (extratores) {
+			ExtratorChave extrator = extratores.get(classe);
+			if (extrator == null) {
+				extrator = criarExtrator(classe);
+				extratores.put(classe, extrator);
+			}
+			return extrator;
+		}
+	}
+
+	/**
+	 * Cria a estratégia de extração da chave para a classe informada.
+	 * @param classe
+	 * @return
+	 */
+	private ExtratorChave criarExtrator(Class<?> classe) {
+		if (Map.class.isAssignableFrom(classe)) {
+			return new ExtratorMapa();
+		}
+		if (metadados.classe.isAssignableFrom(classe)) {
+			return new ExtratorEntidade();
+		}
+		if (Number.class.isAssignableFrom(classe)
+				|| String.class == classe
+				|| Boolean.class == classe
+				|| Enum.class.isAssignableFrom(classe)
+				|| java.util.Date.class.isAssignableFrom(classe)) {
+			if (colunasChave.length != 1) {
+				throw new DAOException("Chave prim\u00e1ria n\u00e3o possui apenas um valor.");
+			}
+			return new ExtratorSimples();
+		}
+		// Com base no objeto, deve-se conter atributos com o mesmo nome
+		// da classe.
+		AcessorAtributo[] acessores = new AcessorAtributo[colunasChave.length];
+		for (int i=0; i < colunasChave.length; i++) {
+			String nome = colunasChave[i].atributo.getName();
+			Field f = ObjectUtil.getField(classe, nome);
+			if (f == null){
+				throw new DAOException("O tipo da chave '"
+						+ classe.getName()
+						+ " n\u00e3o possui o atributo '"
+						+ nome
+						+ "'.");
+			}
+			acessores[i] = AcessorAtributo.criar(f);
+		}
+		return new ExtratorObjeto(acessores);
+	}
+
+	// --------------------------------------------------------------
+	// Classes internas
+	// --------------------------------------------------------------
+
+	/**
+	 * Estratégia de extração dos valores da chave.
+	 */
+	private abstract class ExtratorChave {
+		/**
+		 * Extrai os valores (no formato do B.D.) da chave.
+		 * @param chave
+		 * @return
+		 */
+		abstract Object[] extrair(Object chave);
+	}
+
+	/**
+	 * O objeto chave é o próprio valor (chave de uma coluna).
+	 */
+	private final class ExtratorSimples extends ExtratorChave {
+		@Override
+		Object[] extrair(Object chave) {
+			return new Object[] {
+					MetaDadosEntidade.converterParaBD(colunasChave[0], chave)
+				};
+		}
+	}
+
+	/**
+	 * O objeto chave é um mapa (nome do atributo ou da coluna, valor).
+	 */
+	private final class ExtratorMapa extends ExtratorChave {
+		@Override
+		Object[] extrair(Object chave) {
+			Map<?, ?> mapa = (Map<?, ?>) chave;
+			Object[] valores = new Object[colunasChave.length];
+			for (int i=0; i < colunasChave.length; i++) {
+				AtributoEntidade coluna = colunasChave[i];
+				// No mapa, pode ser tanto o nome do atributo com o nome da coluna.
+				Object valor;
+				if (mapa.containsKey(coluna.atributo.getName())) {
+					valor = mapa.get(coluna.atributo.getName());
+				}
+				else if (mapa.containsKey(coluna.nomeColuna)) {
+					valor = mapa.get(coluna.nomeColuna);
+				}
+				else {
+					throw new DAOException("Mapa n\u00e3o cont\u00e9m a chave (nome: '"
+							+ coluna.atributo.getName()
+							+ "').");
+				}
+				if (valor == null) {
+					throw new DAOException("Mapa n\u00e3o cont\u00e9m o valor da coluna '"
+							+ coluna.atributo.getName()
+							+ "'.");
+				}
+				valores[i] = MetaDadosEntidade.converterParaBD(coluna, valor);
+			} // fim for
+			return valores;
+		}
+	}
+
+	/**
+	 * O objeto chave é uma instância da entidade.
+	 */
+	private final class ExtratorEntidade extends ExtratorChave {
+		@Override
+		Object[] extrair(Object chave) {
+			Object[] valores = new Object[colunasChave.length];
+			for (int i=0; i < colunasChave.length; i++) {
+				valores[i] = MetaDadosEntidade.extrairValor(colunasChave[i], chave);
+			}
+			return valores;
+		}
+	}
+
+	/**
+	 * O objeto chave é de outra classe, com atributos de mesmo nome dos
+	 * atributos chave.
+	 */
+	private final class ExtratorObjeto extends ExtratorChave {
+		/** Acessores dos atributos (na ordem de <tt>colunasChave</tt>). */
+		private final AcessorAtributo[] acessores;
+
+		ExtratorObjeto(AcessorAtributo[] acessores) {
+			this.acessores = acessores;
+		}
+
+		@Override
+		Object[] extrair(Object chave) {
+			Object[] valores = new Object[colunasChave.length];
+			for (int i=0; i < colunasChave.length; i++) {
+				valores[i] = MetaDadosEntidade.converterParaBD(
+						colunasChave[i],
+						acessores[i].getObject(chave));
+			}
+			return valores;
+		}
+	}
+}
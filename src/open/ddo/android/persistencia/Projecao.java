@@ -0,0 +1,122 @@
+package open.ddo.android.persistencia;
+
+import java.util.Arrays;
+
+import open.ddo.android.persistencia.excecao.DAOException;
+
+/**
+ * Projeção de uma entidade: apenas parte das colunas da tabela é
+ * pesquisada, e cada linha é mapeada para a própria entidade (parcialmente
+ * preenchida) ou para uma classe 'DTO' cujos atributos são anotados com
+ * <tt>@Coluna</tt>.<br/>
+ *
+ * As projeções são montadas uma única vez (veja
+ * <tt>MetaDadosEntidade.getProjecao</tt>), e o mapeamento das linhas
+ * utiliza o mapeador (<tt>MapeadorLinha</tt>) do destino para as colunas
+ * projetadas, também criado apenas uma vez.
+ *
+ * @author ozairjr
+ *
+ * @param <D> Destino (a entidade ou o 'DTO').
+ */
+public class Projecao<D> {
+
+	// --------------------------------------------------------------
+	// Atributos do objeto
+	// --------------------------------------------------------------
+
+	/** Metadados do destino de cada linha. */
+	public final MetaDadosEntidade<D> destino;
+	/** Colunas do 'select' (<tt>coluna</tt> ou <tt>coluna as alias</tt>). */
+	final String[] colunas;
+	/** Se o destino é a própria entidade (parcial). */
+	public final boolean parcial;
+
+	// --------------------------------------------------------------
+	// Métodos
+	// --------------------------------------------------------------
+
+	/**
+	 * Construtor.
+	 * @param destino Metadados do destino.
+	 * @param colunas Colunas do 'select'.
+	 * @param parcial Se o destino é a própria entidade.
+	 */
+	private Projecao(MetaDadosEntidade<D> destino, String[] colunas, boolean parcial) {
+		this.destino = destino;
+		this.colunas = colunas;
+		this.parcial = parcial;
+	}
+
+	/**
+	 * Monta a projeção dos atributos da entidade.
+	 * @param metadados Metadados da entidade.
+	 * @param atributos Nomes dos atributos (ou das colunas).
+	 * @return
+	 */
+	static <T> Projecao<T> criar(MetaDadosEntidade<T> metadados, String[] atributos) {
+		if (atributos == null || atributos.length == 0) {
+			throw new DAOException("Atributos da proje\u00e7\u00e3o n\u00e3o informados.");
+		}
+		String[] colunas = new String[atributos.length];
+		for (int i=0; i < atributos.length; i++) {
+			String coluna = metadados.obterNomeColuna(atributos[i]);
+			if (coluna == null && metadados.getAtributoPelaColuna(atributos[i]) != null) {
+				coluna = atributos[i];
+			}
+			if (coluna == null) {
+				throw new DAOException("Atributo '"
+						+ atributos[i]
+						+ "' n\u00e3o encontrado em "
+						+ metadados.classe.getName());
+			}
+			colunas[i] = coluna;
+		}
+		return new Projecao<T>(metadados, colunas, true);
+	}
+
+	/**
+	 * Monta a projeção da entidade para o 'DTO'. Cada atributo do 'DTO'
+	 * anotado com <tt>@Coluna</tt> corresponde à coluna da entidade de
+	 * mesmo nome ou, se não houver, à coluna do atributo da entidade de
+	 * mesmo nome.
+	 * @param metadados Metadados da entidade.
+	 * @param destino Metadados do 'DTO'.
+	 * @return
+	 */
+	static <D> Projecao<D> criar(MetaDadosEntidade<?> metadados, MetaDadosEntidade<D> destino) {
+		String[] colunas = new String[destino.colunas.length];
+		for (int i=0; i < colunas.length; i++) {
+			AtributoEntidade ae = destino.colunas[i];
+			String coluna = metadados.getAtributoPelaColuna(ae.nomeColuna) != null ?
+					ae.nomeColuna
+					: metadados.obterNomeColuna(ae.atributo.getName());
+			if (coluna == null) {
+				throw new DAOException("Coluna '"
+						+ ae.nomeColuna
+						+ "' de "
+						+ destino.classe.getName()
+						+ " n\u00e3o encontrada em "
+						+ metadados.classe.getName());
+			}
+			colunas[i] = coluna.equals(ae.nomeColuna) ?
+					coluna
+					: coluna + " as " + ae.nomeColuna;
+		}
+		return new Projecao<D>(destino, colunas, false);
+	}
+
+	/**
+	 * Colunas do 'select'.
+	 * @return
+	 */
+	public String[] getColunas() {
+		return colunas.clone();
+	}
+
+	@Override
+	public String toString() {
+		return "Projecao[" + destino.classe.getName()
+				+ ", " + Arrays.toString(colunas) + "]";
+	}
+}
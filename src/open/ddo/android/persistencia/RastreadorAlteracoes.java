@@ -0,0 +1,115 @@
+package open.ddo.android.persistencia;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+
+/**
+ * Guarda, para cada objeto entidade carregado do B.D., os valores das
+ * colunas (no formato do B.D.) no momento da carga, permitindo identificar
+ * quais colunas foram alteradas desde então.<br/>
+ * 
+ * Os objetos são referenciados de forma fraca e pela identidade
+ * (não se utiliza <tt>equals</tt>/<tt>hashCode</tt> da entidade),
+ * então o rastreamento não impede que sejam coletados.<br/>
+ * 
+ * Há um rastreador por entidade (veja 
+ * <tt>MetaDadosEntidade.getRastreador()</tt>), compartilhado por todos os
+ * DAOs e <i>threads</i>.
+ * 
+ * @author ozairjr
+ *
+ */
+public class RastreadorAlteracoes {
+	
+	// --------------------------------------------------------------
+	// Atributos do objeto
+	// --------------------------------------------------------------
+	
+	/** Valores das colunas por objeto. */
+	private final HashMap<Referencia, Object[]> valores = 
+			new HashMap<Referencia, Object[]>();
+	/** Referências de objetos já coletados. */
+	private final ReferenceQueue<Object> coletados = new ReferenceQueue<Object>();
+	
+	// --------------------------------------------------------------
+	// Métodos
+	// --------------------------------------------------------------
+	
+	/**
+	 * Registra os valores das colunas do objeto.
+	 * @param obj Objeto entidade.
+	 * @param valoresColunas Valores (na ordem de <tt>MetaDadosEntidade.colunas</tt>).
+	 */
+	public synchronized void registrar(Object obj, Object[] valoresColunas) {
+		expurgar();
+		valores.put(new Referencia(obj, coletados), valoresColunas);
+	}
+	
+	/**
+	 * Obtém os valores registrados para o objeto.
+	 * @param obj
+	 * @return Os valores, ou <tt>null</tt> se o objeto não é rastreado.
+	 */
+	public synchronized Object[] obter(Object obj) {
+		expurgar();
+		return valores.get(new Referencia(obj, null));
+	}
+	
+	/**
+	 * Deixa de rastrear o objeto.
+	 * @param obj
+	 */
+	public synchronized void remover(Object obj) {
+		expurgar();
+		valores.remove(new Referencia(obj, null));
+	}
+	
+	// --------------------------------------------------------------
+	// Métodos auxiliares
+	// --------------------------------------------------------------
+	
+	/**
+	 * Remove os registros dos objetos que já foram coletados.
+	 */
+	private void expurgar() {
+		for (Object ref = coletados.poll(); ref != null; ref = coletados.poll()) {
+			valores.remove(ref);
+		}
+	}
+	
+	// --------------------------------------------------------------
+	// Classes internas
+	// --------------------------------------------------------------
+	
+	/**
+	 * Referência fraca comparada pela identidade do objeto.
+	 */
+	private static final class Referencia extends WeakReference<Object> {
+		
+		/** 'Hash' de identidade do objeto. */
+		private final int hash;
+		
+		Referencia(Object obj, ReferenceQueue<Object> fila) {
+			super(obj, fila);
+			hash = System.identityHashCode(obj);
+		}
+		
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+		
+		@Override
+		public boolean equals(Object o) {
+			if (o == this) {
+				return true;
+			}
+			if (o instanceof Referencia) {
+				Object obj = get();
+				return obj != null && obj == ((Referencia) o).get();
+			}
+			return false;
+		}
+	}
+}
@@ -0,0 +1,125 @@
+package open.ddo.android.persistencia;
+
+/**
+ * Valor de relacionamento carregado apenas no primeiro acesso (atributo
+ * <tt>@MuitosParaUm</tt> ou <tt>@UmParaMuitos</tt> declarado como
+ * <tt>Referencia</tt>), e.g.:<br/>
+ *
+ * <blockquote>
+ * <tt>
+ * &#64;MuitosParaUm(atributo = "idCliente")<br/>
+ * private Referencia&lt;Cliente&gt; cliente;<br/>
+ * &#64;UmParaMuitos(atributo = "idPedido")<br/>
+ * private Referencia&lt;List&lt;ItemPedido&gt;&gt; itens;
+ * </tt>
+ * </blockquote>
+ *
+ * As referências das entidades de um mesmo resultado de pesquisa
+ * compartilham o carregador: o primeiro <tt>get()</tt> carrega o
+ * relacionamento de todas as entidades do resultado que ainda não foram
+ * carregadas, com uma única pesquisa (<tt>in (?,?...)</tt>).<br/>
+ *
+ * A carga utiliza o DAO da pesquisa (o B.D. deve continuar aberto).
+ *
+ * @author ozairjr
+ *
+ * @param <V> Tipo do valor (entidade ou coleção).
+ */
+public class Referencia<V> {
+
+	// --------------------------------------------------------------
+	// Atributos do objeto
+	// --------------------------------------------------------------
+
+	/** Valor (entidade ou coleção). */
+	private V valor;
+	/** Se o valor já foi carregado (ou atribuído). */
+	private volatile boolean carregada;
+	/** Carregador (<tt>null</tt> após a carga). */
+	private CarregadorLote carregador;
+
+	// --------------------------------------------------------------
+	// Métodos
+	// --------------------------------------------------------------
+
+	/**
+	 * Construtor (referência já carregada, sem valor).
+	 */
+	public Referencia() {
+		this.carregada = true;
+	}
+
+	/**
+	 * Construtor com o valor (referência já carregada).
+	 * @param valor
+	 */
+	public Referencia(V valor) {
+		this.valor = valor;
+		this.carregada = true;
+	}
+
+	/**
+	 * Construtor da referência pendente.
+	 * @param carregador Carregador do relacionamento (compartilhado pelas
+	 * entidades do resultado).
+	 */
+	Referencia(CarregadorLote carregador) {
+		this.carregador = carregador;
+	}
+
+	/**
+	 * Obtém o valor, carregando-o (junto com o das demais entidades do
+	 * resultado) se for o primeiro acesso.
+	 * @return
+	 */
+	public V get() {
+		if (!carregada) {
+			CarregadorLote c = carregador;
+			if (c != null) {
+				c.carregar();
+			}
+		}
+		return valor;
+	}
+
+	/**
+	 * Atribui o valor (a referência é considerada carregada).
+	 * @param valor
+	 */
+	public void set(V valor) {
+		this.valor = valor;
+		this.carregador = null;
+		this.carregada = true;
+	}
+
+	/**
+	 * Verifica se o valor já foi carregado (ou atribuído).
+	 * @return
+	 */
+	public boolean isCarregada() {
+		return carregada;
+	}
+
+	/**
+	 * Verifica se a referência aguarda a carga pelo carregador informado.
+	 * @param c
+	 * @return
+	 */
+	boolean isPendente(CarregadorLote c) {
+		return !carregada && carregador == c;
+	}
+
+	/**
+	 * Atribui o valor carregado.
+	 * @param valor
+	 */
+	@SuppressWarnings("unchecked")
+	void definir(Object valor) {
+		set((V) valor);
+	}
+
+	@Override
+	public String toString() {
+		return carregada ? "Referencia[" + valor + "]" : "Referencia[pendente]";
+	}
+}
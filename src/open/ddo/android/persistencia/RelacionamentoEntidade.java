@@ -0,0 +1,346 @@
+package open.ddo.android.persistencia;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+
+import open.ddo.android.persistencia.anotacao.MuitosParaUm;
+import open.ddo.android.persistencia.anotacao.UmParaMuitos;
+import open.ddo.android.persistencia.excecao.DAOException;
+import open.ddo.android.util.AcessorAtributo;
+
+/**
+ * Relacionamento da entidade com outra entidade (atributo anotado com
+ * <tt>@MuitosParaUm</tt> ou <tt>@UmParaMuitos</tt>).<br/>
+ *
+ * As colunas das chaves (estrangeira e referenciada) são resolvidas apenas
+ * no primeiro uso, pois os metadados da outra entidade podem referenciar
+ * esta entidade (relacionamento nos dois sentidos).
+ *
+ * @author ozairjr
+ *
+ */
+public class RelacionamentoEntidade {
+
+	// --------------------------------------------------------------
+	// Atributos do objeto
+	// --------------------------------------------------------------
+
+	/** Metadados da entidade 'dona' do atributo. */
+	public final MetaDadosEntidade<?> origem;
+	/** Atributo (campo) do relacionamento. */
+	public final Field atributo;
+	/** Se é um relacionamento um para muitos (coleção). */
+	public final boolean colecao;
+	/** Se o atributo é uma <tt>Referencia</tt> (carregado no primeiro
+	 * acesso). */
+	public final boolean tardio;
+	/** Se a coleção é salva em cascata com a entidade
+	 * (<tt>@UmParaMuitos(cascata = true)</tt>). */
+	public final boolean cascata;
+	/** Se, ao salvar em cascata, as entidades 'filhas' fora da coleção são
+	 * removidas (<tt>@UmParaMuitos(removerOrfaos = true)</tt>). */
+	public final boolean removerOrfaos;
+	/** Tipo do valor: a classe da entidade ou da coleção (o tipo do
+	 * atributo, ou o tipo da <tt>Referencia</tt>). */
+	private final Class<?> tipoValor;
+	/** Classe da entidade relacionada. */
+	public final Class<?> classeDestino;
+	/** Nome do atributo com a chave estrangeira (na origem, se muitos para
+	 * um, ou no destino, se um para muitos). */
+	private final String nomeChaveEstrangeira;
+	/** Ordenação da coleção (como anotada). */
+	private final String ordemAnotada;
+	/** Acessor do atributo. */
+	private final AcessorAtributo acessor;
+	/** Metadados da entidade relacionada (resolvido no primeiro uso). */
+	private MetaDadosEntidade<?> destino;
+	/** Atributo da chave estrangeira. */
+	private AtributoEntidade chaveEstrangeira;
+	/** Atributo da chave referenciada pela chave estrangeira. */
+	private AtributoEntidade chaveReferenciada;
+	/** Ordenação da coleção, com os nomes das colunas. */
+	private String ordem;
+
+	// --------------------------------------------------------------
+	// Métodos
+	// --------------------------------------------------------------
+
+	/**
+	 * Construtor.
+	 * @param origem Metadados da entidade 'dona' do atributo.
+	 * @param f Atributo anotado com <tt>@MuitosParaUm</tt> ou
+	 * <tt>@UmParaMuitos</tt>.
+	 */
+	RelacionamentoEntidade(MetaDadosEntidade<?> origem, Field f) {
+		this.origem = origem;
+		this.atributo = f;
+		this.acessor = AcessorAtributo.criar(f);
+		this.tardio = f.getType() == Referencia.class;
+		// Tipo (genérico) do valor.
+		Type tipo = tardio ? obterArgumentoTipo(f, f.getGenericType()) : f.getGenericType();
+		this.tipoValor = obterClasse(f, tipo);
+		UmParaMuitos umParaMuitos = f.getAnnotation(UmParaMuitos.class);
+		this.colecao = umParaMuitos != null;
+		if (colecao) {
+			if (!Collection.class.isAssignableFrom(tipoValor)) {
+				throw new DAOException("Atributo '"
+						+ f.getName()
+						+ "' (@UmParaMuitos) n\u00e3o \u00e9 uma cole\u00e7\u00e3o.");
+			}
+			this.nomeChaveEstrangeira = umParaMuitos.atributo();
+			this.ordemAnotada = umParaMuitos.ordem();
+			this.cascata = umParaMuitos.cascata();
+			this.removerOrfaos = umParaMuitos.removerOrfaos();
+			this.classeDestino = umParaMuitos.classe() != Object.class ?
+					umParaMuitos.classe()
+					: obterClasse(f, obterArgumentoTipo(f, tipo));
+		} else {
+			this.nomeChaveEstrangeira = f.getAnnotation(MuitosParaUm.class).atributo();
+			this.ordemAnotada = null;
+			this.cascata = false;
+			this.removerOrfaos = false;
+			this.classeDestino = tipoValor;
+		}
+	}
+
+	/**
+	 * Nome do atributo (relacionamento).
+	 * @return
+	 */
+	public String getNome() {
+		return atributo.getName();
+	}
+
+	/**
+	 * Metadados da entidade relacionada.
+	 * @return
+	 */
+	public MetaDadosEntidade<?> getDestino() {
+		resolver();
+		return destino;
+	}
+
+	/**
+	 * Atributo da chave estrangeira: da entidade origem, se muitos para um,
+	 * ou da entidade destino, se um para muitos.
+	 * @return
+	 */
+	public AtributoEntidade getChaveEstrangeira() {
+		resolver();
+		return chaveEstrangeira;
+	}
+
+	/**
+	 * Atributo (chave primária) referenciado pela chave estrangeira: da
+	 * entidade destino, se muitos para um, ou da entidade origem, se um
+	 * para muitos.
+	 * @return
+	 */
+	public AtributoEntidade getChaveReferenciada() {
+		resolver();
+		return chaveReferenciada;
+	}
+
+	/**
+	 * Ordenação da coleção (cláusula 'order by' com os nomes das colunas).
+	 * @return A ordenação, ou <tt>null</tt> se não houver.
+	 */
+	public String getOrdem() {
+		resolver();
+		return ordem;
+	}
+
+	/**
+	 * Obtém o valor do atributo (entidade ou coleção) no objeto. Se o
+	 * atributo for uma <tt>Referencia</tt> pendente, o valor é carregado.
+	 * @param obj
+	 * @return
+	 */
+	public Object obterValor(Object obj) {
+		if (tardio) {
+			Referencia<?> referencia = obterReferencia(obj);
+			return referencia != null ? referencia.get() : null;
+		}
+		return acessor.getObject(obj);
+	}
+
+	/**
+	 * Verifica se o valor do atributo está disponível no objeto (sem
+	 * precisar ser carregado).
+	 * @param obj
+	 * @return <tt>false</tt> apenas se o atributo for uma
+	 * <tt>Referencia</tt> ainda não carregada (ou nula).
+	 */
+	public boolean isCarregado(Object obj) {
+		if (tardio) {
+			Referencia<?> referencia = obterReferencia(obj);
+			return referencia != null && referencia.isCarregada();
+		}
+		return true;
+	}
+
+	/**
+	 * Atribui o valor (entidade ou coleção) ao atributo do objeto (na
+	 * <tt>Referencia</tt>, se for o caso, criando-a se necessário).
+	 * @param obj
+	 * @param valor
+	 */
+	public void definirValor(Object obj, Object valor) {
+		if (tardio) {
+			Referencia<?> referencia = obterReferencia(obj);
+			if (referencia == null) {
+				acessor.set(obj, new Referencia<Object>(valor));
+			} else {
+				referencia.definir(valor);
+			}
+		} else {
+			acessor.set(obj, valor);
+		}
+	}
+
+	/**
+	 * Obtém a <tt>Referencia</tt> do atributo no objeto.
+	 * @param obj
+	 * @return A referência, ou <tt>null</tt> se não houver (ou se o
+	 * atributo não for uma referência).
+	 */
+	Referencia<?> obterReferencia(Object obj) {
+		return tardio ? (Referencia<?>) acessor.getObject(obj) : null;
+	}
+
+	/**
+	 * Vincula ao objeto uma <tt>Referencia</tt> pendente do carregador, se
+	 * o atributo ainda não possuir referência.
+	 * @param obj
+	 * @param carregador
+	 * @return Se a referência foi vinculada.
+	 */
+	boolean vincular(Object obj, CarregadorLote carregador) {
+		if (!tardio || acessor.getObject(obj) != null) {
+			return false;
+		}
+		acessor.set(obj, new Referencia<Object>(carregador));
+		return true;
+	}
+
+	/**
+	 * Cria a coleção (vazia) conforme o tipo do atributo: <tt>ArrayList</tt>
+	 * para <tt>List</tt>/<tt>Collection</tt>, <tt>LinkedHashSet</tt> para
+	 * <tt>Set</tt>, ou uma instância do próprio tipo, se for concreto.
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	public Collection<Object> novaColecao() {
+		Class<?> tipo = tipoValor;
+		if (tipo.isAssignableFrom(ArrayList.class)) {
+			return new ArrayList<Object>();
+		}
+		if (tipo.isAssignableFrom(LinkedHashSet.class)) {
+			return new LinkedHashSet<Object>();
+		}
+		if (tipo.isInterface() || Modifier.isAbstract(tipo.getModifiers())) {
+			throw new DAOException("Tipo da cole\u00e7\u00e3o n\u00e3o suportado: "
+					+ tipo.getName());
+		}
+		try {
+			return (Collection<Object>) tipo.newInstance();
+		} catch (Exception e) {
+			throw new DAOException("Falha ao criar a cole\u00e7\u00e3o "
+					+ tipo.getName(),
+					e);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "RelacionamentoEntidade[" + origem.classe.getName() + "."
+				+ atributo.getName() + " -> " + classeDestino.getName() + "]";
+	}
+
+	// --------------------------------------------------------------
+	// Métodos auxiliares
+	// --------------------------------------------------------------
+
+	/**
+	 * Resolve os metadados da entidade relacionada e as chaves (apenas
+	 * na primeira vez).
+	 */
+	private synchronized void resolver() {
+		if (destino != null) {
+			return;
+		}
+		MetaDadosEntidade<?> metadadosDestino = AbstractDAO.getMetaDadosEntidade(classeDestino);
+		if (colecao) {
+			chaveEstrangeira = AbstractDAO.obterAtributo(metadadosDestino, nomeChaveEstrangeira);
+			chaveReferenciada = obterChaveSimples(origem);
+			ordem = ordemAnotada != null && ordemAnotada.trim().length() > 0 ?
+					AnalisadorClausula.ajustar(metadadosDestino, ordemAnotada)
+					: null;
+		} else {
+			chaveEstrangeira = AbstractDAO.obterAtributo(origem, nomeChaveEstrangeira);
+			chaveReferenciada = obterChaveSimples(metadadosDestino);
+		}
+		destino = metadadosDestino;
+	}
+
+	/**
+	 * Obtém a chave (simples) da entidade.
+	 * @param metadados
+	 * @return
+	 */
+	private AtributoEntidade obterChaveSimples(MetaDadosEntidade<?> metadados) {
+		AtributoEntidade[] chaves = metadados.getChaves();
+		if (chaves.length != 1) {
+			throw new DAOException("Relacionamento '"
+					+ atributo.getName()
+					+ "' requer chave simples em "
+					+ metadados.classe.getName());
+		}
+		return chaves[0];
+	}
+
+	/**
+	 * Obtém o argumento do tipo genérico (e.g. <tt>Item</tt> de
+	 * <tt>List&lt;Item&gt;</tt>).
+	 * @param f Atributo.
+	 * @param tipo Tipo genérico.
+	 * @return
+	 */
+	private static Type obterArgumentoTipo(Field f, Type tipo) {
+		if (tipo instanceof ParameterizedType) {
+			Type[] argumentos = ((ParameterizedType) tipo).getActualTypeArguments();
+			if (argumentos.length == 1) {
+				return argumentos[0];
+			}
+		}
+		throw new DAOException("Tipo de '"
+				+ f.getName()
+				+ "' n\u00e3o identificado (informe o tipo gen\u00e9rico, ou "
+				+ "@UmParaMuitos(classe = ...)).");
+	}
+
+	/**
+	 * Obtém a classe do tipo (a classe 'crua', se for genérico).
+	 * @param f Atributo.
+	 * @param tipo Tipo.
+	 * @return
+	 */
+	private static Class<?> obterClasse(Field f, Type tipo) {
+		if (tipo instanceof Class<?>) {
+			return (Class<?>) tipo;
+		}
+		if (tipo instanceof ParameterizedType
+				&& ((ParameterizedType) tipo).getRawType() instanceof Class<?>) {
+			return (Class<?>) ((ParameterizedType) tipo).getRawType();
+		}
+		throw new DAOException("Tipo de '"
+				+ f.getName()
+				+ "' n\u00e3o suportado: "
+				+ tipo);
+	}
+}
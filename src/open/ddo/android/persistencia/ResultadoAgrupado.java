@@ -0,0 +1,219 @@
+package open.ddo.android.persistencia;
+
+import java.util.BitSet;
+
+import android.database.Cursor;
+
+/**
+ * Resultado de uma agregação agrupada (veja <tt>EntidadeDAO.agrupar</tt>):
+ * um valor (<tt>double</tt>) por grupo, guardados em vetores primitivos,
+ * sem objetos por linha.<br/>
+ *
+ * Os grupos ficam na ordem da chave de agrupamento. Se a chave é
+ * numérica (atributo inteiro ou booleano), é guardada em <tt>long[]</tt>
+ * (veja <tt>getChaveLong</tt>), senão como texto.
+ *
+ * @author ozairjr
+ *
+ */
+public class ResultadoAgrupado {
+
+	// --------------------------------------------------------------
+	// Atributos do objeto
+	// --------------------------------------------------------------
+
+	/** Agregação dos valores. */
+	public final Agregacao agregacao;
+	/** Quantidade de grupos. */
+	private final int tamanho;
+	/** Chaves numéricas (<tt>null</tt> se a chave é texto). */
+	private final long[] chavesNumericas;
+	/** Chaves texto (<tt>null</tt> se a chave é numérica). */
+	private final String[] chaves;
+	/** Grupos cuja chave é nula. */
+	private final BitSet chavesNulas;
+	/** Valores agregados, pelo índice do grupo. */
+	private final double[] valores;
+
+	// --------------------------------------------------------------
+	// Métodos
+	// --------------------------------------------------------------
+
+	/**
+	 * Construtor: carrega todas as linhas do cursor (chave na coluna 0 e
+	 * valor na coluna 1).
+	 * @param agregacao Agregação dos valores.
+	 * @param cursor Cursor (não é fechado).
+	 * @param chaveNumerica Se a chave é lida como <tt>long</tt>.
+	 */
+	ResultadoAgrupado(Agregacao agregacao, Cursor cursor, boolean chaveNumerica) {
+		this.agregacao = agregacao;
+		final int quantidade = cursor != null ? cursor.getCount() : 0;
+		this.chavesNumericas = chaveNumerica ? new long[quantidade] : null;
+		this.chaves = chaveNumerica ? null : new String[quantidade];
+		this.chavesNulas = new BitSet();
+		this.valores = new double[quantidade];
+		int i = 0;
+		if (quantidade > 0 && cursor.moveToFirst()) {
+			final double valorNulo = agregacao.valorNulo();
+			do {
+				if (cursor.isNull(0)) {
+					chavesNulas.set(i);
+				} else if (chaveNumerica) {
+					chavesNumericas[i] = cursor.getLong(0);
+				} else {
+					chaves[i] = cursor.getString(0);
+				}
+				valores[i] = cursor.isNull(1) ? valorNulo : cursor.getDouble(1);
+				i++;
+			} while (i < quantidade && cursor.moveToNext());
+		}
+		this.tamanho = i;
+	}
+
+	/**
+	 * Quantidade de grupos.
+	 * @return
+	 */
+	public int tamanho() {
+		return tamanho;
+	}
+
+	/**
+	 * Verifica se a chave de agrupamento é numérica.
+	 * @return
+	 */
+	public boolean isChaveNumerica() {
+		return chavesNumericas != null;
+	}
+
+	/**
+	 * Verifica se a chave do grupo é nula.
+	 * @param indice Índice do grupo.
+	 * @return
+	 */
+	public boolean isChaveNula(int indice) {
+		verificarIndice(indice);
+		return chavesNulas.get(indice);
+	}
+
+	/**
+	 * Chave numérica do grupo (0 se nula).
+	 * @param indice Índice do grupo.
+	 * @return
+	 */
+	public long getChaveLong(int indice) {
+		verificarIndice(indice);
+		if (chavesNumericas != null) {
+			return chavesNumericas[indice];
+		}
+		return chaves[indice] != null ? Long.parseLong(chaves[indice]) : 0L;
+	}
+
+	/**
+	 * Chave do grupo como texto.
+	 * @param indice Índice do grupo.
+	 * @return A chave, ou <tt>null</tt> se nula.
+	 */
+	public String getChave(int indice) {
+		verificarIndice(indice);
+		if (chavesNulas.get(indice)) {
+			return null;
+		}
+		return chavesNumericas != null ?
+				String.valueOf(chavesNumericas[indice])
+				: chaves[indice];
+	}
+
+	/**
+	 * Valor agregado do grupo.
+	 * @param indice Índice do grupo.
+	 * @return
+	 */
+	public double getValor(int indice) {
+		verificarIndice(indice);
+		return valores[indice];
+	}
+
+	/**
+	 * Índice do grupo com a chave numérica informada.
+	 * @param chave
+	 * @return O índice, ou -1 se não houver.
+	 */
+	public int indiceDe(long chave) {
+		for (int i=0; i < tamanho; i++) {
+			if (!chavesNulas.get(i) && getChaveLong(i) == chave) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Índice do grupo com a chave informada.
+	 * @param chave Chave (<tt>null</tt> para o grupo de chave nula).
+	 * @return O índice, ou -1 se não houver.
+	 */
+	public int indiceDe(String chave) {
+		for (int i=0; i < tamanho; i++) {
+			String outra = getChave(i);
+			if (chave == null ? outra == null : chave.equals(outra)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Cópia das chaves numéricas.
+	 * @return
+	 */
+	public long[] getChavesLong() {
+		long[] copia = new long[tamanho];
+		if (chavesNumericas != null) {
+			System.arraycopy(chavesNumericas, 0, copia, 0, tamanho);
+			return copia;
+		}
+		for (int i=0; i < tamanho; i++) {
+			copia[i] = getChaveLong(i);
+		}
+		return copia;
+	}
+
+	/**
+	 * Cópia dos valores agregados.
+	 * @return
+	 */
+	public double[] getValores() {
+		double[] copia = new double[tamanho];
+		System.arraycopy(valores, 0, copia, 0, tamanho);
+		return copia;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder("ResultadoAgrupado[");
+		builder.append(agregacao);
+		for (int i=0; i < tamanho && i < 10; i++) {
+			builder.append(", ").append(getChave(i)).append('=').append(valores[i]);
+		}
+		if (tamanho > 10) {
+			builder.append(", ...");
+		}
+		return builder.append(']').toString();
+	}
+
+	// --------------------------------------------------------------
+	// Métodos auxiliares
+	// --------------------------------------------------------------
+
+	/**
+	 * Verifica se o índice do grupo é válido.
+	 * @param indice
+	 */
+	private void verificarIndice(int indice) {
+		if (indice < 0 || indice >= tamanho) {
+			throw new IndexOutOfBoundsException("Grupo " + indice + " de " + tamanho);
+		}
+	}
+}
@@ -0,0 +1,167 @@
+package open.ddo.android.persistencia;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import android.database.Cursor;
+
+/**
+ * Resultado de uma pesquisa que é percorrido diretamente sobre o cursor
+ * (aberto), convertendo uma linha por vez em <tt>next()</tt>, ao invés de
+ * carregar todas as linhas em uma lista. As linhas podem ser entidades ou,
+ * em consultas SQL, os demais tipos resultado de 
+ * <tt>AbstractDAO.pesquisarSQL</tt>.<br/>
+ * 
+ * Pode ser percorrido apenas uma vez. O cursor é fechado automaticamente
+ * ao final, mas se a iteração for interrompida antes, deve-se chamar
+ * <tt>close()</tt>.<br/>
+ * 
+ * Exemplo:
+ * <blockquote>
+ * <tt>
+ * ResultadoIteravel&lt;Entidade&gt; resultado = dao.pesquisarIterando(...);<br/>
+ * try {<br/>
+ * &nbsp;&nbsp;for (Entidade e: resultado) { ... }<br/>
+ * } finally {<br/>
+ * &nbsp;&nbsp;resultado.close();<br/>
+ * }
+ * </tt>
+ * </blockquote>
+ * 
+ * @author ozairjr
+ *
+ * @param <T> Tipo da entidade (ou do resultado).
+ */
+public class ResultadoIteravel<T> implements Iterable<T>, Iterator<T>, Closeable {
+	
+	// --------------------------------------------------------------
+	// Atributos do objeto
+	// --------------------------------------------------------------
+	
+	/** Mapeador das linhas do cursor (<tt>null</tt> se o resultado não é
+	 * entidade). */
+	private final MapeadorLinha<T> mapeador;
+	/** Conversor da primeira coluna, se o resultado é um valor simples 
+	 * (e.g. <tt>Long</tt>, <tt>String</tt>). */
+	private final ConversorColuna conversor;
+	/** Cursor (aberto) da pesquisa. */
+	private Cursor cursor;
+	/** Instância reutilizada a cada linha (<tt>null</tt> se não reutiliza). */
+	private final T instancia;
+	/** Se o cursor já foi posicionado na próxima linha. */
+	private boolean posicionado = false;
+	/** Se há linha na posição corrente do cursor. */
+	private boolean haProxima = false;
+	
+	// --------------------------------------------------------------
+	// Métodos
+	// --------------------------------------------------------------
+	
+	/**
+	 * Construtor.
+	 * @param metadados Metadados da entidade.
+	 * @param cursor Cursor (aberto) da pesquisa.
+	 * @param reutilizarInstancia Se <tt>true</tt>, a mesma instância é 
+	 * preenchida a cada linha (o objeto retornado por <tt>next()</tt> não deve
+	 * ser guardado, pois será alterado na próxima chamada).
+	 */
+	public ResultadoIteravel(
+			MetaDadosEntidade<T> metadados,
+			Cursor cursor,
+			boolean reutilizarInstancia) {
+		this.mapeador = cursor != null ? metadados.getMapeador(cursor) : null;
+		this.conversor = null;
+		this.cursor = cursor;
+		this.instancia = reutilizarInstancia ? 
+				AbstractDAO.novaInstancia(metadados)
+				: null;
+	}
+	
+	/**
+	 * Construtor pela classe resultado de uma consulta SQL (veja 
+	 * <tt>AbstractDAO.pesquisarSQL</tt>).
+	 * @param classeResultado Classe resultado: valor simples, 
+	 * <tt>String[]</tt> ou entidade.
+	 * @param cursor Cursor (aberto) da consulta.
+	 * @param reutilizarInstancia Se <tt>true</tt> e o resultado for 
+	 * entidade, a mesma instância é preenchida a cada linha.
+	 */
+	public ResultadoIteravel(
+			Class<T> classeResultado,
+			Cursor cursor,
+			boolean reutilizarInstancia) {
+		MetaDadosEntidade<T> metadados = null;
+		if (AbstractDAO.isTipoValor(classeResultado)) {
+			this.conversor = ConversorColuna.obter(classeResultado, null);
+		} else {
+			this.conversor = null;
+			if (!String[].class.equals(classeResultado)) {
+				metadados = AbstractDAO.obterMetadadosResultado(classeResultado);
+			}
+		}
+		this.mapeador = metadados != null && cursor != null ? metadados.getMapeador(cursor) : null;
+		this.cursor = cursor;
+		this.instancia = metadados != null && reutilizarInstancia ? 
+				AbstractDAO.novaInstancia(metadados)
+				: null;
+	}
+	
+	/**
+	 * Retorna o próprio resultado (pode ser percorrido apenas uma vez).
+	 */
+	@Override
+	public Iterator<T> iterator() {
+		return this;
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (!posicionado) {
+			haProxima = cursor != null && cursor.moveToNext();
+			posicionado = true;
+			if (!haProxima) {
+				close();
+			}
+		}
+		return haProxima;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public T next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		posicionado = false;
+		if (conversor != null) {
+			return (T) conversor.lerOuNulo(cursor, 0);
+		} else if (mapeador == null) {
+			return (T) AbstractDAO.lerTextos(cursor);
+		} else if (instancia != null) {
+			mapeador.preencher(cursor, instancia);
+			return instancia;
+		}
+		return mapeador.extrair(cursor);
+	}
+
+	/**
+	 * Não suportado.
+	 */
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Fecha o cursor.
+	 */
+	@Override
+	public void close() {
+		if (cursor != null) {
+			SQLiteUtil.fechar(cursor);
+			cursor = null;
+		}
+	}
+
+}
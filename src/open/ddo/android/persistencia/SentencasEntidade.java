@@ -0,0 +1,496 @@
+package open.ddo.android.persistencia;
+
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import open.ddo.android.persistencia.excecao.DAOException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+/**
+ * Instruções compiladas ('insert', 'update', 'delete', contagem e
+ * existência pela chave, e consultas de valor único) de uma entidade,
+ * para um determinado B.D.<br/>
+ *
+ * As instruções são compiladas apenas no primeiro uso e reaproveitadas
+ * nas chamadas seguintes. Como uma instrução compilada não pode ser
+ * utilizada por mais de uma <i>thread</i> ao mesmo tempo, cada instância
+ * pertence a uma única <i>thread</i> (veja 
+ * <tt>MetaDadosEntidade.getSentencas</tt>) e não é sincronizada: um
+ * bloqueio próprio, obtido antes do bloqueio do B.D., poderia causar
+ * <i>deadlock</i> com uma <i>thread</i> que já está em transação.
+ *
+ * @author ozairjr
+ *
+ */
+public class SentencasEntidade {
+
+	// --------------------------------------------------------------
+	// Atributos de classe
+	// --------------------------------------------------------------
+
+	/** Quantidade máxima de 'updates' parciais compilados por entidade. */
+	private static final int MAXIMO_ATUALIZACOES_PARCIAIS = 16;
+	/** Quantidade máxima de consultas de valor único (agregações) 
+	 * compiladas por entidade. */
+	private static final int MAXIMO_CONSULTAS_VALOR = 32;
+
+	// --------------------------------------------------------------
+	// Atributos do objeto
+	// --------------------------------------------------------------
+
+	/** B.D. para o qual as instruções foram compiladas. */
+	final SQLiteDatabase bd;
+	/** Metadados da entidade. */
+	private final MetaDadosEntidade<?> metadados;
+	/** Colunas do 'set' do 'update' (na ordem dos parâmetros). */
+	private final AtributoEntidade[] colunasAtualizacao;
+	/** Colunas do 'where' pela chave (na ordem dos parâmetros). */
+	private final AtributoEntidade[] colunasChave;
+	/** 'Insert'. */
+	private SQLiteStatement insercao = null;
+	/** 'Update' pela chave. */
+	private SQLiteStatement atualizacao = null;
+	/** 'Delete' pela chave. */
+	private SQLiteStatement remocao = null;
+	/** Quantidade de linhas alteradas pela última instrução. */
+	private SQLiteStatement alteracoes = null;
+	/** Contagem pela chave. */
+	private SQLiteStatement contagem = null;
+	/** Existência pela chave. */
+	private SQLiteStatement existencia = null;
+	/** 'Insert' com todas as colunas, por estratégia de conflito. */
+	private final SQLiteStatement[] insercoesConflito = 
+			new SQLiteStatement[EstrategiaConflito.values().length];
+	/** 'Updates' parciais (apenas as colunas alteradas), pelas colunas. */
+	private final LinkedHashMap<BitSet, SQLiteStatement> atualizacoesParciais = 
+			new LinkedHashMap<BitSet, SQLiteStatement>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<BitSet, SQLiteStatement> e) {
+			if (size() > MAXIMO_ATUALIZACOES_PARCIAIS) {
+				fechar(e.getValue());
+				return true;
+			}
+			return false;
+		}
+	};
+	/** Consultas de valor único (agregações), pelo SQL. */
+	private final LinkedHashMap<String, SQLiteStatement> consultasValor = 
+			new LinkedHashMap<String, SQLiteStatement>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, SQLiteStatement> e) {
+			if (size() > MAXIMO_CONSULTAS_VALOR) {
+				fechar(e.getValue());
+				return true;
+			}
+			return false;
+		}
+	};
+	/** Se o SQLite suporta <tt>on conflict ... do update</tt> (3.24+).
+	 * <tt>null</tt> enquanto não verificado. */
+	private Boolean upsertNativo = null;
+
+	// --------------------------------------------------------------
+	// Métodos
+	// --------------------------------------------------------------
+
+	/**
+	 * Construtor.
+	 * @param metadados Metadados da entidade.
+	 * @param bd B.D. em que as instruções serão compiladas.
+	 */
+	SentencasEntidade(MetaDadosEntidade<?> metadados, SQLiteDatabase bd) {
+		this.metadados = metadados;
+		this.bd = bd;
+		this.colunasAtualizacao = metadados.getColunasInsercao();
+		this.colunasChave = metadados.getChaves();
+	}
+
+	/**
+	 * Insere o objeto.
+	 * @param obj
+	 * @return O 'rowid' do registro inserido, ou -1 se houver falha.
+	 */
+	public long inserir(Object obj) {
+		if (insercao == null) {
+			insercao = bd.compileStatement(metadados.getSqlInsercao());
+		}
+		vincular(insercao, colunasAtualizacao, obj, 1);
+		return insercao.executeInsert();
+	}
+
+	/**
+	 * Insere o objeto (com todas as colunas, inclusive a chave
+	 * autoincremento) conforme a estratégia de conflito informada.
+	 * @param obj
+	 * @param estrategia Estratégia caso já exista registro com a mesma chave.
+	 * @return Quantidade de linhas inseridas/atualizadas (0 se ignorado), 
+	 * para todas as estratégias. Diferente de <tt>inserir(Object)</tt>, não 
+	 * é o 'rowid': com <tt>ATUALIZAR</tt> o registro pode ter sido apenas 
+	 * atualizado.
+	 */
+	public int inserir(Object obj, EstrategiaConflito estrategia) {
+		if (estrategia == EstrategiaConflito.ATUALIZAR && !verificarUpsertNativo()) {
+			// 'Update' e 'insert' na mesma transação: outra thread não 
+			// insere o registro entre os dois.
+			bd.beginTransaction();
+			try {
+				int quantidade = atualizar(obj);
+				return quantidade > 0 ? quantidade : inserir(obj, EstrategiaConflito.ABORTAR);
+			} finally {
+				// Como em 'executar': se falhar, nada foi alterado.
+				bd.setTransactionSuccessful();
+				bd.endTransaction();
+			}
+		}
+		SQLiteStatement sentenca = insercoesConflito[estrategia.ordinal()];
+		if (sentenca == null) {
+			sentenca = bd.compileStatement(montarInsercao(estrategia));
+			insercoesConflito[estrategia.ordinal()] = sentenca;
+		}
+		vincular(sentenca, metadados.colunas, obj, 1);
+		return executar(sentenca);
+	}
+	
+	/**
+	 * Atualiza o objeto pela chave.
+	 * @param obj
+	 * @return Quantidade de linhas atualizadas.
+	 */
+	public int atualizar(Object obj) {
+		if (atualizacao == null) {
+			if (colunasAtualizacao.length == 0) {
+				throw new DAOException("Sem colunas para atualizar em "
+						+ metadados.nomeTabela);
+			}
+			StringBuilder builder = new StringBuilder("update ");
+			builder.append(metadados.nomeTabela);
+			builder.append(" set ");
+			for (int i=0; i < colunasAtualizacao.length; i++) {
+				if (i > 0) {
+					builder.append(",");
+				}
+				builder.append(colunasAtualizacao[i].nomeColuna);
+				builder.append(" = ?");
+			}
+			builder.append(" where ");
+			builder.append(montarWhereChaves());
+			atualizacao = bd.compileStatement(builder.toString());
+		}
+		vincular(atualizacao, colunasAtualizacao, obj, 1);
+		vincular(atualizacao, colunasChave, obj, colunasAtualizacao.length + 1);
+		return executar(atualizacao);
+	}
+
+	/**
+	 * Atualiza pela chave apenas as colunas informadas.
+	 * @param valores Valores de todas as colunas (na ordem de
+	 * <tt>MetaDadosEntidade.colunas</tt>).
+	 * @param alteradas Índices (em <tt>MetaDadosEntidade.colunas</tt>) das
+	 * colunas a serem atualizadas (podem incluir colunas chave).
+	 * @param valoresChave Valores da chave do registro no B.D. (na ordem de
+	 * <tt>MetaDadosEntidade.getChaves()</tt>), i.e. anteriores à alteração
+	 * da chave, se for o caso.
+	 * @return Quantidade de linhas atualizadas.
+	 */
+	public int atualizar(Object[] valores, BitSet alteradas, Object[] valoresChave) {
+		final AtributoEntidade[] colunas = metadados.colunas;
+		SQLiteStatement sentenca = atualizacoesParciais.get(alteradas);
+		if (sentenca == null) {
+			StringBuilder builder = new StringBuilder("update ");
+			builder.append(metadados.nomeTabela);
+			builder.append(" set ");
+			for (int i = alteradas.nextSetBit(0); i >= 0; i = alteradas.nextSetBit(i + 1)) {
+				builder.append(colunas[i].nomeColuna);
+				builder.append(" = ?,");
+			}
+			builder.setLength(builder.length() - 1);
+			builder.append(" where ");
+			builder.append(montarWhereChaves());
+			sentenca = bd.compileStatement(builder.toString());
+			atualizacoesParciais.put((BitSet) alteradas.clone(), sentenca);
+		}
+		int indice = 1;
+		for (int i = alteradas.nextSetBit(0); i >= 0; i = alteradas.nextSetBit(i + 1)) {
+			AbstractDAO.vincularValor(sentenca, indice++, valores[i]);
+		}
+		for (Object valor: valoresChave) {
+			AbstractDAO.vincularValor(sentenca, indice++, valor);
+		}
+		return executar(sentenca);
+	}
+
+	/**
+	 * Remove o objeto pela chave.
+	 * @param obj
+	 * @return Quantidade de linhas removidas.
+	 */
+	public int remover(Object obj) {
+		if (remocao == null) {
+			remocao = bd.compileStatement("delete from "
+					+ metadados.nomeTabela
+					+ " where "
+					+ montarWhereChaves());
+		}
+		vincular(remocao, colunasChave, obj, 1);
+		return executar(remocao);
+	}
+
+	/**
+	 * Conta os registros com a chave informada.
+	 * @param valores Valores da chave (veja <tt>PlanoChave.extrairValores</tt>).
+	 * @return
+	 */
+	public long contar(Object[] valores) {
+		if (contagem == null) {
+			contagem = bd.compileStatement(metadados.getPlanoChave().sqlContagem);
+		}
+		vincular(contagem, valores);
+		return contagem.simpleQueryForLong();
+	}
+
+	/**
+	 * Verifica se existe registro com a chave informada.
+	 * @param valores Valores da chave (veja <tt>PlanoChave.extrairValores</tt>).
+	 * @return
+	 */
+	public boolean existe(Object[] valores) {
+		if (existencia == null) {
+			existencia = bd.compileStatement(metadados.getPlanoChave().sqlExistencia);
+		}
+		vincular(existencia, valores);
+		return existencia.simpleQueryForLong() != 0;
+	}
+
+	/**
+	 * Executa a consulta de valor único (e.g., <tt>select count(*) ...</tt>),
+	 * compilada no primeiro uso.
+	 * @param sql Consulta (de uma única coluna e linha).
+	 * @param valores Valores dos parâmetros (podem ser nulos).
+	 * @return O valor (0 se nulo).
+	 */
+	public long consultarLong(String sql, Object[] valores) {
+		SQLiteStatement sentenca = obterConsultaValor(sql);
+		vincular(sentenca, valores);
+		return sentenca.simpleQueryForLong();
+	}
+
+	/**
+	 * Executa a consulta de valor único (como <tt>consultarLong</tt>),
+	 * retornando o valor como texto.
+	 * @param sql Consulta (de uma única coluna e linha).
+	 * @param valores Valores dos parâmetros (podem ser nulos).
+	 * @return O valor, ou <tt>null</tt> se nulo.
+	 */
+	public String consultarTexto(String sql, Object[] valores) {
+		SQLiteStatement sentenca = obterConsultaValor(sql);
+		vincular(sentenca, valores);
+		return sentenca.simpleQueryForString();
+	}
+
+	/**
+	 * Fecha as instruções compiladas.
+	 */
+	void fechar() {
+		insercao = fechar(insercao);
+		atualizacao = fechar(atualizacao);
+		remocao = fechar(remocao);
+		alteracoes = fechar(alteracoes);
+		contagem = fechar(contagem);
+		existencia = fechar(existencia);
+		for (int i=0; i < insercoesConflito.length; i++) {
+			insercoesConflito[i] = fechar(insercoesConflito[i]);
+		}
+		for (SQLiteStatement sentenca: atualizacoesParciais.values()) {
+			fechar(sentenca);
+		}
+		atualizacoesParciais.clear();
+		for (SQLiteStatement sentenca: consultasValor.values()) {
+			fechar(sentenca);
+		}
+		consultasValor.clear();
+	}
+
+	// --------------------------------------------------------------
+	// Métodos auxiliares
+	// --------------------------------------------------------------
+
+	/**
+	 * Vincula os valores das colunas do objeto aos parâmetros da instrução.
+	 * @param sentenca Instrução.
+	 * @param lista Colunas.
+	 * @param obj Objeto entidade.
+	 * @param inicio Índice do primeiro parâmetro.
+	 */
+	private static void vincular(
+			SQLiteStatement sentenca,
+			AtributoEntidade[] lista,
+			Object obj,
+			int inicio) {
+		for (int i=0; i < lista.length; i++) {
+			AbstractDAO.vincularValor(
+					sentenca,
+					inicio + i,
+					MetaDadosEntidade.extrairValor(lista[i], obj));
+		}
+	}
+
+	/**
+	 * Vincula os valores (no formato do B.D.) aos parâmetros da instrução.
+	 * @param sentenca Instrução.
+	 * @param valores Valores.
+	 */
+	private static void vincular(SQLiteStatement sentenca, Object[] valores) {
+		if (valores == null) {
+			sentenca.clearBindings();
+			return;
+		}
+		for (int i=0; i < valores.length; i++) {
+			AbstractDAO.vincularValor(sentenca, i + 1, valores[i]);
+		}
+	}
+
+	/**
+	 * Obtém (compilando, se necessário) a consulta de valor único.
+	 * @param sql
+	 * @return
+	 */
+	private SQLiteStatement obterConsultaValor(String sql) {
+		SQLiteStatement sentenca = consultasValor.get(sql);
+		if (sentenca == null) {
+			sentenca = bd.compileStatement(sql);
+			consultasValor.put(sql, sentenca);
+		}
+		return sentenca;
+	}
+
+	/**
+	 * Monta o 'insert' com todas as colunas e a cláusula de conflito.
+	 * @param estrategia
+	 * @return
+	 */
+	private String montarInsercao(EstrategiaConflito estrategia) {
+		final AtributoEntidade[] colunas = metadados.colunas;
+		StringBuilder builder = new StringBuilder("insert");
+		// Com 'on conflict' (ATUALIZAR) não se usa 'insert or ...'.
+		if (estrategia != EstrategiaConflito.ATUALIZAR) {
+			builder.append(" or ").append(estrategia.clausula);
+		}
+		builder.append(" into ");
+		builder.append(metadados.nomeTabela);
+		builder.append(" (");
+		builder.append(metadados.getColunasStr());
+		builder.append(") values (");
+		for (int i=0; i < colunas.length; i++) {
+			builder.append(i > 0 ? ",?" : "?");
+		}
+		builder.append(")");
+		if (estrategia == EstrategiaConflito.ATUALIZAR) {
+			builder.append(" on conflict (");
+			for (int i=0; i < colunasChave.length; i++) {
+				if (i > 0) {
+					builder.append(",");
+				}
+				builder.append(colunasChave[i].nomeColuna);
+			}
+			builder.append(") do ");
+			boolean primeira = true;
+			for (AtributoEntidade coluna: colunas) {
+				if (coluna.chavePrimaria()) {
+					continue;
+				}
+				builder.append(primeira ? "update set " : ",");
+				builder.append(coluna.nomeColuna);
+				builder.append(" = excluded.");
+				builder.append(coluna.nomeColuna);
+				primeira = false;
+			}
+			if (primeira) {
+				// Apenas colunas chave.
+				builder.append("nothing");
+			}
+		}
+		return builder.toString();
+	}
+	
+	/**
+	 * Verifica (apenas uma vez) se a versão do SQLite suporta 
+	 * <tt>on conflict ... do update</tt> (versão 3.24.0 ou superior).
+	 * @return
+	 */
+	private boolean verificarUpsertNativo() {
+		if (upsertNativo == null) {
+			if (colunasChave.length == 0) {
+				throw new DAOException("Entidade sem chave: "
+						+ metadados.nomeTabela);
+			}
+			boolean suportado = false;
+			SQLiteStatement versao = bd.compileStatement("select sqlite_version()");
+			try {
+				String[] partes = versao.simpleQueryForString().split("\\.");
+				int maior = Integer.parseInt(partes[0]);
+				int menor = partes.length > 1 ? Integer.parseInt(partes[1]) : 0;
+				suportado = maior > 3 || (maior == 3 && menor >= 24);
+			} catch (Exception _) {
+				suportado = false;
+			} finally {
+				fechar(versao);
+			}
+			upsertNativo = suportado;
+		}
+		return upsertNativo.booleanValue();
+	}
+	
+	/**
+	 * Monta o 'where' pela chave (<tt>chave1 = ? and chave2 = ?...</tt>).
+	 * @return
+	 */
+	private String montarWhereChaves() {
+		return metadados.getPlanoChave().whereChaves;
+	}
+
+	/**
+	 * Executa a instrução e obtém a quantidade de linhas alteradas por ela
+	 * (<tt>select changes()</tt>).<br/>
+	 * 
+	 * O <tt>changes()</tt> é da conexão: as duas instruções são executadas
+	 * na mesma transação (aninhada, se já houver uma), que mantém o 
+	 * bloqueio do B.D., para que a gravação de outra <i>thread</i> (ou de
+	 * outra entidade) entre elas não altere a quantidade.
+	 * @param sentenca Instrução com os parâmetros já vinculados.
+	 * @return
+	 */
+	private int executar(SQLiteStatement sentenca) {
+		bd.beginTransaction();
+		try {
+			sentenca.execute();
+			if (alteracoes == null) {
+				alteracoes = bd.compileStatement("select changes()");
+			}
+			return (int) alteracoes.simpleQueryForLong();
+		} finally {
+			// Se a instrução falhar, o SQLite já a desfaz: a transação 
+			// externa (se houver) não deve ser desfeita por isto.
+			bd.setTransactionSuccessful();
+			bd.endTransaction();
+		}
+	}
+
+	/**
+	 * Fecha a instrução sem lançar exceção.
+	 * @param sentenca
+	 * @return <tt>null</tt>.
+	 */
+	private static SQLiteStatement fechar(SQLiteStatement sentenca) {
+		if (sentenca != null) {
+			try {
+				sentenca.close();
+			} catch (Exception _) {
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,157 @@
+package open.ddo.android.persistencia;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Sessão (mapa de identidade) de entidades de um DAO.<br/>
+ *
+ * Enquanto a sessão estiver aberta, cada registro (classe entidade e
+ * valores da chave) corresponde a uma única instância: pesquisas pela
+ * chave de registros já carregados retornam a mesma instância sem acessar
+ * o B.D. A inclusão, alteração ou remoção de um objeto o retira da sessão,
+ * e as operações 'nativas' sobre uma tabela retiram todas as entidades
+ * da tabela.<br/>
+ *
+ * <b>Nota</b>: Assim como o DAO, não deve ser compartilhada entre
+ * <i>threads</i>.
+ *
+ * @author ozairjr
+ *
+ */
+public class SessaoEntidades {
+
+	// --------------------------------------------------------------
+	// Atributos do objeto
+	// --------------------------------------------------------------
+
+	/** Instâncias de cada entidade, pelos valores da chave. */
+	private final HashMap<MetaDadosEntidade<?>, HashMap<List<Object>, Object>> entidades =
+			new HashMap<MetaDadosEntidade<?>, HashMap<List<Object>, Object>>();
+	/** Chave com que cada instância foi registrada. */
+	private final IdentityHashMap<Object, List<Object>> chaves =
+			new IdentityHashMap<Object, List<Object>>();
+
+	// --------------------------------------------------------------
+	// Métodos
+	// --------------------------------------------------------------
+
+	/**
+	 * Obtém a instância registrada com a chave informada.
+	 * @param metadados Metadados da entidade.
+	 * @param valoresChave Valores da chave (veja
+	 * <tt>PlanoChave.extrairValores</tt>).
+	 * @return A instância, ou <tt>null</tt> se não estiver na sessão.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T obter(MetaDadosEntidade<T> metadados, Object[] valoresChave) {
+		HashMap<List<Object>, Object> instancias = entidades.get(metadados);
+		return instancias != null ?
+				(T) instancias.get(PlanoChave.montarIdentidade(valoresChave))
+				: null;
+	}
+
+	/**
+	 * Registra o objeto na sessão. Se já houver instância registrada com
+	 * a mesma chave, esta é mantida e retornada.
+	 * @param metadados Metadados da entidade.
+	 * @param obj Objeto entidade.
+	 * @return A instância da sessão para a chave do objeto.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T registrar(MetaDadosEntidade<T> metadados, T obj) {
+		if (obj == null || metadados.getChaves().length == 0) {
+			return obj;
+		}
+		List<Object> chave = PlanoChave.montarIdentidade(
+				metadados.getPlanoChave().extrairValores(obj));
+		HashMap<List<Object>, Object> instancias = entidades.get(metadados);
+		if (instancias == null) {
+			instancias = new HashMap<List<Object>, Object>();
+			entidades.put(metadados, instancias);
+		}
+		Object existente = instancias.get(chave);
+		if (existente != null) {
+			return (T) existente;
+		}
+		instancias.put(chave, obj);
+		chaves.put(obj, chave);
+		return obj;
+	}
+
+	/**
+	 * Retira o objeto da sessão (tanto pela chave com que foi registrado
+	 * quanto pela chave atual).
+	 * @param metadados Metadados da entidade.
+	 * @param obj Objeto entidade.
+	 */
+	public void remover(MetaDadosEntidade<?> metadados, Object obj) {
+		HashMap<List<Object>, Object> instancias = entidades.get(metadados);
+		if (obj == null || instancias == null) {
+			return;
+		}
+		List<Object> registrada = chaves.remove(obj);
+		if (registrada != null) {
+			instancias.remove(registrada);
+		}
+		if (metadados.getChaves().length > 0) {
+			Object outro = instancias.remove(PlanoChave.montarIdentidade(
+					metadados.getPlanoChave().extrairValores(obj)));
+			if (outro != null) {
+				chaves.remove(outro);
+			}
+		}
+	}
+
+	/**
+	 * Retira da sessão a instância registrada com a chave informada.
+	 * @param metadados Metadados da entidade.
+	 * @param valoresChave Valores da chave (veja
+	 * <tt>PlanoChave.extrairValores</tt>).
+	 */
+	public void removerPelaChave(MetaDadosEntidade<?> metadados, Object[] valoresChave) {
+		HashMap<List<Object>, Object> instancias = entidades.get(metadados);
+		if (instancias == null) {
+			return;
+		}
+		Object obj = instancias.remove(PlanoChave.montarIdentidade(valoresChave));
+		if (obj != null) {
+			chaves.remove(obj);
+		}
+	}
+
+	/**
+	 * Retira da sessão todas as entidades da tabela informada.
+	 * @param nomeTabela
+	 */
+	public void limpar(String nomeTabela) {
+		for (Iterator<MetaDadosEntidade<?>> it = entidades.keySet().iterator(); it.hasNext();) {
+			MetaDadosEntidade<?> metadados = it.next();
+			if (metadados.nomeTabela != null
+					&& metadados.nomeTabela.equalsIgnoreCase(nomeTabela)) {
+				for (Object obj: entidades.get(metadados).values()) {
+					chaves.remove(obj);
+				}
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Retira todas as entidades da sessão.
+	 */
+	public void limpar() {
+		entidades.clear();
+		chaves.clear();
+	}
+
+	/**
+	 * Quantidade de instâncias na sessão.
+	 * @return
+	 */
+	public int getQuantidade() {
+		return chaves.size();
+	}
+}
@@ -0,0 +1,243 @@
+package open.ddo.android.persistencia;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import open.ddo.android.persistencia.excecao.DAOException;
+
+/**
+ * Token de continuação da paginação por chave ('keyset'/'seek'):
+ * identifica a posição (os valores das colunas de ordenação do último, ou
+ * do primeiro, registro de uma página) a partir da qual a próxima página
+ * (ou a anterior) será pesquisada, além do tamanho e da ordenação da
+ * paginação.<br/>
+ *
+ * Pode ser convertido em texto (<tt>codificar</tt>) para ser guardado,
+ * e.g., no estado da <tt>Activity</tt>, e recuperado com
+ * <tt>decodificar</tt>.
+ *
+ * @author ozairjr
+ *
+ */
+public final class TokenPagina implements Serializable {
+
+	// --------------------------------------------------------------
+	// Atributos de classe
+	// --------------------------------------------------------------
+
+	private static final long serialVersionUID = 1L;
+
+	/** Separador dos campos no texto codificado. */
+	private static final char SEPARADOR = ';';
+
+	// --------------------------------------------------------------
+	// Atributos do objeto
+	// --------------------------------------------------------------
+
+	/** Quantidade de registros por página. */
+	public final int tamanho;
+	/** Atributo de ordenação (<tt>null</tt> para ordenar pela chave). */
+	public final String ordem;
+	/** Se a ordenação é descendente. */
+	public final boolean descendente;
+	/** Se a página a ser pesquisada é a seguinte (<tt>true</tt>) ou a
+	 * anterior à posição. */
+	public final boolean avancar;
+	/** Valores das colunas de ordenação na posição (<tt>null</tt> para o
+	 * início). */
+	final Object[] posicao;
+
+	// --------------------------------------------------------------
+	// Métodos
+	// --------------------------------------------------------------
+
+	/**
+	 * Construtor.
+	 * @param tamanho Quantidade de registros por página.
+	 * @param ordem Atributo de ordenação (<tt>null</tt> para a chave).
+	 * @param descendente Se a ordenação é descendente.
+	 * @param avancar Se pesquisa a página seguinte à posição.
+	 * @param posicao Valores das colunas de ordenação (<tt>null</tt> para o
+	 * início).
+	 */
+	TokenPagina(int tamanho, String ordem, boolean descendente, boolean avancar, Object[] posicao) {
+		if (tamanho < 1) {
+			throw new DAOException("Tamanho da p\u00e1gina inv\u00e1lido: " + tamanho);
+		}
+		this.tamanho = tamanho;
+		this.ordem = ordem;
+		this.descendente = descendente;
+		this.avancar = avancar;
+		this.posicao = posicao;
+	}
+
+	/**
+	 * Token da primeira página.
+	 * @param tamanho Quantidade de registros por página.
+	 * @param ordem Atributo de ordenação (<tt>null</tt> para ordenar pela
+	 * chave). Deve ser uma coluna sem valores nulos (a paginação lança
+	 * <tt>DAOException</tt> ao encontrar um valor nulo).
+	 * @param descendente Se a ordenação é descendente.
+	 * @return
+	 */
+	public static TokenPagina inicio(int tamanho, String ordem, boolean descendente) {
+		return new TokenPagina(tamanho, ordem, descendente, true, null);
+	}
+
+	/**
+	 * Verifica se é o token da primeira página.
+	 * @return
+	 */
+	public boolean isInicio() {
+		return posicao == null;
+	}
+
+	/**
+	 * Converte o token em texto.
+	 * @return
+	 */
+	public String codificar() {
+		StringBuilder builder = new StringBuilder();
+		builder.append(tamanho).append(SEPARADOR);
+		builder.append(descendente ? '1' : '0').append(SEPARADOR);
+		builder.append(avancar ? '1' : '0').append(SEPARADOR);
+		adicionarTexto(builder, ordem);
+		if (posicao != null) {
+			for (Object valor: posicao) {
+				if (valor == null) {
+					builder.append('N');
+				} else if (valor instanceof Long || valor instanceof Integer
+						|| valor instanceof Short || valor instanceof Byte) {
+					builder.append('L').append(valor);
+				} else if (valor instanceof Number) {
+					builder.append('D').append(((Number) valor).doubleValue());
+				} else if (valor instanceof Boolean) {
+					builder.append('L').append(((Boolean) valor).booleanValue() ? 1 : 0);
+				} else {
+					adicionarTexto(builder, valor.toString());
+					continue;
+				}
+				builder.append(SEPARADOR);
+			}
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Recupera o token do texto (veja <tt>codificar</tt>).
+	 * @param texto
+	 * @return
+	 */
+	public static TokenPagina decodificar(String texto) {
+		try {
+			int[] indice = {0};
+			int tamanho = Integer.parseInt(lerCampo(texto, indice));
+			boolean descendente = "1".equals(lerCampo(texto, indice));
+			boolean avancar = "1".equals(lerCampo(texto, indice));
+			String ordem = lerTexto(texto, indice);
+			ArrayList<Object> valores = new ArrayList<Object>();
+			while (indice[0] < texto.length()) {
+				char tipo = texto.charAt(indice[0]);
+				switch (tipo) {
+					case 'N':
+						lerCampo(texto, indice);
+						valores.add(null);
+					break;
+					case 'L':
+						valores.add(Long.valueOf(lerCampo(texto, indice).substring(1)));
+					break;
+					case 'D':
+						valores.add(Double.valueOf(lerCampo(texto, indice).substring(1)));
+					break;
+					default:
+						valores.add(lerTexto(texto, indice));
+					break;
+				}
+			}
+			return new TokenPagina(
+					tamanho,
+					ordem,
+					descendente,
+					avancar,
+					valores.isEmpty() ? null : valores.toArray());
+		} catch (DAOException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new DAOException("Token de p\u00e1gina inv\u00e1lido: " + texto, e);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "TokenPagina[" + codificar() + "]";
+	}
+
+	@Override
+	public int hashCode() {
+		return codificar().hashCode();
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (o instanceof TokenPagina) {
+			TokenPagina outro = (TokenPagina) o;
+			return tamanho == outro.tamanho
+					&& descendente == outro.descendente
+					&& avancar == outro.avancar
+					&& (ordem == null ? outro.ordem == null : ordem.equals(outro.ordem))
+					&& Arrays.equals(posicao, outro.posicao);
+		}
+		return false;
+	}
+
+	// --------------------------------------------------------------
+	// Métodos auxiliares
+	// --------------------------------------------------------------
+
+	/**
+	 * Adiciona o texto com o seu tamanho (<tt>S[tamanho]:[texto]</tt>), ou
+	 * <tt>N</tt> se nulo.
+	 * @param builder
+	 * @param texto
+	 */
+	private static void adicionarTexto(StringBuilder builder, String texto) {
+		if (texto == null) {
+			builder.append('N');
+		} else {
+			builder.append('S').append(texto.length()).append(':').append(texto);
+		}
+		builder.append(SEPARADOR);
+	}
+
+	/**
+	 * Lê o texto adicionado com <tt>adicionarTexto</tt>.
+	 * @param texto
+	 * @param indice Índice corrente (atualizado).
+	 * @return
+	 */
+	private static String lerTexto(String texto, int[] indice) {
+		if (texto.charAt(indice[0]) == 'N') {
+			lerCampo(texto, indice);
+			return null;
+		}
+		int doisPontos = texto.indexOf(':', indice[0]);
+		int tamanho = Integer.parseInt(texto.substring(indice[0] + 1, doisPontos));
+		String valor = texto.substring(doisPontos + 1, doisPontos + 1 + tamanho);
+		indice[0] = doisPontos + 1 + tamanho + 1;
+		return valor;
+	}
+
+	/**
+	 * Lê o campo até o separador.
+	 * @param texto
+	 * @param indice Índice corrente (atualizado).
+	 * @return
+	 */
+	private static String lerCampo(String texto, int[] indice) {
+		int fim = texto.indexOf(SEPARADOR, indice[0]);
+		String campo = texto.substring(indice[0], fim);
+		indice[0] = fim + 1;
+		return campo;
+	}
+}
@@ -0,0 +1,26 @@
+package open.ddo.android.persistencia;
+
+/**
+ * Visitante das linhas de uma pesquisa (veja <tt>EntidadeDAO.percorrer</tt>
+ * e <tt>EntidadeDAO.percorrerReutilizando</tt>): cada linha é entregue
+ * ao visitante, sem que o resultado seja carregado em uma lista.<br/>
+ *
+ * A linha recebida (a visão <tt>LinhaCursor</tt> ou a instância
+ * reutilizada da entidade) é válida apenas durante a chamada e não deve
+ * ser guardada.
+ *
+ * @author ozairjr
+ *
+ * @param <L> Tipo da linha (<tt>LinhaCursor</tt> ou a entidade).
+ */
+public interface VisitanteLinha<L> {
+
+	/**
+	 * Visita a linha.
+	 * @param linha Linha corrente.
+	 * @return <tt>true</tt> para continuar, ou <tt>false</tt> para
+	 * interromper o percurso.
+	 */
+	boolean visitar(L linha);
+
+}
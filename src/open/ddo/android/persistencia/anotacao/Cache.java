@@ -0,0 +1,22 @@
+package open.ddo.android.persistencia.anotacao;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Anotação para a classe entidade (com <tt>@Tabela</tt>) cujos registros
+ * serão mantidos em cache (compartilhado por todo o processo), pela chave.
+ * Indicado para tabelas de referência, muito lidas e pouco alteradas.
+ * @author ozairjr
+ *
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Cache {
+	
+	/** Quantidade máxima de registros no cache. Ao ser atingida, os 
+	 * registros menos utilizados recentemente são descartados. */
+	int tamanho() default 256;
+}
@@ -0,0 +1,36 @@
+package open.ddo.android.persistencia.anotacao;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Anotação para o atributo que referencia outra entidade (muitos para um),
+ * pela chave estrangeira, e.g.:<br/>
+ * 
+ * <blockquote>
+ * <tt>
+ * &#64;Coluna(nome = "id_cliente")<br/>
+ * private Long idCliente;<br/>
+ * &#64;MuitosParaUm(atributo = "idCliente")<br/>
+ * private Cliente cliente;
+ * </tt>
+ * </blockquote>
+ * 
+ * O atributo não é uma coluna: é carregado apenas quando solicitado (veja
+ * <tt>EntidadeDAO.carregarRelacionamentos</tt>) ou, se for declarado como
+ * <tt>Referencia</tt>, no primeiro acesso. A entidade referenciada
+ * deve possuir chave simples (uma única coluna).
+ * 
+ * @author ozairjr
+ *
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface MuitosParaUm {
+	
+	/** Nome do atributo (ou da coluna) desta entidade com a chave 
+	 * estrangeira. */
+	String atributo();
+}
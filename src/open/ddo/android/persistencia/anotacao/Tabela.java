@@ -17,4 +17,14 @@ public @interface Tabela {
 	
 	/** Nome da tabela. Se não informado será o nome da classe. */
 	String nome() default "";
+	
+	/** Se as alterações das entidades carregadas do B.D. serão rastreadas,
+	 * para que o 'update' contenha apenas as colunas alteradas
+	 * (ou nem seja executado, se nada foi alterado). */
+	boolean rastrearAlteracoes() default false;
+	
+	/** Se os resultados das pesquisas (listas) da entidade serão mantidos
+	 * em cache (veja <tt>CacheConsultas</tt>), até que a tabela seja 
+	 * alterada. */
+	boolean cacheConsultas() default false;
 }
@@ -0,0 +1,52 @@
+package open.ddo.android.persistencia.anotacao;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Anotação para a coleção de entidades que referenciam esta entidade
+ * (um para muitos), pela chave estrangeira na entidade 'filha', e.g.:<br/>
+ * 
+ * <blockquote>
+ * <tt>
+ * &#64;UmParaMuitos(atributo = "idPedido", ordem = "sequencia")<br/>
+ * private List&lt;ItemPedido&gt; itens;
+ * </tt>
+ * </blockquote>
+ * 
+ * O atributo não é uma coluna: é carregado apenas quando solicitado (veja
+ * <tt>EntidadeDAO.carregarRelacionamentos</tt>) ou, se for declarado como
+ * <tt>Referencia</tt>, no primeiro acesso. Esta entidade deve
+ * possuir chave simples (uma única coluna).
+ * 
+ * @author ozairjr
+ *
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface UmParaMuitos {
+	
+	/** Nome do atributo (ou da coluna) da entidade 'filha' com a chave 
+	 * estrangeira. */
+	String atributo();
+	
+	/** Classe da entidade 'filha'. Se não for informada, é obtida do 
+	 * tipo genérico da coleção. */
+	Class<?> classe() default Object.class;
+	
+	/** Ordenação da coleção (cláusula 'order by', com os nomes dos 
+	 * atributos da entidade 'filha'). */
+	String ordem() default "";
+	
+	/** Se a coleção é salva junto com esta entidade (veja 
+	 * <tt>EntidadeDAO.salvar</tt>): a chave desta entidade é atribuída às
+	 * entidades 'filhas', que são inseridas ou atualizadas. */
+	boolean cascata() default false;
+	
+	/** Se, ao salvar em cascata, as entidades 'filhas' que estão no B.D. 
+	 * mas não na coleção são removidas, junto com as suas coleções em
+	 * cascata. */
+	boolean removerOrfaos() default false;
+}
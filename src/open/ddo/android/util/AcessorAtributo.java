@@ -0,0 +1,330 @@
+package open.ddo.android.util;
+
+import java.lang.reflect.Field;
+
+/**
+ * Acessor de um atributo de objeto.<br/>
+ *
+ * Criado uma única vez por atributo: o atributo é tornado acessível na
+ * criação (e assim permanece), evitando as verificações de segurança de
+ * <tt>setAccessible</tt> a cada leitura/escrita. As operações tipadas
+ * (<tt>getLong</tt>, <tt>setInt</tt>...) evitam 'boxing' para atributos
+ * primitivos.
+ *
+ * @author ozairjr
+ *
+ */
+public abstract class AcessorAtributo {
+
+	// --------------------------------------------------------------
+	// Métodos
+	// --------------------------------------------------------------
+
+	/**
+	 * Cria o acessor (via reflexão) do atributo informado.
+	 * @param f Atributo.
+	 * @return
+	 */
+	public static AcessorAtributo criar(Field f) {
+		if (f == null) {
+			throw new IllegalArgumentException("Atributo n\u00e3o informado");
+		}
+		if (!f.isAccessible()) {
+			f.setAccessible(true);
+		}
+		return new AcessorCampo(f);
+	}
+
+	/**
+	 * Obtém o valor do atributo.
+	 * @param obj
+	 * @return
+	 */
+	public abstract Object getObject(Object obj);
+
+	/**
+	 * Atribui o valor ao atributo.
+	 * @param obj
+	 * @param valor Valor (no tipo do atributo).
+	 */
+	public abstract void set(Object obj, Object valor);
+
+	/**
+	 * Obtém o valor do atributo como <tt>long</tt>.
+	 * @param obj
+	 * @return
+	 */
+	public long getLong(Object obj) {
+		Object valor = getObject(obj);
+		return valor != null ? ((Number) valor).longValue() : 0L;
+	}
+
+	/**
+	 * Obtém o valor do atributo como <tt>int</tt>.
+	 * @param obj
+	 * @return
+	 */
+	public int getInt(Object obj) {
+		Object valor = getObject(obj);
+		return valor != null ? ((Number) valor).intValue() : 0;
+	}
+
+	/**
+	 * Obtém o valor do atributo como <tt>double</tt>.
+	 * @param obj
+	 * @return
+	 */
+	public double getDouble(Object obj) {
+		Object valor = getObject(obj);
+		return valor != null ? ((Number) valor).doubleValue() : 0d;
+	}
+
+	/**
+	 * Obtém o valor do atributo como <tt>boolean</tt>.
+	 * @param obj
+	 * @return
+	 */
+	public boolean getBoolean(Object obj) {
+		Object valor = getObject(obj);
+		return valor != null && ((Boolean) valor).booleanValue();
+	}
+
+	/**
+	 * Atribui o valor <tt>long</tt> ao atributo.
+	 * @param obj
+	 * @param valor
+	 */
+	public void setLong(Object obj, long valor) {
+		set(obj, Long.valueOf(valor));
+	}
+
+	/**
+	 * Atribui o valor <tt>int</tt> ao atributo.
+	 * @param obj
+	 * @param valor
+	 */
+	public void setInt(Object obj, int valor) {
+		set(obj, Integer.valueOf(valor));
+	}
+
+	/**
+	 * Atribui o valor <tt>short</tt> ao atributo.
+	 * @param obj
+	 * @param valor
+	 */
+	public void setShort(Object obj, short valor) {
+		set(obj, Short.valueOf(valor));
+	}
+
+	/**
+	 * Atribui o valor <tt>byte</tt> ao atributo.
+	 * @param obj
+	 * @param valor
+	 */
+	public void setByte(Object obj, byte valor) {
+		set(obj, Byte.valueOf(valor));
+	}
+
+	/**
+	 * Atribui o valor <tt>double</tt> ao atributo.
+	 * @param obj
+	 * @param valor
+	 */
+	public void setDouble(Object obj, double valor) {
+		set(obj, Double.valueOf(valor));
+	}
+
+	/**
+	 * Atribui o valor <tt>float</tt> ao atributo.
+	 * @param obj
+	 * @param valor
+	 */
+	public void setFloat(Object obj, float valor) {
+		set(obj, Float.valueOf(valor));
+	}
+
+	/**
+	 * Atribui o valor <tt>boolean</tt> ao atributo.
+	 * @param obj
+	 * @param valor
+	 */
+	public void setBoolean(Object obj, boolean valor) {
+		set(obj, Boolean.valueOf(valor));
+	}
+
+	// --------------------------------------------------------------
+	// Classes internas
+	// --------------------------------------------------------------
+
+	/**
+	 * Acessor via reflexão (<tt>java.lang.reflect.Field</tt>), com o
+	 * atributo já acessível.
+	 */
+	private static final class AcessorCampo extends AcessorAtributo {
+
+		private final Field f;
+		private final boolean primitivo;
+
+		AcessorCampo(Field f) {
+			this.f = f;
+			this.primitivo = f.getType().isPrimitive();
+		}
+
+		@Override
+		public Object getObject(Object obj) {
+			try {
+				return f.get(obj);
+			} catch (IllegalAccessException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		@Override
+		public void set(Object obj, Object valor) {
+			try {
+				f.set(obj, valor);
+			} catch (IllegalAccessException e) {
+				throw new RuntimeException(e.getMessage(), e);
+			}
+		}
+
+		@Override
+		public long getLong(Object obj) {
+			if (!primitivo) {
+				return super.getLong(obj);
+			}
+			try {
+				return f.getLong(obj);
+			} catch (IllegalAccessException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		@Override
+		public int getInt(Object obj) {
+			if (!primitivo) {
+				return super.getInt(obj);
+			}
+			try {
+				return f.getInt(obj);
+			} catch (IllegalAccessException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		@Override
+		public double getDouble(Object obj) {
+			if (!primitivo) {
+				return super.getDouble(obj);
+			}
+			try {
+				return f.getDouble(obj);
+			} catch (IllegalAccessException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		@Override
+		public boolean getBoolean(Object obj) {
+			if (f.getType() != boolean.class) {
+				return super.getBoolean(obj);
+			}
+			try {
+				return f.getBoolean(obj);
+			} catch (IllegalAccessException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		@Override
+		public void setLong(Object obj, long valor) {
+			if (!primitivo) {
+				super.setLong(obj, valor);
+				return;
+			}
+			try {
+				f.setLong(obj, valor);
+			} catch (IllegalAccessException e) {
+				throw new RuntimeException(e.getMessage(), e);
+			}
+		}
+
+		@Override
+		public void setInt(Object obj, int valor) {
+			if (!primitivo) {
+				super.setInt(obj, valor);
+				return;
+			}
+			try {
+				f.setInt(obj, valor);
+			} catch (IllegalAccessException e) {
+				throw new RuntimeException(e.getMessage(), e);
+			}
+		}
+
+		@Override
+		public void setShort(Object obj, short valor) {
+			if (!primitivo) {
+				super.setShort(obj, valor);
+				return;
+			}
+			try {
+				f.setShort(obj, valor);
+			} catch (IllegalAccessException e) {
+				throw new RuntimeException(e.getMessage(), e);
+			}
+		}
+
+		@Override
+		public void setByte(Object obj, byte valor) {
+			if (!primitivo) {
+				super.setByte(obj, valor);
+				return;
+			}
+			try {
+				f.setByte(obj, valor);
+			} catch (IllegalAccessException e) {
+				throw new RuntimeException(e.getMessage(), e);
+			}
+		}
+
+		@Override
+		public void setDouble(Object obj, double valor) {
+			if (!primitivo) {
+				super.setDouble(obj, valor);
+				return;
+			}
+			try {
+				f.setDouble(obj, valor);
+			} catch (IllegalAccessException e) {
+				throw new RuntimeException(e.getMessage(), e);
+			}
+		}
+
+		@Override
+		public void setFloat(Object obj, float valor) {
+			if (!primitivo) {
+				super.setFloat(obj, valor);
+				return;
+			}
+			try {
+				f.setFloat(obj, valor);
+			} catch (IllegalAccessException e) {
+				throw new RuntimeException(e.getMessage(), e);
+			}
+		}
+
+		@Override
+		public void setBoolean(Object obj, boolean valor) {
+			if (!primitivo) {
+				super.setBoolean(obj, valor);
+				return;
+			}
+			try {
+				f.setBoolean(obj, valor);
+			} catch (IllegalAccessException e) {
+				throw new RuntimeException(e.getMessage(), e);
+			}
+		}
+	}
+}
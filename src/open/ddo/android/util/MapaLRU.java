@@ -0,0 +1,227 @@
+package open.ddo.android.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Mapa limitado, que descarta as entradas menos utilizadas recentemente
+ * (LRU) quando o tamanho máximo é atingido.<br/>
+ *
+ * Pode ser utilizado por várias <i>threads</i>: as entradas são divididas
+ * em segmentos (pelo <tt>hashCode</tt> da chave), cada um com o seu próprio
+ * bloqueio, de forma que acessos a segmentos diferentes não concorrem
+ * entre si. Mantém contadores de acertos, falhas e descartes.
+ *
+ * @author ozairjr
+ *
+ * @param <K> Tipo da chave.
+ * @param <V> Tipo do valor.
+ */
+public class MapaLRU<K, V> {
+
+	// --------------------------------------------------------------
+	// Atributos do objeto
+	// --------------------------------------------------------------
+
+	/** Segmentos do mapa. */
+	private final Segmento<K, V>[] segmentos;
+	/** Quantidade de acertos (valor encontrado). */
+	private final AtomicLong acertos = new AtomicLong();
+	/** Quantidade de falhas (valor não encontrado). */
+	private final AtomicLong falhas = new AtomicLong();
+	/** Quantidade de descartes (pelo limite de tamanho). */
+	private final AtomicLong descartes = new AtomicLong();
+
+	// --------------------------------------------------------------
+	// Métodos
+	// --------------------------------------------------------------
+
+	/**
+	 * Construtor.
+	 * @param tamanhoMaximo Quantidade máxima de entradas.
+	 */
+	public MapaLRU(int tamanhoMaximo) {
+		this(tamanhoMaximo, tamanhoMaximo < 64 ? 1 : 8);
+	}
+
+	/**
+	 * Construtor.
+	 * @param tamanhoMaximo Quantidade máxima de entradas.
+	 * @param quantidadeSegmentos Quantidade de segmentos (bloqueios).
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public MapaLRU(int tamanhoMaximo, int quantidadeSegmentos) {
+		if (tamanhoMaximo < 1 || quantidadeSegmentos < 1) {
+			throw new IllegalArgumentException("Tamanho inv\u00e1lido");
+		}
+		quantidadeSegmentos = Math.min(quantidadeSegmentos, tamanhoMaximo);
+		segmentos = new Segmento[quantidadeSegmentos];
+		int capacidade = tamanhoMaximo / quantidadeSegmentos;
+		int resto = tamanhoMaximo % quantidadeSegmentos;
+		for (int i=0; i < quantidadeSegmentos; i++) {
+			segmentos[i] = new Segmento<K, V>(capacidade + (i < resto ? 1 : 0), descartes);
+		}
+	}
+
+	/**
+	 * Obtém o valor da chave (marcando-o como utilizado recentemente).
+	 * @param chave
+	 * @return O valor, ou <tt>null</tt> se não encontrado.
+	 */
+	public V obter(K chave) {
+		Segmento<K, V> segmento = segmento(chave);
+		V valor;
+		synchronized (segmento) {
+			valor = segmento.get(chave);
+		}
+		(valor != null ? acertos : falhas).incrementAndGet();
+		return valor;
+	}
+
+	/**
+	 * Obtém o valor da chave sem contá-lo como acerto ou falha (e.g. para
+	 * decidir se ele será substituído).
+	 * @param chave
+	 * @return O valor, ou <tt>null</tt> se não encontrado.
+	 */
+	public V consultar(K chave) {
+		Segmento<K, V> segmento = segmento(chave);
+		synchronized (segmento) {
+			return segmento.get(chave);
+		}
+	}
+
+	/**
+	 * Coloca o valor para a chave.
+	 * @param chave
+	 * @param valor
+	 */
+	public void colocar(K chave, V valor) {
+		Segmento<K, V> segmento = segmento(chave);
+		synchronized (segmento) {
+			segmento.put(chave, valor);
+		}
+	}
+
+	/**
+	 * Remove o valor da chave.
+	 * @param chave
+	 * @return O valor removido (ou <tt>null</tt>).
+	 */
+	public V remover(K chave) {
+		Segmento<K, V> segmento = segmento(chave);
+		synchronized (segmento) {
+			return segmento.remove(chave);
+		}
+	}
+
+	/**
+	 * Remove todas as entradas.
+	 */
+	public void limpar() {
+		for (Segmento<K, V> segmento: segmentos) {
+			synchronized (segmento) {
+				segmento.clear();
+			}
+		}
+	}
+
+	/**
+	 * Quantidade de entradas.
+	 * @return
+	 */
+	public int tamanho() {
+		int tamanho = 0;
+		for (Segmento<K, V> segmento: segmentos) {
+			synchronized (segmento) {
+				tamanho += segmento.size();
+			}
+		}
+		return tamanho;
+	}
+
+	/**
+	 * Quantidade de acertos (chamadas a <tt>obter</tt> que encontraram
+	 * o valor).
+	 * @return
+	 */
+	public long getAcertos() {
+		return acertos.get();
+	}
+
+	/**
+	 * Quantidade de falhas (chamadas a <tt>obter</tt> que não encontraram
+	 * o valor).
+	 * @return
+	 */
+	public long getFalhas() {
+		return falhas.get();
+	}
+
+	/**
+	 * Quantidade de entradas descartadas pelo limite de tamanho.
+	 * @return
+	 */
+	public long getDescartes() {
+		return descartes.get();
+	}
+
+	@Override
+	public String toString() {
+		return "MapaLRU[tamanho=" + tamanho()
+				+ ", acertos=" + getAcertos()
+				+ ", falhas=" + getFalhas()
+				+ ", descartes=" + getDescartes()
+				+ "]";
+	}
+
+	// --------------------------------------------------------------
+	// Métodos auxiliares
+	// --------------------------------------------------------------
+
+	/**
+	 * Segmento da chave.
+	 * @param chave
+	 * @return
+	 */
+	private Segmento<K, V> segmento(K chave) {
+		int h = chave != null ? chave.hashCode() : 0;
+		// Espalhando os bits (como em java.util.HashMap).
+		h ^= (h >>> 20) ^ (h >>> 12);
+		h ^= (h >>> 7) ^ (h >>> 4);
+		return segmentos[(h & 0x7fffffff) % segmentos.length];
+	}
+
+	// --------------------------------------------------------------
+	// Classes internas
+	// --------------------------------------------------------------
+
+	/**
+	 * Segmento do mapa: <tt>LinkedHashMap</tt> em ordem de acesso.
+	 */
+	private static final class Segmento<K, V> extends LinkedHashMap<K, V> {
+
+		private static final long serialVersionUID = 1L;
+
+		/** Quantidade máxima de entradas do segmento. */
+		private final int capacidade;
+		/** Contador de descartes (do mapa). */
+		private final AtomicLong descartes;
+
+		Segmento(int capacidade, AtomicLong descartes) {
+			super(16, 0.75f, true);
+			this.capacidade = capacidade;
+			this.descartes = descartes;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<K, V> e) {
+			if (size() > capacidade) {
+				descartes.incrementAndGet();
+				return true;
+			}
+			return false;
+		}
+	}
+}
@@ -81,10 +81,14 @@ public class ObjectUtil {
 	}
 
 	/**
-	 * Atribui o valor 'value' ao atributo 'f' do objeto 'obj'.
+	 * Atribui o valor 'value' ao atributo 'f' do objeto 'obj'.<br/>
+	 * Para acessos repetidos ao mesmo atributo, prefira
+	 * <tt>AcessorAtributo</tt>.
 	 * @param obj
 	 * @param f
 	 * @param value
+	 * @throws RuntimeException Se não for possível atribuir o valor (antes
+	 * a falha era ignorada).
 	 */
 	public static void set(Object obj, Field f, Object value) {
 		boolean b = false;
@@ -95,7 +99,7 @@ public class ObjectUtil {
 		try {
 			f.set(obj, value);
 		} catch (Exception e) {
-			new RuntimeException(e.getMessage(), e);
+			throw new RuntimeException(e.getMessage(), e);
 		} finally {
 			if (b){
 				try {
@@ -176,7 +180,9 @@ public class ObjectUtil {
 	}
 	
 	/**
-	 * Obtém o valor do atributo do objeto informado. 
+	 * Obtém o valor do atributo do objeto informado.<br/>
+	 * Para acessos repetidos ao mesmo atributo, prefira
+	 * <tt>AcessorAtributo</tt>.
 	 * @param obj
 	 * @param f
 	 * @return
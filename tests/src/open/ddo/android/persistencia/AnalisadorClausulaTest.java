@@ -0,0 +1,125 @@
+package open.ddo.android.persistencia;
+
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+import open.ddo.android.persistencia.anotacao.Chave;
+import open.ddo.android.persistencia.anotacao.Coluna;
+import open.ddo.android.persistencia.anotacao.Tabela;
+
+/**
+ * Testes do <tt>AnalisadorClausula</tt>: troca dos nomes dos atributos,
+ * coluna de cada parâmetro e tabelas das subconsultas.
+ *
+ * @author ozairjr
+ *
+ */
+public class AnalisadorClausulaTest extends TestCase {
+
+	/**
+	 * Entidade dos testes.
+	 */
+	@Tabela(nome = "pessoa")
+	public static class Pessoa {
+		@Chave
+		@Coluna
+		public Long id;
+		@Coluna(nome = "nome_completo")
+		public String nomeCompleto;
+		@Coluna
+		public int idade;
+	}
+
+	public void testIgual() {
+		AnalisadorClausula analisador = analisar("idade=?");
+		assertEquals("idade=?", analisador.getSql());
+		assertColunas(analisador, "idade");
+	}
+
+	public void testParametroAntesDaColuna() {
+		AnalisadorClausula analisador = analisar("? = idade");
+		assertColunas(analisador, "idade");
+	}
+
+	public void testIn() {
+		AnalisadorClausula analisador = analisar("id IN (?, ?)");
+		assertEquals("id IN (?, ?)", analisador.getSql());
+		assertColunas(analisador, "id", "id");
+	}
+
+	public void testNotIn() {
+		AnalisadorClausula analisador = analisar("id not in (?,?,?) or idade is null");
+		assertColunas(analisador, "id", "id", "id");
+	}
+
+	public void testFuncaoLike() {
+		AnalisadorClausula analisador = analisar("lower(nomeCompleto) like ?");
+		assertEquals("lower(nome_completo) like ?", analisador.getSql());
+		assertColunas(analisador, "nome_completo");
+	}
+
+	public void testBetween() {
+		AnalisadorClausula analisador = analisar("idade BETWEEN ? AND ? and nomeCompleto = ?");
+		assertEquals("idade BETWEEN ? AND ? and nome_completo = ?", analisador.getSql());
+		assertColunas(analisador, "idade", "idade", "nome_completo");
+	}
+
+	public void testLiteralEComentario() {
+		AnalisadorClausula analisador = analisar(
+				"nomeCompleto = 'nomeCompleto ?' -- idade = ?\n and idade = ?");
+		assertEquals("nome_completo = 'nomeCompleto ?' -- idade = ?\n and idade = ?",
+				analisador.getSql());
+		assertColunas(analisador, "idade");
+	}
+
+	public void testIdentificadorEntreAspas() {
+		AnalisadorClausula analisador = analisar("\"nome_completo\" = ?");
+		assertColunas(analisador, "nome_completo");
+	}
+
+	public void testSemTroca() {
+		String texto = "id > ? order by id";
+		assertSame(texto, analisar(texto).getSql());
+	}
+
+	public void testSemParametros() {
+		AnalisadorClausula analisador = analisar("idade is not null");
+		assertEquals(0, analisador.getQuantidadeParametros());
+		assertNull(analisador.getColunasParametros());
+		assertTrue(analisador.getTabelas().isEmpty());
+	}
+
+	public void testTabelasDasSubconsultas() {
+		AnalisadorClausula analisador = analisar(
+				"idade = ? and exists (select 1 from Outra o join terceira t "
+				+ "on t.id = o.id where o.id_pessoa = pessoa.id and o.a = ?)");
+		assertEquals(2, analisador.getQuantidadeParametros());
+		assertEquals("idade", analisador.getColunasParametros().get(0));
+		assertEquals(Arrays.asList("outra", "terceira"),
+				Arrays.asList(analisador.getTabelas().toArray()));
+	}
+
+	public void testTabelasDaListaDoFrom() {
+		AnalisadorClausula analisador = analisar(
+				"id in (select b.id from b, c left outer join d using (id))");
+		assertEquals(Arrays.asList("b", "c", "d"),
+				Arrays.asList(analisador.getTabelas().toArray()));
+	}
+
+	// --------------------------------------------------------------
+	// Métodos auxiliares
+	// --------------------------------------------------------------
+
+	private static AnalisadorClausula analisar(String texto) {
+		return new AnalisadorClausula(
+				AbstractDAO.getMetaDadosEntidade(Pessoa.class),
+				texto);
+	}
+
+	private static void assertColunas(AnalisadorClausula analisador, String... colunas) {
+		List<String> esperadas = Arrays.asList(colunas);
+		assertEquals(esperadas.size(), analisador.getQuantidadeParametros());
+		assertEquals(esperadas, analisador.getColunasParametros());
+	}
+}
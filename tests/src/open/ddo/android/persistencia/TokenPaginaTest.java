@@ -0,0 +1,86 @@
+package open.ddo.android.persistencia;
+
+import junit.framework.TestCase;
+import open.ddo.android.persistencia.excecao.DAOException;
+
+/**
+ * Testes da codificação do <tt>TokenPagina</tt> (<tt>codificar</tt> e
+ * <tt>decodificar</tt>).
+ *
+ * @author ozairjr
+ *
+ */
+public class TokenPaginaTest extends TestCase {
+
+	public void testInicio() {
+		TokenPagina token = TokenPagina.inicio(10, null, false);
+		TokenPagina decodificado = TokenPagina.decodificar(token.codificar());
+		assertTrue(decodificado.isInicio());
+		assertEquals(token, decodificado);
+		assertEquals(10, decodificado.tamanho);
+		assertNull(decodificado.ordem);
+		assertFalse(decodificado.descendente);
+		assertTrue(decodificado.avancar);
+	}
+
+	public void testTextosComSeparadores() {
+		TokenPagina token = new TokenPagina(20, "no;me:x", true, false,
+				new Object[] {"a;b:c", ";", ":", "S3:x;", ""});
+		TokenPagina decodificado = TokenPagina.decodificar(token.codificar());
+		assertEquals(token, decodificado);
+		assertEquals("no;me:x", decodificado.ordem);
+		assertTrue(decodificado.descendente);
+		assertFalse(decodificado.avancar);
+		assertEquals("a;b:c", decodificado.posicao[0]);
+		assertEquals(";", decodificado.posicao[1]);
+		assertEquals(":", decodificado.posicao[2]);
+		assertEquals("S3:x;", decodificado.posicao[3]);
+		assertEquals("", decodificado.posicao[4]);
+	}
+
+	public void testValoresTipados() {
+		TokenPagina token = new TokenPagina(5, "valor", false, true,
+				new Object[] {Long.valueOf(-7), Double.valueOf(2.5),
+						Double.valueOf(1e-10), null, Long.valueOf(Long.MAX_VALUE)});
+		TokenPagina decodificado = TokenPagina.decodificar(token.codificar());
+		assertEquals(token, decodificado);
+		assertEquals(Long.valueOf(-7), decodificado.posicao[0]);
+		assertEquals(Double.valueOf(2.5), decodificado.posicao[1]);
+		assertEquals(Double.valueOf(1e-10), decodificado.posicao[2]);
+		assertNull(decodificado.posicao[3]);
+		assertEquals(Long.valueOf(Long.MAX_VALUE), decodificado.posicao[4]);
+	}
+
+	public void testInteiroComoLong() {
+		TokenPagina token = new TokenPagina(5, null, false, true,
+				new Object[] {Integer.valueOf(3), Boolean.TRUE});
+		TokenPagina decodificado = TokenPagina.decodificar(token.codificar());
+		assertEquals(Long.valueOf(3), decodificado.posicao[0]);
+		assertEquals(Long.valueOf(1), decodificado.posicao[1]);
+		assertEquals(token.codificar(), decodificado.codificar());
+	}
+
+	public void testTokenInvalido() {
+		try {
+			TokenPagina.decodificar("x;");
+			fail();
+		} catch (DAOException e) {
+			// Esperado.
+		}
+		try {
+			TokenPagina.decodificar("10;0;1;S9:abc;");
+			fail();
+		} catch (DAOException e) {
+			// Esperado.
+		}
+	}
+
+	public void testTamanhoInvalido() {
+		try {
+			TokenPagina.decodificar("0;0;1;N;");
+			fail();
+		} catch (DAOException e) {
+			// Esperado.
+		}
+	}
+}